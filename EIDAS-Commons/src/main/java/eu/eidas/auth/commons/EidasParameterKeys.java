@@ -422,7 +422,53 @@ public enum EidasParameterKeys {
 
     TOKEN("token"),
 
-    BLOCK_BOUNCY_CASTLE_PROVIDER_REINSTALL("block.security.provider.reinstall")
+    BLOCK_BOUNCY_CASTLE_PROVIDER_REINSTALL("block.security.provider.reinstall"),
+
+    /**
+     * system property: whether the reloadable configuration files are watched in the background instead of being
+     * checked on each access
+     */
+    FILE_RELOAD_BACKGROUND("file.reload.background"),
+
+    /**
+     * system property: interval in milliseconds used to poll the reloadable configuration files which cannot be
+     * watched
+     */
+    FILE_RELOAD_POLL_INTERVAL("file.reload.poll.interval"),
+
+    /**
+     * system property: whether incoming SAML messages are validated against the XML schema while being parsed instead
+     * of in a second pass over the parsed document
+     */
+    XML_SCHEMA_VALIDATION_WHILE_PARSING("xml.schema.validation.while.parsing"),
+
+    /**
+     * system property: maximum number of idle XML parsers and transformers kept in each pool
+     */
+    XML_POOL_MAX_SIZE("xml.pool.max.size"),
+
+    /**
+     * system property: time in milliseconds after which idle XML parsers and transformers are evicted from their pool
+     */
+    XML_POOL_MAX_IDLE_MILLIS("xml.pool.max.idle.millis"),
+
+    /**
+     * system property: whether each thread keeps its own XML parser and transformer, as well as its own light token
+     * digest, aside from the shared pools
+     */
+    XML_POOL_THREAD_LOCAL("xml.pool.thread.local"),
+
+    /**
+     * system property: whether a light token authenticated with the legacy digest is still accepted when an HMAC
+     * algorithm is configured
+     */
+    LIGHT_TOKEN_ACCEPT_LEGACY_DIGEST("light.token.accept.legacy.digest"),
+
+    /**
+     * system property: whether the anti-replay cache also records and checks the legacy "countryCode/messageId" keys,
+     * while nodes of a previous version share the cache
+     */
+    ANTI_REPLAY_LEGACY_KEY("anti.replay.legacy.key")
     // put the ; on a separate line to make merges easier
     ;
 
@@ -21,6 +21,12 @@ package eu.eidas.auth.commons.attribute;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.EnumMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,14 +35,17 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.xml.namespace.QName;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.eidas.auth.commons.EidasErrorKey;
 import eu.eidas.auth.commons.exceptions.InternalErrorEIDASException;
+import eu.eidas.auth.commons.io.ObservableSingletonAccessor;
 import eu.eidas.auth.commons.io.ReloadableFileAccessor;
 import eu.eidas.auth.commons.io.SingletonAccessor;
 import eu.eidas.util.Preconditions;
@@ -51,6 +60,11 @@ import eu.eidas.util.Preconditions;
  * <p>
  * If the configuration files are available inside a jar in the classpath, then they are loaded once and for all and
  * cannot be reloaded.
+ * <p>
+ * The lookups are served from indexes which are built once per loaded version of the configuration files, and
+ * invalidated when any of them is reloaded. Files which are reloaded in the background (see {@link
+ * eu.eidas.auth.commons.io.FileReloadScheduler}) notify their reloads, so that the lookups do not access them at all;
+ * files which are checked on each access are still checked before each lookup.
  *
  * @see AttributeSetPropertiesConverter
  * @since 1.1
@@ -90,8 +104,164 @@ public final class AttributeRegistry {
      */
     private static final Logger LOG = LoggerFactory.getLogger(AttributeRegistry.class);
 
+    /**
+     * The indexes of the attribute definitions loaded from a given version of the configuration files.
+     */
+    @Immutable
+    private static final class Index {
+
+        /**
+         * The attribute definitions of each accessor from which this index is built, compared by identity to detect
+         * the reloads which are not notified.
+         */
+        @Nonnull
+        private final Object[] sources;
+
+        @Nonnull
+        private final ImmutableSortedSet<AttributeDefinition<?>> attributes;
+
+        @Nonnull
+        private final ImmutableMap<String, AttributeDefinition<?>> byName;
+
+        @Nonnull
+        private final ImmutableMap<URI, AttributeDefinition<?>> byNameUri;
+
+        @Nonnull
+        private final ImmutableMap<String, ImmutableSortedSet<AttributeDefinition<?>>> byFriendlyName;
+
+        @Nonnull
+        private final ImmutableMap<PersonType, ImmutableSortedSet<AttributeDefinition<?>>> byPersonType;
+
+        @Nonnull
+        private final ImmutableMap<QName, ImmutableSortedSet<AttributeDefinition<?>>> byXmlType;
+
+        /**
+         * The attribute definitions which are not required, then the required ones.
+         */
+        @Nonnull
+        private final ImmutableList<ImmutableSortedSet<AttributeDefinition<?>>> byRequired;
+
+        @Nonnull
+        private final ImmutableList<ImmutableSortedSet<AttributeDefinition<?>>> byTransliteration;
+
+        @Nonnull
+        private final ImmutableList<ImmutableSortedSet<AttributeDefinition<?>>> byUniqueIdentifier;
+
+        Index(@Nonnull Object[] sources, @Nonnull ImmutableSortedSet<AttributeDefinition<?>> attributes) {
+            this.sources = sources;
+            this.attributes = attributes;
+            Map<String, AttributeDefinition<?>> names = new HashMap<>();
+            Map<URI, AttributeDefinition<?>> nameUris = new HashMap<>();
+            Map<String, ImmutableSortedSet.Builder<AttributeDefinition<?>>> friendlyNames = new HashMap<>();
+            Map<PersonType, ImmutableSortedSet.Builder<AttributeDefinition<?>>> personTypes =
+                    new EnumMap<>(PersonType.class);
+            Map<QName, ImmutableSortedSet.Builder<AttributeDefinition<?>>> xmlTypes = new HashMap<>();
+            Map<Boolean, ImmutableSortedSet.Builder<AttributeDefinition<?>>> required = new HashMap<>();
+            Map<Boolean, ImmutableSortedSet.Builder<AttributeDefinition<?>>> transliteration = new HashMap<>();
+            Map<Boolean, ImmutableSortedSet.Builder<AttributeDefinition<?>>> uniqueIdentifier = new HashMap<>();
+            for (final AttributeDefinition<?> attributeDefinition : attributes) {
+                // like a scan of the sorted definitions, the first definition with a given name wins
+                if (!nameUris.containsKey(attributeDefinition.getNameUri())) {
+                    nameUris.put(attributeDefinition.getNameUri(), attributeDefinition);
+                    names.put(attributeDefinition.getNameUri().toString(), attributeDefinition);
+                }
+                add(friendlyNames, attributeDefinition.getFriendlyName(), attributeDefinition);
+                add(personTypes, attributeDefinition.getPersonType(), attributeDefinition);
+                add(xmlTypes, attributeDefinition.getXmlType(), attributeDefinition);
+                add(required, attributeDefinition.isRequired(), attributeDefinition);
+                add(transliteration, attributeDefinition.isTransliterationMandatory(), attributeDefinition);
+                add(uniqueIdentifier, attributeDefinition.isUniqueIdentifier(), attributeDefinition);
+            }
+            byName = ImmutableMap.copyOf(names);
+            byNameUri = ImmutableMap.copyOf(nameUris);
+            byFriendlyName = build(friendlyNames);
+            byPersonType = build(personTypes);
+            byXmlType = build(xmlTypes);
+            byRequired = buildByFlag(required);
+            byTransliteration = buildByFlag(transliteration);
+            byUniqueIdentifier = buildByFlag(uniqueIdentifier);
+        }
+
+        private static <K> void add(@Nonnull Map<K, ImmutableSortedSet.Builder<AttributeDefinition<?>>> builders,
+                                    @Nonnull K key,
+                                    @Nonnull AttributeDefinition<?> attributeDefinition) {
+            ImmutableSortedSet.Builder<AttributeDefinition<?>> builder = builders.get(key);
+            if (null == builder) {
+                builder = new ImmutableSortedSet.Builder<>(Ordering.natural());
+                builders.put(key, builder);
+            }
+            builder.add(attributeDefinition);
+        }
+
+        @Nonnull
+        private static <K> ImmutableMap<K, ImmutableSortedSet<AttributeDefinition<?>>> build(
+                @Nonnull Map<K, ImmutableSortedSet.Builder<AttributeDefinition<?>>> builders) {
+            ImmutableMap.Builder<K, ImmutableSortedSet<AttributeDefinition<?>>> builder = ImmutableMap.builder();
+            for (final Map.Entry<K, ImmutableSortedSet.Builder<AttributeDefinition<?>>> entry : builders.entrySet()) {
+                builder.put(entry.getKey(), entry.getValue().build());
+            }
+            return builder.build();
+        }
+
+        @Nonnull
+        private static ImmutableList<ImmutableSortedSet<AttributeDefinition<?>>> buildByFlag(
+                @Nonnull Map<Boolean, ImmutableSortedSet.Builder<AttributeDefinition<?>>> builders) {
+            return ImmutableList.of(buildFlag(builders, Boolean.FALSE), buildFlag(builders, Boolean.TRUE));
+        }
+
+        @Nonnull
+        private static ImmutableSortedSet<AttributeDefinition<?>> buildFlag(
+                @Nonnull Map<Boolean, ImmutableSortedSet.Builder<AttributeDefinition<?>>> builders,
+                @Nonnull Boolean key) {
+            ImmutableSortedSet.Builder<AttributeDefinition<?>> builder = builders.get(key);
+            return null == builder ? ImmutableSortedSet.<AttributeDefinition<?>>of() : builder.build();
+        }
+
+        @Nonnull
+        static ImmutableSortedSet<AttributeDefinition<?>> get(
+                @Nonnull ImmutableMap<?, ImmutableSortedSet<AttributeDefinition<?>>> index, @Nonnull Object key) {
+            ImmutableSortedSet<AttributeDefinition<?>> attributeDefinitions = index.get(key);
+            return null == attributeDefinitions ? ImmutableSortedSet.<AttributeDefinition<?>>of() : attributeDefinitions;
+        }
+
+        boolean isBuiltFrom(@Nonnull List<? extends SingletonAccessor<?>> accessors, @Nonnull int[] positions)
+                throws IOException {
+            for (final int position : positions) {
+                if (accessors.get(position).get() != sources[position]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isBuiltFrom(@Nonnull Object[] currentSources) {
+            if (currentSources.length != sources.length) {
+                return false;
+            }
+            for (int i = 0; i < sources.length; i++) {
+                if (currentSources[i] != sources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private final AttributeDefinitionDao attributeDefinitionDao;
 
+    /**
+     * The indexes of the last loaded version of the configuration files, built upon first use and reset to {@code
+     * null} when a file is reloaded.
+     */
+    private final AtomicReference<Index> index = new AtomicReference<>();
+
+    /**
+     * The positions of the accessors whose changes are not notified without accessing them, which are checked before
+     * each lookup.
+     */
+    @Nonnull
+    private final int[] checkedPositions;
+
     /**
      * Creates an attribute registry based on the given {@link SingletonAccessor}s.
      *
@@ -103,6 +273,24 @@ public final class AttributeRegistry {
                 attributeDefinitionDao.getAttributeDefinitionAccessors();
         Preconditions.checkNotNull(definitionAccessors, "accessors");
         this.attributeDefinitionDao = attributeDefinitionDao;
+        Runnable invalidation = new Runnable() {
+            @Override
+            public void run() {
+                index.set(null);
+            }
+        };
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < definitionAccessors.size(); i++) {
+            SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> accessor = definitionAccessors.get(i);
+            if (accessor instanceof ObservableSingletonAccessor) {
+                ((ObservableSingletonAccessor<?>) accessor).addChangeListener(invalidation);
+            }
+            if (!(accessor instanceof ObservableSingletonAccessor)
+                    || ((ObservableSingletonAccessor<?>) accessor).isCheckedOnAccess()) {
+                positions.add(i);
+            }
+        }
+        checkedPositions = Ints.toArray(positions);
         logRetrievedAttributes();
     }
 
@@ -114,72 +302,100 @@ public final class AttributeRegistry {
      */
     public boolean contains(@Nonnull AttributeDefinition<?> attributeDefinition) {
         Preconditions.checkNotNull(attributeDefinition, "attributeDefinition");
-        try {
-            for (final SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> accessor : getAccessors()) {
-                ImmutableSortedSet<AttributeDefinition<?>> attributeDefinitions = accessor.get();
-                if (null != attributeDefinitions && attributeDefinitions.contains(attributeDefinition)) {
-                    return true;
-                }
-            }
-        } catch (IOException ioe) {
-            throw new InternalErrorEIDASException(EidasErrorKey.INTERNAL_ERROR.errorCode(),ioe.getMessage(),ioe);
-        }
-        return false;
+        return getIndex().attributes.contains(attributeDefinition);
     }
 
     private ImmutableList<? extends SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>> getAccessors() {
         return attributeDefinitionDao.getAttributeDefinitionAccessors();
     }
 
+    /**
+     * Returns the indexes of the current version of the configuration files, rebuilding them if they have been
+     * invalidated by a reload or if a file checked on access has been reloaded since they were built.
+     */
     @Nonnull
-    public ImmutableSortedSet<AttributeDefinition<?>> getAttributes() {
+    private Index getIndex() {
         try {
             ImmutableList<? extends SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>> accessors =
                     getAccessors();
-            if (accessors.size() == 1) {
-                return accessors.get(0).get();
+            Index currentIndex = index.get();
+            if (null != currentIndex
+                    && (checkedPositions.length == 0 || currentIndex.isBuiltFrom(accessors, checkedPositions))) {
+                return currentIndex;
+            }
+            for (;;) {
+                Object[] sources = getSources(accessors);
+                Index newIndex = new Index(sources, merge(sources));
+                index.set(newIndex);
+                // a reload notified before the index was published is detected here, and one notified afterwards
+                // resets the index
+                if (newIndex.isBuiltFrom(getSources(accessors))) {
+                    return newIndex;
+                }
             }
-            return getByFilter(ALL_FILTER);
         } catch (IOException ioe) {
             throw new InternalErrorEIDASException(EidasErrorKey.INTERNAL_ERROR.errorCode(),ioe.getMessage(),ioe);
         }
     }
 
+    @Nonnull
+    private static Object[] getSources(
+            @Nonnull ImmutableList<? extends SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>> accessors)
+            throws IOException {
+        Object[] sources = new Object[accessors.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = accessors.get(i).get();
+        }
+        return sources;
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static ImmutableSortedSet<AttributeDefinition<?>> merge(@Nonnull Object[] sources) {
+        if (sources.length == 1 && null != sources[0]) {
+            return (ImmutableSortedSet<AttributeDefinition<?>>) sources[0];
+        }
+        ImmutableSortedSet.Builder<AttributeDefinition<?>> builder = new ImmutableSortedSet.Builder<>(Ordering.natural());
+        for (final Object source : sources) {
+            if (null != source) {
+                builder.addAll((ImmutableSortedSet<AttributeDefinition<?>>) source);
+            }
+        }
+        return builder.build();
+    }
+
+    @Nonnull
+    public ImmutableSortedSet<AttributeDefinition<?>> getAttributes() {
+        return getIndex().attributes;
+    }
+
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByFilter(@Nonnull AttributeDefinitionFilter filter) {
         Preconditions.checkNotNull(filter, "filter");
-        try {
-            ImmutableSortedSet.Builder<AttributeDefinition<?>> builder =
-                    new ImmutableSortedSet.Builder<>(Ordering.natural());
-            for (final SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> accessor : getAccessors()) {
-                ImmutableSortedSet<AttributeDefinition<?>> attributeDefinitions = accessor.get();
-                if (null != attributeDefinitions) {
-                    for (final AttributeDefinition<?> attributeDefinition : attributeDefinitions) {
-                        if (filter.accept(attributeDefinition)) {
-                            builder.add(attributeDefinition);
-                        }
-                    }
-                }
+        ImmutableSortedSet<AttributeDefinition<?>> attributeDefinitions = getIndex().attributes;
+        if (filter == ALL_FILTER) {
+            return attributeDefinitions;
+        }
+        ImmutableSortedSet.Builder<AttributeDefinition<?>> builder = new ImmutableSortedSet.Builder<>(Ordering.natural());
+        for (final AttributeDefinition<?> attributeDefinition : attributeDefinitions) {
+            if (filter.accept(attributeDefinition)) {
+                builder.add(attributeDefinition);
             }
-            return builder.build();
-        } catch (IOException ioe) {
-            throw new InternalErrorEIDASException(EidasErrorKey.INTERNAL_ERROR.errorCode(),ioe.getMessage(),ioe);
         }
+        return builder.build();
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByFriendlyName(@Nonnull final String friendlyName) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.getFriendlyName().equals(friendlyName);
-            }
-        });
+        return Index.get(getIndex().byFriendlyName, friendlyName);
     }
 
     @Nullable
     public AttributeDefinition<?> getByName(@Nonnull String name) {
+        AttributeDefinition<?> attributeDefinition = getIndex().byName.get(name);
+        if (null != attributeDefinition) {
+            return attributeDefinition;
+        }
         URI nameUri;
         try {
             nameUri = new URI(name);
@@ -191,67 +407,32 @@ public final class AttributeRegistry {
 
     @Nullable
     public AttributeDefinition<?> getByName(@Nonnull URI nameUri) {
-        for (final AttributeDefinition attribute : getAttributes()) {
-            if (attribute.getNameUri().equals(nameUri)) {
-                return attribute;
-            }
-        }
-        return null;
+        return getIndex().byNameUri.get(nameUri);
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByPersonType(@Nonnull final PersonType type) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.getPersonType() == type;
-            }
-        });
+        return Index.get(getIndex().byPersonType, type);
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByRequired(final boolean required) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.isRequired() == required;
-            }
-        });
+        return getIndex().byRequired.get(required ? 1 : 0);
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByTransliteration(final boolean isTransliterationMandatory) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.isTransliterationMandatory() == isTransliterationMandatory;
-            }
-        });
+        return getIndex().byTransliteration.get(isTransliterationMandatory ? 1 : 0);
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByUniqueIdentifier(final boolean isUniqueIdentifier) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.isUniqueIdentifier() == isUniqueIdentifier;
-            }
-        });
+        return getIndex().byUniqueIdentifier.get(isUniqueIdentifier ? 1 : 0);
     }
 
     @Nonnull
     public ImmutableSortedSet<AttributeDefinition<?>> getByXmlType(@Nonnull final QName xmlType) {
-        return getByFilter(new AttributeDefinitionFilter() {
-
-            @Override
-            public boolean accept(@Nonnull AttributeDefinition attributeDefinition) {
-                return attributeDefinition.getXmlType().equals(xmlType);
-            }
-        });
+        return Index.get(getIndex().byXmlType, xmlType);
     }
 
     private void logRetrievedAttributes() {
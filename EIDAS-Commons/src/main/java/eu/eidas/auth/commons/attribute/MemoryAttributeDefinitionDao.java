@@ -23,6 +23,8 @@ import javax.annotation.Nullable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedSet;
 
+import eu.eidas.auth.commons.io.ChangeListeners;
+import eu.eidas.auth.commons.io.ObservableSingletonAccessor;
 import eu.eidas.auth.commons.io.SingletonAccessor;
 import eu.eidas.util.Preconditions;
 
@@ -33,11 +35,14 @@ import eu.eidas.util.Preconditions;
  */
 final class MemoryAttributeDefinitionDao implements AttributeDefinitionDao {
 
-    private static final class AtomicState implements SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> {
+    private static final class AtomicState
+            implements ObservableSingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> {
 
         @Nonnull
         private final AtomicReference<ImmutableSortedSet<AttributeDefinition<?>>> reference;
 
+        private final ChangeListeners changeListeners = new ChangeListeners();
+
         private AtomicState(@Nonnull ImmutableSortedSet<AttributeDefinition<?>> definitions) {
             Preconditions.checkNotNull(definitions, "definitions");
             reference = new AtomicReference<>(definitions);
@@ -53,6 +58,17 @@ final class MemoryAttributeDefinitionDao implements AttributeDefinitionDao {
         public void set(@Nonnull ImmutableSortedSet<AttributeDefinition<?>> newValue) {
             Preconditions.checkNotNull(newValue, "newValue");
             reference.set(newValue);
+            changeListeners.changed();
+        }
+
+        @Override
+        public void addChangeListener(@Nonnull Runnable listener) {
+            changeListeners.add(listener);
+        }
+
+        @Override
+        public boolean isCheckedOnAccess() {
+            return false;
         }
     }
 
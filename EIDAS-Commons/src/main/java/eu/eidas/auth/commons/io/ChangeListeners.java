@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.io;
+
+import eu.eidas.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The listeners of an {@link ObservableSingletonAccessor}, to be used by its implementations.
+ *
+ * @since 2.4
+ */
+public final class ChangeListeners {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeListeners.class);
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(@Nonnull Runnable listener) {
+        Preconditions.checkNotNull(listener, "listener");
+        listeners.add(listener);
+    }
+
+    /**
+     * Runs the listeners, a failing listener not preventing the others from running.
+     */
+    public void changed() {
+        for (final Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOG.error("Change listener " + listener + " failed: " + e, e);
+            }
+        }
+    }
+}
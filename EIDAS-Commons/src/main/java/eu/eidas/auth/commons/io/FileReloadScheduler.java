@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.lang.ManagementBeans;
+import eu.eidas.util.Preconditions;
+
+/**
+ * Shared service reloading the {@link ReloadableFileAccessor}s in the background.
+ * <p>
+ * The directories of the registered files are watched with a {@link WatchService}; when a directory cannot be watched,
+ * its files are polled at a fixed interval instead. In both cases the new value is pushed into the accessor so that
+ * {@link ReloadableFileAccessor#get()} does not need to check the file on each access.
+ * <p>
+ * Background reloading is enabled for all the accessors created by {@link SingletonAccessors} when the system property
+ * {@link EidasParameterKeys#FILE_RELOAD_BACKGROUND} is set to {@code true}.
+ * <p>
+ * The reload metrics of the shared instance are exposed in JMX under {@code
+ * eu.eidas:type=FileReloadScheduler,name="default"}.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+public final class FileReloadScheduler implements FileReloadSchedulerMXBean {
+
+    /**
+     * Initialization-on-demand holder idiom.
+     * <p/>
+     * See item 71 of Effective Java 2nd Edition.
+     */
+    private static final class LazyHolder {
+
+        private static final FileReloadScheduler INSTANCE = newInstance();
+
+        private static FileReloadScheduler newInstance() {
+            FileReloadScheduler instance = new FileReloadScheduler(getPollIntervalMillis());
+            ManagementBeans.register("FileReloadScheduler", "default", instance);
+            instanceCreated = true;
+            return instance;
+        }
+    }
+
+    /**
+     * Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(FileReloadScheduler.class);
+
+    /**
+     * Default interval between two checks of the files which cannot be watched.
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000L;
+
+    /**
+     * Whether the shared instance was created, so that {@link #shutdownInstance()} does not create it.
+     */
+    private static volatile boolean instanceCreated;
+
+    @Nonnull
+    public static FileReloadScheduler getInstance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Stops the threads of the shared instance, if it was ever created, when the application is stopped.
+     * <p>
+     * The accessors registered with the shared instance are no longer reloaded in the background afterwards.
+     */
+    public static void shutdownInstance() {
+        if (instanceCreated) {
+            getInstance().shutdown();
+        }
+    }
+
+    /**
+     * Returns whether the reloadable files must be reloaded in the background.
+     *
+     * @return {@code true} if the system property {@link EidasParameterKeys#FILE_RELOAD_BACKGROUND} is {@code true}.
+     */
+    public static boolean isBackgroundReloadEnabled() {
+        return Boolean.parseBoolean(System.getProperty(EidasParameterKeys.FILE_RELOAD_BACKGROUND.toString()));
+    }
+
+    private static long getPollIntervalMillis() {
+        String value = System.getProperty(EidasParameterKeys.FILE_RELOAD_POLL_INTERVAL.toString());
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                LOG.error("Invalid value \"" + value + "\" for " + EidasParameterKeys.FILE_RELOAD_POLL_INTERVAL
+                                  + ", using default: " + DEFAULT_POLL_INTERVAL_MILLIS);
+            }
+        }
+        return DEFAULT_POLL_INTERVAL_MILLIS;
+    }
+
+    @Nonnull
+    private static ThreadFactory newDaemonThreadFactory(@Nonnull final String name) {
+        return new ThreadFactory() {
+
+            @Override
+            public Thread newThread(@Nonnull Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * The accessors of the watched directories, weakly referenced so that transient accessors can be garbage
+     * collected.
+     */
+    @Nonnull
+    private final ConcurrentMap<Path, List<WeakReference<ReloadableFileAccessor<?>>>> watchedAccessors =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The accessors whose directory cannot be watched.
+     */
+    @Nonnull
+    private final List<WeakReference<ReloadableFileAccessor<?>>> polledAccessors = new CopyOnWriteArrayList<>();
+
+    @Nonnull
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(newDaemonThreadFactory("FileReloadScheduler"));
+
+    @Nullable
+    private final WatchService watchService;
+
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    private final AtomicLong reloadErrorCount = new AtomicLong();
+
+    private final AtomicLong lastReloadDurationNanos = new AtomicLong();
+
+    private final AtomicLong totalReloadDurationNanos = new AtomicLong();
+
+    private final AtomicReference<String> lastReloadError = new AtomicReference<>();
+
+    FileReloadScheduler(long pollIntervalMillis) {
+        watchService = newWatchService();
+        if (null != watchService) {
+            Thread watcher = newDaemonThreadFactory("FileReloadWatcher").newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    watch();
+                }
+            });
+            watcher.start();
+        }
+        if (pollIntervalMillis > 0L) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    reloadAll(polledAccessors);
+                }
+            }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Nullable
+    private static WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("File watching is not available, falling back to polling: " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Registers the given accessor so that its file is reloaded in the background.
+     *
+     * @param accessor the accessor to reload in the background
+     */
+    void register(@Nonnull ReloadableFileAccessor<?> accessor, @Nonnull File file) {
+        WeakReference<ReloadableFileAccessor<?>> reference = new WeakReference<ReloadableFileAccessor<?>>(accessor);
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        if (null != watchService) {
+            List<WeakReference<ReloadableFileAccessor<?>>> accessors = watchedAccessors.get(directory);
+            if (null == accessors) {
+                try {
+                    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                       StandardWatchEventKinds.ENTRY_MODIFY);
+                    List<WeakReference<ReloadableFileAccessor<?>>> newAccessors = new CopyOnWriteArrayList<>();
+                    accessors = watchedAccessors.putIfAbsent(directory, newAccessors);
+                    if (null == accessors) {
+                        accessors = newAccessors;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Directory \"" + directory + "\" cannot be watched, polling \"" + file + "\" instead: "
+                                     + e, e);
+                }
+            }
+            if (null != accessors) {
+                accessors.add(reference);
+                return;
+            }
+        }
+        polledAccessors.add(reference);
+    }
+
+    /**
+     * Schedules a periodic background task on the shared reload thread.
+     *
+     * @param task the task to run
+     * @param delayMillis the delay between the end of one execution and the start of the next one
+     * @return the future of the task, which can be used to cancel it
+     */
+    @Nonnull
+    public ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable task, long delayMillis) {
+        Preconditions.checkNotNull(task, "task");
+        return executor.scheduleWithFixedDelay(task, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reload thread and the directory watcher. The tasks scheduled with {@link
+     * #scheduleWithFixedDelay(Runnable, long)} are no longer run and no new task can be scheduled.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        if (null != watchService) {
+            try {
+                // wakes the watcher thread up with a ClosedWatchServiceException
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close the file watcher: " + e, e);
+            }
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException cwse) {
+                return;
+            }
+            // drain the events: all the files of the directory are checked against their last modification date
+            key.pollEvents();
+            final List<WeakReference<ReloadableFileAccessor<?>>> accessors = watchedAccessors.get((Path) key.watchable());
+            if (null != accessors) {
+                try {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            reloadAll(accessors);
+                        }
+                    });
+                } catch (RejectedExecutionException ree) {
+                    // shut down
+                    return;
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private void reloadAll(@Nonnull List<WeakReference<ReloadableFileAccessor<?>>> accessors) {
+        for (WeakReference<ReloadableFileAccessor<?>> reference : accessors) {
+            ReloadableFileAccessor<?> accessor = reference.get();
+            if (null == accessor) {
+                accessors.remove(reference);
+            } else {
+                reload(accessor);
+            }
+        }
+    }
+
+    private void reload(@Nonnull ReloadableFileAccessor<?> accessor) {
+        long start = System.nanoTime();
+        try {
+            if (accessor.reloadIfModified()) {
+                long duration = System.nanoTime() - start;
+                reloadCount.incrementAndGet();
+                lastReloadDurationNanos.set(duration);
+                totalReloadDurationNanos.addAndGet(duration);
+                LOG.info("Reloaded \"" + accessor.getFilename() + "\" in " + TimeUnit.NANOSECONDS.toMillis(duration)
+                                 + " ms");
+            }
+        } catch (IOException | RuntimeException e) {
+            reloadErrorCount.incrementAndGet();
+            lastReloadError.set("\"" + accessor.getFilename() + "\": " + e);
+            LOG.error("Unable to reload \"" + accessor.getFilename() + "\", keeping the previous value: " + e, e);
+        }
+    }
+
+    /**
+     * @return the number of files reloaded in the background
+     */
+    @Override
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * @return the number of background reloads which failed
+     */
+    @Override
+    public long getReloadErrorCount() {
+        return reloadErrorCount.get();
+    }
+
+    /**
+     * @return the duration of the last successful background reload in milliseconds
+     */
+    @Override
+    public long getLastReloadDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastReloadDurationNanos.get());
+    }
+
+    /**
+     * @return the cumulated duration of the successful background reloads in milliseconds
+     */
+    @Override
+    public long getTotalReloadDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalReloadDurationNanos.get());
+    }
+
+    /**
+     * @return the description of the last background reload error, or {@code null} if no reload ever failed
+     */
+    @Nullable
+    @Override
+    public String getLastReloadError() {
+        return lastReloadError.get();
+    }
+}
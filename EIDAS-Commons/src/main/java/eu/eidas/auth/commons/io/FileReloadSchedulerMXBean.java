@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.io;
+
+/**
+ * Management interface of the {@link FileReloadScheduler}.
+ *
+ * @since 2.4
+ */
+public interface FileReloadSchedulerMXBean {
+
+    /**
+     * @return the number of files reloaded in the background
+     */
+    long getReloadCount();
+
+    /**
+     * @return the number of background reloads which failed
+     */
+    long getReloadErrorCount();
+
+    /**
+     * @return the duration of the last successful background reload in milliseconds
+     */
+    long getLastReloadDurationMillis();
+
+    /**
+     * @return the cumulated duration of the successful background reloads in milliseconds
+     */
+    long getTotalReloadDurationMillis();
+
+    /**
+     * @return the description of the last background reload error, or {@code null} if no reload ever failed
+     */
+    String getLastReloadError();
+}
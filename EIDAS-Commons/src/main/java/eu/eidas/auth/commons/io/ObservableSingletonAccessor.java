@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.io;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link SingletonAccessor} which notifies listeners when its value changes, so that the values derived from it can
+ * be invalidated instead of being checked on each access.
+ *
+ * @since 2.4
+ */
+public interface ObservableSingletonAccessor<T> extends SingletonAccessor<T> {
+
+    /**
+     * Registers a listener run after each change of the value, by the thread which changed it and possibly while the
+     * accessor holds a lock: the listener must therefore neither block nor access the accessor.
+     *
+     * @param listener the listener
+     */
+    void addChangeListener(@Nonnull Runnable listener);
+
+    /**
+     * Returns whether changes are only detected, and then notified, when the value is accessed with {@link #get()},
+     * such as the changes of a file checked on each access.
+     *
+     * @return {@code true} if {@link #get()} must be called to detect the changes, {@code false} if they are notified
+     * without any access
+     */
+    boolean isCheckedOnAccess();
+}
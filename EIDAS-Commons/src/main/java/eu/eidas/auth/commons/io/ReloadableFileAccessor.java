@@ -40,7 +40,7 @@ import eu.eidas.util.Preconditions;
  *
  * @since 1.1
  */
-public final class ReloadableFileAccessor<T> implements SingletonAccessor<T> {
+public final class ReloadableFileAccessor<T> implements ObservableSingletonAccessor<T> {
 
     /**
      * Immutable Class to make the inner state atomic ie one field cannot be modified without modifying the state as a
@@ -87,6 +87,26 @@ public final class ReloadableFileAccessor<T> implements SingletonAccessor<T> {
     @Nonnull
     private final AtomicReference<AtomicState<T>> referenceToState = new AtomicReference<AtomicState<T>>();
 
+    /**
+     * Whether the file is reloaded by the {@link FileReloadScheduler} instead of being checked on each access.
+     */
+    private volatile boolean backgroundReload;
+
+    /**
+     * Whether the calling threads have attempted the initial load of a file reloaded in the background: afterwards,
+     * they no longer check the file, even when it is missing or its modification date is not supported.
+     */
+    private volatile boolean initialLoadAttempted;
+
+    /**
+     * The failure of the last load of a file reloaded in the background while no value is available, rethrown to the
+     * calling threads until the next check of the scheduler.
+     */
+    @Nullable
+    private volatile IOException loadFailure;
+
+    private final ChangeListeners changeListeners = new ChangeListeners();
+
     @SuppressWarnings("squid:S2637")
     public ReloadableFileAccessor(@Nonnull FileMarshaller<T> fileMarshaller, @Nonnull String filename) {
         this(fileMarshaller, filename, getResourceIgnoredException(filename));
@@ -180,8 +200,95 @@ public final class ReloadableFileAccessor<T> implements SingletonAccessor<T> {
     }
 
     private AtomicState<T> getState() throws IOException {
-        checkIfModified();
-        return referenceToState.get();
+        if (!backgroundReload) {
+            checkIfModified();
+            return referenceToState.get();
+        }
+        // when reloaded in the background, only the initial load is performed by the calling thread
+        if (!initialLoadAttempted) {
+            try {
+                checkIfModified();
+            } catch (IOException e) {
+                loadFailure = e;
+                throw e;
+            } finally {
+                initialLoadAttempted = true;
+            }
+            return referenceToState.get();
+        }
+        AtomicState<T> currentState = referenceToState.get();
+        IOException failure = loadFailure;
+        if (null != failure && null == currentState.value) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+        return currentState;
+    }
+
+    /**
+     * Hands the reloading of the file over to the shared {@link FileReloadScheduler}: after this call, {@link #get()}
+     * no longer checks the file on the filesystem but returns the last value pushed by the scheduler.
+     *
+     * @return this accessor
+     * @since 2.4
+     */
+    @Nonnull
+    public ReloadableFileAccessor<T> reloadInBackground() {
+        return reloadInBackground(FileReloadScheduler.getInstance());
+    }
+
+    @Nonnull
+    ReloadableFileAccessor<T> reloadInBackground(@Nonnull FileReloadScheduler scheduler) {
+        if (!backgroundReload) {
+            scheduler.register(this, referenceToState.get().file);
+            backgroundReload = true;
+        }
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The listeners are run after each reload of the file and after each {@link #set(Object)}.
+     *
+     * @since 2.4
+     */
+    @Override
+    public void addChangeListener(@Nonnull Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true} unless the file is reloaded in the background by the {@link FileReloadScheduler}
+     * @since 2.4
+     */
+    @Override
+    public boolean isCheckedOnAccess() {
+        return !backgroundReload;
+    }
+
+    /**
+     * Reloads the file if it has been modified since it was last loaded.
+     *
+     * @return {@code true} if the file has been reloaded
+     * @throws IOException if the file cannot be reloaded
+     * @since 2.4
+     */
+    boolean reloadIfModified() throws IOException {
+        try {
+            boolean reloaded = checkIfModified();
+            if (reloaded) {
+                loadFailure = null;
+            }
+            return reloaded;
+        } catch (IOException e) {
+            loadFailure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            loadFailure = new IOException(e);
+            throw e;
+        }
     }
 
     /**
@@ -214,8 +321,10 @@ public final class ReloadableFileAccessor<T> implements SingletonAccessor<T> {
             T value = fileMarshaller.unmarshal(file);
             AtomicState<T> newState = new AtomicState<T>(file, lastModified, value, false);
 
-            referenceToState.compareAndSet(currentState, newState);
-            // if OK, updated
+            if (referenceToState.compareAndSet(currentState, newState)) {
+                // if OK, updated
+                changeListeners.changed();
+            }
             // else another thread already changed the AtomicState
         } finally {
             lock.unlock();
@@ -252,6 +361,7 @@ public final class ReloadableFileAccessor<T> implements SingletonAccessor<T> {
             long lastModified = output.lastModified();
 
             referenceToState.set(new AtomicState<T>(output, lastModified, newValue, false));
+            changeListeners.changed();
         } finally {
             try {
                 AtomicState<T> currentState = referenceToState.get();
@@ -31,6 +31,9 @@ import eu.eidas.util.Preconditions;
 /**
  * A ReloadableProperties implementation, each time {@link #getProperties()} is invoked, properties are checked for
  * modifications and can be reloaded.
+ * <p>
+ * When background reloading is enabled (see {@link FileReloadScheduler}), the properties are reloaded by the shared
+ * scheduler and {@link #getProperties()} returns the last loaded snapshot without checking the file.
  *
  * @since 1.1
  */
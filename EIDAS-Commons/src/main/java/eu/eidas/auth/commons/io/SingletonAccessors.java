@@ -37,7 +37,7 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public final class SingletonAccessors {
 
-    static final class ImmutableAccessor<T> implements SingletonAccessor<T> {
+    static final class ImmutableAccessor<T> implements ObservableSingletonAccessor<T> {
 
         @Nullable
         private final T t;
@@ -56,12 +56,24 @@ public final class SingletonAccessors {
         public void set(@Nullable T newValue) {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void addChangeListener(@Nonnull Runnable listener) {
+            // never changes
+        }
+
+        @Override
+        public boolean isCheckedOnAccess() {
+            return false;
+        }
     }
 
-    static final class LazyAccessor<T> implements SingletonAccessor<T> {
+    static final class LazyAccessor<T> implements ObservableSingletonAccessor<T> {
 
         private final AtomicReference<T> reference = new AtomicReference<>();
 
+        private final ChangeListeners changeListeners = new ChangeListeners();
+
         @Nonnull
         private final SingletonAccessor<T> wrappedAccessor;
 
@@ -90,14 +102,28 @@ public final class SingletonAccessors {
         public void set(@Nonnull T newValue) throws IOException {
             wrappedAccessor.set(newValue);
             reference.set(newValue);
+            changeListeners.changed();
+        }
+
+        @Override
+        public void addChangeListener(@Nonnull Runnable listener) {
+            changeListeners.add(listener);
+        }
+
+        @Override
+        public boolean isCheckedOnAccess() {
+            // the wrapped value is loaded only once
+            return false;
         }
     }
 
-    static final class MutableAccessor<T> implements SingletonAccessor<T> {
+    static final class MutableAccessor<T> implements ObservableSingletonAccessor<T> {
 
         @Nullable
         private volatile T t;
 
+        private final ChangeListeners changeListeners = new ChangeListeners();
+
         MutableAccessor(@Nullable T t) {
             this.t = t;
         }
@@ -111,6 +137,17 @@ public final class SingletonAccessors {
         @Override
         public void set(@Nullable T newValue) {
             t = newValue;
+            changeListeners.changed();
+        }
+
+        @Override
+        public void addChangeListener(@Nonnull Runnable listener) {
+            changeListeners.add(listener);
+        }
+
+        @Override
+        public boolean isCheckedOnAccess() {
+            return false;
         }
     }
 
@@ -227,7 +264,12 @@ public final class SingletonAccessors {
             if (null != urlProtocol) {
                 switch (urlProtocol) {
                     case FILE:
-                        return new ReloadableFileAccessor<T>(fileMarshaller, fileWithPath, resource);
+                        ReloadableFileAccessor<T> fileAccessor =
+                                new ReloadableFileAccessor<T>(fileMarshaller, fileWithPath, resource);
+                        if (FileReloadScheduler.isBackgroundReloadEnabled()) {
+                            fileAccessor.reloadInBackground();
+                        }
+                        return fileAccessor;
                     default:
                         return new LazyAccessor<T>(new UrlAccessor<T>(streamMarshaller, resource));
                 }
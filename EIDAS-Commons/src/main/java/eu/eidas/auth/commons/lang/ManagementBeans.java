@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.lang;
+
+import eu.eidas.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registers the management beans of the application in the platform MBean server under {@code
+ * eu.eidas:type=<type>,name="<name>"}.
+ * <p>
+ * A bean registered under the same name by a previous deployment of the application is replaced, so that the
+ * platform MBean server does not keep a reference to the class loader of that deployment. The beans must be
+ * unregistered with {@link #unregisterAll()} when the application is stopped.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+public final class ManagementBeans {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ManagementBeans.class);
+
+    private static final Set<ObjectName> REGISTERED_NAMES = ConcurrentHashMap.newKeySet();
+
+    private ManagementBeans() {
+    }
+
+    /**
+     * Registers the given bean, replacing any bean already registered under the same name.
+     * <p>
+     * Failures are logged and ignored.
+     *
+     * @param type the type of the bean
+     * @param name the name of the bean
+     * @param mBean the bean implementing a management interface
+     */
+    public static void register(@Nonnull String type, @Nonnull String name, @Nonnull Object mBean) {
+        Preconditions.checkNotBlank(type, "type");
+        Preconditions.checkNotBlank(name, "name");
+        Preconditions.checkNotNull(mBean, "mBean");
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName =
+                    new ObjectName("eu.eidas:type=" + type + ",name=" + ObjectName.quote(name));
+            if (mBeanServer.isRegistered(objectName)) {
+                unregister(mBeanServer, objectName);
+            }
+            mBeanServer.registerMBean(mBean, objectName);
+            REGISTERED_NAMES.add(objectName);
+        } catch (JMException | SecurityException e) {
+            LOG.warn("Unable to register \"" + name + "\" in JMX: " + e, e);
+        }
+    }
+
+    /**
+     * Unregisters all the beans registered by {@link #register(String, String, Object)}.
+     * <p>
+     * Failures are logged and ignored.
+     */
+    public static void unregisterAll() {
+        MBeanServer mBeanServer;
+        try {
+            mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        } catch (SecurityException e) {
+            LOG.warn("Unable to unregister the JMX beans: " + e, e);
+            return;
+        }
+        for (ObjectName objectName : REGISTERED_NAMES) {
+            REGISTERED_NAMES.remove(objectName);
+            try {
+                unregister(mBeanServer, objectName);
+            } catch (JMException | SecurityException e) {
+                LOG.warn("Unable to unregister \"" + objectName + "\" from JMX: " + e, e);
+            }
+        }
+    }
+
+    private static void unregister(@Nonnull MBeanServer mBeanServer, @Nonnull ObjectName objectName)
+            throws JMException {
+        try {
+            mBeanServer.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException ignored) {
+            // already unregistered concurrently
+        }
+    }
+}
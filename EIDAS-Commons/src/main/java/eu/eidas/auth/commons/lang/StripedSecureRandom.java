@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.lang;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Source of secure random bytes for the generation of identifiers, which does not serialize the request threads on a
+ * single {@link SecureRandom}.
+ * <p>
+ * The bytes are drawn from a fixed set of stripes, each one holding its own {@code SHA1PRNG} generator and being
+ * selected from the id of the current thread. The generators are seeded from the default {@link SecureRandom} of the
+ * platform when they are created and reseeded from it every {@value #RESEED_INTERVAL} draws.
+ * <p>
+ * The generators are striped rather than held per thread so that their number, and the seed material they draw from
+ * the platform source, depends on the number of processors instead of the size of the container thread pools.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+public final class StripedSecureRandom {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StripedSecureRandom.class);
+
+    private static final String ALGORITHM = "SHA1PRNG";
+
+    private static final int SEED_BYTES = 32;
+
+    /**
+     * The number of draws after which a stripe mixes fresh seed material into its generator.
+     */
+    private static final int RESEED_INTERVAL = 1 << 16;
+
+    /**
+     * The source of the seeds, which does not block on the supported platforms.
+     */
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private static final Stripe[] STRIPES = newStripes(4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * A generator and the number of draws since it was last seeded, guarded by the stripe.
+     */
+    private static final class Stripe {
+
+        @Nonnull
+        private final SecureRandom random;
+
+        private int draws;
+
+        private Stripe(@Nonnull SecureRandom random) {
+            this.random = random;
+        }
+
+        private synchronized void nextBytes(@Nonnull byte[] bytes) {
+            if (++draws > RESEED_INTERVAL) {
+                // supplements the state of the generator, does not replace it
+                random.setSeed(seed());
+                draws = 1;
+            }
+            random.nextBytes(bytes);
+        }
+    }
+
+    private StripedSecureRandom() {
+    }
+
+    @Nonnull
+    private static byte[] seed() {
+        byte[] seed = new byte[SEED_BYTES];
+        SEED_SOURCE.nextBytes(seed);
+        return seed;
+    }
+
+    @Nonnull
+    private static Stripe[] newStripes(int minimumCount) {
+        // a power of two so that a stripe is selected with a mask
+        int count = Integer.highestOneBit(Math.max(1, minimumCount - 1)) << 1;
+        Stripe[] stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(newSeededRandom());
+        }
+        return stripes;
+    }
+
+    @Nonnull
+    private static SecureRandom newSeededRandom() {
+        SecureRandom random;
+        try {
+            random = SecureRandom.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            LOG.warn("Secure random algorithm " + ALGORITHM + " is not available, using the platform default", e);
+            random = new SecureRandom();
+        }
+        // seeding before the first draw prevents the generator from seeding itself from a possibly blocking source
+        random.setSeed(seed());
+        return random;
+    }
+
+    /**
+     * Fills the given array with secure random bytes.
+     *
+     * @param bytes the array to fill
+     */
+    public static void nextBytes(@Nonnull byte[] bytes) {
+        STRIPES[(int) Thread.currentThread().getId() & (STRIPES.length - 1)].nextBytes(bytes);
+    }
+
+    /**
+     * Returns a random (version 4) UUID, as {@link UUID#randomUUID()} does.
+     *
+     * @return a random UUID
+     */
+    @Nonnull
+    public static UUID randomUUID() {
+        byte[] bytes = new byte[16];
+        nextBytes(bytes);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+        long mostSignificantBits = 0L;
+        long leastSignificantBits = 0L;
+        for (int i = 0; i < 8; i++) {
+            mostSignificantBits = (mostSignificantBits << 8) | (bytes[i] & 0xff);
+            leastSignificantBits = (leastSignificantBits << 8) | (bytes[i + 8] & 0xff);
+        }
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
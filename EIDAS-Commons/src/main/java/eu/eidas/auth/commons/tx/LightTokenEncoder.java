@@ -16,25 +16,47 @@ package eu.eidas.auth.commons.tx;
 
 import eu.eidas.auth.commons.EidasErrorKey;
 import eu.eidas.auth.commons.EidasErrors;
+import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.exceptions.SecurityEIDASException;
 import eu.eidas.auth.commons.light.ILightToken;
 import eu.eidas.auth.commons.light.impl.AbstractLightToken;
 import eu.eidas.auth.commons.light.impl.LightToken;
-import org.apache.commons.lang.StringUtils;
+import eu.eidas.auth.commons.xml.BoundedPool;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.Mac;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * LightTokenEncoder class is responsible to encode/decode LightTokens.
+ * <p>
+ * The algorithm selects the way the token is authenticated:
+ * <ul>
+ * <li>a {@link Mac} algorithm such as {@code HmacSHA256} authenticates the token with a keyed HMAC, the key being the
+ * UTF-8 bytes of the secret;</li>
+ * <li>a {@link MessageDigest} algorithm such as {@code SHA-256} authenticates the token with the legacy digest of the
+ * token and the secret.</li>
+ * </ul>
+ * To allow the peers to migrate one after the other, a token authenticated with the legacy digest of the matching hash
+ * function (e.g. {@code SHA-256} for {@code HmacSHA256}) can still be accepted when an HMAC algorithm is configured,
+ * if the system property {@link EidasParameterKeys#LIGHT_TOKEN_ACCEPT_LEGACY_DIGEST} is set to {@code true}. Each
+ * token accepted that way is logged as a warning.
+ * <p>
+ * The {@link MessageDigest} instances are pooled by algorithm and reused by the threads, the {@link Mac} instances are
+ * pooled by the {@link LightTokenKey} they are initialized with. The users encoding and decoding tokens should
+ * therefore create the {@link LightTokenKey} of their configured secret once and use the methods taking it: the
+ * methods taking the secret compute the key and a new {@link Mac} for each token. As for the XML pools, each thread
+ * keeps its own instances aside from the shared pools when the system property {@link
+ * EidasParameterKeys#XML_POOL_THREAD_LOCAL} is set to {@code true}.
  *
  * @since 2.0.0
  */
@@ -49,28 +71,54 @@ public final class LightTokenEncoder {
     /** Maximum number of parts for the tokenizer. */
     public static final int MAX_PARTS = 4;
 
+    private static final String HMAC_PREFIX = "Hmac";
+
+    private static final byte SEPARATOR_BYTE = (byte) AbstractLightToken.SEPARATOR.charAt(0);
+
+    private static final byte[] SEPARATOR_BYTES = {SEPARATOR_BYTE};
+
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final long MAX_POOL_IDLE_MILLIS = 300000L;
+
+    /**
+     * The pooled {@link MessageDigest}s by algorithm.
+     */
+    private static final ConcurrentMap<String, BoundedPool<MessageDigest>> DIGEST_POOLS = new ConcurrentHashMap<>();
+
     /**
      * This method created a BinaryLightToken from the supplied LightToken, with the supplied parameters.
      * The resulting BinaryLightToken will contain a bytearray to be used for reference in HTTP.
      * Format of the encoded token is: ISSUER/ID/CREATEDON/DIGEST. DIGEST is in BASE64.
      * @param token the logical to LightToken to be encoded
      * @param secret secret for creating the digest
-     * @param algorithm digest algorithm (SHA256 is recommended)
+     * @param algorithm HMAC algorithm (HmacSHA256 is recommended) or legacy digest algorithm
      * @return Object encapsulation both Logical and encoded LightToken
      * @throws NoSuchAlgorithmException when digest algorithm could not be found.
      */
     @Nonnull
     public static BinaryLightToken encode(ILightToken token, String secret, String algorithm) throws NoSuchAlgorithmException {
-        StringBuilder tokenString = new StringBuilder();
-        byte[] digestBytes = calculateDigest(token, secret, algorithm);
-        tokenString.append(token.getIssuer());
-        tokenString.append(AbstractLightToken.SEPARATOR);
-        tokenString.append(token.getId());
-        tokenString.append(AbstractLightToken.SEPARATOR);
-        tokenString.append(token.getFormattedCreatedOn());
-        tokenString.append(AbstractLightToken.SEPARATOR);
-        tokenString.append(EidasStringUtil.encodeToBase64(digestBytes));
-        return new BinaryLightToken(token, tokenString.toString().getBytes());
+        return encode(token, LightTokenKey.newTransientKey(secret, algorithm));
+    }
+
+    /**
+     * Same as {@link LightTokenEncoder#encode(ILightToken, String, String)}, with the key resolved once from the
+     * configuration.
+     *
+     * @param token the logical to LightToken to be encoded
+     * @param key the secret and algorithm for creating the digest
+     * @return Object encapsulation both Logical and encoded LightToken
+     * @throws NoSuchAlgorithmException when digest algorithm could not be found.
+     * @since 2.4
+     */
+    @Nonnull
+    public static BinaryLightToken encode(ILightToken token, @Nonnull LightTokenKey key) throws NoSuchAlgorithmException {
+        Charset charset = getCharset(key.getAlgorithm());
+        byte[] digestBytes = calculateDigest(token, key);
+        String tokenString = token.getIssuer() + AbstractLightToken.SEPARATOR + token.getId()
+                + AbstractLightToken.SEPARATOR + token.getFormattedCreatedOn() + AbstractLightToken.SEPARATOR
+                + EidasStringUtil.encodeToBase64(digestBytes);
+        return new BinaryLightToken(token, tokenString.getBytes(charset));
     }
 
     /**
@@ -85,14 +133,25 @@ public final class LightTokenEncoder {
      */
     @Nonnull
     public static BinaryLightToken decodeBase64(@Nonnull byte[] bytes , @Nonnull String secret, @Nonnull String algorithm) throws NoSuchAlgorithmException, SecurityEIDASException {
-        ILightToken retLightToken = null;
-        if (bytes.length > MAX_TOKEN_SIZE) {
-            log.error("Error parsing LightToken, size exceeds " + MAX_TOKEN_SIZE);
-            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
-                    "Error parsing LightToken, size exceeds " + MAX_TOKEN_SIZE);
-        }
-        String stringTokenEncoded = new String(bytes);
-        return decode(EidasStringUtil.decodeBytesFromBase64(stringTokenEncoded), secret, algorithm);
+        return decodeBase64(bytes, LightTokenKey.newTransientKey(secret, algorithm));
+    }
+
+    /**
+     * Same as {@link LightTokenEncoder#decodeBase64(byte[], String, String)}, with the key resolved once from the
+     * configuration.
+     *
+     * @param bytes the byte array
+     * @param key the secret and algorithm for checking the digest
+     * @return the {@link BinaryLightToken}
+     * @throws NoSuchAlgorithmException when digest algorithm could not be found.
+     * @throws SecurityEIDASException when token cannot be parsed
+     * @since 2.4
+     */
+    @Nonnull
+    public static BinaryLightToken decodeBase64(@Nonnull byte[] bytes , @Nonnull LightTokenKey key) throws NoSuchAlgorithmException, SecurityEIDASException {
+        checkSize(bytes);
+        String stringTokenEncoded = new String(bytes, StandardCharsets.ISO_8859_1);
+        return decode(EidasStringUtil.decodeBytesFromBase64(stringTokenEncoded), key);
     }
 
 
@@ -100,78 +159,220 @@ public final class LightTokenEncoder {
      * Decodes an array to a BinaryLightToken encapsulating the logical LightToken. This method is safe to process tokens coming in from the Web.
      * @param bytes array to be decoded
      * @param secret secret for checking the digest
-     * @param algorithm digest algorithm (SHA256 is recommended)
+     * @param algorithm HMAC algorithm (HmacSHA256 is recommended) or legacy digest algorithm
      * @return the {@link BinaryLightToken}
      * @throws NoSuchAlgorithmException when digest algorithm could not be found.
      * @throws SecurityEIDASException when token cannot be parsed
      */
     @Nonnull
     public static BinaryLightToken decode(@Nonnull byte[] bytes , @Nonnull String secret, @Nonnull String algorithm) throws NoSuchAlgorithmException, SecurityEIDASException {
-        ILightToken retLightToken = null;
+        return decode(bytes, LightTokenKey.newTransientKey(secret, algorithm));
+    }
+
+    /**
+     * Same as {@link LightTokenEncoder#decode(byte[], String, String)}, with the key resolved once from the
+     * configuration.
+     *
+     * @param bytes array to be decoded
+     * @param key the secret and algorithm for checking the digest
+     * @return the {@link BinaryLightToken}
+     * @throws NoSuchAlgorithmException when digest algorithm could not be found.
+     * @throws SecurityEIDASException when token cannot be parsed
+     * @since 2.4
+     */
+    @Nonnull
+    public static BinaryLightToken decode(@Nonnull byte[] bytes , @Nonnull LightTokenKey key) throws NoSuchAlgorithmException, SecurityEIDASException {
+        checkSize(bytes);
+        // the separator is ASCII, it cannot be part of a multi-byte character: the bytes are split in a single pass
+        int[] separators = new int[MAX_PARTS - 1];
+        int count = 0;
+        for (int i = 0; i < bytes.length && count <= separators.length; i++) {
+            if (bytes[i] == SEPARATOR_BYTE) {
+                if (count < separators.length) {
+                    separators[count] = i;
+                }
+                count++;
+            }
+        }
+        if (count != separators.length) {
+            log.error("Invalid LightToken");
+            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
+                    "LightToken parse error");
+        }
+        int first = separators[0];
+        int second = separators[1];
+        int third = separators[2];
+        Charset charset = getCharset(key.getAlgorithm());
+        DateTime createdOn = null;
+        try {
+            createdOn = AbstractLightToken.LIGHTTOKEN_DATE_FORMAT.parseDateTime(
+                    new String(bytes, second + 1, third - second - 1, charset));
+        } catch (Exception e) {
+            log.error("Invalid LightToken - createdOn timestamp parse failure");
+            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
+                    "LightToken createdOn timestamp parse failure");
+        }
+        // build token
+        ILightToken lightToken;
+        try {
+            lightToken = new LightToken.Builder()
+                    .issuer(new String(bytes, 0, first, charset))
+                    .id(new String(bytes, first + 1, second - first - 1, charset))
+                    .createdOn(createdOn).build();
+        } catch (Exception e) {
+            log.error("Invalid LightToken - failure in builder : "+e.getMessage());
+            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
+                    "LightToken parse error");
+        }
+        byte[] incomingDigest = EidasStringUtil.decodeBytesFromBase64(
+                new String(bytes, third + 1, bytes.length - third - 1, StandardCharsets.ISO_8859_1));
+        if (!isAuthentic(lightToken, incomingDigest, key)) {
+            log.error("Invalid LightToken - digest failure");
+            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
+                    "LightToken digest failure");
+        }
+        // the bytes are copied by the BinaryLightToken
+        return new BinaryLightToken(lightToken, bytes);
+    }
+
+    private static void checkSize(@Nonnull byte[] bytes) {
         if (bytes.length > MAX_TOKEN_SIZE) {
             log.error("Error parsing LightToken, size exceeds " + MAX_TOKEN_SIZE);
             throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
                     "Error parsing LightToken, size exceeds " + MAX_TOKEN_SIZE);
         }
-        String stringToken = new String(bytes);
-        if (StringUtils.countMatches(stringToken, AbstractLightToken.SEPARATOR) == 3) {
-            String[] parts = StringUtils.split(stringToken, AbstractLightToken.SEPARATOR, MAX_PARTS);
-            DateTime createdOn = null;
-            try {
-                createdOn = AbstractLightToken.LIGHTTOKEN_DATE_FORMAT.parseDateTime(parts[2]);
-            } catch (Exception e) {
-                log.error("Invalid LightToken - createdOn timestamp parse failure");
-                throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
-                        "LightToken createdOn timestamp parse failure");
-            }
-            // build token
-            ILightToken lightToken;
+    }
+
+    private static boolean isAuthentic(@Nonnull ILightToken lightToken,
+                                       @Nonnull byte[] incomingDigest,
+                                       @Nonnull LightTokenKey key) throws NoSuchAlgorithmException {
+        // constant-time comparisons
+        if (MessageDigest.isEqual(calculateDigest(lightToken, key), incomingDigest)) {
+            return true;
+        }
+        String algorithm = key.getAlgorithm();
+        if (key.isHmac() && isLegacyDigestAccepted()) {
+            String legacyAlgorithm = getLegacyDigestAlgorithm(algorithm);
             try {
-                lightToken = new LightToken.Builder()
-                        .issuer(parts[0])
-                        .id(parts[1])
-                        .createdOn(createdOn).build();
-            } catch (Exception e) {
-                log.error("Invalid LightToken - failure in builder : "+e.getMessage());
-                throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
-                        "LightToken parse error");
-            }
-            byte[] digestBytes = calculateDigest(lightToken, secret, algorithm);
-            byte[] incomingDigest = EidasStringUtil.decodeBytesFromBase64(parts[3]);
-            if (Arrays.equals(digestBytes, incomingDigest)) {
-                retLightToken = lightToken;
-            } else {
-                log.error("Invalid LightToken - digest failure");
-                throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
-                        "LightToken digest failure");
+                if (MessageDigest.isEqual(calculateDigest(lightToken, key.getSecret(), legacyAlgorithm), incomingDigest)) {
+                    log.warn("LightToken \"" + lightToken.getId() + "\" from \"" + lightToken.getIssuer()
+                                     + "\" accepted with the legacy digest " + legacyAlgorithm + " instead of "
+                                     + algorithm);
+                    return true;
+                }
+            } catch (NoSuchAlgorithmException e) {
+                log.debug("No legacy digest algorithm " + legacyAlgorithm + " for " + algorithm);
             }
-        } else {
-            log.error("Invalid LightToken");
-            throw new SecurityEIDASException(EidasErrors.get(EidasErrorKey.INVALID_LIGHT_TOKEN.errorCode()),
-                    "LightToken parse error");
         }
-        return new BinaryLightToken(retLightToken, bytes.clone());
+        return false;
+    }
+
+    private static boolean isLegacyDigestAccepted() {
+        return Boolean.parseBoolean(
+                System.getProperty(EidasParameterKeys.LIGHT_TOKEN_ACCEPT_LEGACY_DIGEST.toString()));
+    }
+
+    private static boolean isThreadLocalPool() {
+        return Boolean.parseBoolean(System.getProperty(EidasParameterKeys.XML_POOL_THREAD_LOCAL.toString()));
+    }
+
+    /**
+     * The tokens authenticated with an HMAC are encoded in UTF-8, the legacy ones with the platform charset as they
+     * always were.
+     */
+    @Nonnull
+    private static Charset getCharset(@Nonnull String algorithm) {
+        return LightTokenKey.isHmac(algorithm) ? StandardCharsets.UTF_8 : Charset.defaultCharset();
+    }
+
+    /**
+     * Returns the digest algorithm of the hash function of the given HMAC algorithm, e.g. {@code SHA-256} for {@code
+     * HmacSHA256}.
+     */
+    @Nonnull
+    private static String getLegacyDigestAlgorithm(@Nonnull String hmacAlgorithm) {
+        String hash = hmacAlgorithm.substring(HMAC_PREFIX.length());
+        if (hash.regionMatches(true, 0, "SHA", 0, 3) && hash.length() > 3 && Character.isDigit(hash.charAt(3))) {
+            return hash.substring(0, 3) + '-' + hash.substring(3);
+        }
+        return hash;
     }
 
     /**
      * Calclates a Digest for the supplied LightToken
      * @param lightToken logical LightToken
      * @param secret secret for the digest
-     * @param algorithm algorithm for the digest
+     * @param algorithm algorithm for the HMAC or the legacy digest
      * @return the digest
      * @throws NoSuchAlgorithmException when digest algorithm could not be found.
      */
     protected static byte[] calculateDigest(@Nonnull ILightToken lightToken, @Nonnull String secret, @Nonnull String algorithm) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance(algorithm);
-        md.reset();
-        md.update(lightToken.getId().getBytes());
-        md.update(AbstractLightToken.SEPARATOR.getBytes());
-        md.update(lightToken.getIssuer().getBytes());
-        md.update(AbstractLightToken.SEPARATOR.getBytes());
-        md.update(lightToken.getFormattedCreatedOn().getBytes());
-        md.update(AbstractLightToken.SEPARATOR.getBytes());
-        md.update(secret.getBytes() );
-        return md.digest();
+        if (LightTokenKey.isHmac(algorithm)) {
+            return calculateHmac(lightToken, LightTokenKey.newTransientKey(secret, algorithm));
+        }
+        BoundedPool<MessageDigest> pool = getDigestPool(algorithm);
+        final String digestAlgorithm = algorithm;
+        MessageDigest md = pool.borrow(new BoundedPool.Factory<MessageDigest, NoSuchAlgorithmException>() {
+            @Nonnull
+            @Override
+            public MessageDigest newInstance() throws NoSuchAlgorithmException {
+                return MessageDigest.getInstance(digestAlgorithm);
+            }
+        });
+        try {
+            Charset charset = Charset.defaultCharset();
+            md.reset();
+            md.update(lightToken.getId().getBytes(charset));
+            md.update(AbstractLightToken.SEPARATOR.getBytes(charset));
+            md.update(lightToken.getIssuer().getBytes(charset));
+            md.update(AbstractLightToken.SEPARATOR.getBytes(charset));
+            md.update(lightToken.getFormattedCreatedOn().getBytes(charset));
+            md.update(AbstractLightToken.SEPARATOR.getBytes(charset));
+            md.update(secret.getBytes(charset));
+            return md.digest();
+        } finally {
+            pool.release(md);
+        }
     }
 
+    @Nonnull
+    private static byte[] calculateDigest(@Nonnull ILightToken lightToken, @Nonnull LightTokenKey key)
+            throws NoSuchAlgorithmException {
+        if (key.isHmac()) {
+            return calculateHmac(lightToken, key);
+        }
+        return calculateDigest(lightToken, key.getSecret(), key.getAlgorithm());
+    }
+
+    @Nonnull
+    private static byte[] calculateHmac(@Nonnull ILightToken lightToken, @Nonnull LightTokenKey key)
+            throws NoSuchAlgorithmException {
+        Mac mac = key.borrowMac();
+        try {
+            // the Mac is reset by doFinal, its key is kept
+            mac.update(lightToken.getId().getBytes(StandardCharsets.UTF_8));
+            mac.update(SEPARATOR_BYTES);
+            mac.update(lightToken.getIssuer().getBytes(StandardCharsets.UTF_8));
+            mac.update(SEPARATOR_BYTES);
+            mac.update(lightToken.getFormattedCreatedOn().getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal();
+        } finally {
+            key.releaseMac(mac);
+        }
+    }
+
+    @Nonnull
+    private static BoundedPool<MessageDigest> getDigestPool(@Nonnull String algorithm) {
+        BoundedPool<MessageDigest> pool = DIGEST_POOLS.get(algorithm);
+        if (null == pool) {
+            BoundedPool<MessageDigest> newPool =
+                    new BoundedPool<>(LightTokenEncoder.class.getSimpleName() + '.' + algorithm, MAX_POOL_SIZE,
+                                      MAX_POOL_IDLE_MILLIS, isThreadLocalPool());
+            pool = DIGEST_POOLS.putIfAbsent(algorithm, newPool);
+            if (null == pool) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.tx;
+
+import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.xml.BoundedPool;
+import eu.eidas.util.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The secret and the algorithm authenticating the LightTokens, resolved once from the configuration.
+ * <p>
+ * For an HMAC algorithm, the key is computed from the UTF-8 bytes of the secret when this instance is created, and
+ * the {@link Mac}s initialized with it are pooled by this instance. A {@code LightTokenKey} is therefore meant to be
+ * created once per configured secret and kept by its user along with the rest of the configuration.
+ * <p>
+ * As for the XML pools, each thread keeps its own {@link Mac} aside from the shared pool when the system property
+ * {@link EidasParameterKeys#XML_POOL_THREAD_LOCAL} is set to {@code true}.
+ *
+ * @see LightTokenEncoder
+ * @since 2.4
+ */
+public final class LightTokenKey {
+
+    private static final String HMAC_PREFIX = "Hmac";
+
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final long MAX_POOL_IDLE_MILLIS = 300000L;
+
+    @Nonnull
+    private final String secret;
+
+    @Nonnull
+    private final String algorithm;
+
+    @Nullable
+    private final SecretKeySpec macKey;
+
+    @Nullable
+    private final BoundedPool<Mac> macPool;
+
+    /**
+     * Creates the key of the given secret and algorithm.
+     *
+     * @param secret the secret shared with the peer
+     * @param algorithm HMAC algorithm (HmacSHA256 is recommended) or legacy digest algorithm
+     */
+    public LightTokenKey(@Nonnull String secret, @Nonnull String algorithm) {
+        this(secret, algorithm, MAX_POOL_SIZE, isThreadLocalPool());
+    }
+
+    private LightTokenKey(@Nonnull String secret, @Nonnull String algorithm, int maxPoolSize, boolean threadLocal) {
+        Preconditions.checkNotNull(secret, "secret");
+        Preconditions.checkNotBlank(algorithm, "algorithm");
+        this.secret = secret;
+        this.algorithm = algorithm;
+        if (isHmac(algorithm)) {
+            macKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm);
+            macPool = new BoundedPool<>(LightTokenKey.class.getSimpleName() + '.' + algorithm + '@'
+                                                + Integer.toHexString(System.identityHashCode(this)), maxPoolSize,
+                                        MAX_POOL_IDLE_MILLIS, threadLocal);
+        } else {
+            macKey = null;
+            macPool = null;
+        }
+    }
+
+    /**
+     * Creates a key used for a single token, which does not keep its {@link Mac}.
+     */
+    @Nonnull
+    static LightTokenKey newTransientKey(@Nonnull String secret, @Nonnull String algorithm) {
+        return new LightTokenKey(secret, algorithm, 0, false);
+    }
+
+    static boolean isHmac(@Nonnull String algorithm) {
+        return algorithm.regionMatches(true, 0, HMAC_PREFIX, 0, HMAC_PREFIX.length());
+    }
+
+    private static boolean isThreadLocalPool() {
+        return Boolean.parseBoolean(System.getProperty(EidasParameterKeys.XML_POOL_THREAD_LOCAL.toString()));
+    }
+
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Nonnull
+    String getSecret() {
+        return secret;
+    }
+
+    boolean isHmac() {
+        return null != macKey;
+    }
+
+    /**
+     * Borrows a {@link Mac} initialized with this key, to be given back with {@link #releaseMac(Mac)}.
+     */
+    @Nonnull
+    Mac borrowMac() throws NoSuchAlgorithmException {
+        return macPool.borrow(new BoundedPool.Factory<Mac, NoSuchAlgorithmException>() {
+            @Nonnull
+            @Override
+            public Mac newInstance() throws NoSuchAlgorithmException {
+                Mac newMac = Mac.getInstance(algorithm);
+                try {
+                    newMac.init(macKey);
+                } catch (InvalidKeyException e) {
+                    throw new IllegalArgumentException("Invalid LightToken secret for " + algorithm, e);
+                }
+                return newMac;
+            }
+        });
+    }
+
+    void releaseMac(@Nonnull Mac mac) {
+        macPool.release(mac);
+    }
+
+    @Override
+    public String toString() {
+        // the secret is not printed
+        return "LightTokenKey{algorithm='" + algorithm + "'}";
+    }
+}
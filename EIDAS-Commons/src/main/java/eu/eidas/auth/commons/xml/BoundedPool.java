@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.xml;
+
+import eu.eidas.auth.commons.lang.ManagementBeans;
+import eu.eidas.util.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of instances which are expensive to create and not thread-safe, such as {@link
+ * javax.xml.parsers.DocumentBuilder}s or {@link javax.xml.transform.Transformer}s.
+ * <p>
+ * At most {@code maxSize} idle instances are kept, instances released into a full pool are dropped and instances
+ * which stayed idle for longer than {@code maxIdleMillis} are evicted when other instances are released. The most
+ * recently released instance is borrowed first.
+ * <p>
+ * When {@code threadLocal} is {@code true}, each thread keeps the last instance it released aside from the shared
+ * pool and borrows it again without any contention.
+ *
+ * @param <T> the type of the pooled instances
+ * @since 2.4
+ */
+@ThreadSafe
+public final class BoundedPool<T> implements BoundedPoolMXBean {
+
+    /**
+     * Creates the instances of a {@link BoundedPool} when the pool is empty.
+     *
+     * @param <T> the type of the pooled instances
+     * @param <X> the type of exception thrown when an instance cannot be created
+     */
+    public interface Factory<T, X extends Exception> {
+
+        @Nonnull
+        T newInstance() throws X;
+    }
+
+    private static final class Idle<T> {
+
+        @Nonnull
+        private final T instance;
+
+        private final long releasedAtNanos;
+
+        Idle(@Nonnull T instance, long releasedAtNanos) {
+            this.instance = instance;
+            this.releasedAtNanos = releasedAtNanos;
+        }
+    }
+
+    @Nonnull
+    private final String name;
+
+    private final int maxSize;
+
+    private final long maxIdleMillis;
+
+    private final long maxIdleNanos;
+
+    @Nonnull
+    private final BlockingDeque<Idle<T>> idleInstances;
+
+    @Nullable
+    private final ThreadLocal<T> threadLocalInstance;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    public BoundedPool(@Nonnull String name, int maxSize, long maxIdleMillis, boolean threadLocal) {
+        Preconditions.checkNotBlank(name, "name");
+        Preconditions.checkNotNegative(maxSize, "maxSize");
+        this.name = name;
+        this.maxSize = maxSize;
+        this.maxIdleMillis = maxIdleMillis;
+        maxIdleNanos = maxIdleMillis > 0L ? TimeUnit.MILLISECONDS.toNanos(maxIdleMillis) : Long.MAX_VALUE;
+        idleInstances = new LinkedBlockingDeque<>(Math.max(1, maxSize));
+        threadLocalInstance = threadLocal ? new ThreadLocal<T>() : null;
+    }
+
+    /**
+     * Borrows an instance from the pool, creating a new one with the given factory if the pool is empty.
+     * <p>
+     * The instance must be given back with {@link #release(Object)} once the caller is done with it.
+     *
+     * @param factory the factory creating a new instance when none is available
+     * @return the borrowed instance
+     * @throws X if a new instance cannot be created
+     */
+    @Nonnull
+    public <X extends Exception> T borrow(@Nonnull Factory<T, X> factory) throws X {
+        if (null != threadLocalInstance) {
+            T instance = threadLocalInstance.get();
+            if (null != instance) {
+                threadLocalInstance.set(null);
+                hitCount.incrementAndGet();
+                return instance;
+            }
+        }
+        Idle<T> idle = idleInstances.pollFirst();
+        if (null != idle) {
+            hitCount.incrementAndGet();
+            return idle.instance;
+        }
+        missCount.incrementAndGet();
+        T instance = factory.newInstance();
+        createdCount.incrementAndGet();
+        return instance;
+    }
+
+    /**
+     * Gives an instance back to the pool.
+     *
+     * @param instance the instance previously borrowed, {@code null} is ignored
+     */
+    public void release(@Nullable T instance) {
+        if (null == instance) {
+            return;
+        }
+        if (null != threadLocalInstance && null == threadLocalInstance.get()) {
+            threadLocalInstance.set(instance);
+            return;
+        }
+        long now = System.nanoTime();
+        evictIdleInstances(now);
+        if (maxSize == 0 || !idleInstances.offerFirst(new Idle<>(instance, now))) {
+            discardedCount.incrementAndGet();
+        }
+    }
+
+    private void evictIdleInstances(long now) {
+        Idle<T> oldest;
+        while (null != (oldest = idleInstances.peekLast()) && now - oldest.releasedAtNanos > maxIdleNanos) {
+            if (idleInstances.removeLastOccurrence(oldest)) {
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Registers this pool in the platform MBean server under {@code eu.eidas:type=BoundedPool,name="<name>"}, replacing
+     * the pool registered under the same name by a previous deployment, if any.
+     * <p>
+     * The registration is removed by {@link ManagementBeans#unregisterAll()}. Failures are logged and ignored.
+     *
+     * @return this pool
+     */
+    @Nonnull
+    public BoundedPool<T> registerMBean() {
+        ManagementBeans.register("BoundedPool", name, this);
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    @Override
+    public boolean isThreadLocal() {
+        return null != threadLocalInstance;
+    }
+
+    @Override
+    public int getIdleCount() {
+        return idleInstances.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    @Override
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedPool{name='" + name + "', maxSize=" + maxSize + ", idle=" + getIdleCount() + ", hits="
+                + getHitCount() + ", misses=" + getMissCount() + ", created=" + getCreatedCount() + ", evicted="
+                + getEvictedCount() + ", discarded=" + getDiscardedCount() + '}';
+    }
+}
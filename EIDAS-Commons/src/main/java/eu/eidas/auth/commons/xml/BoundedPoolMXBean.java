@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.xml;
+
+/**
+ * Management interface of a {@link BoundedPool}.
+ *
+ * @since 2.4
+ */
+public interface BoundedPoolMXBean {
+
+    /**
+     * @return the name of the pool
+     */
+    String getName();
+
+    /**
+     * @return the maximum number of idle instances kept in the pool
+     */
+    int getMaxSize();
+
+    /**
+     * @return the maximum time in milliseconds an instance may stay idle in the pool before being evicted
+     */
+    long getMaxIdleMillis();
+
+    /**
+     * @return whether each thread keeps one instance aside from the shared pool
+     */
+    boolean isThreadLocal();
+
+    /**
+     * @return the current number of idle instances in the shared pool
+     */
+    int getIdleCount();
+
+    /**
+     * @return the number of borrowings served by a pooled instance
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of borrowings which found no pooled instance
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of instances created by the pool
+     */
+    long getCreatedCount();
+
+    /**
+     * @return the number of instances dropped because they stayed idle for too long
+     */
+    long getEvictedCount();
+
+    /**
+     * @return the number of instances dropped because the pool was full when they were released
+     */
+    long getDiscardedCount();
+}
@@ -17,6 +17,8 @@
  */
 package eu.eidas.auth.commons.xml;
 
+import com.google.common.annotations.VisibleForTesting;
+import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.util.Preconditions;
 import org.apache.commons.lang.StringUtils;
@@ -42,14 +44,19 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Utility class used to create the document builder factory with a sufficient level of security. See
  * https://www.owasp.org/index.php/XML_Entity_(XXE)_Processing for more details
+ * <p>
+ * Nodes are marshalled with a {@link DomSerializer}, or with a {@link Transformer} for the nodes it does not support.
+ * <p>
+ * The {@link DocumentBuilder}s, {@link DomSerializer}s and {@link Transformer}s are kept in {@link BoundedPool}s registered in JMX, which are
+ * configured with the system properties {@link EidasParameterKeys#XML_POOL_MAX_SIZE}, {@link
+ * EidasParameterKeys#XML_POOL_MAX_IDLE_MILLIS} and {@link EidasParameterKeys#XML_POOL_THREAD_LOCAL}.
  */
 public final class DocumentBuilderFactoryUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(DocumentBuilderFactoryUtil.class);
@@ -57,18 +64,168 @@ public final class DocumentBuilderFactoryUtil {
     // See http://stackoverflow.com/questions/9828254/is-documentbuilderfactory-thread-safe-in-java-5
     // See also org.opensaml.xml.parse.ParserPool -- Code removed : private static DocumentBuilderFactory dbf = null
 
+    /**
+     * Default maximum number of idle instances kept in each pool.
+     */
+    static final int DEFAULT_POOL_MAX_SIZE = 64;
+
+    /**
+     * Default time in milliseconds after which idle instances are evicted from the pools.
+     */
+    static final long DEFAULT_POOL_MAX_IDLE_MILLIS = 300000L;
+
+    private static final String TRANSFORMER_FACTORY_CLASS_NAME =
+            "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl";
+
     /**
      * The Document Builder Factory.
      */
-    private static final Queue<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY_POOL =
-            new ConcurrentLinkedQueue<>();
+    private static final BoundedPool<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY_POOL =
+            newPool("DocumentBuilderFactory", false);
+
+    private static final BoundedPool<DocumentBuilder> DOCUMENT_BUILDER_POOL = newPool("DocumentBuilder", true);
+
+    private static final BoundedPool<TransformerFactory> TRANSFORMER_FACTORY_POOL =
+            newPool("TransformerFactory", false);
+
+    private static final BoundedPool<Transformer> TRANSFORMER_POOL = newPool("Transformer", true);
+
+    private static final BoundedPool<Transformer> TRANSFORMER_OMITTING_XML_DECLARATION_POOL =
+            newPool("TransformerOmittingXmlDeclaration", true);
+
+    private static final BoundedPool<DomSerializer> DOM_SERIALIZER_POOL = newPool("DomSerializer", true);
+
+    private static final BoundedPool.Factory<DomSerializer, RuntimeException> DOM_SERIALIZER_FACTORY =
+            new BoundedPool.Factory<DomSerializer, RuntimeException>() {
+                @Nonnull
+                @Override
+                public DomSerializer newInstance() {
+                    return new DomSerializer();
+                }
+            };
+
+    private static final BoundedPool.Factory<DocumentBuilderFactory, ParserConfigurationException>
+            DOCUMENT_BUILDER_FACTORY_FACTORY =
+            new BoundedPool.Factory<DocumentBuilderFactory, ParserConfigurationException>() {
+                @Nonnull
+                @Override
+                public DocumentBuilderFactory newInstance() throws ParserConfigurationException {
+                    return newSecureDocumentBuilderFactory();
+                }
+            };
+
+    private static final BoundedPool.Factory<DocumentBuilder, ParserConfigurationException> DOCUMENT_BUILDER_FACTORY =
+            new BoundedPool.Factory<DocumentBuilder, ParserConfigurationException>() {
+                @Nonnull
+                @Override
+                public DocumentBuilder newInstance() throws ParserConfigurationException {
+                    DocumentBuilderFactory documentBuilderFactory =
+                            DOCUMENT_BUILDER_FACTORY_POOL.borrow(DOCUMENT_BUILDER_FACTORY_FACTORY);
+                    try {
+                        return documentBuilderFactory.newDocumentBuilder();
+                    } finally {
+                        DOCUMENT_BUILDER_FACTORY_POOL.release(documentBuilderFactory);
+                    }
+                }
+            };
+
+    private static final BoundedPool.Factory<TransformerFactory, TransformerException> TRANSFORMER_FACTORY_FACTORY =
+            new BoundedPool.Factory<TransformerFactory, TransformerException>() {
+                @Nonnull
+                @Override
+                public TransformerFactory newInstance() throws TransformerException {
+                    TransformerFactory transformerFactory = newSecureTransformerFactory();
+                    if (null == transformerFactory) {
+                        throw new TransformerException("Could not create TransformerFactory");
+                    }
+                    return transformerFactory;
+                }
+            };
+
+    private static final BoundedPool.Factory<Transformer, TransformerException> TRANSFORMER_FACTORY =
+            new TransformerPoolFactory(false);
+
+    private static final BoundedPool.Factory<Transformer, TransformerException>
+            TRANSFORMER_OMITTING_XML_DECLARATION_FACTORY = new TransformerPoolFactory(true);
+
+    /**
+     * Creates the pooled {@link Transformer}s, with their output properties set once and for all.
+     */
+    private static final class TransformerPoolFactory implements BoundedPool.Factory<Transformer, TransformerException> {
 
-    private static final Queue<DocumentBuilder> DOCUMENT_BUILDER_POOL = new ConcurrentLinkedQueue<>();
+        private final boolean omitXMLDeclaration;
 
-    private static final Queue<TransformerFactory> TRANSFORMER_FACTORY_POOL =
-            new ConcurrentLinkedQueue<>();
+        TransformerPoolFactory(boolean omitXMLDeclaration) {
+            this.omitXMLDeclaration = omitXMLDeclaration;
+        }
+
+        @Nonnull
+        @Override
+        public Transformer newInstance() throws TransformerException {
+            TransformerFactory transformerFactory = TRANSFORMER_FACTORY_POOL.borrow(TRANSFORMER_FACTORY_FACTORY);
+            Transformer transformer;
+            try {
+                transformer = transformerFactory.newTransformer();
+            } finally {
+                TRANSFORMER_FACTORY_POOL.release(transformerFactory);
+            }
+            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+
+            final String omitXmlDeclarationString = omitXMLDeclaration ? "yes" : "false";
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, omitXmlDeclarationString);
+
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            return transformer;
+        }
+    }
+
+    /**
+     * Lazy initialization of the {@link TransformerFactory} implementation class.
+     */
+    private static final class TransformerFactoryClassHolder {
+
+        @Nullable
+        private static final Class<?> TRANSFORMER_FACTORY_CLASS = loadTransformerFactoryClass();
+
+        @Nullable
+        private static Class<?> loadTransformerFactoryClass() {
+            try {
+                return Class.forName(TRANSFORMER_FACTORY_CLASS_NAME);
+            } catch (ClassNotFoundException e) {
+                LOGGER.error("BUSINESS EXCEPTION : Error generating SAMLToken", e);
+                return null;
+            }
+        }
+    }
+
+    @Nonnull
+    @VisibleForTesting
+    static <T> BoundedPool<T> newPool(@Nonnull String name, boolean threadLocalAllowed) {
+        int maxSize = (int) getLongProperty(EidasParameterKeys.XML_POOL_MAX_SIZE, DEFAULT_POOL_MAX_SIZE,
+                                            Integer.MAX_VALUE);
+        long maxIdleMillis = getLongProperty(EidasParameterKeys.XML_POOL_MAX_IDLE_MILLIS, DEFAULT_POOL_MAX_IDLE_MILLIS,
+                                             Long.MAX_VALUE);
+        boolean threadLocal = threadLocalAllowed && Boolean.parseBoolean(
+                System.getProperty(EidasParameterKeys.XML_POOL_THREAD_LOCAL.toString()));
+        return new BoundedPool<T>(DocumentBuilderFactoryUtil.class.getSimpleName() + '.' + name, maxSize,
+                                  maxIdleMillis, threadLocal).registerMBean();
+    }
 
-    private static final Queue<Transformer> TRANSFORMER_POOL = new ConcurrentLinkedQueue<>();
+    private static long getLongProperty(@Nonnull EidasParameterKeys key, long defaultValue, long maxValue) {
+        String value = System.getProperty(key.toString());
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                long longValue = Long.parseLong(value.trim());
+                if (longValue >= 0L && longValue <= maxValue) {
+                    return longValue;
+                }
+            } catch (NumberFormatException nfe) {
+                // logged below
+            }
+            LOGGER.error("Invalid value \"" + value + "\" for " + key + ", using default: " + defaultValue);
+        }
+        return defaultValue;
+    }
 
     /**
      * Configures a given DocumentBuilderFactory with security features turned on.
@@ -142,51 +299,78 @@ public final class DocumentBuilderFactoryUtil {
     public static byte[] marshall(@Nonnull Node node, boolean omitXMLDeclaration) throws TransformerException {
         Preconditions.checkNotNull(node, "node");
 
-        // See http://stackoverflow.com/questions/9828254/is-documentbuilderfactory-thread-safe-in-java-5
-        Transformer transformer = TRANSFORMER_POOL.poll();
+        DomSerializer domSerializer = DOM_SERIALIZER_POOL.borrow(DOM_SERIALIZER_FACTORY);
         try {
-            if (null == transformer) {
-
-                TransformerFactory transformerFactory = TRANSFORMER_FACTORY_POOL.poll();
-                try {
-                    if (null == transformerFactory) {
-                        transformerFactory = newSecureTransformerFactory();
-                    }
-                    if(transformerFactory != null) {
-                        transformer = transformerFactory.newTransformer();
-                    } else {
-                        throw new TransformerException("Could not create TransformerFactory");
-                    }
-                } finally {
-                    TRANSFORMER_FACTORY_POOL.offer(transformerFactory);
-                }
+            if (domSerializer.serialize(node, omitXMLDeclaration)) {
+                return domSerializer.toByteArray();
             }
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        } finally {
+            DOM_SERIALIZER_POOL.release(domSerializer);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        transform(node, omitXMLDeclaration, baos);
+        return baos.toByteArray();
+    }
 
-            final String omitXmlDeclarationString = omitXMLDeclaration ? "yes" : "false";
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, omitXmlDeclarationString);
+    /**
+     * This method performs marshal on {@code node} and writes it to the given stream, without copying the marshalled
+     * bytes into an intermediate array.
+     * <p>
+     * Note that it does not protect against XXE. If necessary it should be done the {@code  node} before.
+     *
+     * @param node               the object to marshall
+     * @param omitXMLDeclaration the flag to omit XML Declaration
+     * @param outputStream       the stream to write to, which is not closed
+     * @throws TransformerException When it is not possible to create a <code>Transformer</code> instance.
+     * @throws IOException          if the stream cannot be written
+     * @since 2.4
+     */
+    public static void marshall(@Nonnull Node node, boolean omitXMLDeclaration, @Nonnull OutputStream outputStream)
+            throws TransformerException, IOException {
+        Preconditions.checkNotNull(node, "node");
+        Preconditions.checkNotNull(outputStream, "outputStream");
 
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        DomSerializer domSerializer = DOM_SERIALIZER_POOL.borrow(DOM_SERIALIZER_FACTORY);
+        try {
+            if (domSerializer.serialize(node, omitXMLDeclaration)) {
+                domSerializer.writeTo(outputStream);
+                return;
+            }
+        } finally {
+            DOM_SERIALIZER_POOL.release(domSerializer);
+        }
+        transform(node, omitXMLDeclaration, outputStream);
+    }
+
+    /**
+     * Marshalls the given node with an identity {@link Transformer}, used for the nodes which are not supported by
+     * {@link DomSerializer}.
+     */
+    static void transform(@Nonnull Node node, boolean omitXMLDeclaration, @Nonnull OutputStream outputStream)
+            throws TransformerException {
+        // See http://stackoverflow.com/questions/9828254/is-documentbuilderfactory-thread-safe-in-java-5
+        BoundedPool<Transformer> transformerPool =
+                omitXMLDeclaration ? TRANSFORMER_OMITTING_XML_DECLARATION_POOL : TRANSFORMER_POOL;
+        Transformer transformer = transformerPool.borrow(
+                omitXMLDeclaration ? TRANSFORMER_OMITTING_XML_DECLARATION_FACTORY : TRANSFORMER_FACTORY);
+        try {
             // Obtain a byte array representation of the marshalled SAML object
             DOMSource domSource = new DOMSource(node);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            StreamResult result = new StreamResult(baos);
+            StreamResult result = new StreamResult(outputStream);
             transformer.transform(domSource, result);
-            return baos.toByteArray();
         } finally {
-            TRANSFORMER_POOL.offer(transformer);
+            transformerPool.release(transformer);
         }
     }
 
     @Nonnull
     public static Document newDocument() throws ParserConfigurationException {
         // See http://stackoverflow.com/questions/9828254/is-documentbuilderfactory-thread-safe-in-java-5
-        DocumentBuilder documentBuilder = DOCUMENT_BUILDER_POOL.poll();
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER_POOL.borrow(DOCUMENT_BUILDER_FACTORY);
         try {
-            documentBuilder = validateDocumentBuilder(documentBuilder);
             return documentBuilder.newDocument();
         } finally {
-            DOCUMENT_BUILDER_POOL.offer(documentBuilder);
+            DOCUMENT_BUILDER_POOL.release(documentBuilder);
         }
     }
 
@@ -210,11 +394,14 @@ public final class DocumentBuilderFactoryUtil {
      */
     public static TransformerFactory newSecureTransformerFactory() {
         TransformerFactory transformerFactory = null;
+        Class<?> clazz = TransformerFactoryClassHolder.TRANSFORMER_FACTORY_CLASS;
+        if (null == clazz) {
+            return null;
+        }
         try {
-            Class clazz = Class.forName("com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl");
             transformerFactory = (TransformerFactory) clazz.newInstance();
             configureSecureTransformerFactory(transformerFactory);
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+        } catch (InstantiationException | IllegalAccessException e) {
             LOGGER.error("BUSINESS EXCEPTION : Error generating SAMLToken", e);
         }
         return transformerFactory;
@@ -262,11 +449,10 @@ public final class DocumentBuilderFactoryUtil {
         DocumentBuilder documentBuilder = null;
         Document doc;
         try {
-            documentBuilder = DOCUMENT_BUILDER_POOL.poll();
-            documentBuilder = validateDocumentBuilder(documentBuilder);
+            documentBuilder = DOCUMENT_BUILDER_POOL.borrow(DOCUMENT_BUILDER_FACTORY);
             doc = documentBuilder.parse(xmlInputStream);
         } finally {
-            DOCUMENT_BUILDER_POOL.offer(documentBuilder);
+            DOCUMENT_BUILDER_POOL.release(documentBuilder);
             xmlInputStream.close();
 
         }
@@ -294,31 +480,6 @@ public final class DocumentBuilderFactoryUtil {
         return EidasStringUtil.toString(marshall(node, true));
     }
 
-    /**
-     * If the instance retrieved from the Pool is null, create a new one using a pooled factory.
-     *
-     * @param documentBuilderVar a nullable instance
-     * @return a non-null instance
-     * @throws ParserConfigurationException if an instance could not be created
-     */
-    @Nonnull
-    private static DocumentBuilder validateDocumentBuilder(@Nullable DocumentBuilder documentBuilderVar)
-            throws ParserConfigurationException {
-        DocumentBuilder documentBuilder = documentBuilderVar;
-        if (null == documentBuilder) {
-            DocumentBuilderFactory documentBuilderFactory = DOCUMENT_BUILDER_FACTORY_POOL.poll();
-            try {
-                if (null == documentBuilderFactory) {
-                    documentBuilderFactory = newSecureDocumentBuilderFactory();
-                }
-                documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            } finally {
-                DOCUMENT_BUILDER_FACTORY_POOL.offer(documentBuilderFactory);
-            }
-        }
-        return documentBuilder;
-    }
-
     private DocumentBuilderFactoryUtil() {
     }
 }
@@ -0,0 +1,531 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.XMLConstants;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Serializes a DOM {@link Document} or {@link Element} into UTF-8 bytes written in a reusable buffer.
+ * <p>
+ * The output is byte for byte the one of the JDK identity {@link javax.xml.transform.Transformer} used by {@link
+ * DocumentBuilderFactoryUtil#marshall(Node, boolean)} (same namespace declarations, attribute order, escaping and XML
+ * declaration), which matters for signed SAML messages, but without going through SAX events, a {@code Writer} and a
+ * growing {@link java.io.ByteArrayOutputStream}.
+ * <p>
+ * Nodes which never occur in marshalled SAML messages (comments, CDATA sections, processing instructions, prefixes
+ * starting with "xml") and documents which are not XML 1.0 in UTF-8 are not supported: {@link #serialize(Node, boolean)} then returns {@code
+ * false} and the caller is expected to fall back to the {@code Transformer}.
+ *
+ * @since 2.4
+ */
+@NotThreadSafe
+public final class DomSerializer {
+
+    /**
+     * Initial size of the buffer.
+     */
+    static final int INITIAL_CAPACITY = 8 * 1024;
+
+    /**
+     * Buffers larger than this size are not kept between two serializations.
+     */
+    static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final String XMLNS_PREFIX = XMLConstants.XMLNS_ATTRIBUTE;
+
+    private static final String XML_PREFIX = XMLConstants.XML_NS_PREFIX;
+
+    private static final byte[] LINE_SEPARATOR = toAsciiBytes(System.getProperty("line.separator", "\n"));
+
+    /**
+     * The in-scope namespace declarations, as done by the {@code Transformer}: a prefix is only declared again when it
+     * is bound to a different URI and prefixes starting with "xml" are never declared.
+     */
+    private static final class NamespaceScopes {
+
+        private final Map<String, Deque<String>> urisByPrefix = new HashMap<>();
+
+        private final Deque<Object[]> declarations = new ArrayDeque<>();
+
+        NamespaceScopes() {
+            clear();
+        }
+
+        void clear() {
+            urisByPrefix.clear();
+            declarations.clear();
+            push(XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI);
+            push(XML_PREFIX, XMLConstants.XML_NS_URI);
+        }
+
+        private void push(@Nonnull String prefix, @Nonnull String uri) {
+            Deque<String> uris = urisByPrefix.get(prefix);
+            if (null == uris) {
+                uris = new ArrayDeque<>();
+                urisByPrefix.put(prefix, uris);
+            }
+            uris.push(uri);
+        }
+
+        boolean declare(@Nonnull String prefix, @Nonnull String uri, int depth) {
+            if (prefix.startsWith(XML_PREFIX)) {
+                return false;
+            }
+            Deque<String> uris = urisByPrefix.get(prefix);
+            if (null != uris && !uris.isEmpty() && uri.equals(uris.peek())) {
+                return false;
+            }
+            push(prefix, uri);
+            declarations.push(new Object[] {prefix, depth});
+            return true;
+        }
+
+        @Nullable
+        String lookup(@Nonnull String prefix) {
+            Deque<String> uris = urisByPrefix.get(prefix);
+            return null == uris ? null : uris.peek();
+        }
+
+        void undeclare(int depth) {
+            while (!declarations.isEmpty() && (Integer) declarations.peek()[1] >= depth) {
+                urisByPrefix.get((String) declarations.pop()[0]).pop();
+            }
+        }
+    }
+
+    @Nonnull
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    private int count;
+
+    private int depth;
+
+    private boolean unsupported;
+
+    @Nonnull
+    private final NamespaceScopes namespaces = new NamespaceScopes();
+
+    @Nonnull
+    private final List<String> attributeNames = new ArrayList<>();
+
+    @Nonnull
+    private final List<String> attributeValues = new ArrayList<>();
+
+    /**
+     * Serializes the given node in the buffer of this serializer.
+     *
+     * @param node the {@link Document} or {@link Element} to serialize
+     * @param omitXMLDeclaration whether to omit the XML declaration
+     * @return {@code true} if the node was serialized, {@code false} if it contains nodes which are not supported
+     */
+    public boolean serialize(@Nonnull Node node, boolean omitXMLDeclaration) {
+        reset();
+        unsupported = false;
+        try {
+            if (node.getNodeType() == Node.DOCUMENT_NODE) {
+                return serializeDocument((Document) node, omitXMLDeclaration) && !unsupported;
+            }
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                if (!omitXMLDeclaration) {
+                    writeXmlDeclaration(null, false);
+                }
+                return serializeElement((Element) node) && !unsupported;
+            }
+            return false;
+        } finally {
+            namespaces.clear();
+            attributeNames.clear();
+            attributeValues.clear();
+            depth = 0;
+        }
+    }
+
+    /**
+     * @return a copy of the bytes of the last serialization
+     */
+    @Nonnull
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Writes the bytes of the last serialization to the given stream.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(@Nonnull OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, count);
+    }
+
+    /**
+     * @return the number of bytes of the last serialization
+     */
+    public int size() {
+        return count;
+    }
+
+    private void reset() {
+        count = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private boolean serializeDocument(@Nonnull Document document, boolean omitXMLDeclaration) {
+        String version = document.getXmlVersion();
+        String encoding = document.getXmlEncoding();
+        if ((null != version && !"1.0".equals(version)) || (null != encoding && !"UTF-8".equals(encoding))) {
+            return false;
+        }
+        if (!omitXMLDeclaration) {
+            writeXmlDeclaration(version, !document.getXmlStandalone());
+        }
+        for (Node child = document.getFirstChild(); null != child; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    if (!serializeElement((Element) child)) {
+                        return false;
+                    }
+                    break;
+                case Node.DOCUMENT_TYPE_NODE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeXmlDeclaration(@Nullable String version, boolean standaloneNo) {
+        writeAscii("<?xml version=\"");
+        writeAscii(null == version ? "1.0" : version);
+        writeAscii("\" encoding=\"UTF-8\"");
+        if (standaloneNo) {
+            writeAscii(" standalone=\"no\"");
+        }
+        writeAscii("?>");
+    }
+
+    private boolean serializeElement(@Nonnull Element element) {
+        depth++;
+        String qName = element.getNodeName();
+        collectAttributes(element, qName);
+        if (unsupported) {
+            return false;
+        }
+
+        boolean hasContent = false;
+        for (Node child = element.getFirstChild(); null != child; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    hasContent = true;
+                    break;
+                case Node.TEXT_NODE:
+                    hasContent |= !child.getNodeValue().isEmpty();
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        writeByte('<');
+        writeString(qName);
+        for (int i = 0, size = attributeNames.size(); i < size; i++) {
+            writeByte(' ');
+            writeString(attributeNames.get(i));
+            writeByte('=');
+            writeByte('"');
+            writeAttributeValue(attributeValues.get(i));
+            writeByte('"');
+        }
+        attributeNames.clear();
+        attributeValues.clear();
+
+        if (hasContent) {
+            writeByte('>');
+            for (Node child = element.getFirstChild(); null != child; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    if (!serializeElement((Element) child)) {
+                        return false;
+                    }
+                } else if (child.getNodeType() == Node.TEXT_NODE) {
+                    writeText(child.getNodeValue());
+                }
+            }
+            writeByte('<');
+            writeByte('/');
+            writeString(qName);
+            writeByte('>');
+        } else {
+            writeByte('/');
+            writeByte('>');
+        }
+        namespaces.undeclare(depth);
+        depth--;
+        return true;
+    }
+
+    /**
+     * Collects the attributes and namespace declarations of the start tag in the order of the {@code Transformer}:
+     * the declared namespaces first, then the attributes along with the namespaces they use, then the namespace of the
+     * element.
+     */
+    private void collectAttributes(@Nonnull Element element, @Nonnull String qName) {
+        NamedNodeMap attributes = element.getAttributes();
+        int length = attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            Attr attr = (Attr) attributes.item(i);
+            String name = attr.getNodeName();
+            if (name.startsWith(XMLNS_PREFIX)) {
+                int colon = name.lastIndexOf(':');
+                declareNamespace(colon > 0 ? name.substring(colon + 1) : XMLConstants.DEFAULT_NS_PREFIX,
+                                 attr.getNodeValue());
+            }
+        }
+        int generatedPrefixes = 0;
+        for (int i = 0; i < length; i++) {
+            Attr attr = (Attr) attributes.item(i);
+            String name = attr.getNodeName();
+            if (name.startsWith(XMLNS_PREFIX)) {
+                continue;
+            }
+            String uri = attr.getNamespaceURI();
+            if (null != uri && !uri.isEmpty()) {
+                String newPrefix =
+                        XMLConstants.XML_NS_URI.equals(uri) ? XML_PREFIX : "ns" + generatedPrefixes++;
+                int colon = name.lastIndexOf(':');
+                String prefix = colon > 0 ? name.substring(0, colon) : newPrefix;
+                declareNamespace(prefix, uri);
+                addAttribute(patchName(prefix + ':' + name), attr.getNodeValue());
+            } else {
+                addAttribute(patchName(name), attr.getNodeValue());
+            }
+        }
+        String uri = element.getNamespaceURI();
+        if (null != uri) {
+            int colon = qName.lastIndexOf(':');
+            declareNamespace(colon > 0 ? qName.substring(0, colon) : XMLConstants.DEFAULT_NS_PREFIX, uri);
+        } else if (null != element.getLocalName()) {
+            declareNamespace(XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI);
+        }
+    }
+
+    private void declareNamespace(@Nonnull String prefix, @Nonnull String uri) {
+        if (prefix.startsWith(XML_PREFIX) && !(XML_PREFIX.equals(prefix) && XMLConstants.XML_NS_URI.equals(uri))) {
+            // the Transformer does not declare such prefixes and fails when they are used
+            unsupported = true;
+            return;
+        }
+        if (namespaces.declare(prefix, uri, depth)) {
+            if (prefix.isEmpty()) {
+                addAttribute(XMLNS_PREFIX, uri);
+            } else if (!uri.isEmpty()) {
+                addAttribute(XMLNS_PREFIX + ':' + prefix, uri);
+            }
+        }
+    }
+
+    /**
+     * Removes the duplicated prefix of the names built for namespace-qualified attributes, like the {@code
+     * Transformer} does.
+     */
+    @Nonnull
+    private String patchName(@Nonnull String name) {
+        int lastColon = name.lastIndexOf(':');
+        if (lastColon > 0) {
+            int firstColon = name.indexOf(':');
+            String prefix = name.substring(0, firstColon);
+            String localName = name.substring(lastColon + 1);
+            String uri = namespaces.lookup(prefix);
+            if (null != uri && uri.isEmpty()) {
+                return localName;
+            } else if (firstColon != lastColon) {
+                return prefix + ':' + localName;
+            }
+        }
+        return name;
+    }
+
+    private void addAttribute(@Nonnull String name, @Nonnull String value) {
+        int index = attributeNames.indexOf(name);
+        if (index >= 0) {
+            attributeValues.set(index, value);
+        } else {
+            attributeNames.add(name);
+            attributeValues.add(value);
+        }
+    }
+
+    private void writeText(@Nonnull String text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    writeAscii("&amp;");
+                    break;
+                case '<':
+                    writeAscii("&lt;");
+                    break;
+                case '>':
+                    writeAscii("&gt;");
+                    break;
+                case '\n':
+                    ensureCapacity(LINE_SEPARATOR.length);
+                    System.arraycopy(LINE_SEPARATOR, 0, buffer, count, LINE_SEPARATOR.length);
+                    count += LINE_SEPARATOR.length;
+                    break;
+                case '\t':
+                    writeByte(c);
+                    break;
+                default:
+                    if (c < 0x20 || (c >= 0x7F && c <= 0x9F)) {
+                        writeCharacterReference(c);
+                    } else {
+                        i = writeChar(text, i, length);
+                    }
+            }
+        }
+    }
+
+    private void writeAttributeValue(@Nonnull String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    writeAscii("&amp;");
+                    break;
+                case '<':
+                    writeAscii("&lt;");
+                    break;
+                case '>':
+                    writeAscii("&gt;");
+                    break;
+                case '"':
+                    writeAscii("&quot;");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writeCharacterReference(c);
+                    } else {
+                        i = writeChar(value, i, length);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Writes the character at the given index, or the supplementary character starting at the given index as a
+     * character reference, and returns the index of the last character written.
+     */
+    private int writeChar(@Nonnull String string, int index, int length) {
+        char c = string.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < length && Character.isLowSurrogate(string.charAt(index + 1))) {
+            writeCharacterReference(Character.toCodePoint(c, string.charAt(index + 1)));
+            return index + 1;
+        }
+        if (Character.isSurrogate(c)) {
+            // the Transformer fails on unpaired surrogates
+            unsupported = true;
+        }
+        writeUtf8(c);
+        return index;
+    }
+
+    private void writeUtf8(int codePoint) {
+        ensureCapacity(4);
+        if (codePoint < 0x80) {
+            buffer[count++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (codePoint >> 6));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer[count++] = (byte) (0xE0 | (codePoint >> 12));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private void writeCharacterReference(int codePoint) {
+        writeAscii("&#");
+        writeAscii(Integer.toString(codePoint));
+        writeByte(';');
+    }
+
+    private void writeString(@Nonnull String string) {
+        for (int i = 0, length = string.length(); i < length; ) {
+            int codePoint = string.codePointAt(i);
+            if (Character.isSurrogate((char) codePoint)) {
+                unsupported = true;
+            }
+            writeUtf8(codePoint);
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private void writeAscii(@Nonnull String ascii) {
+        int length = ascii.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + extra));
+        }
+    }
+
+    @Nonnull
+    private static byte[] toAsciiBytes(@Nonnull String ascii) {
+        byte[] bytes = new byte[ascii.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ascii.charAt(i);
+        }
+        return bytes;
+    }
+}
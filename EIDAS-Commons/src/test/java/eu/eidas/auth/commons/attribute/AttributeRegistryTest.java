@@ -16,6 +16,7 @@ package eu.eidas.auth.commons.attribute;
 
 import javax.xml.namespace.QName;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedSet;
 
 import org.junit.BeforeClass;
@@ -23,10 +24,23 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
 import eu.eidas.auth.commons.attribute.impl.StringAttributeValueMarshaller;
+import eu.eidas.auth.commons.io.ObservableSingletonAccessor;
+import eu.eidas.auth.commons.io.SingletonAccessor;
+import eu.eidas.auth.commons.io.SingletonAccessors;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertThat;
 
@@ -160,4 +174,117 @@ public final class AttributeRegistryTest {
         ImmutableSortedSet<AttributeDefinition<?>> attributes = attributeRegistry.getAttributes();
         assertThat(attributes.contains(TOTALLY_WRONG_ATTRIBUTE), is(Boolean.FALSE));
     }
+
+    /**
+     * Test method for {@link AttributeRegistry#getByName(String)} and {@link AttributeRegistry#getByName(URI)}
+     * <p>
+     * Must find the definitions by name, return {@code null} for unknown names and reject invalid names.
+     */
+    @Test
+    public void testGetByName() throws Exception {
+        String name = CURRENT_FAMILY_NAME.getNameUri().toString();
+
+        assertThat(attributeRegistry.getByName(name), is((Object) CURRENT_FAMILY_NAME));
+        assertThat(attributeRegistry.getByName(new URI(name)), is((Object) CURRENT_FAMILY_NAME));
+        assertThat(attributeRegistry.getByName(TOTALLY_WRONG_ATTRIBUTE.getNameUri()), nullValue());
+
+        thrown.expect(IllegalArgumentException.class);
+        attributeRegistry.getByName("invalid name");
+    }
+
+    /**
+     * Test method for {@link AttributeRegistry#getByFriendlyName(String)}
+     * <p>
+     * Must return the same indexed set on every call instead of filtering the definitions again.
+     */
+    @Test
+    public void testLookupsAreIndexed() throws Exception {
+        assertThat(attributeRegistry.getByFriendlyName("FamilyName"),
+                   sameInstance(attributeRegistry.getByFriendlyName("FamilyName")));
+        assertThat(attributeRegistry.getByRequired(true), sameInstance(attributeRegistry.getByRequired(true)));
+        assertThat(attributeRegistry.getByFriendlyName("Unknown").isEmpty(), is(Boolean.TRUE));
+    }
+
+    /**
+     * Test method for {@link AttributeRegistry#getByName(URI)}
+     * <p>
+     * Must rebuild the indexes when the definitions are reloaded.
+     */
+    @Test
+    public void testIndexesAreRebuiltOnReload() throws Exception {
+        final SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> accessor =
+                SingletonAccessors.mutableAccessor(ImmutableSortedSet.<AttributeDefinition<?>>of(CURRENT_FAMILY_NAME));
+        AttributeRegistry registry = new AttributeRegistry(new AttributeDefinitionDao() {
+
+            @Override
+            public ImmutableList<? extends SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>> getAttributeDefinitionAccessors() {
+                return ImmutableList.of(accessor);
+            }
+        });
+        assertThat(registry.getByName(TOTALLY_WRONG_ATTRIBUTE.getNameUri()), nullValue());
+
+        accessor.set(ImmutableSortedSet.<AttributeDefinition<?>>of(CURRENT_FAMILY_NAME, TOTALLY_WRONG_ATTRIBUTE));
+
+        assertThat(registry.getByName(TOTALLY_WRONG_ATTRIBUTE.getNameUri()), is((Object) TOTALLY_WRONG_ATTRIBUTE));
+        assertThat(registry.getByFriendlyName("WrongAttribute").size(), is(Integer.valueOf(1)));
+    }
+
+    /**
+     * Test method for {@link AttributeRegistry#getByName(URI)}
+     * <p>
+     * Must serve the lookups without accessing the definitions whose changes are notified, and rebuild the indexes
+     * when a change is notified.
+     */
+    @Test
+    public void testNotifiedDefinitionsAreNotAccessedOnLookup() throws Exception {
+        final AtomicInteger accessCount = new AtomicInteger();
+        final List<Runnable> listeners = new ArrayList<>();
+        final AtomicReference<ImmutableSortedSet<AttributeDefinition<?>>> definitions =
+                new AtomicReference<>(ImmutableSortedSet.<AttributeDefinition<?>>of(CURRENT_FAMILY_NAME));
+        final ObservableSingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>> accessor =
+                new ObservableSingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>() {
+
+                    @Override
+                    public ImmutableSortedSet<AttributeDefinition<?>> get() {
+                        accessCount.incrementAndGet();
+                        return definitions.get();
+                    }
+
+                    @Override
+                    public void set(@Nonnull ImmutableSortedSet<AttributeDefinition<?>> newValue) {
+                        definitions.set(newValue);
+                        for (final Runnable listener : listeners) {
+                            listener.run();
+                        }
+                    }
+
+                    @Override
+                    public void addChangeListener(@Nonnull Runnable listener) {
+                        listeners.add(listener);
+                    }
+
+                    @Override
+                    public boolean isCheckedOnAccess() {
+                        return false;
+                    }
+                };
+        AttributeRegistry registry = new AttributeRegistry(new AttributeDefinitionDao() {
+
+            @Override
+            public ImmutableList<? extends SingletonAccessor<ImmutableSortedSet<AttributeDefinition<?>>>> getAttributeDefinitionAccessors() {
+                return ImmutableList.of(accessor);
+            }
+        });
+        assertThat(registry.getByName(CURRENT_FAMILY_NAME.getNameUri()), is((Object) CURRENT_FAMILY_NAME));
+        int builtAccessCount = accessCount.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(registry.getByName(TOTALLY_WRONG_ATTRIBUTE.getNameUri()), nullValue());
+        }
+        assertThat(accessCount.get(), is(builtAccessCount));
+
+        accessor.set(ImmutableSortedSet.<AttributeDefinition<?>>of(CURRENT_FAMILY_NAME, TOTALLY_WRONG_ATTRIBUTE));
+
+        assertThat(registry.getByName(TOTALLY_WRONG_ATTRIBUTE.getNameUri()), is((Object) TOTALLY_WRONG_ATTRIBUTE));
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link FileReloadScheduler}.
+ *
+ * @since 2.4
+ */
+public final class FileReloadSchedulerTest {
+
+    private static final long TIMEOUT_MILLIS = 10000L;
+
+    /**
+     * Reads the content of the file as a String, rejecting any content equal to "invalid".
+     */
+    private static final class StringFileMarshaller implements FileMarshaller<String> {
+
+        @Override
+        public void marshal(@Nonnull String newValue, @Nonnull File output) throws IOException {
+            write(output, newValue);
+        }
+
+        @Nonnull
+        @Override
+        public String unmarshal(@Nonnull File input) throws IOException {
+            String content = new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+            if ("invalid".equals(content)) {
+                throw new IOException("invalid content");
+            }
+            return content;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static void write(@Nonnull File file, @Nonnull String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ReloadableFileAccessor<String> newAccessor(@Nonnull File file) throws MalformedURLException {
+        return new ReloadableFileAccessor<>(new StringFileMarshaller(), file.getAbsolutePath(), file.toURI().toURL());
+    }
+
+    private static void modify(@Nonnull File file, @Nonnull String content) throws IOException {
+        long lastModified = file.lastModified();
+        // replace the file atomically so that the watcher never reloads a partially written file
+        File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        write(temporaryFile, content);
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        // make sure the modification is visible even on filesystems with a coarse timestamp granularity
+        file.setLastModified(lastModified + 2000L);
+    }
+
+    private static void waitFor(@Nonnull FileReloadScheduler scheduler, long reloadCount, long reloadErrorCount)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((scheduler.getReloadCount() < reloadCount || scheduler.getReloadErrorCount() < reloadErrorCount)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+    }
+
+    /**
+     * Test method for {@link ReloadableFileAccessor#reloadInBackground()}
+     * when the file is modified.
+     * <p>
+     * Must push the new value into the accessor, notify its listeners and count the reload.
+     */
+    @Test
+    public void testModifiedFileIsReloadedInBackground() throws Exception {
+        FileReloadScheduler scheduler = new FileReloadScheduler(100L);
+        File file = temporaryFolder.newFile("reloadable.txt");
+        write(file, "initial");
+        ReloadableFileAccessor<String> accessor = newAccessor(file).reloadInBackground(scheduler);
+
+        assertEquals("initial", accessor.get());
+        assertFalse(accessor.isCheckedOnAccess());
+        final AtomicInteger changeCount = new AtomicInteger();
+        accessor.addChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                changeCount.incrementAndGet();
+            }
+        });
+
+        modify(file, "modified");
+        waitFor(scheduler, 1L, 0L);
+
+        assertEquals("modified", accessor.get());
+        assertEquals(1L, scheduler.getReloadCount());
+        assertEquals(1, changeCount.get());
+    }
+
+    /**
+     * Test method for {@link ReloadableFileAccessor#reloadInBackground()}
+     * when the modified file cannot be reloaded.
+     * <p>
+     * Must keep the previous value and record the error.
+     */
+    @Test
+    public void testInvalidFileKeepsPreviousValue() throws Exception {
+        FileReloadScheduler scheduler = new FileReloadScheduler(100L);
+        File file = temporaryFolder.newFile("invalid.txt");
+        write(file, "initial");
+        ReloadableFileAccessor<String> accessor = newAccessor(file).reloadInBackground(scheduler);
+
+        assertEquals("initial", accessor.get());
+
+        modify(file, "invalid");
+        waitFor(scheduler, 0L, 1L);
+
+        assertEquals("initial", accessor.get());
+        assertTrue(scheduler.getReloadErrorCount() >= 1L);
+        assertNotNull(scheduler.getLastReloadError());
+    }
+
+    /**
+     * Test method for {@link ReloadableFileAccessor#reloadInBackground()}
+     * when the initial load fails.
+     * <p>
+     * Must rethrow the failure of the initial load to the next callers without loading the file again.
+     */
+    @Test
+    public void testInitialLoadFailureIsCachedUntilNextCheck() throws Exception {
+        FileReloadScheduler scheduler = new FileReloadScheduler(100L);
+        File file = temporaryFolder.newFile("initiallyInvalid.txt");
+        write(file, "invalid");
+        ReloadableFileAccessor<String> accessor = newAccessor(file).reloadInBackground(scheduler);
+
+        IOException initialFailure = null;
+        try {
+            accessor.get();
+            fail("IOException expected");
+        } catch (IOException e) {
+            initialFailure = e;
+        }
+        try {
+            accessor.get();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertSame(initialFailure, e.getCause());
+        }
+
+        modify(file, "valid");
+        waitFor(scheduler, 1L, 0L);
+
+        assertEquals("valid", accessor.get());
+    }
+
+    /**
+     * Test method for {@link FileReloadScheduler#shutdown()}.
+     * <p>
+     * Must stop running the scheduled tasks and reject the new ones.
+     */
+    @Test
+    public void testShutdown() throws Exception {
+        FileReloadScheduler scheduler = new FileReloadScheduler(100L);
+        final AtomicInteger runCount = new AtomicInteger();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                runCount.incrementAndGet();
+            }
+        }, 10L);
+
+        scheduler.shutdown();
+        int runCountAtShutdown = runCount.get();
+        Thread.sleep(100L);
+
+        assertEquals(runCountAtShutdown, runCount.get());
+        try {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 100L);
+            fail("RejectedExecutionException expected");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+}
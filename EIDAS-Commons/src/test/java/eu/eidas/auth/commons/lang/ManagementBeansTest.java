@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.lang;
+
+import eu.eidas.auth.commons.xml.BoundedPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test class for {@link ManagementBeans}
+ */
+public class ManagementBeansTest {
+
+    private static final String TYPE = "ManagementBeansTest";
+
+    private static ObjectName objectName(String name) throws Exception {
+        return new ObjectName("eu.eidas:type=" + TYPE + ",name=" + ObjectName.quote(name));
+    }
+
+    @After
+    public void tearDown() {
+        ManagementBeans.unregisterAll();
+    }
+
+    /**
+     * Test method for {@link ManagementBeans#register(String, String, Object)}
+     * <p>
+     * Must replace the bean already registered under the same name.
+     */
+    @Test
+    public void testRegisterReplacesExistingBean() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        ManagementBeans.register(TYPE, "pool", new BoundedPool<String>("first", 1, 0L, false));
+        ManagementBeans.register(TYPE, "pool", new BoundedPool<String>("second", 1, 0L, false));
+
+        Assert.assertEquals("second", mBeanServer.getAttribute(objectName("pool"), "Name"));
+    }
+
+    /**
+     * Test method for {@link ManagementBeans#unregisterAll()}
+     * <p>
+     * Must unregister the registered beans.
+     */
+    @Test
+    public void testUnregisterAll() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ManagementBeans.register(TYPE, "pool", new BoundedPool<String>("pool", 1, 0L, false));
+        Assert.assertTrue(mBeanServer.isRegistered(objectName("pool")));
+
+        ManagementBeans.unregisterAll();
+
+        Assert.assertFalse(mBeanServer.isRegistered(objectName("pool")));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.commons.lang;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Test class for {@link StripedSecureRandom}
+ */
+public class StripedSecureRandomTest {
+
+    /**
+     * Test method for {@link StripedSecureRandom#randomUUID()}
+     * <p>
+     * Must return distinct version 4 UUIDs of the IETF variant.
+     */
+    @Test
+    public void testRandomUUID() {
+        UUID first = StripedSecureRandom.randomUUID();
+        UUID second = StripedSecureRandom.randomUUID();
+
+        Assert.assertEquals(4, first.version());
+        Assert.assertEquals(2, first.variant());
+        Assert.assertNotEquals(first, second);
+        Assert.assertEquals(first, UUID.fromString(first.toString()));
+    }
+
+    /**
+     * Test method for {@link StripedSecureRandom#nextBytes(byte[])}
+     * <p>
+     * Must return distinct values to concurrent threads.
+     */
+    @Test
+    public void testNextBytesFromConcurrentThreads() throws Exception {
+        final int threadCount = 8;
+        final int drawsPerThread = 1000;
+        final Set<String> values = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < drawsPerThread; j++) {
+                            byte[] bytes = new byte[16];
+                            StripedSecureRandom.nextBytes(bytes);
+                            values.add(Arrays.toString(bytes));
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+
+        Assert.assertEquals(threadCount * drawsPerThread, values.size());
+    }
+}
@@ -14,6 +14,7 @@
  */
 package eu.eidas.auth.commons.tx;
 
+import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.exceptions.SecurityEIDASException;
 import eu.eidas.auth.commons.light.impl.AbstractLightToken;
@@ -23,6 +24,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
@@ -33,6 +35,8 @@ public class LightTokenEncoderTest {
 
     private static final String ALGORITHM = "SHA-256";
 
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
     private static final String ID = "f5e7e0f5-b9b8-4256-a7d0-4090141b326d";
 
     private static final String ISSUER = "MYSPECIFIC";
@@ -154,4 +158,83 @@ public class LightTokenEncoderTest {
         BinaryLightToken binaryToken = LightTokenEncoder.decode(TOKEN_MANYPARTS.getBytes(), SECRET, ALGORITHM);
     }
 
+    @Test
+    public void testEncodeDecodeHmac() throws NoSuchAlgorithmException {
+        LightToken lightToken = new LightToken.Builder().id(ID)
+                .issuer(ISSUER)
+                .createdOn(TIMESTAMP)
+                .build();
+        BinaryLightToken binaryToken = LightTokenEncoder.encode(lightToken, SECRET, HMAC_ALGORITHM);
+
+        assertEquals(binaryToken.getToken(), lightToken);
+        assertFalse(Arrays.equals(binaryToken.getTokenBytes(), TOKEN.getBytes()));
+        String tokenString = new String(binaryToken.getTokenBytes(), StandardCharsets.UTF_8);
+        assertTrue(tokenString.startsWith("MYSPECIFIC|f5e7e0f5-b9b8-4256-a7d0-4090141b326d|1956-10-23 10:52:01 698|"));
+
+        BinaryLightToken decodedToken = LightTokenEncoder.decode(binaryToken.getTokenBytes(), SECRET, HMAC_ALGORITHM);
+        assertEquals(lightToken, decodedToken.getToken());
+        assertArrayEquals(binaryToken.getTokenBytes(), decodedToken.getTokenBytes());
+    }
+
+    @Test
+    public void testEncodeDecodeHmacWithKey() throws NoSuchAlgorithmException {
+        LightToken lightToken = new LightToken.Builder().id(ID)
+                .issuer(ISSUER)
+                .createdOn(TIMESTAMP)
+                .build();
+        LightTokenKey key = new LightTokenKey(SECRET, HMAC_ALGORITHM);
+        BinaryLightToken binaryToken = LightTokenEncoder.encode(lightToken, key);
+
+        assertArrayEquals(LightTokenEncoder.encode(lightToken, SECRET, HMAC_ALGORITHM).getTokenBytes(),
+                          binaryToken.getTokenBytes());
+        for (int i = 0; i < 3; i++) {
+            BinaryLightToken decodedToken = LightTokenEncoder.decode(binaryToken.getTokenBytes(), key);
+            assertEquals(lightToken, decodedToken.getToken());
+        }
+    }
+
+    @Test
+    public void testDecodeHmacAcceptsLegacyDigestWhenEnabled() throws NoSuchAlgorithmException {
+        LightToken lightToken = new LightToken.Builder().id(ID)
+                .issuer(ISSUER)
+                .createdOn(TIMESTAMP)
+                .build();
+        System.setProperty(EidasParameterKeys.LIGHT_TOKEN_ACCEPT_LEGACY_DIGEST.toString(), "true");
+        try {
+            BinaryLightToken binaryToken = LightTokenEncoder.decode(TOKEN.getBytes(), SECRET, HMAC_ALGORITHM);
+
+            assertEquals(lightToken, binaryToken.getToken());
+        } finally {
+            System.clearProperty(EidasParameterKeys.LIGHT_TOKEN_ACCEPT_LEGACY_DIGEST.toString());
+        }
+    }
+
+    @Test
+    public void testDecodeHmacRejectsLegacyDigestByDefault() throws NoSuchAlgorithmException {
+        thrown.expect(SecurityEIDASException.class);
+        thrown.expectMessage("LightToken digest failure");
+        LightTokenEncoder.decode(TOKEN.getBytes(), SECRET, HMAC_ALGORITHM);
+    }
+
+    @Test
+    public void testDecodeHmacFailsOnBadSecret() throws NoSuchAlgorithmException {
+        LightToken lightToken = new LightToken.Builder().id(ID)
+                .issuer(ISSUER)
+                .createdOn(TIMESTAMP)
+                .build();
+        byte[] tokenBytes = LightTokenEncoder.encode(lightToken, SECRET, HMAC_ALGORITHM).getTokenBytes();
+
+        thrown.expect(SecurityEIDASException.class);
+        thrown.expectMessage("LightToken digest failure");
+        LightTokenEncoder.decode(tokenBytes, SECRET + "2", HMAC_ALGORITHM);
+    }
+
+    @Test
+    public void testDecodeFailsOnMissingPart() throws NoSuchAlgorithmException {
+        thrown.expect(SecurityEIDASException.class);
+        thrown.expectMessage("LightToken parse error");
+        LightTokenEncoder.decode("MYSPECIFIC|1956-10-23 10:52:01 698|1040jxHfWeTgn98YczCpon3m+zOHdVXgYkdOjyKVaJA="
+                                         .getBytes(), SECRET, ALGORITHM);
+    }
+
 }
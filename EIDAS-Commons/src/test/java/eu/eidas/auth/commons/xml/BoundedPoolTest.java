@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.xml;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link BoundedPool}.
+ */
+public class BoundedPoolTest {
+
+    private static final BoundedPool.Factory<Object, RuntimeException> FACTORY =
+            new BoundedPool.Factory<Object, RuntimeException>() {
+                @Nonnull
+                @Override
+                public Object newInstance() {
+                    return new Object();
+                }
+            };
+
+    /**
+     * Test method for {@link BoundedPool#borrow(BoundedPool.Factory)} and {@link BoundedPool#release(Object)}.
+     * <p>
+     * Must succeed and count the hits, misses and creations.
+     */
+    @Test
+    public void borrowReusesReleasedInstance() {
+        BoundedPool<Object> pool = new BoundedPool<>("test", 2, 0L, false);
+
+        Object first = pool.borrow(FACTORY);
+        pool.release(first);
+        Object second = pool.borrow(FACTORY);
+
+        assertSame(first, second);
+        assertEquals(1L, pool.getHitCount());
+        assertEquals(1L, pool.getMissCount());
+        assertEquals(1L, pool.getCreatedCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    /**
+     * Test method for {@link BoundedPool#release(Object)} when the pool is full.
+     * <p>
+     * Must succeed and drop the instances exceeding the maximum size.
+     */
+    @Test
+    public void releaseDiscardsWhenFull() {
+        BoundedPool<Object> pool = new BoundedPool<>("test", 2, 0L, false);
+        Object first = pool.borrow(FACTORY);
+        Object second = pool.borrow(FACTORY);
+        Object third = pool.borrow(FACTORY);
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1L, pool.getDiscardedCount());
+        assertEquals(3L, pool.getCreatedCount());
+    }
+
+    /**
+     * Test method for {@link BoundedPool#release(Object)} when an instance stayed idle for longer than the maximum
+     * idle time.
+     * <p>
+     * Must succeed and evict the idle instance.
+     */
+    @Test
+    public void releaseEvictsIdleInstances() throws InterruptedException {
+        BoundedPool<Object> pool = new BoundedPool<>("test", 2, 1L, false);
+        Object first = pool.borrow(FACTORY);
+        Object second = pool.borrow(FACTORY);
+        pool.release(first);
+
+        Thread.sleep(20L);
+        pool.release(second);
+
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1L, pool.getEvictedCount());
+        assertSame(second, pool.borrow(FACTORY));
+    }
+
+    /**
+     * Test method for {@link BoundedPool#borrow(BoundedPool.Factory)} with the thread-local fast path.
+     * <p>
+     * Must succeed, give back the instance released by the same thread and not share it with other threads.
+     */
+    @Test
+    public void threadLocalInstanceIsNotShared() throws InterruptedException {
+        final BoundedPool<Object> pool = new BoundedPool<>("test", 2, 0L, true);
+        final Object instance = pool.borrow(FACTORY);
+        pool.release(instance);
+        assertEquals(0, pool.getIdleCount());
+
+        final Object[] otherThreadInstance = new Object[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                otherThreadInstance[0] = pool.borrow(FACTORY);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotSame(instance, otherThreadInstance[0]);
+        assertSame(instance, pool.borrow(FACTORY));
+    }
+
+    /**
+     * Test method for {@link BoundedPool#registerMBean()}.
+     * <p>
+     * Must succeed and register the pool in the platform MBean server.
+     */
+    @Test
+    public void registerMBean() throws Exception {
+        BoundedPool<Object> pool = new BoundedPool<>("BoundedPoolTest", 2, 0L, false).registerMBean();
+        pool.release(pool.borrow(FACTORY));
+
+        ObjectName objectName = new ObjectName("eu.eidas:type=BoundedPool,name=\"BoundedPoolTest\"");
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MissCount"));
+    }
+
+    /**
+     * Test method for {@link BoundedPool#registerMBean()}
+     * when a pool is already registered under the same name.
+     * <p>
+     * Must replace the registered pool.
+     */
+    @Test
+    public void registerMBeanReplacesRegisteredPool() throws Exception {
+        new BoundedPool<>("BoundedPoolTestReplaced", 2, 0L, false).registerMBean();
+        new BoundedPool<>("BoundedPoolTestReplaced", 3, 0L, false).registerMBean();
+
+        ObjectName objectName = new ObjectName("eu.eidas:type=BoundedPool,name=\"BoundedPoolTestReplaced\"");
+        assertEquals(3, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MaxSize"));
+    }
+}
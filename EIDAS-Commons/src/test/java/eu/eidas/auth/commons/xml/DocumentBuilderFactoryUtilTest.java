@@ -18,6 +18,8 @@
 
 package eu.eidas.auth.commons.xml;
 
+import eu.eidas.auth.commons.EidasParameterKeys;
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -73,4 +75,26 @@ public class DocumentBuilderFactoryUtilTest {
         securedDocumentBuilder.parse(inputSource);
     }
 
-}
\ No newline at end of file
+    /**
+     * Test method for {@link DocumentBuilderFactoryUtil#newPool(String, boolean)}
+     * when the pool system properties are not valid numbers.
+     * <p>
+     * Must ignore the invalid values and use the defaults.
+     */
+    @Test
+    public void newPoolWithInvalidProperties() {
+        String maxSizeKey = EidasParameterKeys.XML_POOL_MAX_SIZE.toString();
+        String maxIdleKey = EidasParameterKeys.XML_POOL_MAX_IDLE_MILLIS.toString();
+        System.setProperty(maxSizeKey, "sixty-four");
+        System.setProperty(maxIdleKey, "-1");
+        try {
+            BoundedPool<Object> pool = DocumentBuilderFactoryUtil.newPool("InvalidProperties", false);
+
+            Assert.assertEquals(DocumentBuilderFactoryUtil.DEFAULT_POOL_MAX_SIZE, pool.getMaxSize());
+            Assert.assertEquals(DocumentBuilderFactoryUtil.DEFAULT_POOL_MAX_IDLE_MILLIS, pool.getMaxIdleMillis());
+        } finally {
+            System.clearProperty(maxSizeKey);
+            System.clearProperty(maxIdleKey);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.commons.xml;
+
+import eu.eidas.auth.commons.EidasStringUtil;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link DomSerializer}.
+ */
+public class DomSerializerTest {
+
+    private static final String[] URIS = {"urn:oasis:names:tc:SAML:2.0:protocol",
+            "urn:oasis:names:tc:SAML:2.0:assertion", "http://www.w3.org/2000/09/xmldsig#", "urn:other"};
+
+    private static final String[] PREFIXES = {"saml2p", "saml2", "ds", "p"};
+
+    private static final String[] TEXTS = {"", " ", "plain", "a & b", "<tag>", "\"quoted\" 'single'", "line\nfeed",
+            "carriage\rreturn", "tab\there", "\u0001\u001f", "\u007f\u0085\u009f", "é€ ",
+            "😀", "  \n  leading whitespace", "]]>", "\u0000"};
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * with randomly generated documents containing namespaces, attributes and characters to escape.
+     * <p>
+     * Must succeed and produce the same bytes as the {@code Transformer}.
+     */
+    @Test
+    public void serializeIsIdenticalToTransformer() throws Exception {
+        Random random = new Random(42L);
+        DomSerializer domSerializer = new DomSerializer();
+        for (int i = 0; i < 500; i++) {
+            Document document = DocumentBuilderFactoryUtil.newDocument();
+            document.appendChild(newElement(document, random, 0));
+            assertSameAsTransformer(domSerializer, document);
+            assertSameAsTransformer(domSerializer, document.getDocumentElement().getFirstChild() instanceof Element
+                                                   ? document.getDocumentElement().getFirstChild()
+                                                   : document.getDocumentElement());
+        }
+    }
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * with a parsed document.
+     * <p>
+     * Must succeed and produce the same bytes as the {@code Transformer}.
+     */
+    @Test
+    public void serializeParsedDocument() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<saml2p:Response xmlns:saml2p=\"" + URIS[0] + "\" xmlns:saml2=\"" + URIS[1] + "\" ID=\"_1\">\n"
+                + "  <saml2:Issuer Format=\"urn:entity\">http://example.org/?a=1&amp;b=&lt;2&gt;</saml2:Issuer>\n"
+                + "  <saml2:Assertion xmlns:saml2=\"" + URIS[1] + "\" xmlns:xsi=\"" + XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI
+                + "\"><saml2:AttributeValue xsi:type=\"xs:string\">Garc&#237;a&#13;&#10;</saml2:AttributeValue>"
+                + "</saml2:Assertion>\n"
+                + "</saml2p:Response>";
+        Document document = DocumentBuilderFactoryUtil.parse(EidasStringUtil.getBytes(xml));
+
+        assertSameAsTransformer(new DomSerializer(), document);
+    }
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * when a prefix starts with "xml".
+     * <p>
+     * Must return {@code false}.
+     */
+    @Test
+    public void serializeReservedPrefix() throws Exception {
+        Document document = DocumentBuilderFactoryUtil.newDocument();
+        document.appendChild(document.createElementNS(URIS[0], "xmlp:Response"));
+
+        assertFalse(new DomSerializer().serialize(document, true));
+    }
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * when a text contains an unpaired surrogate.
+     * <p>
+     * Must return {@code false}.
+     */
+    @Test
+    public void serializeUnpairedSurrogate() throws Exception {
+        Document document = DocumentBuilderFactoryUtil.newDocument();
+        Element root = document.createElementNS(URIS[0], "saml2p:Response");
+        root.appendChild(document.createTextNode("\ud83d"));
+        document.appendChild(root);
+
+        assertFalse(new DomSerializer().serialize(document, true));
+    }
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * when the document contains a CDATA section.
+     * <p>
+     * Must return {@code false}.
+     */
+    @Test
+    public void serializeUnsupportedNode() throws Exception {
+        Document document = DocumentBuilderFactoryUtil.newDocument();
+        Element root = document.createElementNS(URIS[0], "saml2p:Response");
+        root.appendChild(document.createCDATASection("cdata"));
+        document.appendChild(root);
+
+        assertFalse(new DomSerializer().serialize(document, true));
+        assertArrayEquals(transform(document, true), DocumentBuilderFactoryUtil.marshall(document, true));
+    }
+
+    /**
+     * Test method for {@link DomSerializer#serialize(Node, boolean)}
+     * when the document contains an entity reference.
+     * <p>
+     * Must return {@code false} so that the entity reference is written by the {@code Transformer}.
+     */
+    @Test
+    public void serializeEntityReference() throws Exception {
+        String xml = "<!DOCTYPE saml2p:Response [<!ENTITY entity \"expanded\">]>"
+                + "<saml2p:Response xmlns:saml2p=\"" + URIS[0] + "\">before &entity; after</saml2p:Response>";
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        documentBuilderFactory.setExpandEntityReferences(false);
+        Document document = documentBuilderFactory.newDocumentBuilder()
+                .parse(new ByteArrayInputStream(EidasStringUtil.getBytes(xml)));
+        assertEquals(Node.ENTITY_REFERENCE_NODE, document.getDocumentElement().getChildNodes().item(1).getNodeType());
+
+        assertFalse(new DomSerializer().serialize(document.getDocumentElement(), true));
+        byte[] marshalled = DocumentBuilderFactoryUtil.marshall(document.getDocumentElement(), true);
+        assertArrayEquals(transform(document.getDocumentElement(), true), marshalled);
+        assertTrue(EidasStringUtil.toString(marshalled).contains("before expanded after"));
+    }
+
+    /**
+     * Test method for {@link DocumentBuilderFactoryUtil#marshall(Node, boolean, java.io.OutputStream)}.
+     * <p>
+     * Must succeed and write the same bytes as {@link DocumentBuilderFactoryUtil#marshall(Node, boolean)}.
+     */
+    @Test
+    public void marshallToOutputStream() throws Exception {
+        Document document = DocumentBuilderFactoryUtil.parse(EidasStringUtil.getBytes(
+                "<saml2p:Response xmlns:saml2p=\"" + URIS[0] + "\" ID=\"_1\"><saml2p:Status/></saml2p:Response>"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        DocumentBuilderFactoryUtil.marshall(document, false, outputStream);
+
+        assertArrayEquals(DocumentBuilderFactoryUtil.marshall(document, false), outputStream.toByteArray());
+    }
+
+    private static void assertSameAsTransformer(DomSerializer domSerializer, Node node) throws Exception {
+        for (final boolean omitXMLDeclaration : new boolean[] {true, false}) {
+            byte[] expected = transform(node, omitXMLDeclaration);
+            assertTrue(domSerializer.serialize(node, omitXMLDeclaration));
+            byte[] actual = domSerializer.toByteArray();
+            if (!java.util.Arrays.equals(expected, actual)) {
+                assertTrue("expected:\n" + EidasStringUtil.toString(expected) + "\nactual:\n"
+                                   + EidasStringUtil.toString(actual), false);
+            }
+        }
+    }
+
+    private static byte[] transform(Node node, boolean omitXMLDeclaration) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DocumentBuilderFactoryUtil.transform(node, omitXMLDeclaration, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static Element newElement(Document document, Random random, int depth) {
+        Element element;
+        int kind = random.nextInt(4);
+        if (kind == 0) {
+            element = document.createElementNS(null, "plain" + random.nextInt(3));
+        } else if (kind == 1) {
+            element = document.createElementNS(URIS[random.nextInt(URIS.length)], "unprefixed");
+        } else {
+            int index = random.nextInt(PREFIXES.length);
+            element = document.createElementNS(URIS[random.nextInt(URIS.length)],
+                                               PREFIXES[index] + ":Element" + random.nextInt(3));
+        }
+        int attributes = random.nextInt(5);
+        for (int i = 0; i < attributes; i++) {
+            String value = TEXTS[random.nextInt(TEXTS.length)];
+            switch (random.nextInt(6)) {
+                case 0:
+                    element.setAttributeNS(null, "Attr" + random.nextInt(4), value);
+                    break;
+                case 1:
+                    element.setAttributeNS(URIS[random.nextInt(URIS.length)], "nsAttr" + random.nextInt(3), value);
+                    break;
+                case 2:
+                    element.setAttributeNS(URIS[random.nextInt(URIS.length)],
+                                           PREFIXES[random.nextInt(PREFIXES.length)] + ":pAttr" + random.nextInt(3),
+                                           value);
+                    break;
+                case 3:
+                    element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                                           "xmlns:" + PREFIXES[random.nextInt(PREFIXES.length)],
+                                           URIS[random.nextInt(URIS.length)]);
+                    break;
+                case 4:
+                    element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns",
+                                           URIS[random.nextInt(URIS.length)]);
+                    break;
+                default:
+                    element.setAttributeNS(XMLConstants.XML_NS_URI, "xml:lang", value);
+            }
+        }
+        int children = depth < 4 ? random.nextInt(4) : 0;
+        for (int i = 0; i < children; i++) {
+            if (random.nextBoolean()) {
+                element.appendChild(newElement(document, random, depth + 1));
+            } else {
+                element.appendChild(document.createTextNode(TEXTS[random.nextInt(TEXTS.length)]));
+            }
+        }
+        return element;
+    }
+}
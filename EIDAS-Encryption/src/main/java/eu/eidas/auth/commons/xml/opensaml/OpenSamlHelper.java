@@ -48,6 +48,7 @@ import org.xml.sax.SAXException;
 import javax.annotation.Nonnull;
 import javax.xml.validation.Schema;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * OpenSAML Helper.
@@ -165,6 +166,28 @@ public final class OpenSamlHelper {
         return marshallToBytes(xmlObject, omitXMLDeclaration);
     }
 
+    /**
+     * Method that writes the byte representation of the received SAML object to the given stream, without copying it
+     * into an intermediate byte array.
+     *
+     * @param xmlObject the SAML token.
+     * @param omitXMLDeclaration the omit xml declaration flag
+     * @param outputStream the stream to write to, which is not closed
+     * @throws MarshallException when the OpenSAML object cannot be marshalled or written
+     * @since 2.4
+     */
+    public static void marshall(@Nonnull XMLObject xmlObject,
+                                final boolean omitXMLDeclaration,
+                                @Nonnull OutputStream outputStream) throws MarshallException {
+        Element element = marshallToDom(xmlObject);
+        try {
+            DocumentBuilderFactoryUtil.marshall(element.getOwnerDocument(), omitXMLDeclaration, outputStream);
+        } catch (Exception ex) {
+            LOG.error("Marshall exception for " + xmlObject + ": " + ex, ex);
+            throw new MarshallException(ex);
+        }
+    }
+
     /**
      * Implementing method that transforms the received SAML object into a byte array representation.
      * <p>
@@ -311,22 +334,41 @@ public final class OpenSamlHelper {
             LOG.error("Unmarshall: root element is null");
             throw new UnmarshallException("Root element is null");
         }
+        return unmarshallFromDom(root);
+    }
+
+    /**
+     * Method that unmarshalls a SAML Object from a DOM Element representation to an XML Object.
+     * <p>
+     * The element keeps its owner document and its parent so that it can be used to unmarshall only a subtree of a
+     * document which is already unmarshalled.
+     *
+     * @param element DOM Element representation of a SAML Object
+     * @return XML Object (superclass of SAMLObject)
+     * @throws UnmarshallException when the element cannot be unmarshalled
+     * @since 2.4
+     */
+    @Nonnull
+    public static XMLObject unmarshallFromDom(@Nonnull Element element) throws UnmarshallException {
+        if (null == element) {
+            LOG.error("Unmarshall: element is null");
+            throw new UnmarshallException("Element is null");
+        }
         // Get appropriate unmarshaller
         UnmarshallerFactory unmarshallerFactory = XMLObjectProviderRegistrySupport.getUnmarshallerFactory();
-        // Unmarshall using the SAML Token root element
         if (null == unmarshallerFactory) {
-            LOG.error("No UnmarshallerFactory for " + document);
+            LOG.error("No UnmarshallerFactory for " + element);
             throw new UnmarshallException("No UnmarshallerFactory");
         }
-        Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(root);
+        Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(element);
         if (null == unmarshaller) {
-            LOG.error("No Unmarshaller for " + document);
+            LOG.error("No Unmarshaller for " + element);
             throw new UnmarshallException("No Unmarshaller");
         }
         try {
-            return unmarshaller.unmarshall(root);
+            return unmarshaller.unmarshall(element);
         } catch (UnmarshallingException ue) {
-            LOG.error("Unmarshall exception for " + document + ": " + ue, ue);
+            LOG.error("Unmarshall exception for " + element + ": " + ue, ue);
             throw new UnmarshallException(ue);
         }
     }
@@ -25,6 +25,7 @@ import eu.eidas.encryption.exception.DecryptionException;
 import eu.eidas.encryption.exception.MarshallException;
 import eu.eidas.encryption.exception.UnmarshallException;
 import eu.eidas.encryption.utils.DecryptionUtils;
+import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.EncryptedAssertion;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.security.credential.Credential;
@@ -57,8 +58,23 @@ public final class SAMLAuthnResponseDecrypter {
     @Nullable
     private final String jcaProviderName;
 
+    private final boolean inPlace;
+
     public SAMLAuthnResponseDecrypter(@Nullable String jcaProviderName) {
+        this(jcaProviderName, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param jcaProviderName the name of the JCA provider to use, if any
+     * @param inPlace when {@code true}, the encrypted assertions are replaced by the decrypted assertions directly in
+     * the given Response and its DOM instead of in a new copy of the Response
+     * @since 2.4
+     */
+    public SAMLAuthnResponseDecrypter(@Nullable String jcaProviderName, boolean inPlace) {
         this.jcaProviderName = jcaProviderName;
+        this.inPlace = inPlace;
     }
 
     @Nonnull
@@ -70,6 +86,9 @@ public final class SAMLAuthnResponseDecrypter {
                 LOGGER.trace("SAML Response XMLObject to decrypt: " + EidasStringUtil.toString(
                         OpenSamlHelper.marshall(samlResponseDecryptee)));
             }
+            if (isInPlace()) {
+                return performDecryptionInPlace(samlResponseDecryptee, credentials);
+            }
             List<DocumentFragment> decryptedAssertionFragments = new ArrayList<>();
             for (EncryptedAssertion encAssertion : samlResponseDecryptee.getEncryptedAssertions()) {
 
@@ -166,6 +185,66 @@ public final class SAMLAuthnResponseDecrypter {
         }
     }
 
+    /**
+     * Replaces the encrypted assertions by the decrypted assertions directly in the given Response and in its DOM.
+     * <p>
+     * Only the decrypted assertions are unmarshalled, which also restores the ID-ness of their attributes needed to
+     * validate their signatures: the rest of the Response is neither copied nor unmarshalled again.
+     */
+    @Nonnull
+    private Response performDecryptionInPlace(@Nonnull Response samlResponseDecryptee,
+                                              @Nonnull Credential... credentials)
+            throws MarshallException, UnmarshallException, org.opensaml.xmlsec.encryption.support.DecryptionException {
+        Element responseDom = samlResponseDecryptee.getDOM();
+        if (null == responseDom) {
+            responseDom = OpenSamlHelper.marshallToDom(samlResponseDecryptee);
+        }
+        Document ownerDocument = responseDom.getOwnerDocument();
+        Decrypter dataDecrypter = getDataDecrypter(Arrays.asList(credentials));
+
+        List<EncryptedAssertion> encryptedAssertions = new ArrayList<>(samlResponseDecryptee.getEncryptedAssertions());
+        List<Assertion> decryptedAssertions = new ArrayList<>();
+        for (EncryptedAssertion encAssertion : encryptedAssertions) {
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("SAML Response decrypting with data encryption algorithm: '"
+                        + encAssertion.getEncryptedData().getEncryptionMethod().getAlgorithm() + "'");
+            }
+
+            DocumentFragment decryptedAssertionFragment =
+                    dataDecrypter.decryptDataToDOM(encAssertion.getEncryptedData());
+            if (decryptedAssertionFragment.getOwnerDocument() != ownerDocument) {
+                ownerDocument.adoptNode(decryptedAssertionFragment);
+            }
+            Element decryptedAssertionDom = getFirstChildElement(decryptedAssertionFragment);
+            if (null == decryptedAssertionDom) {
+                throw new UnmarshallException("Decrypted assertion is empty");
+            }
+            responseDom.replaceChild(decryptedAssertionFragment, encAssertion.getDOM());
+
+            // Unmarshalling the new subtree rectifies its ID-ness:
+            // See org.opensaml.saml.saml2.core.impl.AssertionUnmarshaller.processAttribute()
+            decryptedAssertions.add((Assertion) OpenSamlHelper.unmarshallFromDom(decryptedAssertionDom));
+        }
+
+        // Updating the children lists releases the cached DOM of the Response which is already up to date:
+        samlResponseDecryptee.getEncryptedAssertions().clear();
+        samlResponseDecryptee.getAssertions().addAll(decryptedAssertions);
+        samlResponseDecryptee.setDOM(responseDom);
+
+        return samlResponseDecryptee;
+    }
+
+    @Nullable
+    private static Element getFirstChildElement(@Nonnull Node node) {
+        for (Node child = node.getFirstChild(); null != child; child = child.getNextSibling()) {
+            if (Node.ELEMENT_NODE == child.getNodeType()) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
     /**
      * Performs a decryption on every encrypted assertions of the given response with the given credential.
      * @param samlResponseEncrypted
@@ -234,4 +313,13 @@ public final class SAMLAuthnResponseDecrypter {
     public String getJcaProviderName() {
         return jcaProviderName;
     }
+
+    /**
+     * @return {@code true} if the given Response is decrypted in place, {@code false} if a new decrypted copy is
+     * returned.
+     * @since 2.4
+     */
+    public boolean isInPlace() {
+        return inPlace;
+    }
 }
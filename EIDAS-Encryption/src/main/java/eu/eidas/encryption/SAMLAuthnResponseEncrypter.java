@@ -17,6 +17,8 @@
  */
 package eu.eidas.encryption;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.xml.DocumentBuilderFactoryUtil;
 import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
@@ -26,18 +28,27 @@ import eu.eidas.encryption.exception.UnmarshallException;
 import eu.eidas.util.Preconditions;
 import org.apache.commons.lang.StringUtils;
 import org.opensaml.core.xml.Namespace;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.io.Marshaller;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.EncryptedAssertion;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.saml.saml2.encryption.Encrypter;
+import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.security.x509.X509Credential;
 import org.opensaml.xmlsec.SecurityConfigurationSupport;
 import org.opensaml.xmlsec.encryption.support.DataEncryptionParameters;
 import org.opensaml.xmlsec.encryption.support.KeyEncryptionParameters;
+import org.opensaml.xmlsec.keyinfo.KeyInfoGenerator;
 import org.opensaml.xmlsec.keyinfo.KeyInfoGeneratorFactory;
 import org.opensaml.xmlsec.keyinfo.impl.BasicKeyInfoGeneratorFactory;
+import org.opensaml.xmlsec.signature.KeyInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -54,6 +65,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
+import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPublicKey;
 import java.util.ArrayList;
 import java.util.List;
@@ -86,6 +98,8 @@ public final class SAMLAuthnResponseEncrypter {
 
         private String keyEncryptionAlgorithmForKeyAgreement;
 
+        private boolean inPlace;
+
         public Builder() {
         }
 
@@ -95,6 +109,7 @@ public final class SAMLAuthnResponseEncrypter {
             jcaProviderName = copy.jcaProviderName;
             keyEncryptionAlgorithm = copy.keyEncryptionAlgorithm;
             keyEncryptionAlgorithmForKeyAgreement = copy.keyEncryptionAlgorithmForKeyAgreement;
+            inPlace = copy.inPlace;
         }
 
         public Builder(@Nonnull SAMLAuthnResponseEncrypter copy) {
@@ -103,6 +118,7 @@ public final class SAMLAuthnResponseEncrypter {
             jcaProviderName = copy.jcaProviderName;
             keyEncryptionAlgorithm = copy.keyEncryptionAlgorithm;
             keyEncryptionAlgorithmForKeyAgreement = copy.keyEncryptionAlgorithmForKeyAgreement;
+            inPlace = copy.inPlace;
         }
 
         public SAMLAuthnResponseEncrypter build() {
@@ -130,6 +146,17 @@ public final class SAMLAuthnResponseEncrypter {
             return this;
         }
 
+        /**
+         * When {@code true}, the assertions are replaced by the encrypted assertions directly in the given Response
+         * and its DOM instead of in a new copy of the Response.
+         *
+         * @since 2.4
+         */
+        public Builder inPlace(final boolean inPlace) {
+            this.inPlace = inPlace;
+            return this;
+        }
+
         private void validate() throws IllegalArgumentException {
             if (StringUtils.isBlank(dataEncryptionAlgorithm)) {
                 dataEncryptionAlgorithm = DefaultEncryptionAlgorithm.DEFAULT_DATA_ENCRYPTION_ALGORITHM.getValue();
@@ -164,6 +191,86 @@ public final class SAMLAuthnResponseEncrypter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SAMLAuthnResponseEncrypter.class);
 
+    /**
+     * The maximum number of recipient certificates for which an encrypter is kept.
+     */
+    private static final long MAX_KEY_TRANSPORT_ENCRYPTERS = 256L;
+
+    private static final KeyInfoGeneratorFactory KEY_VALUE_KEY_INFO_GENERATOR_FACTORY =
+            createKeyInfoGeneratorFactory();
+
+    private static final KeyInfoGeneratorFactory KEY_AGREEMENT_KEY_INFO_GENERATOR_FACTORY =
+            ExtendedDefaultSecurityConfigurationBootstrap.buildDefaultKeyAgreementKeyInfoGeneratorFactory();
+
+    /**
+     * Identifies the encrypter of a recipient certificate.
+     */
+    @Immutable
+    private static final class EncrypterKey {
+
+        @Nonnull
+        private final X509Certificate certificate;
+
+        private final boolean keyInfoDisplayedAsKeyValue;
+
+        EncrypterKey(@Nonnull X509Certificate certificate, boolean keyInfoDisplayedAsKeyValue) {
+            this.certificate = certificate;
+            this.keyInfoDisplayedAsKeyValue = keyInfoDisplayedAsKeyValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            EncrypterKey that = (EncrypterKey) o;
+            return keyInfoDisplayedAsKeyValue == that.keyInfoDisplayedAsKeyValue
+                    && certificate.equals(that.certificate);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * certificate.hashCode() + (keyInfoDisplayedAsKeyValue ? 1 : 0);
+        }
+    }
+
+    /**
+     * Returns copies of a KeyInfo generated and marshalled once instead of generating it again for each message.
+     */
+    @ThreadSafe
+    private static final class PrecomputedKeyInfoGenerator implements KeyInfoGenerator {
+
+        @Nullable
+        private final KeyInfo keyInfo;
+
+        PrecomputedKeyInfoGenerator(@Nullable KeyInfo keyInfo) throws MarshallingException {
+            this.keyInfo = keyInfo;
+            if (null != keyInfo) {
+                XMLObjectSupport.marshall(keyInfo);
+            }
+        }
+
+        @Nullable
+        @Override
+        public KeyInfo generate(@Nullable Credential credential) throws SecurityException {
+            if (null == keyInfo) {
+                return null;
+            }
+            // the DOM of the template is read by one thread at a time
+            synchronized (keyInfo) {
+                try {
+                    return XMLObjectSupport.cloneXMLObject(keyInfo,
+                                                           XMLObjectSupport.CloneOutputOption.RootDOMInNewDocument);
+                } catch (MarshallingException | UnmarshallingException e) {
+                    throw new SecurityException("Unable to copy the KeyInfo of the recipient", e);
+                }
+            }
+        }
+    }
+
     @Nonnull
     private final String dataEncryptionAlgorithm;
 
@@ -176,11 +283,21 @@ public final class SAMLAuthnResponseEncrypter {
     @Nonnull
     private final String keyEncryptionAlgorithmForKeyAgreement;
 
+    private final boolean inPlace;
+
+    /**
+     * The key transport encrypters by recipient certificate.
+     */
+    @Nonnull
+    private final Cache<EncrypterKey, Encrypter> keyTransportEncrypters =
+            CacheBuilder.newBuilder().maximumSize(MAX_KEY_TRANSPORT_ENCRYPTERS).build();
+
     private SAMLAuthnResponseEncrypter(@Nonnull Builder builder) {
         dataEncryptionAlgorithm = builder.dataEncryptionAlgorithm;
         jcaProviderName = builder.jcaProviderName;
         keyEncryptionAlgorithm = builder.keyEncryptionAlgorithm;
         keyEncryptionAlgorithmForKeyAgreement = builder.keyEncryptionAlgorithmForKeyAgreement;
+        inPlace = builder.inPlace;
     }
 
     public Response encryptSAMLResponse(final Response samlResponse, final Credential credential
@@ -237,6 +354,15 @@ public final class SAMLAuthnResponseEncrypter {
         return keyEncryptionAlgorithm;
     }
 
+    /**
+     * @return {@code true} if the given Response is encrypted in place, {@code false} if a new encrypted copy is
+     * returned.
+     * @since 2.4
+     */
+    public boolean isInPlace() {
+        return inPlace;
+    }
+
     private String getKeyAgreementEncAlgorithm() {
         return keyEncryptionAlgorithmForKeyAgreement;
     }
@@ -265,17 +391,10 @@ public final class SAMLAuthnResponseEncrypter {
     private Response performEncryption(@Nonnull Response samlResponseEncryptee, @Nonnull Credential credential,
     		boolean isKeyInfoDisplayedAsKeyValue) throws EncryptionException {
         try {
-            // Set Data Encryption parameters
-            DataEncryptionParameters encParams = new DataEncryptionParameters();
-            encParams.setAlgorithm(getDataEncAlgorithm());
-            // Set Key Encryption parameters
-            KeyEncryptionParameters kekParams = createKeyEncryptionParameters(credential, isKeyInfoDisplayedAsKeyValue);
-
-            // Setup Open SAML Encrypter
-            Encrypter encrypter = new Encrypter(encParams, kekParams);
-            encrypter.setKeyPlacement(Encrypter.KeyPlacement.INLINE);
-            if (getJcaProviderName() != null) {
-                encrypter.setJCAProviderName(getJcaProviderName());
+            Encrypter encrypter = getEncrypter(credential, isKeyInfoDisplayedAsKeyValue);
+
+            if (isInPlace()) {
+                return performEncryptionInPlace(samlResponseEncryptee, encrypter);
             }
 
             for (Assertion assertion : samlResponseEncryptee.getAssertions()) {
@@ -339,11 +458,89 @@ public final class SAMLAuthnResponseEncrypter {
 
             return encryptedResponse;
 
-        } catch (ParserConfigurationException | MarshallException | UnmarshallException | org.opensaml.xmlsec.encryption.support.EncryptionException e) {
+        } catch (ParserConfigurationException | MarshallException | MarshallingException | UnmarshallException | SecurityException | org.opensaml.xmlsec.encryption.support.EncryptionException e) {
             throw new EncryptionException(e);
         }
     }
 
+    /**
+     * Replaces the assertions by the encrypted assertions directly in the given Response and in its DOM so that the
+     * cost of the encryption depends on the size of the assertions only: the rest of the Response is neither copied
+     * nor unmarshalled again.
+     */
+    @Nonnull
+    private Response performEncryptionInPlace(@Nonnull Response samlResponseEncryptee, @Nonnull Encrypter encrypter)
+            throws MarshallException, MarshallingException,
+                   org.opensaml.xmlsec.encryption.support.EncryptionException {
+        Element responseDom = samlResponseEncryptee.getDOM();
+        if (null == responseDom) {
+            responseDom = OpenSamlHelper.marshallToDom(samlResponseEncryptee);
+        }
+        Marshaller marshaller = XMLObjectProviderRegistrySupport.getMarshallerFactory()
+                .getMarshaller(EncryptedAssertion.DEFAULT_ELEMENT_NAME);
+
+        List<Assertion> assertions = new ArrayList<>(samlResponseEncryptee.getAssertions());
+        List<EncryptedAssertion> encryptedAssertions = new ArrayList<>();
+        for (Assertion assertion : assertions) {
+            manageNamespaces(assertion);
+            Element assertionDom = assertion.getDOM();
+            EncryptedAssertion encryptedAssertion = encrypter.encrypt(assertion);
+            // the encrypted data is created in the document of the Response, only the new subtree is marshalled:
+            Element encryptedAssertionDom = marshaller.marshall(encryptedAssertion, responseDom);
+            responseDom.replaceChild(encryptedAssertionDom, assertionDom);
+            encryptedAssertions.add(encryptedAssertion);
+        }
+
+        // Updating the children lists releases the cached DOM of the Response which is already up to date:
+        samlResponseEncryptee.getAssertions().clear();
+        samlResponseEncryptee.getEncryptedAssertions().addAll(encryptedAssertions);
+        samlResponseEncryptee.setDOM(responseDom);
+
+        return samlResponseEncryptee;
+    }
+
+    /**
+     * Returns the OpenSAML encrypter for the given recipient.
+     * <p>
+     * With key transport, the encrypter of each recipient certificate is created once and reused: its KeyInfo is
+     * generated and marshalled only once so that each message only costs the generation of the data encryption key,
+     * its wrapping and the encryption of the assertions. With key agreement, a new encrypter is needed for each message
+     * because the parameters hold the ephemeral key of the agreement.
+     */
+    @Nonnull
+    private Encrypter getEncrypter(@Nonnull final Credential credential, final boolean isKeyInfoDisplayedAsKeyValue)
+            throws SecurityException, MarshallingException {
+        if (isECPublicKey(credential) || !(credential instanceof X509Credential)) {
+            return newEncrypter(createKeyEncryptionParameters(credential, isKeyInfoDisplayedAsKeyValue));
+        }
+        EncrypterKey encrypterKey =
+                new EncrypterKey(((X509Credential) credential).getEntityCertificate(), isKeyInfoDisplayedAsKeyValue);
+        Encrypter encrypter = keyTransportEncrypters.getIfPresent(encrypterKey);
+        if (null == encrypter) {
+            KeyEncryptionParameters kekParams = createKeyTransportsParamaters(credential, isKeyInfoDisplayedAsKeyValue);
+            kekParams.setKeyInfoGenerator(
+                    new PrecomputedKeyInfoGenerator(kekParams.getKeyInfoGenerator().generate(credential)));
+            encrypter = newEncrypter(kekParams);
+            keyTransportEncrypters.put(encrypterKey, encrypter);
+        }
+        return encrypter;
+    }
+
+    @Nonnull
+    private Encrypter newEncrypter(@Nonnull KeyEncryptionParameters kekParams) {
+        // Set Data Encryption parameters
+        DataEncryptionParameters encParams = new DataEncryptionParameters();
+        encParams.setAlgorithm(getDataEncAlgorithm());
+
+        // Setup Open SAML Encrypter
+        Encrypter encrypter = new Encrypter(encParams, kekParams);
+        encrypter.setKeyPlacement(Encrypter.KeyPlacement.INLINE);
+        if (getJcaProviderName() != null) {
+            encrypter.setJCAProviderName(getJcaProviderName());
+        }
+        return encrypter;
+    }
+
     private KeyEncryptionParameters createKeyEncryptionParameters(@Nonnull Credential credential, boolean isKeyInfoWithPublicKey) {
         final KeyEncryptionParameters keyEncryptionParameters;
         if (isECPublicKey(credential)) {
@@ -363,10 +560,7 @@ public final class SAMLAuthnResponseEncrypter {
         ECDHKeyAgreementParameters keyAgreementParameters = new ECDHKeyAgreementParameters();
         keyAgreementParameters.setPeerCredential(credential);
         keyAgreementParameters.setAlgorithm(getKeyAgreementEncAlgorithm());
-        keyAgreementParameters.setKeyInfoGenerator(
-                ExtendedDefaultSecurityConfigurationBootstrap
-                        .buildDefaultKeyAgreementKeyInfoGeneratorFactory()
-                        .newInstance());
+        keyAgreementParameters.setKeyInfoGenerator(KEY_AGREEMENT_KEY_INFO_GENERATOR_FACTORY.newInstance());
         return keyAgreementParameters;
     }
 
@@ -377,7 +571,7 @@ public final class SAMLAuthnResponseEncrypter {
 
         final KeyInfoGeneratorFactory kigf;
         if (isKeyInfoAsKeyValue){
-            kigf = createKeyInfoGeneratorFactory();
+            kigf = KEY_VALUE_KEY_INFO_GENERATOR_FACTORY;
         } else {
             kigf = SecurityConfigurationSupport.getGlobalEncryptionConfiguration()
                     .getDataKeyInfoGeneratorManager()
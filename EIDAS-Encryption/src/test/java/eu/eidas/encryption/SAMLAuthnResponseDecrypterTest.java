@@ -73,7 +73,7 @@ public abstract class SAMLAuthnResponseDecrypterTest {
     @Before
     public void setup() throws Exception {
         setupCredentials();
-        decrypter = new SAMLAuthnResponseDecrypter(getJcaProviderName());
+        decrypter = new SAMLAuthnResponseDecrypter(getJcaProviderName(), isInPlace());
     }
 
     public void setupCredentials() throws Exception {
@@ -106,6 +106,10 @@ public abstract class SAMLAuthnResponseDecrypterTest {
         return null;
     }
 
+    protected boolean isInPlace() {
+        return false;
+    }
+
     protected String getKeyStorePath() {
         return "/keystores/test.jks";
     }
@@ -185,6 +189,9 @@ public abstract class SAMLAuthnResponseDecrypterTest {
         Assert.assertEquals(actualResponse.getAssertions().size(), 1);
 
         Assertion actualAssertion = actualResponse.getAssertions().get(0);
+        // the ID-ness of the decrypted assertion is needed to validate its signature
+        Assert.assertSame(actualAssertion.getDOM(),
+                          actualAssertion.getDOM().getOwnerDocument().getElementById(actualAssertion.getID()));
 
         String expectedNameId = "0123456";
         verifyNameIdValue(expectedNameId, actualAssertion);
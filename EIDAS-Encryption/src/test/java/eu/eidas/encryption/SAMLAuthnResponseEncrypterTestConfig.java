@@ -79,7 +79,8 @@ public abstract class SAMLAuthnResponseEncrypterTestConfig {
                 .dataEncryptionAlgorithm(dataEncryptionAlgorithm)
                 .jcaProviderName(jcaProviderName)
                 .keyEncryptionAlgorithm(keyEncryptionAlgorithm)
-                .keyEncryptionAlgorithmForKeyAgreement(keyEncryptionAlgorithmForKeyAgreement);
+                .keyEncryptionAlgorithmForKeyAgreement(keyEncryptionAlgorithmForKeyAgreement)
+                .inPlace(isInPlace());
 
         return samlAuthnResponseEncrypterBuilder.build();
     }
@@ -152,6 +153,10 @@ public abstract class SAMLAuthnResponseEncrypterTestConfig {
         return false;
     }
 
+    protected boolean isInPlace() {
+        return false;
+    }
+
     protected void verifyResponseAssertions(Response encryptedResponse) {
         Assert.assertTrue(encryptedResponse.getAssertions().isEmpty());
 
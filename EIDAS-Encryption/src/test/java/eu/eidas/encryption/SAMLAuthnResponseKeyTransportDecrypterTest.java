@@ -25,7 +25,12 @@ import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.security.credential.Credential;
 import org.opensaml.security.x509.X509Credential;
+import org.w3c.dom.Element;
+
+import java.util.List;
 
 /**
  * Tests for the {@link SAMLAuthnResponseDecrypter} used for responses encrypted with Key Transport
@@ -59,6 +64,42 @@ public class SAMLAuthnResponseKeyTransportDecrypterTest {
         // No configuration change - use default configuration for test
     }
 
+    /**
+     * Tests for the {@link SAMLAuthnResponseDecrypter} with Key Transport credentials
+     * decrypting the assertions in place
+     *
+     * All must succeed
+     */
+    public static class SAMLAuthnResponseKeyTransportDecrypterInPlaceTest
+            extends KeyTransportDecrypterTestConfig {
+
+        @Override
+        protected boolean isInPlace() {
+            return true;
+        }
+
+        /**
+         * Test method for {@link SAMLAuthnResponseDecrypter#decryptSAMLResponse(Response, Credential...)}
+         * decrypting the assertions in place
+         * <p>
+         * Must replace the encrypted assertions in the given response and in its DOM.
+         */
+        @Test
+        public void decryptSamlResponseInPlace() throws DecryptionException {
+            Response response = createMockResponse(getResponseXMLFilePath());
+            Element responseDom = response.getDOM();
+            List<Credential> credentials = getDecryptionCredentials();
+
+            Response result =
+                    decrypter.decryptSAMLResponse(response, credentials.toArray(new Credential[credentials.size()]));
+
+            Assert.assertSame(response, result);
+            Assert.assertSame(responseDom, result.getDOM());
+            Assert.assertTrue(result.getEncryptedAssertions().isEmpty());
+            Assert.assertSame(responseDom, result.getAssertions().get(0).getDOM().getParentNode());
+        }
+    }
+
     /**
      * Tests for the {@link SAMLAuthnResponseDecrypter} with Key Transport credentials
      * with RSAOAEP key encryption algorithm
@@ -18,6 +18,7 @@
 
 package eu.eidas.encryption;
 
+import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
 import eu.eidas.encryption.exception.EncryptionException;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -26,6 +27,7 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.encryption.EncryptedData;
@@ -34,6 +36,7 @@ import org.opensaml.xmlsec.encryption.EncryptionMethod;
 import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
 import org.opensaml.xmlsec.signature.DigestMethod;
 import org.opensaml.xmlsec.signature.KeyInfo;
+import org.w3c.dom.Element;
 
 import java.util.List;
 
@@ -75,6 +78,31 @@ public class SAMLAuthnResponseKeyTransportEncrypterTest {
             verifyDigestMethodForRSAOAEP(encryptedKey.getEncryptionMethod());
         }
 
+        /**
+         * Test method for {@link SAMLAuthnResponseEncrypter#encryptSAMLResponse(Response, Credential, boolean)}
+         * encrypting twice for the same certificate
+         * <p>
+         * Must reuse the KeyInfo generated for the certificate but with a distinct copy for each response.
+         */
+        @Test
+        public void testEncryptSAMLResponseTwiceForSameCertificate() throws Exception {
+            Response first = encrypter.encryptSAMLResponse(getDefaultResponse(), getCredential(),
+                                                           isKeyInfoDisplayedAsKeyValue());
+            setupCredentials();
+            Response second = encrypter.encryptSAMLResponse(createMockResponse(), getCredential(),
+                                                            isKeyInfoDisplayedAsKeyValue());
+
+            verifyResponseAssertions(second);
+            EncryptedData secondEncryptedData = second.getEncryptedAssertions().get(0).getEncryptedData();
+            verifyEncryptedData(secondEncryptedData);
+
+            KeyInfo firstKeyInfo = first.getEncryptedAssertions().get(0).getEncryptedData().getKeyInfo()
+                    .getEncryptedKeys().get(0).getKeyInfo();
+            KeyInfo secondKeyInfo = secondEncryptedData.getKeyInfo().getEncryptedKeys().get(0).getKeyInfo();
+            Assert.assertNotSame(firstKeyInfo, secondKeyInfo);
+            Assert.assertEquals(OpenSamlHelper.toString(firstKeyInfo), OpenSamlHelper.toString(secondKeyInfo));
+        }
+
         protected void verifyKeyInfoFromEncryptedKey(KeyInfo keyInfo) {
             if (isKeyInfoDisplayedAsKeyValue()) {
                 Assert.assertTrue(keyInfo.getX509Datas().isEmpty());
@@ -130,6 +158,42 @@ public class SAMLAuthnResponseKeyTransportEncrypterTest {
         }
     }
 
+    /**
+     * Tests for the {@link SAMLAuthnResponseEncrypter} with Key Transport
+     * encrypting the assertions in place
+     */
+    public static class SAMLAuthnResponseKeyTransportEncrypterInPlaceTest
+            extends KeyTransportEncrypterTestConfig {
+
+        @Override
+        protected boolean isInPlace() {
+            return true;
+        }
+
+        /**
+         * Test method for {@link SAMLAuthnResponseEncrypter#encryptSAMLResponse(Response, Credential, boolean)}
+         * encrypting the assertions in place
+         * <p>
+         * Must replace the assertions in the given response and in its DOM.
+         */
+        @Test
+        public void testEncryptSAMLResponseInPlace() throws EncryptionException {
+            Response response = getDefaultResponse();
+            Element responseDom = response.getDOM();
+
+            Response result = encrypter.encryptSAMLResponse(response, getCredential(), isKeyInfoDisplayedAsKeyValue());
+
+            Assert.assertSame(response, result);
+            Assert.assertSame(responseDom, result.getDOM());
+            verifyResponseAssertions(result);
+            Element encryptedAssertionDom = result.getEncryptedAssertions().get(0).getDOM();
+            Assert.assertSame(responseDom, encryptedAssertionDom.getParentNode());
+            Assert.assertEquals(0, responseDom.getElementsByTagNameNS(
+                    Assertion.DEFAULT_ELEMENT_NAME.getNamespaceURI(), Assertion.DEFAULT_ELEMENT_NAME.getLocalPart())
+                    .getLength());
+        }
+    }
+
     /**
      * Tests for the {@link SAMLAuthnResponseEncrypter} with Key Transport
      * with RSAOAEP 11 as key encryption algorithm
@@ -190,5 +254,18 @@ public class SAMLAuthnResponseKeyTransportEncrypterTest {
 
             Assert.fail("Should have thrown an error");
         }
+
+        /**
+         * Test method for {@link SAMLAuthnResponseEncrypter#encryptSAMLResponse(Response, Credential, boolean)}
+         * encrypting twice for the same certificate
+         * but with incompatible encryption algorithm
+         */
+        @Test
+        public void testEncryptSAMLResponseTwiceForSameCertificate() throws EncryptionException {
+            thrown.expect(EncryptionException.class);
+            encrypter.encryptSAMLResponse(getDefaultResponse(), getCredential(), false);
+
+            Assert.fail("Should have thrown an error");
+        }
     }
 }
@@ -95,12 +95,7 @@ public class JCacheConcurrentMapAdapter<K, V> implements Cache<K, V> {
 
     @Override
     public boolean putIfAbsent(K k, V v) {
-        if (!this.concurrentMap.containsKey(k)) {
-            this.concurrentMap.put(k, v);
-            return true;
-        } else {
-            return false;
-        }
+        return null == this.concurrentMap.putIfAbsent(k, v);
     }
 
     @Override
@@ -128,14 +123,7 @@ public class JCacheConcurrentMapAdapter<K, V> implements Cache<K, V> {
 
     @Override
     public boolean replace(K k, V v, V v1) {
-        V existentValue = this.concurrentMap.get(k);
-
-        if (existentValue.equals(v)) {
-            this.concurrentMap.replace(k, v1);
-            return true;
-        } else {
-            return false;
-        }
+        return this.concurrentMap.replace(k, v, v1);
     }
 
     @Override
@@ -44,9 +44,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * An immutable Map of {@link AttributeDefinition}s to {@link AttributeValue}s.
@@ -139,12 +137,6 @@ public final class ImmutableAttributeMap implements Serializable {
         @Nonnull
         private final Map<URI, AttributeDefinition<?>> nameUrisToDefinitions = new LinkedHashMap<>();
 
-        @Nonnull
-        private final Map<URI, ImmutableSet<? extends AttributeValue<?>>> nameUrisToValues = new LinkedHashMap<>();
-
-        @Nonnull
-        private final Map<String, Set<AttributeDefinition<?>>> friendlyNamesToDefinitions = new LinkedHashMap<>();
-
         public Builder() {
         }
 
@@ -227,16 +219,6 @@ public final class ImmutableAttributeMap implements Serializable {
             //noinspection unchecked unfortunate but due to the heterogeneous container pattern
             definitionsToValues.put(attribute, (ImmutableSet<? extends AttributeValue<?>>) (Object) values);
             nameUrisToDefinitions.put(nameUri, attribute);
-            //noinspection unchecked unfortunate but due to the heterogeneous container pattern
-            nameUrisToValues.put(nameUri, (ImmutableSet<? extends AttributeValue<?>>) (Object) values);
-
-            String friendlyName = attribute.getFriendlyName();
-            Set<AttributeDefinition<?>> attributeDefinitions = friendlyNamesToDefinitions.get(friendlyName);
-            if (null == attributeDefinitions) {
-                attributeDefinitions = new LinkedHashSet<>();
-                friendlyNamesToDefinitions.put(friendlyName, attributeDefinitions);
-            }
-            attributeDefinitions.add(attribute);
 
             return this;
         }
@@ -534,47 +516,90 @@ public final class ImmutableAttributeMap implements Serializable {
     private final transient ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>
             attributeMap;
 
-    @Nonnull
-    private final transient ImmutableMap<URI, AttributeDefinition<?>> nameUrisToDefinitions;
+    /*
+     * The indexes below are only needed by some of the lookups, whereas most maps are only iterated once: they are
+     * computed upon first use. They are immutable and only hold final fields, hence they are lazily initialized with
+     * the racy single-check idiom: concurrent first uses may compute them more than once, but always to equal values.
+     */
 
-    @Nonnull
-    private final transient ImmutableMap<URI, ImmutableSet<? extends AttributeValue<?>>> nameUrisToValues;
+    @Nullable
+    private transient ImmutableMap<URI, AttributeDefinition<?>> nameUrisToDefinitions;
 
-    @Nonnull
-    private final transient ImmutableMap<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>>
+    @Nullable
+    private transient ImmutableMap<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>>
             friendlyNameMap;
 
-    @Nonnull
-    private final transient ImmutableValueMap valueMap;
+    @Nullable
+    private transient ImmutableValueMap valueMap;
+
+    @Nullable
+    private transient ImmutableSet<ImmutableAttributeEntry<?>> entrySet;
 
     private ImmutableAttributeMap(@Nonnull Builder builder) {
         attributeMap = ImmutableMap.copyOf(builder.definitionsToValues);
-        nameUrisToDefinitions = ImmutableMap.copyOf(builder.nameUrisToDefinitions);
-        nameUrisToValues = ImmutableMap.copyOf(builder.nameUrisToValues);
-        ImmutableMap.Builder<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>>
-                friendlyNameMapBuilder = new ImmutableMap.Builder<>();
-        for (final Map.Entry<String, Set<AttributeDefinition<?>>> entry : builder.friendlyNamesToDefinitions.entrySet()) {
-            String friendlyName = entry.getKey();
-            Set<AttributeDefinition<?>> attributeDefinitions = entry.getValue();
-            ImmutableMap.Builder<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> subMapBuilder =
-                    new ImmutableMap.Builder<>();
-            for (final AttributeDefinition<?> attributeDefinition : attributeDefinitions) {
-                subMapBuilder.put(attributeDefinition, attributeMap.get(attributeDefinition));
+    }
+
+    @Nonnull
+    private ImmutableMap<URI, AttributeDefinition<?>> getNameUrisToDefinitions() {
+        ImmutableMap<URI, AttributeDefinition<?>> index = nameUrisToDefinitions;
+        if (null == index) {
+            ImmutableMap.Builder<URI, AttributeDefinition<?>> builder = ImmutableMap.builder();
+            for (final AttributeDefinition<?> attributeDefinition : attributeMap.keySet()) {
+                builder.put(attributeDefinition.getNameUri(), attributeDefinition);
+            }
+            index = builder.build();
+            nameUrisToDefinitions = index;
+        }
+        return index;
+    }
+
+    @Nonnull
+    private ImmutableMap<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>> getFriendlyNameMap() {
+        ImmutableMap<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>> index =
+                friendlyNameMap;
+        if (null == index) {
+            Map<String, ImmutableMap.Builder<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>>
+                    subMapBuilders = new LinkedHashMap<>();
+            for (final Map.Entry<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> entry : attributeMap.entrySet()) {
+                String friendlyName = entry.getKey().getFriendlyName();
+                ImmutableMap.Builder<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> subMapBuilder =
+                        subMapBuilders.get(friendlyName);
+                if (null == subMapBuilder) {
+                    subMapBuilder = new ImmutableMap.Builder<>();
+                    subMapBuilders.put(friendlyName, subMapBuilder);
+                }
+                subMapBuilder.put(entry.getKey(), entry.getValue());
+            }
+            ImmutableMap.Builder<String, ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>>
+                    friendlyNameMapBuilder = new ImmutableMap.Builder<>();
+            for (final Map.Entry<String, ImmutableMap.Builder<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>>> entry : subMapBuilders
+                    .entrySet()) {
+                friendlyNameMapBuilder.put(entry.getKey(), entry.getValue().build());
             }
-            friendlyNameMapBuilder.put(friendlyName, subMapBuilder.build());
+            index = friendlyNameMapBuilder.build();
+            friendlyNameMap = index;
         }
-        friendlyNameMap = friendlyNameMapBuilder.build();
-        valueMap = toValueMap(attributeMap);
+        return index;
     }
 
+    /**
+     * Returns the entries of this map, the returned set is computed upon first call and then reused.
+     *
+     * @return the entries of this map
+     */
     @Nonnull
     public ImmutableSet<ImmutableAttributeEntry<?>> entrySet() {
-        ImmutableSet.Builder<ImmutableAttributeEntry<?>> builder = ImmutableSet.builder();
-        for (final Map.Entry<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> entry : attributeMap.entrySet()) {
-            //noinspection unchecked
-            builder.add(new ImmutableAttributeEntry(entry.getKey(), entry.getValue()));
+        ImmutableSet<ImmutableAttributeEntry<?>> entries = entrySet;
+        if (null == entries) {
+            ImmutableSet.Builder<ImmutableAttributeEntry<?>> builder = ImmutableSet.builder();
+            for (final Map.Entry<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> entry : attributeMap.entrySet()) {
+                //noinspection unchecked
+                builder.add(new ImmutableAttributeEntry(entry.getKey(), entry.getValue()));
+            }
+            entries = builder.build();
+            entrySet = entries;
         }
-        return builder.build();
+        return entries;
     }
 
     /**
@@ -620,7 +645,7 @@ public final class ImmutableAttributeMap implements Serializable {
     @Nullable
     public ImmutableAttributeMap getAttributeValuesByFriendlyName(@Nonnull String friendlyName) {
         ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> subMap =
-                friendlyNameMap.get(friendlyName);
+                getFriendlyNameMap().get(friendlyName);
         if (null == subMap) {
             return null;
         }
@@ -635,7 +660,11 @@ public final class ImmutableAttributeMap implements Serializable {
 
     @Nullable
     public <T> ImmutableSet<? extends AttributeValue<T>> getAttributeValuesByNameUri(@Nonnull URI name) {
-        return (ImmutableSet<? extends AttributeValue<T>>) nameUrisToValues.get(name);
+        AttributeDefinition<?> attributeDefinition = getNameUrisToDefinitions().get(name);
+        if (null == attributeDefinition) {
+            return null;
+        }
+        return (ImmutableSet<? extends AttributeValue<T>>) attributeMap.get(attributeDefinition);
     }
 
     /**
@@ -664,7 +693,7 @@ public final class ImmutableAttributeMap implements Serializable {
      */
     @Nullable
     public <T> AttributeDefinition<T> getDefinitionByNameUri(@Nonnull URI name) {
-        return (AttributeDefinition<T>) nameUrisToDefinitions.get(name);
+        return (AttributeDefinition<T>) getNameUrisToDefinitions().get(name);
     }
 
     /**
@@ -688,7 +717,7 @@ public final class ImmutableAttributeMap implements Serializable {
     @Nullable
     public ImmutableSet<AttributeDefinition<?>> getDefinitionsByFriendlyName(@Nonnull String friendlyName) {
         ImmutableMap<AttributeDefinition<?>, ImmutableSet<? extends AttributeValue<?>>> subMap =
-                friendlyNameMap.get(friendlyName);
+                getFriendlyNameMap().get(friendlyName);
         if (null == subMap) {
             return null;
         }
@@ -722,7 +751,7 @@ public final class ImmutableAttributeMap implements Serializable {
      */
     @Nullable
     public <T> T getFirstValue(@Nonnull AttributeDefinition<T> attributeDefinition) {
-        return valueMap.getFirstValue(attributeDefinition);
+        return getValueMap().getFirstValue(attributeDefinition);
     }
 
     /**
@@ -733,7 +762,12 @@ public final class ImmutableAttributeMap implements Serializable {
      */
     @Nonnull
     public ImmutableValueMap getValueMap() {
-        return valueMap;
+        ImmutableValueMap index = valueMap;
+        if (null == index) {
+            index = toValueMap(attributeMap);
+            valueMap = index;
+        }
+        return index;
     }
 
     /**
@@ -746,7 +780,7 @@ public final class ImmutableAttributeMap implements Serializable {
      */
     @Nullable
     public <T> ImmutableSet<? extends T> getValues(@Nonnull AttributeDefinition<T> attributeDefinition) {
-        return valueMap.getValues(attributeDefinition);
+        return getValueMap().getValues(attributeDefinition);
     }
 
     /**
@@ -763,17 +797,17 @@ public final class ImmutableAttributeMap implements Serializable {
      */
     @Nullable
     public ImmutableValueMap getValuesByFriendlyName(@Nonnull String friendlyName) {
-        return valueMap.getValuesByFriendlyName(friendlyName);
+        return getValueMap().getValuesByFriendlyName(friendlyName);
     }
 
     @Nullable
     public <T> ImmutableSet<? extends T> getValuesByNameUri(@Nonnull String name) {
-        return valueMap.getValuesByNameUri(name);
+        return getValueMap().getValuesByNameUri(name);
     }
 
     @Nullable
     public <T> ImmutableSet<? extends T> getValuesByNameUri(@Nonnull URI name) {
-        return valueMap.getValuesByNameUri(name);
+        return getValueMap().getValuesByNameUri(name);
     }
 
     public boolean isEmpty() {
@@ -283,4 +283,26 @@ public final class ImmutableAttributeMapTest {
         ImmutableAttributeMap empty = ImmutableAttributeMap.of();
         assertTrue(empty.isEmpty());
     }
+
+    @Test
+    public void testEntrySetIsReused() throws Exception {
+        ImmutableAttributeMap attributeMap = newMapWithTwoValues();
+        ImmutableSet<ImmutableAttributeMap.ImmutableAttributeEntry<?>> entrySet = attributeMap.entrySet();
+
+        assertEquals(2, entrySet.size());
+        assertTrue(entrySet == attributeMap.entrySet());
+    }
+
+    @Test
+    public void testIndexesAreComputedOnFirstUse() throws Exception {
+        ImmutableAttributeMap attributeMap = newMapWithCollision();
+
+        assertThat(attributeMap.getAttributeValuesByFriendlyName("FirstName").getDefinitions(),
+                   is((Object) ImmutableSet.of(CURRENT_GIVEN_NAME, COLLIDING_GIVEN_NAME)));
+        assertThat(attributeMap.getAttributeValuesByNameUri(COLLIDING_GIVEN_NAME.getNameUri()),
+                   is((Object) ImmutableSet.of(new StringAttributeValue("Jean-Pierre", false))));
+        assertThat(attributeMap.getValuesByNameUri(COLLIDING_GIVEN_NAME.getNameUri()),
+                   is((Object) ImmutableSet.of("Jean-Pierre")));
+        assertTrue(attributeMap.getValueMap() == attributeMap.getValueMap());
+    }
 }
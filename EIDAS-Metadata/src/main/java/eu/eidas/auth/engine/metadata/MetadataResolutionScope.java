@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.metadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the metadata resolved by the current thread while it processes one message, so that the metadata of a peer
+ * is resolved only once per message however many times it is needed.
+ * <p>
+ * Usage:
+ * <pre>
+ * boolean opened = MetadataResolutionScope.open();
+ * try {
+ *     ...
+ * } finally {
+ *     if (opened) {
+ *         MetadataResolutionScope.close();
+ *     }
+ * }
+ * </pre>
+ * Nested operations reuse the scope opened by the outermost operation. Outside of a scope, nothing is memoized.
+ * <p>
+ * The threads performing part of an operation on behalf of the thread which opened the scope join it with {@link
+ * #join(Handle)} and leave it with {@link #close()}.
+ *
+ * @since 2.4
+ */
+public final class MetadataResolutionScope {
+
+    /**
+     * Metadata resolved with a given signer.
+     */
+    private static final class Resolution {
+
+        @Nonnull
+        private final MetadataSignerI metadataSigner;
+
+        @Nonnull
+        private final EidasMetadataParametersI metadataParameters;
+
+        Resolution(@Nonnull MetadataSignerI metadataSigner, @Nonnull EidasMetadataParametersI metadataParameters) {
+            this.metadataSigner = metadataSigner;
+            this.metadataParameters = metadataParameters;
+        }
+    }
+
+    /**
+     * A scope opened by one thread, which the threads working on behalf of it can join.
+     */
+    public static final class Handle {
+
+        @Nonnull
+        private final Map<String, Resolution> resolutions;
+
+        private Handle(@Nonnull Map<String, Resolution> resolutions) {
+            this.resolutions = resolutions;
+        }
+    }
+
+    /**
+     * The metadata resolved in the scope of the current thread, by URL, or {@code null} outside of a scope.
+     * <p>
+     * The map is shared by the threads which joined the scope.
+     */
+    private static final ThreadLocal<Map<String, Resolution>> RESOLUTIONS = new ThreadLocal<>();
+
+    private MetadataResolutionScope() {
+    }
+
+    /**
+     * Opens a scope for the current thread unless one is already open.
+     *
+     * @return {@code true} if this call opened the scope and must close it, {@code false} if a scope was already opened
+     * by an enclosing operation.
+     */
+    public static boolean open() {
+        if (null != RESOLUTIONS.get()) {
+            return false;
+        }
+        RESOLUTIONS.set(new ConcurrentHashMap<String, Resolution>());
+        return true;
+    }
+
+    /**
+     * Returns the scope open in the current thread.
+     *
+     * @return the scope, or {@code null} if no scope is open
+     */
+    @Nullable
+    public static Handle current() {
+        Map<String, Resolution> resolutions = RESOLUTIONS.get();
+        return null == resolutions ? null : new Handle(resolutions);
+    }
+
+    /**
+     * Makes the current thread join the given scope, opened by another thread, until it calls {@link #close()}.
+     *
+     * @param handle the scope to join
+     */
+    public static void join(@Nonnull Handle handle) {
+        RESOLUTIONS.set(handle.resolutions);
+    }
+
+    /**
+     * Closes the scope opened by {@link #open()}, discarding the memoized metadata, or leaves the scope joined by
+     * {@link #join(Handle)}.
+     */
+    public static void close() {
+        RESOLUTIONS.remove();
+    }
+
+    /**
+     * Returns the metadata already resolved in the current scope from the given URL with the given signer.
+     *
+     * @param url the URL of the metadata
+     * @param metadataSigner the signer which validated the metadata
+     * @return the memoized metadata, or {@code null} if there is none or if no scope is open
+     */
+    @Nullable
+    public static EidasMetadataParametersI get(@Nonnull String url, @Nonnull MetadataSignerI metadataSigner) {
+        Map<String, Resolution> resolutions = RESOLUTIONS.get();
+        if (null == resolutions) {
+            return null;
+        }
+        Resolution resolution = resolutions.get(url);
+        if (null == resolution || resolution.metadataSigner != metadataSigner) {
+            return null;
+        }
+        return resolution.metadataParameters;
+    }
+
+    /**
+     * Memoizes the metadata resolved from the given URL with the given signer, if a scope is open.
+     *
+     * @param url the URL of the metadata
+     * @param metadataSigner the signer which validated the metadata
+     * @param metadataParameters the resolved metadata
+     */
+    public static void put(@Nonnull String url,
+                           @Nonnull MetadataSignerI metadataSigner,
+                           @Nonnull EidasMetadataParametersI metadataParameters) {
+        Map<String, Resolution> resolutions = RESOLUTIONS.get();
+        if (null != resolutions) {
+            resolutions.put(url, new Resolution(metadataSigner, metadataParameters));
+        }
+    }
+}
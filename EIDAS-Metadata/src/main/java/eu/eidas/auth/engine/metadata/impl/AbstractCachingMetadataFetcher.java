@@ -18,21 +18,51 @@
  */
 package eu.eidas.auth.engine.metadata.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import eu.eidas.auth.commons.EidasErrorKey;
 import eu.eidas.auth.engine.metadata.EidasMetadataParametersI;
 import eu.eidas.auth.engine.metadata.MetadataClockI;
 import eu.eidas.auth.engine.metadata.MetadataFetcherI;
+import eu.eidas.auth.engine.metadata.MetadataResolutionScope;
 import eu.eidas.auth.engine.metadata.MetadataSignerI;
 import eu.eidas.engine.exceptions.EIDASMetadataException;
 import eu.eidas.engine.exceptions.EIDASMetadataProviderException;
+import eu.eidas.util.Preconditions;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Base implementation of the {@link MetadataFetcherI} interface with caching capabilities.
+ * <p>
+ * Concurrent requests for metadata which is not cached share a single retrieval per URL.
+ * <p>
+ * Metadata retrieved over HTTP by this fetcher is refreshed ahead of its expiry: once the {@link
+ * #setRefreshAheadFactor(double) refresh-ahead factor} of its lifetime until {@code validUntil} has elapsed, the cached
+ * metadata keeps being served while it is retrieved again in the background. Metadata is never served after its {@code
+ * validUntil}.
+ * <p>
+ * Metadata obtained from the cache can be kept for a short {@link #setNearCacheTimeToLiveMillis(long) time} in a
+ * node-local near-cache, which spares the remote lookups and the deserialization of distributed caches. The near-cache
+ * is disabled by default because it hides the updates made by the other nodes until it expires. Within a {@link
+ * MetadataResolutionScope}, the metadata of a URL is resolved only once.
  *
  * @since 1.1
  */
@@ -40,32 +70,123 @@ public abstract class AbstractCachingMetadataFetcher extends BaseMetadataFetcher
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractCachingMetadataFetcher.class);
 
+    /**
+     * Default fraction of the lifetime of the metadata after which it is refreshed in the background.
+     */
+    public static final double DEFAULT_REFRESH_AHEAD_FACTOR = 0.75d;
+
+    /**
+     * Default time to live in milliseconds of the metadata kept in the near-cache, which disables it.
+     */
+    public static final long DEFAULT_NEAR_CACHE_TIME_TO_LIVE_MILLIS = 0L;
+
+    /**
+     * Maximum number of metadata kept in the near-cache.
+     */
+    private static final int NEAR_CACHE_MAX_SIZE = 512;
+
+    /**
+     * Delay before retrying a failed background refresh.
+     */
+    static final long REFRESH_RETRY_DELAY_MILLIS = 30000L;
+
+    /**
+     * Marks a refresh which is already scheduled.
+     */
+    private static final long REFRESH_SCHEDULED = Long.MAX_VALUE;
+
+    /**
+     * Numbers the refresh threads of all the fetchers.
+     */
+    private static final AtomicInteger REFRESH_THREAD_COUNT = new AtomicInteger();
+
+    @Nonnull
+    private static ThreadPoolExecutor newRefreshExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+                                                             new ArrayBlockingQueue<Runnable>(256), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(@Nonnull Runnable runnable) {
+                Thread thread = new Thread(runnable, "MetadataRefresh-" + REFRESH_THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The retrievals in progress, by URL.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, FutureTask<EidasMetadataParametersI>> pendingRetrievals =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The time in milliseconds after which the metadata retrieved by this fetcher must be refreshed, by URL.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, Long> refreshTimes = new ConcurrentHashMap<>();
+
+    private volatile double refreshAheadFactor = DEFAULT_REFRESH_AHEAD_FACTOR;
+
+    @Nullable
+    private volatile Executor refreshExecutor;
+
+    /**
+     * Guards {@link #ownedRefreshExecutor} and {@link #closed}.
+     */
+    private final Object refreshExecutorLock = new Object();
+
+    /**
+     * The executor created by this fetcher when no executor is set, shut down by {@link #close()}.
+     */
+    @Nullable
+    private ThreadPoolExecutor ownedRefreshExecutor;
+
+    private boolean closed;
+
+    /**
+     * The node-local copies of the cached metadata, by URL, or {@code null} when disabled.
+     */
+    @Nullable
+    private volatile Cache<String, EidasMetadataParametersI> nearCache =
+            newNearCache(DEFAULT_NEAR_CACHE_TIME_TO_LIVE_MILLIS);
+
+    private final AtomicLong scopeHitCount = new AtomicLong();
+
+    private final AtomicLong nearCacheHitCount = new AtomicLong();
+
+    private final AtomicLong nearCacheMissCount = new AtomicLong();
+
     @Nonnull
     @Override
     public EidasMetadataParametersI getEidasMetadata(@Nonnull String url, @Nonnull MetadataSignerI metadataSigner, MetadataClockI metadataClock)
             throws EIDASMetadataException {
 
-        EidasMetadataParametersI metadataParameters = getFromCache(url, metadataSigner);
+        EidasMetadataParametersI metadataParameters = MetadataResolutionScope.get(url, metadataSigner);
+        if (null != metadataParameters) {
+            // already resolved while processing the current message
+            scopeHitCount.incrementAndGet();
+            return metadataParameters;
+        }
+
+        metadataParameters = getFromNearCacheOrCache(url, metadataSigner);
 
         if (null != metadataParameters && !isValidUntilNow(metadataParameters, metadataClock)) {
             // cached metadata has expired:
             removeFromCache(url);
+            invalidateNearCache(url);
+            refreshTimes.remove(url);
             metadataParameters = null;
             LOG.info("Clearing expired metadata from cache for the url " + url);
         }
 
         if (metadataParameters == null && isHttpRetrievalEnabled()) {
-
-            EidasMetadataParametersI fetchedMetadataParameters = super.getEidasMetadata(url, metadataSigner, metadataClock);
-
-            if (isValidUntilNow(fetchedMetadataParameters, metadataClock)) {
-                putInCache(url, fetchedMetadataParameters);
-                metadataParameters = fetchedMetadataParameters;
-                LOG.info("Obtained entity descriptor from metadata retrieved from url " + url);
-            } else {
-                metadataParameters = null;
-                LOG.info("Invalid (expired) metadata received from " + url);
-            }
+            metadataParameters = retrieveOnce(url, metadataSigner, metadataClock);
+        } else if (metadataParameters != null && isHttpRetrievalEnabled()) {
+            refreshAheadIfDue(url, metadataSigner, metadataClock);
         }
 
         if (metadataParameters == null) {
@@ -73,9 +194,302 @@ public abstract class AbstractCachingMetadataFetcher extends BaseMetadataFetcher
                     EidasErrorKey.SAML_ENGINE_NO_METADATA.errorMessage(),
                     "No entity descriptor for URL " + url);
         }
+        MetadataResolutionScope.put(url, metadataSigner, metadataParameters);
+        return metadataParameters;
+    }
+
+    @Nullable
+    private EidasMetadataParametersI getFromNearCacheOrCache(@Nonnull String url,
+                                                             @Nonnull MetadataSignerI metadataSigner)
+            throws EIDASMetadataException {
+        Cache<String, EidasMetadataParametersI> cache = nearCache;
+        if (null == cache) {
+            return getFromCache(url, metadataSigner);
+        }
+        EidasMetadataParametersI metadataParameters = cache.getIfPresent(url);
+        if (null != metadataParameters) {
+            nearCacheHitCount.incrementAndGet();
+            return metadataParameters;
+        }
+        nearCacheMissCount.incrementAndGet();
+        metadataParameters = getFromCache(url, metadataSigner);
+        if (null != metadataParameters) {
+            cache.put(url, metadataParameters);
+        }
         return metadataParameters;
     }
 
+    /**
+     * Discards the node-local copy of the metadata of the given URL, to be called whenever the cached metadata of this
+     * URL is changed or removed.
+     *
+     * @param url the URL of the metadata
+     * @since 2.4
+     */
+    protected void invalidateNearCache(@Nonnull String url) {
+        Cache<String, EidasMetadataParametersI> cache = nearCache;
+        if (null != cache) {
+            cache.invalidate(url);
+        }
+    }
+
+    @Nullable
+    private static Cache<String, EidasMetadataParametersI> newNearCache(long timeToLiveMillis) {
+        if (timeToLiveMillis <= 0L) {
+            return null;
+        }
+        return CacheBuilder.newBuilder()
+                .maximumSize(NEAR_CACHE_MAX_SIZE)
+                .expireAfterWrite(timeToLiveMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Retrieves the metadata from the given URL, concurrent callers for the same URL sharing the same retrieval.
+     *
+     * @return the retrieved metadata or {@code null} if the retrieved metadata has already expired
+     */
+    @Nullable
+    private EidasMetadataParametersI retrieveOnce(@Nonnull final String url,
+                                                  @Nonnull final MetadataSignerI metadataSigner,
+                                                  final MetadataClockI metadataClock) throws EIDASMetadataException {
+        FutureTask<EidasMetadataParametersI> retrieval =
+                new FutureTask<>(new Callable<EidasMetadataParametersI>() {
+
+                    @Override
+                    public EidasMetadataParametersI call() throws EIDASMetadataException {
+                        return retrieveAndCache(url, metadataSigner, metadataClock);
+                    }
+                });
+        FutureTask<EidasMetadataParametersI> pendingRetrieval = pendingRetrievals.putIfAbsent(url, retrieval);
+        if (null == pendingRetrieval) {
+            try {
+                retrieval.run();
+            } finally {
+                pendingRetrievals.remove(url, retrieval);
+            }
+            pendingRetrieval = retrieval;
+        } else {
+            LOG.debug("Waiting for the pending retrieval of the metadata from url " + url);
+        }
+        try {
+            return pendingRetrieval.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EIDASMetadataProviderException(EidasErrorKey.SAML_ENGINE_NO_METADATA.errorCode(),
+                    EidasErrorKey.SAML_ENGINE_NO_METADATA.errorMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EIDASMetadataException) {
+                throw (EIDASMetadataException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EIDASMetadataProviderException(EidasErrorKey.SAML_ENGINE_NO_METADATA.errorCode(),
+                    EidasErrorKey.SAML_ENGINE_NO_METADATA.errorMessage(), cause);
+        }
+    }
+
+    @Nullable
+    private EidasMetadataParametersI retrieveAndCache(@Nonnull String url,
+                                                      @Nonnull MetadataSignerI metadataSigner,
+                                                      MetadataClockI metadataClock) throws EIDASMetadataException {
+        EidasMetadataParametersI fetchedMetadataParameters = retrieveMetadata(url, metadataSigner, metadataClock);
+
+        if (isValidUntilNow(fetchedMetadataParameters, metadataClock)) {
+            putInCache(url, fetchedMetadataParameters);
+            Cache<String, EidasMetadataParametersI> cache = nearCache;
+            if (null != cache) {
+                cache.put(url, fetchedMetadataParameters);
+            }
+            scheduleRefreshTime(url, fetchedMetadataParameters, metadataClock);
+            LOG.info("Obtained entity descriptor from metadata retrieved from url " + url);
+            return fetchedMetadataParameters;
+        }
+        refreshTimes.remove(url);
+        LOG.info("Invalid (expired) metadata received from " + url);
+        return null;
+    }
+
+    /**
+     * Retrieves the metadata from the given URL without using the cache.
+     *
+     * @param url the URL of the metadata
+     * @param metadataSigner the signer used to validate the signature of the metadata
+     * @param metadataClock the clock used to validate the metadata
+     * @return the retrieved metadata
+     * @throws EIDASMetadataException if the metadata cannot be retrieved or is invalid
+     */
+    @Nonnull
+    protected EidasMetadataParametersI retrieveMetadata(@Nonnull String url,
+                                                        @Nonnull MetadataSignerI metadataSigner,
+                                                        MetadataClockI metadataClock) throws EIDASMetadataException {
+        return super.getEidasMetadata(url, metadataSigner, metadataClock);
+    }
+
+    private void scheduleRefreshTime(@Nonnull String url,
+                                     @Nonnull EidasMetadataParametersI metadataParameters,
+                                     MetadataClockI metadataClock) {
+        DateTime validUntil = metadataParameters.getValidUntil();
+        double factor = refreshAheadFactor;
+        if (null == validUntil || factor <= 0d || factor >= 1d) {
+            refreshTimes.remove(url);
+            return;
+        }
+        long now = metadataClock.getCurrentTime().getMillis();
+        long lifetime = validUntil.getMillis() - now;
+        refreshTimes.put(url, now + (long) (lifetime * factor));
+    }
+
+    private void refreshAheadIfDue(@Nonnull final String url,
+                                   @Nonnull final MetadataSignerI metadataSigner,
+                                   final MetadataClockI metadataClock) {
+        Long refreshTime = refreshTimes.get(url);
+        if (null == refreshTime || metadataClock.getCurrentTime().getMillis() < refreshTime) {
+            return;
+        }
+        // only one caller schedules the refresh:
+        if (!refreshTimes.replace(url, refreshTime, REFRESH_SCHEDULED)) {
+            return;
+        }
+        Runnable refresh = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (null == retrieveOnce(url, metadataSigner, metadataClock)) {
+                        retryRefreshLater(url, metadataClock);
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Unable to refresh the metadata from url " + url + ", the cached metadata is still used: "
+                                     + e, e);
+                    retryRefreshLater(url, metadataClock);
+                }
+            }
+        };
+        try {
+            getRefreshExecutor().execute(refresh);
+            LOG.debug("Refreshing the metadata from url " + url + " in the background");
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Unable to schedule the refresh of the metadata from url " + url + ": " + e);
+            retryRefreshLater(url, metadataClock);
+        }
+    }
+
+    private void retryRefreshLater(@Nonnull String url, MetadataClockI metadataClock) {
+        long retryTime = metadataClock.getCurrentTime().getMillis() + REFRESH_RETRY_DELAY_MILLIS;
+        refreshTimes.replace(url, REFRESH_SCHEDULED, retryTime);
+    }
+
+    @Nonnull
+    private Executor getRefreshExecutor() {
+        Executor executor = refreshExecutor;
+        if (null != executor) {
+            return executor;
+        }
+        synchronized (refreshExecutorLock) {
+            if (closed) {
+                throw new RejectedExecutionException("The metadata fetcher is closed");
+            }
+            if (null == ownedRefreshExecutor) {
+                ownedRefreshExecutor = newRefreshExecutor();
+            }
+            return ownedRefreshExecutor;
+        }
+    }
+
+    /**
+     * Stops refreshing the metadata in the background, then releases the resources of the {@link BaseMetadataFetcher},
+     * to be called when the fetcher is discarded.
+     * <p>
+     * The threads created by this fetcher are stopped, an executor set with {@link #setRefreshExecutor(Executor)} is
+     * left to its owner.
+     *
+     * @since 2.4
+     */
+    @Override
+    public void close() {
+        ThreadPoolExecutor executor;
+        synchronized (refreshExecutorLock) {
+            closed = true;
+            executor = ownedRefreshExecutor;
+            ownedRefreshExecutor = null;
+        }
+        if (null != executor) {
+            executor.shutdownNow();
+        }
+        super.close();
+    }
+
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    /**
+     * Sets the fraction of the lifetime of the metadata, from its retrieval until its {@code validUntil}, after which
+     * the metadata is refreshed in the background.
+     *
+     * @param refreshAheadFactor the fraction, refreshing ahead is disabled when it is not between 0 and 1 exclusive
+     */
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    /**
+     * Sets the executor refreshing the metadata in the background, which is not shut down by {@link #close()}.
+     * <p>
+     * By default, the fetcher creates its own pool of daemon threads, which is shut down by {@link #close()}.
+     *
+     * @param refreshExecutor the executor
+     */
+    public void setRefreshExecutor(@Nonnull Executor refreshExecutor) {
+        Preconditions.checkNotNull(refreshExecutor, "refreshExecutor");
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Sets how long the metadata obtained from the cache is kept in the node-local near-cache.
+     * <p>
+     * This bounds how long a change of the metadata made by another node in a distributed cache can remain unnoticed.
+     * The near-cache is disabled by default.
+     *
+     * @param nearCacheTimeToLiveMillis the time to live in milliseconds, the near-cache is disabled when it is not
+     * positive
+     * @since 2.4
+     */
+    public void setNearCacheTimeToLiveMillis(long nearCacheTimeToLiveMillis) {
+        nearCache = newNearCache(nearCacheTimeToLiveMillis);
+    }
+
+    /**
+     * @return the number of resolutions served by the current {@link MetadataResolutionScope}, each of which spared
+     * a cache lookup
+     * @since 2.4
+     */
+    public long getScopeHitCount() {
+        return scopeHitCount.get();
+    }
+
+    /**
+     * @return the number of lookups served by the near-cache, each of which spared a cache lookup
+     * @since 2.4
+     */
+    public long getNearCacheHitCount() {
+        return nearCacheHitCount.get();
+    }
+
+    /**
+     * @return the number of lookups which were not served by the near-cache and went to the cache
+     * @since 2.4
+     */
+    public long getNearCacheMissCount() {
+        return nearCacheMissCount.get();
+    }
+
     @Nullable
     protected abstract EidasMetadataParametersI getFromCache(@Nonnull String url, @Nonnull MetadataSignerI metadataSigner) throws EIDASMetadataException;
 
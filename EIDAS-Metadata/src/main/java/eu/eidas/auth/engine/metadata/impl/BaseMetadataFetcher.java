@@ -17,8 +17,14 @@
  */
 package eu.eidas.auth.engine.metadata.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import eu.eidas.auth.commons.EidasErrorKey;
 import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.auth.commons.io.ReloadableProperties;
@@ -35,7 +41,9 @@ import net.shibboleth.utilities.java.support.httpclient.HttpClientBuilder;
 import net.shibboleth.utilities.java.support.httpclient.TLSSocketFactory;
 import net.shibboleth.utilities.java.support.httpclient.TLSSocketFactoryBuilder;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.joda.time.DateTime;
 import org.opensaml.core.xml.XMLObject;
@@ -45,14 +53,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 /**
@@ -60,6 +77,13 @@ import java.util.regex.Pattern;
  * <p>
  * This default implementation only fetches the metadata from the URL and validates its digital signature using the
  * {@link MetadataSignerI#validateMetadataSignature(SignableXMLObject)}.
+ * <p>
+ * The metadata is retrieved with HTTP clients shared by TLS configuration, which reuse their connections and TLS
+ * sessions. These clients and the metadata providers are released by {@link #close()}. The provider of each URL is kept between retrievals so that unchanged metadata is retrieved with a
+ * conditional request and its signature is not validated again.
+ * <p>
+ * Metadata whose raw bytes have already been verified with the same signer is neither verified nor converted again,
+ * even when it has been downloaded again.
  *
  * @since 1.1
  */
@@ -73,25 +97,137 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
 
     private static final Pattern TLS_SPLITTER = Pattern.compile("[,;]");
 
+    /**
+     * Maximum number of pooled connections of each shared HTTP client.
+     */
+    private static final int MAX_CONNECTIONS_TOTAL = 100;
+
+    /**
+     * Maximum number of pooled connections to the same host of each shared HTTP client.
+     */
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 4;
+
+    /**
+     * Maximum number of metadata sources kept by a fetcher.
+     */
+    private static final int MAX_METADATA_SOURCES = 512;
+
+
+    /**
+     * The metadata provider of a URL kept between two retrievals, with the metadata it returned last and the signer
+     * which validated it.
+     * <p>
+     * Accessed while holding its lock.
+     */
+    private static final class HttpMetadataSource {
+
+        @Nonnull
+        private final DomCachingHttpMetadataProvider provider;
+
+        private boolean initialized;
+
+        private boolean destroyed;
+
+        @Nullable
+        private EntityDescriptor processedMetadata;
+
+        @Nullable
+        private MetadataSignerI validatingSigner;
+
+        HttpMetadataSource(@Nonnull DomCachingHttpMetadataProvider provider) {
+            this.provider = provider;
+        }
+
+        boolean isDestroyed() {
+            return destroyed;
+        }
+
+        void destroy() {
+            if (!destroyed) {
+                destroyed = true;
+                processedMetadata = null;
+                validatingSigner = null;
+                if (initialized) {
+                    // a provider which failed to initialize has nothing to release
+                    provider.destroy();
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private final Cache<String, HttpMetadataSource> metadataSources = CacheBuilder.newBuilder()
+            .maximumSize(MAX_METADATA_SOURCES)
+            .removalListener(new RemovalListener<String, HttpMetadataSource>() {
+                @Override
+                public void onRemoval(RemovalNotification<String, HttpMetadataSource> notification) {
+                    HttpMetadataSource source = notification.getValue();
+                    if (null != source) {
+                        synchronized (source) {
+                            source.destroy();
+                        }
+                    }
+                }
+            })
+            .build();
+
+    /**
+     * The HTTP clients shared by the metadata sources of this fetcher, by TLS configuration.
+     */
+    @Nonnull
+    private final ConcurrentMap<List<String>, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+    /**
+     * Guards {@link #providerTimer} and {@link #closed}.
+     */
+    private final Object lifecycleLock = new Object();
+
+    /**
+     * The timer of the metadata providers, created with the first provider and cancelled by {@link #close()}.
+     */
+    @Nullable
+    private Timer providerTimer;
+
+    private boolean closed;
+
+    /**
+     * The metadata already verified and converted, by content.
+     */
+    @Nonnull
+    private final MetadataVerificationCache verificationCache = new MetadataVerificationCache();
+
     private ReloadableProperties whitelistConfigProperties;
 
     protected EntityDescriptor fetchEntityDescriptor(@Nonnull String url) throws EIDASMetadataProviderException {
         validateUrl(url);
-        EntityDescriptor entityDescriptor;
-        HttpClientBuilder httpClientBuilder = new HttpClientBuilder();
-        // EIDINT-2590 - Support for proxy configuration by using system properties
-        httpClientBuilder.setUseSystemProperties(true);
-
-        DomCachingHttpMetadataProvider provider = null;
+        for (;;) {
+            HttpMetadataSource source = getMetadataSource(url);
+            synchronized (source) {
+                if (!source.isDestroyed()) {
+                    return fetchEntityDescriptor(url, source);
+                }
+            }
+        }
+    }
 
+    /**
+     * Refreshes the given source, the caller must hold the lock of the source.
+     */
+    @Nonnull
+    private EntityDescriptor fetchEntityDescriptor(@Nonnull String url, @Nonnull HttpMetadataSource source)
+            throws EIDASMetadataProviderException {
+        EntityDescriptor entityDescriptor;
+        DomCachingHttpMetadataProvider provider = source.provider;
+        boolean success = false;
         try {
-            // This registers a socket factory for the https scheme:
-            // specifying a null X509KeyManager and a null X509TrustManager is going to use the default ones from the JVM:
-            final TLSSocketFactory factory = newSslSocketFactory();
-            httpClientBuilder.setTLSSocketFactory(factory);
-            provider = new DomCachingHttpMetadataProvider(httpClientBuilder.buildClient(), url);
-            provider.setParserPool(OpenSamlHelper.getSecuredParserPool());
-            provider.initializeNonFinal();
+            if (source.initialized) {
+                // conditional request: unchanged metadata is answered with a "304 Not Modified"
+                provider.refresh();
+            } else {
+                provider.setParserPool(getParserPool());
+                provider.initializeNonFinal();
+                source.initialized = true;
+            }
 
             XMLObject metadata = provider.getMetadata();
             if (metadata instanceof EntityDescriptor) {
@@ -110,6 +246,9 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
                         EidasErrorKey.SAML_ENGINE_INVALID_METADATA.errorMessage(),
                         "Invalid entity descriptor for URL \"" + url + "\"");
             }
+            success = true;
+        } catch (EIDASMetadataProviderException e) {
+            throw e;
         } catch (ResolverException e) {
             LOG.error("Error fetching metadata from URL \"" + url + "\": " + e, e);
             throw new EIDASMetadataProviderException(EidasErrorKey.SAML_ENGINE_INVALID_METADATA.errorCode(),
@@ -119,13 +258,118 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
         	LOG.error("Exception fetching metadata from URL \"" + url + "\": " + e, e);
             throw new EIDASMetadataProviderException(e.getMessage(), e);
         } finally {
-            if (provider != null) {
-                provider.destroy();
+            if (!success) {
+                // the next retrieval starts from scratch
+                source.destroy();
             }
         }
         return entityDescriptor;
     }
 
+    /**
+     * Returns the source of the metadata at the given URL, kept between retrievals so that unchanged metadata is
+     * neither downloaded nor validated again.
+     */
+    @Nonnull
+    private HttpMetadataSource getMetadataSource(@Nonnull final String url) throws EIDASMetadataProviderException {
+        HttpMetadataSource source = metadataSources.getIfPresent(url);
+        if (null != source && !source.isDestroyed()) {
+            return source;
+        }
+        if (null != source) {
+            metadataSources.invalidate(url);
+        }
+        try {
+            return metadataSources.get(url, new Callable<HttpMetadataSource>() {
+                @Override
+                public HttpMetadataSource call() throws Exception {
+                    return new HttpMetadataSource(
+                            new DomCachingHttpMetadataProvider(getProviderTimer(), getHttpClient(), url));
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            LOG.error("Exception fetching metadata from URL \"" + url + "\": " + e.getCause(), e.getCause());
+            throw new EIDASMetadataProviderException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Nonnull
+    private Timer getProviderTimer() {
+        synchronized (lifecycleLock) {
+            if (closed) {
+                throw new IllegalStateException("The metadata fetcher is closed");
+            }
+            if (null == providerTimer) {
+                providerTimer = new Timer("MetadataProviderTimer", true);
+            }
+            return providerTimer;
+        }
+    }
+
+    /**
+     * Releases the metadata providers, their timer and the HTTP clients of this fetcher, to be called when the fetcher
+     * is discarded.
+     * <p>
+     * Metadata can no longer be retrieved over HTTP once the fetcher is closed.
+     *
+     * @since 2.4
+     */
+    public void close() {
+        Timer timer;
+        synchronized (lifecycleLock) {
+            closed = true;
+            timer = providerTimer;
+            providerTimer = null;
+        }
+        metadataSources.invalidateAll();
+        if (null != timer) {
+            timer.cancel();
+        }
+        for (final HttpClient httpClient : httpClients.values()) {
+            if (httpClient instanceof Closeable) {
+                try {
+                    ((Closeable) httpClient).close();
+                } catch (IOException e) {
+                    LOG.warn("Unable to close the metadata HTTP client: " + e, e);
+                }
+            }
+        }
+        httpClients.clear();
+    }
+
+    /**
+     * Returns the HTTP client shared by the metadata sources with the same TLS configuration.
+     * <p>
+     * The client keeps its connections alive in a pool limited per host, and its single TLS socket factory allows TLS
+     * sessions to be resumed.
+     */
+    @Nonnull
+    private HttpClient getHttpClient() throws Exception {
+        List<String> tlsConfiguration = Arrays.asList(Arrays.toString(getTlsEnabledProtocols()),
+                                                      Arrays.toString(getTlsEnabledCiphers()),
+                                                      String.valueOf(isHostnameVerificationDisabled()));
+        HttpClient httpClient = httpClients.get(tlsConfiguration);
+        if (null == httpClient) {
+            HttpClientBuilder httpClientBuilder = new HttpClientBuilder();
+            // EIDINT-2590 - Support for proxy configuration by using system properties
+            httpClientBuilder.setUseSystemProperties(true);
+            httpClientBuilder.setConnectionCloseAfterResponse(false);
+            httpClientBuilder.setMaxConnectionsTotal(MAX_CONNECTIONS_TOTAL);
+            httpClientBuilder.setMaxConnectionsPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+            // This registers a socket factory for the https scheme:
+            // specifying a null X509KeyManager and a null X509TrustManager is going to use the default ones from the JVM:
+            httpClientBuilder.setTLSSocketFactory(newSslSocketFactory());
+            HttpClient newHttpClient = httpClientBuilder.buildClient();
+            httpClient = httpClients.putIfAbsent(tlsConfiguration, newHttpClient);
+            if (null == httpClient) {
+                httpClient = newHttpClient;
+            } else if (newHttpClient instanceof Closeable) {
+                ((Closeable) newHttpClient).close();
+            }
+        }
+        return httpClient;
+    }
+
     private void validateUrl(@Nonnull String url) throws EIDASMetadataProviderException {
         if (!isAllowedMetadataUrl(url)) {
             throw new EIDASMetadataProviderException(EidasErrorKey.SAML_ENGINE_INVALID_METADATA_SOURCE.errorCode(),
@@ -144,20 +388,82 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
         }
     }
 
+    @Nonnull
+    private static List<X509Certificate> getSigningCertificates(@Nonnull EntityDescriptor entityDescriptor)
+            throws EIDASMetadataException {
+        try {
+            return MetadataVerificationCache.getSigningCertificates(entityDescriptor);
+        } catch (CertificateException e) {
+            throw new EIDASMetadataException("Invalid metadata signing certificate", e);
+        }
+    }
+
     @Nonnull
     @Override
     public EidasMetadataParametersI getEidasMetadata(@Nonnull String url, @Nonnull MetadataSignerI metadataSigner, MetadataClockI metadataClock)
             throws EIDASMetadataException {
-        // 1) fetch
-        EntityDescriptor entityDescriptor = fetchEntityDescriptor(url);
-        // 2) validate the digital signature
-        if (mustValidateSignature(url)) {
-            metadataSigner.validateMetadataSignature(entityDescriptor);
+        validateUrl(url);
+        for (;;) {
+            HttpMetadataSource source = getMetadataSource(url);
+            synchronized (source) {
+                if (source.isDestroyed()) {
+                    continue;
+                }
+                // 1) fetch
+                EntityDescriptor entityDescriptor = fetchEntityDescriptor(url, source);
+                MetadataSignerI verifyingSigner = mustValidateSignature(url) ? metadataSigner : null;
+                HashCode metadataDigest = source.provider.getMetadataDigest();
+                MetadataVerificationCache.Key key =
+                        null == metadataDigest ? null : new MetadataVerificationCache.Key(metadataDigest, verifyingSigner);
+                long nowMillis = System.currentTimeMillis();
+                EidasMetadataParametersI eidasMetadataParameters =
+                        null == key ? null : verificationCache.get(key, nowMillis);
+                if (null == eidasMetadataParameters) {
+                    List<X509Certificate> signingCertificates = null == verifyingSigner
+                            ? Collections.<X509Certificate>emptyList() : getSigningCertificates(entityDescriptor);
+                    if (entityDescriptor == source.processedMetadata) {
+                        if (null != verifyingSigner && (verifyingSigner != source.validatingSigner
+                                || !MetadataVerificationCache.isValidAt(signingCertificates, nowMillis))) {
+                            // the DOM has been released: retrieve the metadata again to validate its signature
+                            source.destroy();
+                            continue;
+                        }
+                        // unchanged metadata whose signature has already been validated by the same signer
+                    } else if (null != verifyingSigner) {
+                        // 2) validate the digital signature
+                        verifyingSigner.validateMetadataSignature(entityDescriptor);
+                    }
+                    eidasMetadataParameters = MetadataUtil.convertEntityDescriptor(entityDescriptor);
+                    if (null != key) {
+                        verificationCache.put(key, eidasMetadataParameters, signingCertificates, nowMillis);
+                    }
+                }
+                if (entityDescriptor != source.processedMetadata) {
+                    // 3) release the DOM
+                    entityDescriptor.releaseDOM();
+                    source.processedMetadata = entityDescriptor;
+                    source.validatingSigner = verifyingSigner;
+                }
+                return eidasMetadataParameters;
+            }
         }
-        // 3) release the DOM
-        entityDescriptor.releaseDOM();
-        final EidasMetadataParametersI eidasMetadataParameters = MetadataUtil.convertEntityDescriptor(entityDescriptor);
-        return eidasMetadataParameters;
+    }
+
+    /**
+     * @return the number of retrievals of metadata whose signature had already been verified and which had already
+     * been converted
+     * @since 2.4
+     */
+    public long getVerificationCacheHitCount() {
+        return verificationCache.getHitCount();
+    }
+
+    /**
+     * @return the number of retrievals of metadata whose signature had to be verified or which had to be converted
+     * @since 2.4
+     */
+    public long getVerificationCacheMissCount() {
+        return verificationCache.getMissCount();
     }
 
     protected boolean isAllowedMetadataUrl(@Nonnull String url) {
@@ -179,6 +485,15 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
         return StringUtils.isNotBlank(url) && WhitelistUtil.isWhitelisted(url, getWhitelistURLs());
     }
 
+    /**
+     * @return the parser pool used to parse the retrieved metadata
+     * @since 2.4
+     */
+    @Nonnull
+    protected ParserPool getParserPool() {
+        return OpenSamlHelper.getSecuredParserPool();
+    }
+
     protected boolean mustUseHttps() {
         return true;
     }
@@ -232,9 +547,13 @@ public abstract class BaseMetadataFetcher implements MetadataFetcherI {
         return true;
     }
 
+    private static boolean isHostnameVerificationDisabled() {
+        return Boolean.getBoolean(OpenSamlHelper.SYSPROP_HTTPCLIENT_HTTPS_DISABLE_HOSTNAME_VERIFICATION);
+    }
+
     protected TLSSocketFactory newSslSocketFactory() {
         X509HostnameVerifier hostnameVerifier;
-        if (!Boolean.getBoolean(OpenSamlHelper.SYSPROP_HTTPCLIENT_HTTPS_DISABLE_HOSTNAME_VERIFICATION)) {
+        if (!isHostnameVerificationDisabled()) {
             hostnameVerifier = TLSSocketFactory.STRICT_HOSTNAME_VERIFIER;
         } else {
             hostnameVerifier = TLSSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
@@ -88,6 +88,7 @@ public class CachingMetadataFetcher extends AbstractCachingMetadataFetcher imple
         if (null != cache) {
             EidasMetadataParametersI eidasMetadataParameters = MetadataUtil.convertEntityDescriptor(ed);
             cache.putEidasMetadataParameters(ed.getEntityID(), eidasMetadataParameters);
+            invalidateNearCache(ed.getEntityID());
         }
     }
 
@@ -181,6 +182,7 @@ public class CachingMetadataFetcher extends AbstractCachingMetadataFetcher imple
     @Override
     public void remove(String entityID) {
         removeFromCache(entityID);
+        invalidateNearCache(entityID);
     }
 
     @Override
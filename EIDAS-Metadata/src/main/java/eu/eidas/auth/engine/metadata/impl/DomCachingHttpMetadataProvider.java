@@ -16,25 +16,51 @@
 package eu.eidas.auth.engine.metadata.impl;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 import org.apache.http.client.HttpClient;
 import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.saml.metadata.resolver.impl.HTTPMetadataResolver;
+import org.joda.time.DateTime;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 
+import javax.annotation.Nullable;
+import java.util.Timer;
+import java.util.concurrent.TimeUnit;
+
 /**
  * An HTTPMetadataProvider which does not release the DOM after parsing.
+ * <p>
+ * Providers created with a shared {@link Timer} are refreshed explicitly by their owner and never schedule a
+ * refresh on their own.
  *
  * @author vanegdi on 16/08/2015.
  */
 final class DomCachingHttpMetadataProvider extends HTTPMetadataResolver {
 
+    /**
+     * Delay of the scheduled refreshes of the providers which are refreshed explicitly, long enough to never happen.
+     */
+    private static final long EXPLICIT_REFRESH_DELAY_MILLIS = TimeUnit.DAYS.toMillis(365L);
+
     CriteriaSet c = new CriteriaSet();
     String url;
     String entityId;
 
+    /**
+     * Whether the owner of this provider calls {@link #refresh()} itself.
+     */
+    private boolean explicitlyRefreshed;
+
+    /**
+     * The SHA-256 digest of the raw bytes of the metadata currently held by this provider.
+     */
+    @Nullable
+    private volatile HashCode metadataDigest;
+
     /**
      * Contructor that sets the entityId to the URL.
      *
@@ -61,6 +87,47 @@ final class DomCachingHttpMetadataProvider extends HTTPMetadataResolver {
         this.entityId = entityId;
     }
 
+    /**
+     * Contructor for a provider which is only refreshed explicitly and which is kept between refreshes so that
+     * unchanged metadata is retrieved with conditional requests.
+     *
+     * @param timer the shared timer, used instead of a new timer thread per provider
+     * @param client the http client
+     * @param url the url of the metadata
+     * @throws ResolverException
+     */
+    DomCachingHttpMetadataProvider(Timer timer, HttpClient client, String url) throws ResolverException {
+        super(timer, client, url);
+        this.url = url;
+        this.entityId = url;
+        explicitlyRefreshed = true;
+    }
+
+    @Override
+    protected long computeNextRefreshDelay(DateTime expectedExpiration) {
+        if (explicitlyRefreshed) {
+            return EXPLICIT_REFRESH_DELAY_MILLIS;
+        }
+        return super.computeNextRefreshDelay(expectedExpiration);
+    }
+
+    @Override
+    protected void processNonExpiredMetadata(String metadataIdentifier, DateTime refreshStart, byte[] metadataBytes,
+                                             XMLObject metadata) throws ResolverException {
+        super.processNonExpiredMetadata(metadataIdentifier, refreshStart, metadataBytes, metadata);
+        // only reached when the new metadata replaced the previous one
+        metadataDigest = Hashing.sha256().hashBytes(metadataBytes);
+    }
+
+    /**
+     * @return the SHA-256 digest of the raw bytes of the metadata currently held by this provider, or {@code null} if
+     * no metadata has been retrieved yet.
+     */
+    @Nullable
+    HashCode getMetadataDigest() {
+        return metadataDigest;
+    }
+
     protected void releaseMetadataDOM(XMLObject metadata) { /* DON'T - because of the signature validation happens later */}
 
     public void initializeNonFinal() throws ComponentInitializationException {
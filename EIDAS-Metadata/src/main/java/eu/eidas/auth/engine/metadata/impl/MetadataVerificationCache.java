@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.metadata.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import eu.eidas.auth.engine.metadata.EidasMetadataParametersI;
+import eu.eidas.auth.engine.metadata.MetadataSignerI;
+import eu.eidas.util.Preconditions;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.SignableXMLObject;
+import org.opensaml.xmlsec.signature.Signature;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded content-addressed cache of the metadata whose signature has already been verified and which has already been
+ * converted into {@link EidasMetadataParametersI}.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the raw metadata bytes and by the signer which verified them. The signer
+ * stands for the trust anchors: reloading the trusted certificates creates a new signer, which therefore never reuses
+ * the verdicts obtained against the previous ones.
+ * <p>
+ * An entry does not outlive the certificates which signed the metadata: it is only served while the current time is
+ * within the validity period of all of them, and is evicted otherwise so that the signature is validated again.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+final class MetadataVerificationCache {
+
+    /**
+     * The default maximum number of cached metadata.
+     */
+    static final int DEFAULT_MAX_SIZE = 512;
+
+    /**
+     * The key of cached metadata.
+     */
+    static final class Key {
+
+        @Nonnull
+        private final HashCode metadataDigest;
+
+        /**
+         * The signer which verified the metadata, or {@code null} when the signature of the metadata is not verified.
+         */
+        @Nullable
+        private final MetadataSignerI metadataSigner;
+
+        Key(@Nonnull HashCode metadataDigest, @Nullable MetadataSignerI metadataSigner) {
+            Preconditions.checkNotNull(metadataDigest, "metadataDigest");
+            this.metadataDigest = metadataDigest;
+            this.metadataSigner = metadataSigner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            // signers are compared by identity
+            return metadataSigner == key.metadataSigner && metadataDigest.equals(key.metadataDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * metadataDigest.hashCode() + System.identityHashCode(metadataSigner);
+        }
+    }
+
+    /**
+     * Cached metadata and the validity period of the certificates which signed it.
+     */
+    private static final class Entry {
+
+        @Nonnull
+        private final EidasMetadataParametersI eidasMetadataParameters;
+
+        private final long notBeforeMillis;
+
+        private final long expiryMillis;
+
+        private Entry(@Nonnull EidasMetadataParametersI eidasMetadataParameters,
+                      @Nonnull Collection<X509Certificate> signingCertificates) {
+            Preconditions.checkNotNull(eidasMetadataParameters, "eidasMetadataParameters");
+            this.eidasMetadataParameters = eidasMetadataParameters;
+            long notBefore = Long.MIN_VALUE;
+            long expiry = Long.MAX_VALUE;
+            for (final X509Certificate certificate : signingCertificates) {
+                notBefore = Math.max(notBefore, certificate.getNotBefore().getTime());
+                expiry = Math.min(expiry, certificate.getNotAfter().getTime());
+            }
+            this.notBeforeMillis = notBefore;
+            this.expiryMillis = expiry;
+        }
+
+        boolean isValidAt(long nowMillis) {
+            return nowMillis >= notBeforeMillis && nowMillis <= expiryMillis;
+        }
+    }
+
+    @Nonnull
+    private final Cache<Key, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    MetadataVerificationCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    MetadataVerificationCache(int maxSize) {
+        Preconditions.checkNotNegative(maxSize, "maxSize");
+        entries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Returns the certificates carried by the signature of the given metadata.
+     *
+     * @param signedMetadata the metadata
+     * @return the certificates of the key info of the signature, empty if the metadata is not signed
+     * @throws CertificateException if a certificate cannot be decoded
+     */
+    @Nonnull
+    static List<X509Certificate> getSigningCertificates(@Nonnull SignableXMLObject signedMetadata)
+            throws CertificateException {
+        Signature signature = signedMetadata.getSignature();
+        if (null == signature || null == signature.getKeyInfo()) {
+            return Collections.emptyList();
+        }
+        return KeyInfoSupport.getCertificates(signature.getKeyInfo());
+    }
+
+    /**
+     * Returns whether the given time is within the validity period of all the given certificates.
+     *
+     * @param certificates the certificates
+     * @param nowMillis the current time in milliseconds
+     * @return {@code true} if all the certificates are valid at the given time
+     */
+    static boolean isValidAt(@Nonnull Collection<X509Certificate> certificates, long nowMillis) {
+        for (final X509Certificate certificate : certificates) {
+            if (nowMillis < certificate.getNotBefore().getTime() || nowMillis > certificate.getNotAfter().getTime()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the metadata already verified and converted for the given key, provided that the certificates which
+     * signed it are still valid.
+     *
+     * @param key the cache key
+     * @param nowMillis the current time in milliseconds
+     * @return the cached metadata or {@code null} if there is none or if its signing certificates are no longer (or
+     * not yet) valid
+     */
+    @Nullable
+    EidasMetadataParametersI get(@Nonnull Key key, long nowMillis) {
+        Entry entry = entries.getIfPresent(key);
+        if (null != entry && !entry.isValidAt(nowMillis)) {
+            entries.invalidate(key);
+            entry = null;
+        }
+        if (null == entry) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.eidasMetadataParameters;
+    }
+
+    /**
+     * Caches metadata which has been verified and converted, unless the certificates which signed it are not valid.
+     *
+     * @param key the cache key
+     * @param eidasMetadataParameters the converted metadata
+     * @param signingCertificates the certificates which signed the metadata, empty if its signature is not verified
+     * @param nowMillis the current time in milliseconds
+     */
+    void put(@Nonnull Key key,
+             @Nonnull EidasMetadataParametersI eidasMetadataParameters,
+             @Nonnull Collection<X509Certificate> signingCertificates,
+             long nowMillis) {
+        Entry entry = new Entry(eidasMetadataParameters, signingCertificates);
+        if (entry.isValidAt(nowMillis)) {
+            entries.put(key, entry);
+        }
+    }
+
+    long size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.metadata.impl;
+
+import eu.eidas.auth.engine.metadata.EidasMetadataParametersI;
+import eu.eidas.auth.engine.metadata.IMetadataCachingService;
+import eu.eidas.auth.engine.metadata.MetadataClockI;
+import eu.eidas.auth.engine.metadata.MetadataResolutionScope;
+import eu.eidas.auth.engine.metadata.MetadataSignerI;
+import eu.eidas.engine.exceptions.EIDASMetadataException;
+import eu.eidas.engine.exceptions.EIDASMetadataProviderException;
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test class for {@link AbstractCachingMetadataFetcher}
+ */
+public class AbstractCachingMetadataFetcherTest {
+
+    private static final String URL = "https://peer.example/metadata";
+
+    private static final long START = new DateTime(2019, 1, 1, 0, 0).getMillis();
+
+    /**
+     * Fetcher returning new metadata valid until {@link #validUntil} on each retrieval.
+     */
+    private static final class CountingMetadataFetcher extends CachingMetadataFetcher {
+
+        private final AtomicInteger retrievals = new AtomicInteger();
+
+        private volatile DateTime validUntil;
+
+        private volatile CountDownLatch release;
+
+        private volatile boolean failing;
+
+        @Nonnull
+        @Override
+        protected EidasMetadataParametersI retrieveMetadata(@Nonnull String url,
+                                                            @Nonnull MetadataSignerI metadataSigner,
+                                                            MetadataClockI metadataClock)
+                throws EIDASMetadataException {
+            retrievals.incrementAndGet();
+            if (null != release) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing) {
+                throw new EIDASMetadataProviderException("unreachable");
+            }
+            EidasMetadataParameters metadataParameters = new EidasMetadataParameters();
+            metadataParameters.setValidUntil(validUntil);
+            return metadataParameters;
+        }
+    }
+
+    private static final class MapMetadataCachingService implements IMetadataCachingService {
+
+        private final Map<String, EidasMetadataParametersI> map = new ConcurrentHashMap<>();
+
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public EidasMetadataParametersI getEidasMetadataParameters(String url) {
+            lookups.incrementAndGet();
+            return map.get(url);
+        }
+
+        @Override
+        public void putEidasMetadataParameters(String url, EidasMetadataParametersI eidasMetadataParameters) {
+            if (null == eidasMetadataParameters) {
+                map.remove(url);
+            } else {
+                map.put(url, eidasMetadataParameters);
+            }
+        }
+    }
+
+    private static final class TestClock implements MetadataClockI {
+
+        private volatile long now = START;
+
+        @Override
+        public DateTime getCurrentTime() {
+            return new DateTime(now);
+        }
+    }
+
+    private final MetadataSignerI metadataSigner = Mockito.mock(MetadataSignerI.class);
+
+    private final TestClock clock = new TestClock();
+
+    private final List<Runnable> scheduledRefreshes = new CopyOnWriteArrayList<>();
+
+    private final MapMetadataCachingService cachingService = new MapMetadataCachingService();
+
+    private CountingMetadataFetcher fetcher;
+
+    @Before
+    public void setUp() {
+        fetcher = new CountingMetadataFetcher();
+        fetcher.setCache(cachingService);
+        fetcher.setHttpRetrievalEnabled(true);
+        fetcher.setRefreshAheadFactor(0.5d);
+        fetcher.setRefreshExecutor(new Executor() {
+            @Override
+            public void execute(@Nonnull Runnable command) {
+                scheduledRefreshes.add(command);
+            }
+        });
+        fetcher.validUntil = new DateTime(START + 100000L);
+    }
+
+    private void runScheduledRefreshes() {
+        List<Runnable> refreshes = new ArrayList<>(scheduledRefreshes);
+        scheduledRefreshes.clear();
+        for (final Runnable refresh : refreshes) {
+            refresh.run();
+        }
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must retrieve the metadata only once when requested concurrently.
+     */
+    @Test
+    public void testConcurrentRequestsShareOneRetrieval() throws Exception {
+        fetcher.release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<EidasMetadataParametersI>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executorService.submit(new Callable<EidasMetadataParametersI>() {
+                    @Override
+                    public EidasMetadataParametersI call() throws Exception {
+                        return fetcher.getEidasMetadata(URL, metadataSigner, clock);
+                    }
+                }));
+            }
+            Thread.sleep(200L);
+            fetcher.release.countDown();
+
+            EidasMetadataParametersI first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (final Future<EidasMetadataParametersI> result : results) {
+                Assert.assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, fetcher.retrievals.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must keep serving the cached metadata and refresh it once in the background after the refresh-ahead factor of
+     * its lifetime has elapsed.
+     */
+    @Test
+    public void testRefreshAhead() throws Exception {
+        EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        clock.now = START + 40000L;
+        Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Assert.assertTrue(scheduledRefreshes.isEmpty());
+
+        clock.now = START + 60000L;
+        Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Assert.assertEquals(1, scheduledRefreshes.size());
+        Assert.assertEquals(1, fetcher.retrievals.get());
+
+        fetcher.validUntil = new DateTime(START + 200000L);
+        runScheduledRefreshes();
+
+        EidasMetadataParametersI refreshed = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        Assert.assertNotSame(first, refreshed);
+        Assert.assertEquals(fetcher.validUntil, refreshed.getValidUntil());
+        Assert.assertEquals(2, fetcher.retrievals.get());
+        Assert.assertTrue(scheduledRefreshes.isEmpty());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must keep serving the cached metadata when the background refresh fails and retry it later.
+     */
+    @Test
+    public void testFailedRefreshIsRetriedLater() throws Exception {
+        EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        fetcher.failing = true;
+        clock.now = START + 60000L;
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        runScheduledRefreshes();
+        Assert.assertEquals(2, fetcher.retrievals.get());
+
+        Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Assert.assertTrue(scheduledRefreshes.isEmpty());
+
+        clock.now += AbstractCachingMetadataFetcher.REFRESH_RETRY_DELAY_MILLIS;
+        Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Assert.assertEquals(1, scheduledRefreshes.size());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#close()}
+     * <p>
+     * Must stop refreshing the metadata in the background and keep serving the cached metadata.
+     */
+    @Test
+    public void testCloseStopsRefreshAhead() throws Exception {
+        CountingMetadataFetcher closedFetcher = new CountingMetadataFetcher();
+        closedFetcher.setCache(cachingService);
+        closedFetcher.setHttpRetrievalEnabled(true);
+        closedFetcher.setRefreshAheadFactor(0.5d);
+        closedFetcher.validUntil = new DateTime(START + 100000L);
+        EidasMetadataParametersI first = closedFetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        closedFetcher.close();
+        clock.now = START + 60000L;
+        Assert.assertSame(first, closedFetcher.getEidasMetadata(URL, metadataSigner, clock));
+        Thread.sleep(100L);
+
+        Assert.assertEquals(1, closedFetcher.retrievals.get());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must never serve expired metadata.
+     */
+    @Test
+    public void testExpiredMetadataIsRetrievedAgain() throws Exception {
+        EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        fetcher.validUntil = new DateTime(START + 300000L);
+        clock.now = START + 150000L;
+        EidasMetadataParametersI retrieved = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        Assert.assertNotSame(first, retrieved);
+        Assert.assertEquals(2, fetcher.retrievals.get());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must serve the metadata from the near-cache without looking up the cache until the time to live has elapsed.
+     */
+    @Test
+    public void testNearCache() throws Exception {
+        fetcher.setNearCacheTimeToLiveMillis(10000L);
+        EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        int lookups = cachingService.lookups.get();
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+        }
+        Assert.assertEquals(lookups, cachingService.lookups.get());
+        Assert.assertEquals(3L, fetcher.getNearCacheHitCount());
+
+        fetcher.remove(URL);
+        EidasMetadataParametersI retrieved = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        Assert.assertNotSame(first, retrieved);
+        Assert.assertEquals(lookups + 1, cachingService.lookups.get());
+        Assert.assertEquals(2, fetcher.retrievals.get());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#setNearCacheTimeToLiveMillis(long)}
+     * <p>
+     * Must look up the cache each time when the near-cache is disabled.
+     */
+    @Test
+    public void testNearCacheDisabled() throws Exception {
+        fetcher.setNearCacheTimeToLiveMillis(0L);
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        int lookups = cachingService.lookups.get();
+
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        Assert.assertEquals(lookups + 2, cachingService.lookups.get());
+        Assert.assertEquals(0L, fetcher.getNearCacheHitCount());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must look up the cache each time when no near-cache time to live is set.
+     */
+    @Test
+    public void testNearCacheDisabledByDefault() throws Exception {
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+        int lookups = cachingService.lookups.get();
+
+        fetcher.getEidasMetadata(URL, metadataSigner, clock);
+
+        Assert.assertEquals(lookups + 1, cachingService.lookups.get());
+        Assert.assertEquals(0L, fetcher.getNearCacheHitCount());
+    }
+
+    /**
+     * Test method for {@link AbstractCachingMetadataFetcher#getEidasMetadata(String, MetadataSignerI, MetadataClockI)}
+     * <p>
+     * Must resolve the metadata only once within a {@link MetadataResolutionScope}.
+     */
+    @Test
+    public void testResolutionScope() throws Exception {
+        fetcher.setNearCacheTimeToLiveMillis(0L);
+        boolean opened = MetadataResolutionScope.open();
+        try {
+            Assert.assertTrue(opened);
+            Assert.assertFalse(MetadataResolutionScope.open());
+            EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+            int lookups = cachingService.lookups.get();
+
+            Assert.assertSame(first, fetcher.getEidasMetadata(URL, metadataSigner, clock));
+            Assert.assertEquals(lookups, cachingService.lookups.get());
+            Assert.assertEquals(1L, fetcher.getScopeHitCount());
+
+            // another signer resolves the metadata again
+            fetcher.getEidasMetadata(URL, Mockito.mock(MetadataSignerI.class), clock);
+            Assert.assertEquals(lookups + 1, cachingService.lookups.get());
+        } finally {
+            MetadataResolutionScope.close();
+        }
+        Assert.assertNull(MetadataResolutionScope.get(URL, metadataSigner));
+    }
+
+    /**
+     * Test method for {@link MetadataResolutionScope#join(MetadataResolutionScope.Handle)}
+     * <p>
+     * Must share the metadata resolved in a scope with the threads which joined it.
+     */
+    @Test
+    public void testResolutionScopeJoinedByAnotherThread() throws Exception {
+        fetcher.setNearCacheTimeToLiveMillis(0L);
+        MetadataResolutionScope.open();
+        try {
+            final EidasMetadataParametersI first = fetcher.getEidasMetadata(URL, metadataSigner, clock);
+            final MetadataResolutionScope.Handle handle = MetadataResolutionScope.current();
+            final AtomicReference<EidasMetadataParametersI> joined = new AtomicReference<>();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    MetadataResolutionScope.join(handle);
+                    try {
+                        joined.set(MetadataResolutionScope.get(URL, metadataSigner));
+                    } finally {
+                        MetadataResolutionScope.close();
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+
+            Assert.assertSame(first, joined.get());
+            Assert.assertSame(first, MetadataResolutionScope.get(URL, metadataSigner));
+        } finally {
+            MetadataResolutionScope.close();
+        }
+        Assert.assertNull(MetadataResolutionScope.current());
+    }
+}
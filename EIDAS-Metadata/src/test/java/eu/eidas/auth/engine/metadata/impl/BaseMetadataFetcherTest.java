@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.metadata.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.eidas.auth.engine.metadata.EidasMetadataParametersI;
+import eu.eidas.auth.engine.metadata.MetadataSignerI;
+import eu.eidas.engine.exceptions.EIDASMetadataProviderException;
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import net.shibboleth.utilities.java.support.xml.ParserPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.xmlsec.signature.SignableXMLObject;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for {@link BaseMetadataFetcher}
+ */
+public class BaseMetadataFetcherTest {
+
+    private HttpServer server;
+
+    private String url;
+
+    private volatile String etag = "\"1\"";
+
+    private volatile String version = "1";
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    private static BasicParserPool parserPool;
+
+    private final BaseMetadataFetcher fetcher = new BaseMetadataFetcher() {
+
+        @Nonnull
+        @Override
+        protected ParserPool getParserPool() {
+            return parserPool;
+        }
+
+        @Override
+        protected String[] getTlsEnabledProtocols() {
+            return getTlsEnabledProtocols(null);
+        }
+
+        @Override
+        protected String[] getTlsEnabledCiphers() {
+            return getTlsEnabledCiphers(null);
+        }
+
+        @Override
+        protected boolean mustUseHttps() {
+            return false;
+        }
+    };
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        InitializationService.initialize();
+        parserPool = new BasicParserPool();
+        parserPool.setNamespaceAware(true);
+        parserPool.initialize();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/metadata", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                String currentEtag = etag;
+                if (null != currentEtag && currentEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    byte[] body = newMetadata().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "application/samlmetadata+xml");
+                    if (null != currentEtag) {
+                        exchange.getResponseHeaders().set("ETag", currentEtag);
+                    }
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream outputStream = exchange.getResponseBody()) {
+                        outputStream.write(body);
+                    }
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/metadata";
+    }
+
+    @After
+    public void tearDown() {
+        fetcher.close();
+        server.stop(0);
+    }
+
+    private String newMetadata() {
+        return "<md:EntityDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" ID=\"_" + version
+                + "\" entityID=\"" + url + "\">"
+                + "<md:SPSSODescriptor protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+                + "<md:AssertionConsumerService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\""
+                + " Location=\"" + url + "/acs\" index=\"0\"/>"
+                + "</md:SPSSODescriptor></md:EntityDescriptor>";
+    }
+
+    @Nonnull
+    private static MetadataSignerI newMetadataSigner() throws Exception {
+        MetadataSignerI metadataSigner = Mockito.mock(MetadataSignerI.class);
+        Mockito.when(metadataSigner.validateMetadataSignature(Mockito.any(SignableXMLObject.class)))
+                .thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) {
+                        return invocation.getArgument(0);
+                    }
+                });
+        return metadataSigner;
+    }
+
+    /**
+     * Test method for {@link BaseMetadataFetcher#getEidasMetadata(String, MetadataSignerI,
+     * eu.eidas.auth.engine.metadata.MetadataClockI)}
+     * <p>
+     * Must retrieve unchanged metadata with conditional requests over the same connection and validate its signature
+     * only once.
+     */
+    @Test
+    public void testUnchangedMetadataIsNotValidatedAgain() throws Exception {
+        MetadataSignerI metadataSigner = newMetadataSigner();
+
+        for (int i = 0; i < 3; i++) {
+            EidasMetadataParametersI metadataParameters = fetcher.getEidasMetadata(url, metadataSigner, null);
+            Assert.assertEquals(url, metadataParameters.getEntityID());
+        }
+
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(2, notModifiedResponses.get());
+        // the conditional request reuses the connection of the first retrieval
+        Assert.assertEquals(clientPorts.get(0), clientPorts.get(1));
+        Mockito.verify(metadataSigner, Mockito.times(1)).validateMetadataSignature(
+                Mockito.any(SignableXMLObject.class));
+        Assert.assertEquals(2L, fetcher.getVerificationCacheHitCount());
+        Assert.assertEquals(1L, fetcher.getVerificationCacheMissCount());
+    }
+
+    /**
+     * Test method for {@link BaseMetadataFetcher#getEidasMetadata(String, MetadataSignerI,
+     * eu.eidas.auth.engine.metadata.MetadataClockI)}
+     * <p>
+     * Must validate the signature again when the metadata changed or when the signer changed.
+     */
+    @Test
+    public void testChangedMetadataOrSignerIsValidatedAgain() throws Exception {
+        MetadataSignerI metadataSigner = newMetadataSigner();
+        fetcher.getEidasMetadata(url, metadataSigner, null);
+
+        etag = "\"2\"";
+        version = "2";
+        fetcher.getEidasMetadata(url, metadataSigner, null);
+        Mockito.verify(metadataSigner, Mockito.times(2)).validateMetadataSignature(
+                Mockito.any(SignableXMLObject.class));
+
+        MetadataSignerI otherMetadataSigner = newMetadataSigner();
+        fetcher.getEidasMetadata(url, otherMetadataSigner, null);
+        Mockito.verify(otherMetadataSigner, Mockito.times(1)).validateMetadataSignature(
+                Mockito.any(SignableXMLObject.class));
+        Assert.assertEquals(4, requests.get());
+        Assert.assertEquals(1, notModifiedResponses.get());
+    }
+
+    /**
+     * Test method for {@link BaseMetadataFetcher#getEidasMetadata(String, MetadataSignerI,
+     * eu.eidas.auth.engine.metadata.MetadataClockI)}
+     * <p>
+     * Must neither validate nor convert again byte-identical metadata downloaded again.
+     */
+    @Test
+    public void testIdenticalMetadataIsNotValidatedAgain() throws Exception {
+        etag = null;
+        MetadataSignerI metadataSigner = newMetadataSigner();
+
+        EidasMetadataParametersI first = fetcher.getEidasMetadata(url, metadataSigner, null);
+        EidasMetadataParametersI second = fetcher.getEidasMetadata(url, metadataSigner, null);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(0, notModifiedResponses.get());
+        Mockito.verify(metadataSigner, Mockito.times(1)).validateMetadataSignature(
+                Mockito.any(SignableXMLObject.class));
+        Assert.assertEquals(1L, fetcher.getVerificationCacheHitCount());
+        Assert.assertEquals(1L, fetcher.getVerificationCacheMissCount());
+    }
+
+    /**
+     * Test method for {@link BaseMetadataFetcher#close()}
+     * <p>
+     * Must release the metadata providers so that the metadata can no longer be retrieved.
+     */
+    @Test
+    public void testClose() throws Exception {
+        MetadataSignerI metadataSigner = newMetadataSigner();
+        fetcher.getEidasMetadata(url, metadataSigner, null);
+
+        fetcher.close();
+
+        try {
+            fetcher.getEidasMetadata(url, metadataSigner, null);
+            Assert.fail("EIDASMetadataProviderException expected");
+        } catch (EIDASMetadataProviderException e) {
+            Assert.assertEquals(1, requests.get());
+        }
+    }
+}
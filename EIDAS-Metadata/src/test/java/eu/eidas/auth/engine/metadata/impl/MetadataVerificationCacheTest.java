@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.metadata.impl;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import eu.eidas.auth.engine.metadata.EidasMetadataParametersI;
+import eu.eidas.auth.engine.metadata.MetadataSignerI;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for {@link MetadataVerificationCache}
+ */
+public class MetadataVerificationCacheTest {
+
+    private static final HashCode DIGEST = Hashing.sha256().hashString("metadata", StandardCharsets.UTF_8);
+
+    private static List<X509Certificate> newCertificates(long notBeforeMillis, long notAfterMillis) {
+        X509Certificate certificate = Mockito.mock(X509Certificate.class);
+        Mockito.when(certificate.getNotBefore()).thenReturn(new Date(notBeforeMillis));
+        Mockito.when(certificate.getNotAfter()).thenReturn(new Date(notAfterMillis));
+        return Collections.singletonList(certificate);
+    }
+
+    /**
+     * Test method for {@link MetadataVerificationCache#get(MetadataVerificationCache.Key, long)}
+     * <p>
+     * Must serve the cached metadata while the signing certificate is valid and evict it once it has expired.
+     */
+    @Test
+    public void testGetEvictsExpiredSigningCertificate() {
+        MetadataVerificationCache cache = new MetadataVerificationCache();
+        MetadataVerificationCache.Key key =
+                new MetadataVerificationCache.Key(DIGEST, Mockito.mock(MetadataSignerI.class));
+        EidasMetadataParametersI eidasMetadataParameters = Mockito.mock(EidasMetadataParametersI.class);
+
+        cache.put(key, eidasMetadataParameters, newCertificates(1000L, 2000L), 1500L);
+
+        Assert.assertSame(eidasMetadataParameters, cache.get(key, 2000L));
+        Assert.assertNull(cache.get(key, 2001L));
+        Assert.assertEquals(0L, cache.size());
+        Assert.assertNull(cache.get(key, 1500L));
+        Assert.assertEquals(1L, cache.getHitCount());
+        Assert.assertEquals(2L, cache.getMissCount());
+    }
+
+    /**
+     * Test method for {@link MetadataVerificationCache#put(MetadataVerificationCache.Key, EidasMetadataParametersI,
+     * java.util.Collection, long)}
+     * <p>
+     * Must not cache metadata whose signing certificate is not valid, and must cache unsigned metadata without bound.
+     */
+    @Test
+    public void testPutIgnoresInvalidSigningCertificate() {
+        MetadataVerificationCache cache = new MetadataVerificationCache();
+        MetadataVerificationCache.Key signedKey =
+                new MetadataVerificationCache.Key(DIGEST, Mockito.mock(MetadataSignerI.class));
+        MetadataVerificationCache.Key unsignedKey = new MetadataVerificationCache.Key(DIGEST, null);
+        EidasMetadataParametersI eidasMetadataParameters = Mockito.mock(EidasMetadataParametersI.class);
+
+        cache.put(signedKey, eidasMetadataParameters, newCertificates(1000L, 2000L), 500L);
+        cache.put(unsignedKey, eidasMetadataParameters, Collections.<X509Certificate>emptyList(), 500L);
+
+        Assert.assertNull(cache.get(signedKey, 1500L));
+        Assert.assertSame(eidasMetadataParameters, cache.get(unsignedKey, Long.MAX_VALUE));
+    }
+}
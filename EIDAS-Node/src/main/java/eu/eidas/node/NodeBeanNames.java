@@ -59,6 +59,8 @@ public enum NodeBeanNames {
 
     PLACEHOLDER_CONFIG("placeholderConfig"), // TODO unused?
 
+    REQUEST_RATE_LIMITER("requestRateLimiter"),
+
     SECURITY_CONFIG("springManagedSecurityConfig"),
 
     SERVICE_AS_REQUESTER_METADATA_GENERATOR("serviceMetadataGeneratorSP"),
@@ -17,13 +17,18 @@
  */
 package eu.eidas.node.auth;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.engine.exceptions.EIDASSAMLEngineRuntimeException;
 import eu.eidas.node.logging.LoggingMarkerMDC;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
 import javax.cache.Cache;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 /**
@@ -38,6 +43,11 @@ public abstract class AUNODEUtil {
      */
     private static final Logger LOG = LoggerFactory.getLogger(AUNODEUtil.class.getName());
 
+    /**
+     * The number of bytes of the digest kept in the anti-replay keys, i.e. 128 bits.
+     */
+    private static final int ANTI_REPLAY_KEY_BYTES = 16;
+
     private Cache<String, Boolean> antiReplayCache;
 
     public void setAntiReplayCache(Cache antiReplayCache) {
@@ -63,7 +73,13 @@ public abstract class AUNODEUtil {
             throw new EIDASSAMLEngineRuntimeException("Bad configuration for the distributed cache, method should set the concurrentMap");
         }
         if (null != messageId){
-            final boolean wasAbsent = antiReplayCache.putIfAbsent(citizenCountryCode + "/" + messageId, Boolean.TRUE);
+            boolean wasAbsent = antiReplayCache.putIfAbsent(toAntiReplayKey(messageId, citizenCountryCode), Boolean.TRUE);
+            if (isLegacyKeyEnabled()) {
+                // both keys are recorded so that nodes of either version detect the replay
+                final boolean legacyWasAbsent =
+                        antiReplayCache.putIfAbsent(toLegacyAntiReplayKey(messageId, citizenCountryCode), Boolean.TRUE);
+                wasAbsent = wasAbsent && legacyWasAbsent;
+            }
             final boolean isReplayAttack = !wasAbsent;
 
             if (isReplayAttack) {
@@ -84,4 +100,48 @@ public abstract class AUNODEUtil {
     public Boolean checkNotPresentInCache(final String messageId){
         return checkNotPresentInCache(messageId, StringUtils.EMPTY);
     }
+
+    /**
+     * Returns the key under which the given message is stored in the anti-replay cache: the first 128 bits of the
+     * SHA-256 digest of the country code and message id, encoded in base64url.
+     * <p>
+     * Keys have a fixed width of 22 characters whatever the length of the message ids (up to 64 characters for the
+     * generated ones), which reduces the memory used by the anti-replay cache and the bytes sent to the node owning the
+     * entry.
+     *
+     * @param messageId the message id
+     * @param citizenCountryCode the citizen country code
+     * @return the anti-replay key
+     * @since 2.4
+     */
+    @Nonnull
+    public static String toAntiReplayKey(@Nonnull String messageId, String citizenCountryCode) {
+        byte[] digest = Hashing.sha256()
+                .hashString(citizenCountryCode + "/" + messageId, StandardCharsets.UTF_8)
+                .asBytes();
+        return BaseEncoding.base64Url().omitPadding().encode(digest, 0, ANTI_REPLAY_KEY_BYTES);
+    }
+
+    /**
+     * Returns the key under which nodes of a previous version store the given message in the anti-replay cache.
+     *
+     * @param messageId the message id
+     * @param citizenCountryCode the citizen country code
+     * @return the legacy anti-replay key
+     * @since 2.4
+     */
+    @Nonnull
+    public static String toLegacyAntiReplayKey(@Nonnull String messageId, String citizenCountryCode) {
+        return citizenCountryCode + "/" + messageId;
+    }
+
+    /**
+     * Returns whether the legacy anti-replay keys are also recorded and checked, which is required during a rolling
+     * upgrade from a version storing them, until the entries it stored have expired.
+     *
+     * @return {@code true} if the system property {@code anti.replay.legacy.key} is {@code true}
+     */
+    private static boolean isLegacyKeyEnabled() {
+        return Boolean.parseBoolean(System.getProperty(EidasParameterKeys.ANTI_REPLAY_LEGACY_KEY.toString()));
+    }
 }
@@ -15,6 +15,7 @@
 
 package eu.eidas.node.connector;
 
+import eu.eidas.auth.engine.ProtocolEngineI;
 import eu.eidas.node.AbstractNodeServlet;
 import eu.eidas.node.NodeBeanNames;
 import eu.eidas.node.utils.EidasNodeMetadataGenerator;
@@ -50,11 +51,10 @@ public class ConnectorMetadataGeneratorServlet extends AbstractNodeServlet {
         EidasNodeMetadataGenerator generator = getBean(EidasNodeMetadataGenerator.class, generatorName);
         PropertiesUtil.checkConnectorActive();
         if(PropertiesUtil.isMetadataEnabled()) {
-            response.setContentType("text/xml");
-            response.setCharacterEncoding("UTF-8");
             String beanName = NodeBeanNames.EIDAS_CONNECTOR_CONTROLLER.toString();
             ConnectorControllerService controllerService = getBean( ConnectorControllerService.class, beanName );
-            response.getWriter().print(generator.generateConnectorMetadata(controllerService.getConnectorService().getSamlService().getSamlEngine()));
+            ProtocolEngineI samlEngine = controllerService.getConnectorService().getSamlService().getSamlEngine();
+            generator.getConnectorMetadataDocument(samlEngine).write(request, response, System.currentTimeMillis());
         }else{
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
@@ -21,12 +21,12 @@ import com.google.common.collect.ImmutableSortedSet;
 import eu.eidas.auth.commons.EidasParameterKeys;
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
 import eu.eidas.auth.commons.light.IResponseStatus;
+import eu.eidas.auth.commons.light.impl.ResponseStatus;
 import eu.eidas.auth.commons.protocol.IAuthenticationRequest;
 import eu.eidas.auth.commons.protocol.IAuthenticationResponse;
 import eu.eidas.auth.commons.protocol.eidas.impl.EidasAuthenticationRequest;
 import eu.eidas.auth.commons.protocol.impl.AuthenticationResponse;
 import eu.eidas.auth.commons.tx.StoredAuthenticationRequest;
-import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
 import eu.eidas.auth.engine.ProtocolEngine;
 import eu.eidas.auth.engine.ProtocolEngineFactory;
 import eu.eidas.auth.engine.ProtocolEngineI;
@@ -35,8 +35,6 @@ import eu.eidas.auth.engine.metadata.MetadataClockI;
 import eu.eidas.auth.engine.metadata.MetadataSignerI;
 import eu.eidas.auth.engine.metadata.impl.CachingMetadataFetcher;
 import eu.eidas.auth.engine.xml.opensaml.ResponseUtil;
-import eu.eidas.auth.engine.xml.opensaml.XmlSchemaUtil;
-import eu.eidas.encryption.exception.UnmarshallException;
 import eu.eidas.engine.exceptions.EIDASMetadataException;
 import eu.eidas.engine.exceptions.EIDASSAMLEngineException;
 import eu.eidas.node.NodeBeanNames;
@@ -45,14 +43,17 @@ import eu.eidas.node.connector.ConnectorControllerService;
 import eu.eidas.node.service.ServiceControllerService;
 import eu.eidas.node.utils.PropertiesUtil;
 import org.apache.commons.lang.StringUtils;
-import org.opensaml.saml.saml2.core.AuthnRequest;
-import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.common.xml.SAMLConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 
 import javax.cache.Cache;
 import javax.servlet.http.HttpServletRequest;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.util.Collection;
 
 import static eu.eidas.node.BeanProvider.getBean;
@@ -75,6 +76,42 @@ public final class MessageLoggerUtils {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageLoggerUtils.class.getName());
 
+    private static final String ID = "ID";
+
+    private static final String DESTINATION = "Destination";
+
+    private static final String IN_RESPONSE_TO = "InResponseTo";
+
+    private static final String ISSUER = "Issuer";
+
+    private static final String STATUS = "Status";
+
+    private static final String STATUS_CODE = "StatusCode";
+
+    private static final String STATUS_MESSAGE = "StatusMessage";
+
+    private static final String VALUE = "Value";
+
+    /**
+     * Initialization-on-demand holder idiom.
+     * <p/>
+     * See item 71 of Effective Java 2nd Edition.
+     * <p/>
+     * A configured {@link XMLInputFactory} is thread-safe. It does not support DTDs, so that no entity is ever resolved.
+     */
+    private static final class XmlInputFactoryHolder {
+
+        private static final XMLInputFactory INSTANCE;
+
+        static {
+            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            INSTANCE = xmlInputFactory;
+        }
+    }
+
     private String samlConnectorServiceInstance;
 
     private String samlEngineProxyInstanceName;
@@ -241,19 +278,33 @@ public final class MessageLoggerUtils {
     /**
      * Retrieves the {@link IAuthenticationRequest} from the SAML in bytes
      * which with the minimum data needed for the message logging.
-
+     * <p>
+     * Only the attributes of the root element and the issuer are read, the message is neither validated nor
+     * unmarshalled: this is done once by the servlet processing it.
      *
      * @param samlObj the token received in http request
      * @return the instance of {@link IAuthenticationRequest}
-     * @throws EIDASSAMLEngineException when the authentication request could not be unmarshalled or properly build
+     * @throws EIDASSAMLEngineException when the authentication request could not be read or properly build
      */
     public final IAuthenticationRequest getIAuthenticationProxyRequest(byte[] samlObj) throws EIDASSAMLEngineException {
-        Document document = XmlSchemaUtil.validateSamlSchema(samlObj);
         final IAuthenticationRequest iAuthenticationRequest;
         try {
-            AuthnRequest authenticationRequest = (AuthnRequest) OpenSamlHelper.unmarshallFromDom(document);
-            iAuthenticationRequest = createIAuthenticationRequest(authenticationRequest);
-        } catch (Exception e) {
+            XMLStreamReader reader = createXmlStreamReader(samlObj);
+            try {
+                reader.nextTag();
+                EidasAuthenticationRequest.Builder eidasAuthenticationRequestBuilder = EidasAuthenticationRequest.builder();
+                eidasAuthenticationRequestBuilder.id(reader.getAttributeValue(null, ID))
+                        .destination(reader.getAttributeValue(null, DESTINATION))
+                        .citizenCountryCode(NOT_APPLICABLE);
+                // the issuer is the first child element of a request
+                if (nextChildElement(reader) && isSamlElement(reader, SAMLConstants.SAML20_NS, ISSUER)) {
+                    eidasAuthenticationRequestBuilder.issuer(reader.getElementText());
+                }
+                iAuthenticationRequest = eidasAuthenticationRequestBuilder.build();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | RuntimeException e) {
             throw new EIDASSAMLEngineException(e);
         }
 
@@ -263,60 +314,105 @@ public final class MessageLoggerUtils {
     /**
      * Retrieves the {@link IAuthenticationResponse} from the SAML in bytes
      * which with the minimum data needed for the message logging.
+     * <p>
+     * Only the attributes of the root element, the issuer and the status are read, the assertions are skipped and the
+     * message is neither validated nor unmarshalled: this is done once by the servlet processing it.
      *
      * @param samlObj         the token received in http request
      * @return the instance of {@link IAuthenticationRequest}
-     * @throws EIDASSAMLEngineException when the authentication request could not be unmarshalled
+     * @throws EIDASSAMLEngineException when the authentication response could not be read
      */
     public final IAuthenticationResponse getIAuthenticationResponse(byte[] samlObj) throws EIDASSAMLEngineException {
-        final Document document = createDocument(samlObj);
-
         IAuthenticationResponse iAuthenticationResponse;
         try {
-            final Response response = unmarshalResponse(document);
-            iAuthenticationResponse = createIAuthenticationResponse(response);
-        } catch (UnmarshallException e) {
+            XMLStreamReader reader = createXmlStreamReader(samlObj);
+            try {
+                reader.nextTag();
+                AuthenticationResponse.Builder responseBuilder = new AuthenticationResponse.Builder();
+                responseBuilder
+                        .id(reader.getAttributeValue(null, ID))
+                        .inResponseTo(reader.getAttributeValue(null, IN_RESPONSE_TO))
+                        .subject(NOT_APPLICABLE)
+                        .subjectNameIdFormat(NOT_APPLICABLE);
+                // the issuer and the status precede the assertions
+                while (nextChildElement(reader)) {
+                    if (isSamlElement(reader, SAMLConstants.SAML20_NS, ISSUER)) {
+                        responseBuilder.issuer(reader.getElementText());
+                    } else if (isSamlElement(reader, SAMLConstants.SAML20P_NS, STATUS)) {
+                        responseBuilder.responseStatus(readResponseStatus(reader));
+                        break;
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                iAuthenticationResponse = responseBuilder.build();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | RuntimeException e) {
             throw new EIDASSAMLEngineException(e);
         }
 
         return iAuthenticationResponse;
     }
 
-    private EidasAuthenticationRequest createIAuthenticationRequest(AuthnRequest authenticationRequest) {
-
-        String issuer = authenticationRequest.getIssuer().getValue();
-
-        EidasAuthenticationRequest.Builder eidasAuthenticationRequestBuilder = EidasAuthenticationRequest.builder();
-        eidasAuthenticationRequestBuilder.id(authenticationRequest.getID())
-                .destination(authenticationRequest.getDestination())
-                .issuer(issuer)
-                .citizenCountryCode(NOT_APPLICABLE);
-
-        return eidasAuthenticationRequestBuilder.build();
+    /**
+     * Reads the status whose start element is the current event of the given reader.
+     */
+    private static IResponseStatus readResponseStatus(XMLStreamReader reader) throws XMLStreamException {
+        ResponseStatus.Builder builder = ResponseStatus.builder();
+        while (nextChildElement(reader)) {
+            if (isSamlElement(reader, SAMLConstants.SAML20P_NS, STATUS_CODE)) {
+                String statusCodeValue = reader.getAttributeValue(null, VALUE);
+                builder.statusCode(statusCodeValue);
+                builder.failure(ResponseUtil.isFailureStatusCode(statusCodeValue));
+                // Subordinate code.
+                while (nextChildElement(reader)) {
+                    if (isSamlElement(reader, SAMLConstants.SAML20P_NS, STATUS_CODE)) {
+                        builder.subStatusCode(reader.getAttributeValue(null, VALUE));
+                    }
+                    skipElement(reader);
+                }
+            } else if (isSamlElement(reader, SAMLConstants.SAML20P_NS, STATUS_MESSAGE)) {
+                builder.statusMessage(reader.getElementText());
+            } else {
+                skipElement(reader);
+            }
+        }
+        return builder.build();
     }
 
-    private Document createDocument(byte[] samlObj) throws EIDASSAMLEngineException {
-        return XmlSchemaUtil.validateSamlSchema(samlObj);
+    /**
+     * Moves the given reader to the next child element of the current element.
+     *
+     * @return {@code true} if the reader is on the start of the next child element, {@code false} if it is on the end
+     * of the current element
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        return reader.nextTag() == XMLStreamConstants.START_ELEMENT;
     }
 
-    private Response unmarshalResponse(Document document) throws UnmarshallException {
-        return (Response) OpenSamlHelper.unmarshallFromDom(document);
+    /**
+     * Moves the given reader from the start of the current element to its end.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
     }
 
-    private IAuthenticationResponse createIAuthenticationResponse(Response samlResponse) {
-        IResponseStatus responseStatus = ResponseUtil.extractResponseStatus(samlResponse);
-        String issuer = samlResponse.getIssuer().getValue();
-
-        AuthenticationResponse.Builder responseBuilder = new AuthenticationResponse.Builder();
-        responseBuilder
-                .id(samlResponse.getID())
-                .inResponseTo(samlResponse.getInResponseTo())
-                .responseStatus(responseStatus)
-                .issuer(issuer)
-                .subject(NOT_APPLICABLE)
-                .subjectNameIdFormat(NOT_APPLICABLE);
+    private static boolean isSamlElement(XMLStreamReader reader, String namespace, String localName) {
+        return localName.equals(reader.getLocalName()) && namespace.equals(reader.getNamespaceURI());
+    }
 
-        return responseBuilder.build();
+    private static XMLStreamReader createXmlStreamReader(byte[] samlObj) throws XMLStreamException {
+        return XmlInputFactoryHolder.INSTANCE.createXMLStreamReader(new ByteArrayInputStream(samlObj));
     }
 
     /**
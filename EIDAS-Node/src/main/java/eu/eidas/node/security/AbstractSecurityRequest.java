@@ -36,8 +36,6 @@ import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class used to define the markers used for logging.
@@ -55,29 +53,27 @@ public abstract class AbstractSecurityRequest {
      */
     private static final long serialVersionUID = -4120777529787993902L;
 
-    /**
-     * Static variable to get the number of milliseconds (seconds * MILLIS).
-     */
-    private static final long MILLIS = 1000L;
-
     /**
      * The three int value.
      */
     protected static final int THREE = 3;
 
     /**
-     * Map containing the IP addresses of the citizens.
+     * Prefix of the keys under which the requests are counted by IP address of the citizens.
      */
-    protected transient ConcurrentHashMap<String, List<Long>> spIps = new ConcurrentHashMap<>();
+    protected static final String IP_KEY_PREFIX = "ip:";
 
     /**
-     * Map containing the IP addresses from the Service Providers.
+     * Prefix of the keys under which the requests are counted by domain of the Service Providers.
      */
-    protected transient ConcurrentHashMap<String, List<Long>> spRequests = new ConcurrentHashMap<>();
+    protected static final String SP_KEY_PREFIX = "sp:";
 
     //Contains the security configuration
     private ConfigurationSecurityBean configurationSecurityBean;
 
+    //Counts the requests by IP address and by Service Provider domain
+    private RequestRateLimiter requestRateLimiter;
+
     /**
      * Validate if for a remote address the threshold for requests within a time
      * span has been reached.
@@ -87,53 +83,18 @@ public abstract class AbstractSecurityRequest {
      * @param threshold       The number of requests the same remoteAddr can issue.
      *                        within a time span.
      * @param pathInvoked The name of the class (in case of exception).
-     * @param listIP          The list of allowed IP.
-     * @see Map
-     * @see java.util.ArrayList
+     * @param keyPrefix       The prefix of the key under which the requests of remoteAddr are counted.
+     * @see RequestRateLimiter
      */
     protected final void checkRequest(final String remoteAddr, final int maxTime,
                               final int threshold, final String pathInvoked,
-                              final ConcurrentHashMap<String, List<Long>> listIP) {
-        final String errorMsg = EidasErrors.get(EidasErrorKey.REQUESTS.errorMessage(pathInvoked));
-        final String errorCode = EidasErrors.get(EidasErrorKey.REQUESTS.errorCode(pathInvoked));
-
-        // query the table for the request address
-        List<Long> times = listIP.get(remoteAddr);
-
-        // if it is new ip address
-        if (times == null) {
-            times = new ArrayList<>();
-            times.add(System.currentTimeMillis());
-        } else {
-            // if it is a known ip address
-            final long currTime = System.currentTimeMillis();
-
-            // if the number of requests from remoteAddr achieves the threshold
-            if (times.size() + 1 > threshold) {
-                final List<Long> nTimes = new ArrayList<>(times);
-
-                // compute the time span currentTime is in milliseconds so we must multiply maxTime by 1000.
-                final long limitTime = currTime - maxTime * AbstractSecurityRequest.MILLIS;
-
-                // remove every time not within the previously computed time span
-                for (final long t : times) {
-                    if (t < limitTime) {
-                        nTimes.remove(t);
-                    }
-                }
-                times = nTimes;
-
-                // if the number of requests from remoteAddr, is still, bigger than the threshold throw exception
-                if (times.size() + 1 > threshold) {
-                    LOG.warn(LoggingMarkerMDC.SECURITY_WARNING, "Requests/Minute reached for IP: {}", remoteAddr);
-                    throw new SecurityEIDASException(errorCode, errorMsg);
-                }
-            }
-            times.add(currTime);
+                              final String keyPrefix) {
+        if (!requestRateLimiter.tryAcquire(keyPrefix + remoteAddr, maxTime, threshold)) {
+            LOG.warn(LoggingMarkerMDC.SECURITY_WARNING, "Requests/Minute reached for IP: {}", remoteAddr);
+            final String errorCode = EidasErrors.get(EidasErrorKey.REQUESTS.errorCode(pathInvoked));
+            final String errorMsg = EidasErrors.get(EidasErrorKey.REQUESTS.errorMessage(pathInvoked));
+            throw new SecurityEIDASException(errorCode, errorMsg);
         }
-        // add it to the table
-        List<Long> previous = listIP.putIfAbsent(remoteAddr, times);
-        LOG.info("Previous value for {} in listIP was {}, replaced by {}", remoteAddr, previous, times);
     }
 
     /**
@@ -179,4 +140,12 @@ public abstract class AbstractSecurityRequest {
     public final void setConfigurationSecurityBean(ConfigurationSecurityBean configurationSecurityBean) {
         this.configurationSecurityBean = configurationSecurityBean;
     }
+
+    protected final RequestRateLimiter getRequestRateLimiter() {
+        return requestRateLimiter;
+    }
+
+    public final void setRequestRateLimiter(RequestRateLimiter requestRateLimiter) {
+        this.requestRateLimiter = requestRateLimiter;
+    }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.node.security;
+
+import com.google.common.cache.CacheBuilder;
+import eu.eidas.auth.commons.cache.ConcurrentCacheService;
+import eu.eidas.util.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.cache.Cache;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests issued by the same client (IP address, Service Provider domain...) within a time
+ * span.
+ * <p>
+ * The requests are counted with sliding-window counters: each client only keeps the number of requests of the current
+ * and of the previous window, and the number of requests within the last time span is estimated by weighting the
+ * count of the previous window by the part of it which still overlaps the time span. The state of each client
+ * therefore has a fixed size, whatever the threshold, and is updated lock-free with compare-and-set operations.
+ * <p>
+ * By default the counters are kept in a bounded node-local map which evicts idle clients. When a {@link
+ * ConcurrentCacheService} is set, the counters are kept in its cache instead so that, with a distributed cache, the
+ * limits hold across all the nodes of the cluster.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+public final class RequestRateLimiter {
+
+    /**
+     * The default maximum number of clients whose counters are kept in the node-local map.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000L;
+
+    /**
+     * The default number of seconds after which the counters of an idle client are evicted from the node-local map.
+     */
+    public static final long DEFAULT_EXPIRE_AFTER_ACCESS = 1800L;
+
+    /**
+     * The counters of one client.
+     */
+    @Immutable
+    static final class Window implements Serializable {
+
+        private static final long serialVersionUID = -2594873041738823407L;
+
+        /**
+         * The start of the current window in milliseconds.
+         */
+        private final long start;
+
+        /**
+         * The number of requests counted in the current window.
+         */
+        private final int currentCount;
+
+        /**
+         * The number of requests counted in the previous window.
+         */
+        private final int previousCount;
+
+        Window(long start, int currentCount, int previousCount) {
+            this.start = start;
+            this.currentCount = currentCount;
+            this.previousCount = previousCount;
+        }
+
+        /**
+         * Returns the counters of the window which contains the given time.
+         *
+         * @param now the current time in milliseconds
+         * @param windowMillis the length of a window in milliseconds
+         * @return the counters of the window containing {@code now}
+         */
+        @Nonnull
+        Window slide(long now, long windowMillis) {
+            long elapsed = now - start;
+            if (elapsed < windowMillis) {
+                return this;
+            }
+            if (elapsed < 2 * windowMillis) {
+                return new Window(start + windowMillis, 0, currentCount);
+            }
+            return new Window(now - elapsed % windowMillis, 0, 0);
+        }
+
+        /**
+         * Estimates the number of requests counted during the time span ending at the given time.
+         *
+         * @param now the current time in milliseconds
+         * @param windowMillis the length of a window in milliseconds
+         * @return the estimated number of requests
+         */
+        double estimate(long now, long windowMillis) {
+            long elapsed = Math.max(0L, now - start);
+            double previousWeight = (double) (windowMillis - Math.min(elapsed, windowMillis)) / windowMillis;
+            return previousCount * previousWeight + currentCount;
+        }
+
+        @Nonnull
+        Window increment() {
+            return new Window(start, currentCount + 1, previousCount);
+        }
+
+        int getCurrentCount() {
+            return currentCount;
+        }
+
+        int getPreviousCount() {
+            return previousCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Window window = (Window) o;
+            return start == window.start && currentCount == window.currentCount
+                    && previousCount == window.previousCount;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (start ^ (start >>> 32));
+            result = 31 * result + currentCount;
+            result = 31 * result + previousCount;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Window{start=" + start + ", currentCount=" + currentCount + ", previousCount=" + previousCount
+                    + '}';
+        }
+    }
+
+    /**
+     * The node-local counters.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, Window> localWindows;
+
+    /**
+     * The provider of the cache of the counters shared by the nodes of the cluster, if any.
+     */
+    @Nullable
+    private volatile ConcurrentCacheService concurrentCacheService;
+
+    /**
+     * The cache obtained from the {@link #concurrentCacheService}, retrieved upon first use.
+     */
+    @Nullable
+    private volatile Cache<String, Window> sharedWindows;
+
+    public RequestRateLimiter() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_ACCESS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize the maximum number of clients whose counters are kept in the node-local map
+     * @param expireAfterAccess the number of seconds after which the counters of an idle client are evicted, which
+     * must be at least twice the longest time span checked
+     */
+    public RequestRateLimiter(long maximumSize, long expireAfterAccess) {
+        localWindows = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess, TimeUnit.SECONDS)
+                .<String, Window>build()
+                .asMap();
+    }
+
+    /**
+     * Counts a request of the given client unless the client already reached the threshold within the time span.
+     *
+     * @param key the identifier of the client
+     * @param maxTime the time span in seconds
+     * @param threshold the maximum number of requests the client can issue within the time span
+     * @return {@code true} if the request is allowed, {@code false} if the threshold has been reached
+     */
+    public boolean tryAcquire(@Nonnull String key, int maxTime, int threshold) {
+        return tryAcquire(key, TimeUnit.SECONDS.toMillis(maxTime), threshold, System.currentTimeMillis());
+    }
+
+    boolean tryAcquire(@Nonnull String key, long windowMillis, int threshold, long now) {
+        Preconditions.checkNotNull(key, "key");
+        if (threshold <= 0) {
+            return false;
+        }
+        if (windowMillis <= 0L) {
+            return true;
+        }
+        Cache<String, Window> cache = getSharedWindows();
+        while (true) {
+            Window window = null == cache ? localWindows.get(key) : cache.get(key);
+            if (null == window) {
+                Window first = new Window(now, 1, 0);
+                if (null == cache ? null == localWindows.putIfAbsent(key, first) : cache.putIfAbsent(key, first)) {
+                    return true;
+                }
+                continue;
+            }
+            Window current = window.slide(now, windowMillis);
+            if (current.estimate(now, windowMillis) + 1 > threshold) {
+                return false;
+            }
+            Window next = current.increment();
+            if (null == cache ? localWindows.replace(key, window, next) : cache.replace(key, window, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Nullable
+    private Cache<String, Window> getSharedWindows() {
+        Cache<String, Window> cache = sharedWindows;
+        if (null == cache && null != concurrentCacheService) {
+            synchronized (this) {
+                cache = sharedWindows;
+                if (null == cache) {
+                    //noinspection unchecked
+                    cache = concurrentCacheService.getConfiguredCache();
+                    sharedWindows = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the counters of the given client, for tests.
+     */
+    @Nullable
+    Window getWindow(@Nonnull String key) {
+        Cache<String, Window> cache = getSharedWindows();
+        return null == cache ? localWindows.get(key) : cache.get(key);
+    }
+
+    @Nullable
+    public ConcurrentCacheService getConcurrentCacheService() {
+        return concurrentCacheService;
+    }
+
+    /**
+     * Sets the provider of the cache in which the counters are kept instead of the node-local map, so that the limits
+     * hold across all the nodes sharing this cache.
+     *
+     * @param concurrentCacheService the cache provider, or {@code null} to keep the counters node-local
+     */
+    public synchronized void setConcurrentCacheService(@Nullable ConcurrentCacheService concurrentCacheService) {
+        this.concurrentCacheService = concurrentCacheService;
+        sharedWindows = null;
+    }
+}
@@ -62,6 +62,7 @@ public class SecurityRequestFilter extends AbstractSecurityRequest implements Fi
         String beanName = NodeBeanNames.SECURITY_CONFIG.toString();
         ConfigurationSecurityBean securityBean = getBean(ConfigurationSecurityBean.class, beanName);
         this.setConfigurationSecurityBean(securityBean);
+        this.setRequestRateLimiter(getBean(RequestRateLimiter.class, NodeBeanNames.REQUEST_RATE_LIMITER.toString()));
 
         // Class Name of the Action being invoked
         servletRequest.setCharacterEncoding("UTF-8");
@@ -105,13 +106,13 @@ public class SecurityRequestFilter extends AbstractSecurityRequest implements Fi
             // ***CHECK IPS**/
 
             if (this.getConfigurationSecurityBean().getIpMaxRequests() != -1) {
-                this.checkRequest(request.getRemoteAddr(), this.getConfigurationSecurityBean().getIpMaxTime(), this.getConfigurationSecurityBean().getIpMaxRequests(), pathInvoked, this.spIps);
+                this.checkRequest(request.getRemoteAddr(), this.getConfigurationSecurityBean().getIpMaxTime(), this.getConfigurationSecurityBean().getIpMaxRequests(), pathInvoked, IP_KEY_PREFIX);
             }
 
             // ***CHECK SP**/
 
             if (this.getConfigurationSecurityBean().getSpMaxRequests() != -1) {
-                this.checkRequest(domain, this.getConfigurationSecurityBean().getSpMaxTime(), this.getConfigurationSecurityBean().getSpMaxRequests(), pathInvoked, this.spRequests);
+                this.checkRequest(domain, this.getConfigurationSecurityBean().getSpMaxTime(), this.getConfigurationSecurityBean().getSpMaxRequests(), pathInvoked, SP_KEY_PREFIX);
             }
 
         }
@@ -54,9 +54,7 @@ public class ProxyServiceMetadataGeneratorServlet extends AbstractNodeServlet {
             String beanName = NodeBeanNames.EIDAS_SERVICE_CONTROLLER.toString();
             ServiceControllerService controllerService = getBean(ServiceControllerService.class,beanName);
             ProtocolEngineI samlEngine = controllerService.getProxyService().getSamlService().getSamlEngine();
-            response.setContentType("text/xml");
-            response.setCharacterEncoding("UTF-8");
-            response.getWriter().print(generator.generateProxyServiceMetadata(samlEngine));
+            generator.getProxyServiceMetadataDocument(samlEngine).write(request, response, System.currentTimeMillis());
         }else{
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
@@ -37,8 +37,13 @@ import org.opensaml.saml.common.xml.SAMLConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * generator for Eidas metadata
@@ -68,6 +73,19 @@ public class EidasNodeMetadataGenerator {
 
     private ProtocolEngineFactory nodeProtocolEngineFactory;
 
+    /**
+     * The signed metadata of the Connector, rendered upon first request and then served until it has to be refreshed.
+     */
+    @Nullable
+    private volatile SignedMetadataDocument connectorMetadataDocument;
+
+    /**
+     * The signed metadata of the ProxyService, rendered upon first request and then served until it has to be
+     * refreshed.
+     */
+    @Nullable
+    private volatile SignedMetadataDocument proxyServiceMetadataDocument;
+
     public void setConnectorEngine(String connectorEngine) {
         this.connectorEngine = connectorEngine;
     }
@@ -109,6 +127,85 @@ public class EidasNodeMetadataGenerator {
         OrganizationData organization = NodeMetadataUtil.createServiceOrganization(nodeProps);
         return generateMetadata(true, proxyServiceMetadataUrl, technicalContact, supportContact, organization, loA, (MetadataSignerI) protocolEngine.getSigner());
     }
+
+    /**
+     * Returns the signed metadata of the Connector, which is only signed again when half of its validity period has
+     * elapsed or when the signing or encryption configuration has changed.
+     *
+     * @param protocolEngine the engine signing the metadata
+     * @return the signed metadata document
+     * @since 2.4
+     */
+    @Nonnull
+    public SignedMetadataDocument getConnectorMetadataDocument(@Nonnull ProtocolEngineI protocolEngine) {
+        return getMetadataDocument(false, protocolEngine);
+    }
+
+    /**
+     * Returns the signed metadata of the ProxyService, which is only signed again when half of its validity period has
+     * elapsed or when the signing or encryption configuration has changed.
+     *
+     * @param protocolEngine the engine signing the metadata
+     * @return the signed metadata document
+     * @since 2.4
+     */
+    @Nonnull
+    public SignedMetadataDocument getProxyServiceMetadataDocument(@Nonnull ProtocolEngineI protocolEngine) {
+        return getMetadataDocument(true, protocolEngine);
+    }
+
+    @Nonnull
+    private SignedMetadataDocument getMetadataDocument(boolean idpRole, @Nonnull ProtocolEngineI protocolEngine) {
+        List<?> configuration = getMetadataConfiguration(idpRole, protocolEngine);
+        long now = System.currentTimeMillis();
+        SignedMetadataDocument document = idpRole ? proxyServiceMetadataDocument : connectorMetadataDocument;
+        if (null != document && document.isUpToDate(configuration, now)) {
+            return document;
+        }
+        synchronized (this) {
+            document = idpRole ? proxyServiceMetadataDocument : connectorMetadataDocument;
+            if (null != document && document.isUpToDate(configuration, now)) {
+                return document;
+            }
+            String metadata =
+                    idpRole ? generateProxyServiceMetadata(protocolEngine) : generateConnectorMetadata(protocolEngine);
+            if (INVALID_METADATA.equals(metadata)) {
+                return new SignedMetadataDocument(metadata, now, now, null);
+            }
+            document = new SignedMetadataDocument(metadata, now, now + TimeUnit.SECONDS.toMillis(validityDuration) / 2,
+                                                  configuration);
+            if (idpRole) {
+                proxyServiceMetadataDocument = document;
+            } else {
+                connectorMetadataDocument = document;
+            }
+            return document;
+        }
+    }
+
+    /**
+     * Returns what the signed metadata depends on beyond the static properties: the signer and the certificates it
+     * exposes, which change when the engine configuration is reloaded.
+     *
+     * @return the configuration, or {@code null} if it cannot be determined
+     */
+    @Nullable
+    private List<?> getMetadataConfiguration(boolean idpRole, @Nonnull ProtocolEngineI protocolEngine) {
+        try {
+            MetadataSignerI signer = (MetadataSignerI) protocolEngine.getSigner();
+            ProtocolEngineI roleEngine =
+                    getNodeProtocolEngineFactory().getProtocolEngine(idpRole ? proxyServiceEngine : connectorEngine);
+            return Arrays.asList(signer,
+                                 null == signer.getPublicMetadataSigningCredential() ? null
+                                         : signer.getPublicMetadataSigningCredential().getEntityCertificate(),
+                                 roleEngine, roleEngine.getSigningCertificate(),
+                                 roleEngine.getDecryptionCertificate());
+        } catch (EIDASSAMLEngineException | RuntimeException e) {
+            LOGGER.debug("Unable to determine the metadata configuration", e);
+            return null;
+        }
+    }
+
     private String generateMetadata(boolean idpRole, String url, ContactData technicalContact,
                                     ContactData supportContact, OrganizationData organization, String loA, MetadataSignerI signer) {
         String metadata = INVALID_METADATA;
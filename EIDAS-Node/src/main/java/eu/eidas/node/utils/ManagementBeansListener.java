@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.node.utils;
+
+import eu.eidas.auth.commons.io.FileReloadScheduler;
+import eu.eidas.auth.commons.lang.ManagementBeans;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Servlet context listener stopping the shared background threads and unregistering the JMX beans of the node when
+ * the application is stopped, so that neither the threads nor the platform MBean server keep the class loader of the
+ * application.
+ *
+ * @since 2.4
+ */
+public class ManagementBeansListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        FileReloadScheduler.shutdownInstance();
+        ManagementBeans.unregisterAll();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.node.utils;
+
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A signed metadata document rendered once and served as is until it has to be refreshed.
+ * <p>
+ * The document keeps its UTF-8 and gzip encoded bytes and is served with validators ({@code ETag} and {@code
+ * Last-Modified}) so that conditional requests are answered with {@code 304 Not Modified}.
+ *
+ * @since 2.4
+ */
+@Immutable
+public final class SignedMetadataDocument {
+
+    private static final String GZIP = "gzip";
+
+    @Nonnull
+    private final String metadata;
+
+    @Nonnull
+    private final byte[] content;
+
+    @Nonnull
+    private final byte[] gzippedContent;
+
+    @Nonnull
+    private final String eTag;
+
+    /**
+     * When the document was rendered, in milliseconds truncated to the second as HTTP dates are.
+     */
+    private final long lastModified;
+
+    /**
+     * When the document must be rendered again, in milliseconds.
+     */
+    private final long refreshTime;
+
+    /**
+     * The configuration the document was rendered with, or {@code null} if it is unknown.
+     */
+    @Nullable
+    private final List<?> configuration;
+
+    /**
+     * Constructor.
+     *
+     * @param metadata the signed metadata
+     * @param renderingTime when the metadata was rendered, in milliseconds
+     * @param refreshTime when the metadata must be rendered again, in milliseconds
+     * @param configuration the configuration the metadata was rendered with, or {@code null} if it is unknown
+     */
+    public SignedMetadataDocument(@Nonnull String metadata,
+                                  long renderingTime,
+                                  long refreshTime,
+                                  @Nullable List<?> configuration) {
+        this.metadata = metadata;
+        content = metadata.getBytes(StandardCharsets.UTF_8);
+        gzippedContent = gzip(content);
+        eTag = '"' + Hashing.sha256().hashBytes(content).toString() + '"';
+        lastModified = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(renderingTime));
+        this.refreshTime = refreshTime;
+        this.configuration = configuration;
+    }
+
+    @Nonnull
+    private static byte[] gzip(@Nonnull byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean acceptsGzip(@Nonnull HttpServletRequest request) {
+        Enumeration<String> acceptEncodings = request.getHeaders("Accept-Encoding");
+        while (null != acceptEncodings && acceptEncodings.hasMoreElements()) {
+            for (String coding : acceptEncodings.nextElement().split(",")) {
+                String[] parameters = coding.split(";");
+                if (GZIP.equalsIgnoreCase(parameters[0].trim()) && !isRejected(parameters)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRejected(@Nonnull String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].replace(" ", "");
+            if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    public String getMetadata() {
+        return metadata;
+    }
+
+    @Nonnull
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getRefreshTime() {
+        return refreshTime;
+    }
+
+    /**
+     * Returns whether this document can still be served.
+     *
+     * @param configuration the current configuration, or {@code null} if it is unknown
+     * @param now the current time in milliseconds
+     * @return {@code true} if the document was rendered with the given configuration and does not have to be refreshed
+     * yet
+     */
+    public boolean isUpToDate(@Nullable List<?> configuration, long now) {
+        return now < refreshTime && null != configuration && configuration.equals(this.configuration);
+    }
+
+    private boolean isNotModified(@Nonnull HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (null != ifNoneMatch) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag) || eTag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= lastModified;
+    }
+
+    /**
+     * Writes this document in the given response, or answers {@code 304 Not Modified} if the request is conditional and
+     * the client already has this document.
+     *
+     * @param request the request
+     * @param response the response
+     * @param now the current time in milliseconds
+     * @throws IOException if the response cannot be written
+     */
+    public void write(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response, long now)
+            throws IOException {
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control",
+                           "public, max-age=" + TimeUnit.MILLISECONDS.toSeconds(Math.max(0L, refreshTime - now)));
+        response.setHeader("Vary", "Accept-Encoding");
+        if (isNotModified(request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType("text/xml");
+        response.setCharacterEncoding("UTF-8");
+        byte[] body = content;
+        if (acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", GZIP);
+            body = gzippedContent;
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -27,8 +27,10 @@ import eu.eidas.auth.commons.WebRequest;
 import eu.eidas.auth.commons.cache.ConcurrentMapServiceDistributedImpl;
 import eu.eidas.auth.commons.cache.HazelcastInstanceInitializer;
 import eu.eidas.auth.commons.exceptions.InvalidParameterEIDASException;
+import eu.eidas.node.auth.AUNODEUtil;
 import eu.eidas.node.auth.connector.AUCONNECTORUtil;
 import eu.eidas.node.auth.util.tests.TestingConstants;
+import org.apache.commons.lang.StringUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -211,6 +213,57 @@ public class AUCONNECTORUtilTestCase {
         // Second submission of same value, replay attack must be detected
         Assert.assertFalse("Second pass of replay attack", auconnectorutil.checkNotPresentInCache(ANTIREPLAY_SAML_ID_A, "EU"));
     }
+
+    /**
+     * Test method for {@link AUNODEUtil#checkNotPresentInCache(String, String)}
+     * <p>
+     * Must store fixed-width keys in the anti-replay cache and keep the ids of different countries apart.
+     */
+    @Test
+    public void testAntiReplayKeys() {
+        final AUCONNECTORUtil auconnectorutil = new AUCONNECTORUtil();
+        final Cache antiReplayCache = new ConcurrentMapJcacheServiceDefaultImpl().getConfiguredCache();
+        auconnectorutil.setAntiReplayCache(antiReplayCache);
+        auconnectorutil.flushReplayCache();
+        final String messageId = "_" + StringUtils.repeat("a1", 32);
+
+        Assert.assertTrue(auconnectorutil.checkNotPresentInCache(messageId, "EU"));
+        Assert.assertTrue(auconnectorutil.checkNotPresentInCache(messageId, "BE"));
+        Assert.assertFalse(auconnectorutil.checkNotPresentInCache(messageId, "BE"));
+
+        final String antiReplayKey = AUNODEUtil.toAntiReplayKey(messageId, "EU");
+        Assert.assertEquals(22, antiReplayKey.length());
+        Assert.assertEquals(22, AUNODEUtil.toAntiReplayKey(ANTIREPLAY_SAML_ID_A, "EU").length());
+        Assert.assertTrue(antiReplayCache.containsKey(antiReplayKey));
+        Assert.assertFalse(antiReplayCache.containsKey("EU/" + messageId));
+    }
+
+    /**
+     * Test method for {@link AUNODEUtil#checkNotPresentInCache(String, String)}
+     * <p>
+     * Must also record the legacy keys and detect the replay of a message recorded by a previous version when the
+     * migration flag is set.
+     */
+    @Test
+    public void testLegacyAntiReplayKeys() {
+        final AUCONNECTORUtil auconnectorutil = new AUCONNECTORUtil();
+        final Cache antiReplayCache = new ConcurrentMapJcacheServiceDefaultImpl().getConfiguredCache();
+        auconnectorutil.setAntiReplayCache(antiReplayCache);
+        auconnectorutil.flushReplayCache();
+        System.setProperty(EidasParameterKeys.ANTI_REPLAY_LEGACY_KEY.toString(), "true");
+        try {
+            Assert.assertTrue(auconnectorutil.checkNotPresentInCache(ANTIREPLAY_SAML_ID_A, "EU"));
+            Assert.assertTrue(antiReplayCache.containsKey(AUNODEUtil.toAntiReplayKey(ANTIREPLAY_SAML_ID_A, "EU")));
+            Assert.assertTrue(antiReplayCache.containsKey("EU/" + ANTIREPLAY_SAML_ID_A));
+
+            // recorded by a node of the previous version
+            antiReplayCache.put("BE/" + ANTIREPLAY_SAML_ID_A, Boolean.TRUE);
+            Assert.assertFalse(auconnectorutil.checkNotPresentInCache(ANTIREPLAY_SAML_ID_A, "BE"));
+        } finally {
+            System.clearProperty(EidasParameterKeys.ANTI_REPLAY_LEGACY_KEY.toString());
+        }
+    }
+
     /**
      * Checks the default anti-replay Cache.
      */
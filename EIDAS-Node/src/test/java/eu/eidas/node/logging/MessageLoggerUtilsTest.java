@@ -19,6 +19,7 @@ package eu.eidas.node.logging;
 
 import com.google.common.collect.ImmutableSortedSet;
 import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
 import eu.eidas.auth.commons.attribute.ImmutableAttributeMap;
 import eu.eidas.auth.commons.protocol.IAuthenticationRequest;
@@ -192,6 +193,57 @@ public class MessageLoggerUtilsTest {
         assertThat(iAuthenticationResponse.getIssuer(), is("http://cef-eid-build-1:8080/EidasNode/ServiceMetadata"));
     }
 
+    /**
+     * Test method for {@link MessageLoggerUtils#getIAuthenticationResponse(byte[])} with a failure response.
+     *
+     * Must read the status code, the subordinate status code and the status message.
+     */
+    @Test
+    public void getIAuthenticationResponseFailure() throws EIDASSAMLEngineException {
+        MessageLoggerUtils messageLoggerUtils = new MessageLoggerUtils();
+
+        final byte[] samlObj = EidasStringUtil.getBytes(
+                "<saml2p:Response xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\""
+                        + " xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_responseId\""
+                        + " InResponseTo=\"_requestId\" Version=\"2.0\" IssueInstant=\"2019-01-01T00:00:00Z\">"
+                        + "<saml2:Issuer>http://issuer</saml2:Issuer>"
+                        + "<saml2p:Status>"
+                        + "<saml2p:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Responder\">"
+                        + "<saml2p:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:AuthnFailed\"/>"
+                        + "</saml2p:StatusCode>"
+                        + "<saml2p:StatusMessage>failure</saml2p:StatusMessage>"
+                        + "</saml2p:Status>"
+                        + "</saml2p:Response>");
+        IAuthenticationResponse iAuthenticationResponse = messageLoggerUtils.getIAuthenticationResponse(samlObj);
+
+        assertThat(iAuthenticationResponse.getId(), is("_responseId"));
+        assertThat(iAuthenticationResponse.getInResponseToId(), is("_requestId"));
+        assertThat(iAuthenticationResponse.getIssuer(), is("http://issuer"));
+        assertThat(iAuthenticationResponse.getStatusCode(), is("urn:oasis:names:tc:SAML:2.0:status:Responder"));
+        assertThat(iAuthenticationResponse.getSubStatusCode(), is("urn:oasis:names:tc:SAML:2.0:status:AuthnFailed"));
+        assertThat(iAuthenticationResponse.getStatusMessage(), is("failure"));
+        assertThat(iAuthenticationResponse.isFailure(), is(true));
+    }
+
+    /**
+     * Test method for {@link MessageLoggerUtils#getIAuthenticationProxyRequest(byte[])} with a message containing a
+     * DTD.
+     *
+     * Must fail.
+     */
+    @Test(expected = EIDASSAMLEngineException.class)
+    public void getIAuthenticationProxyRequestWithDtd() throws EIDASSAMLEngineException {
+        MessageLoggerUtils messageLoggerUtils = new MessageLoggerUtils();
+
+        final byte[] samlObj = EidasStringUtil.getBytes(
+                "<!DOCTYPE AuthnRequest [<!ENTITY issuer \"http://issuer\">]>"
+                        + "<saml2p:AuthnRequest xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\""
+                        + " xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_requestId\">"
+                        + "<saml2:Issuer>&issuer;</saml2:Issuer>"
+                        + "</saml2p:AuthnRequest>");
+        messageLoggerUtils.getIAuthenticationProxyRequest(samlObj);
+    }
+
     /**
      * Test method for {@link MessageLoggerUtils#getConnectorEntityId(String)}. Must succeed.
      */
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.node.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for {@link RequestRateLimiter}
+ */
+public class RequestRateLimiterTest {
+
+    private static final long WINDOW = 60000L;
+
+    private static final long START = 1000000L;
+
+    /**
+     * Test method for {@link RequestRateLimiter#tryAcquire(String, long, int, long)}
+     * <p>
+     * Must allow as many requests as the threshold within the time span and refuse the following ones.
+     */
+    @Test
+    public void testThreshold() {
+        RequestRateLimiter limiter = new RequestRateLimiter();
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire("ip:1.2.3.4", WINDOW, 3, START + i));
+        }
+        Assert.assertFalse(limiter.tryAcquire("ip:1.2.3.4", WINDOW, 3, START + 3));
+        Assert.assertTrue(limiter.tryAcquire("ip:5.6.7.8", WINDOW, 3, START + 3));
+        Assert.assertEquals(3, limiter.getWindow("ip:1.2.3.4").getCurrentCount());
+    }
+
+    /**
+     * Test method for {@link RequestRateLimiter#tryAcquire(String, long, int, long)}
+     * <p>
+     * Must weight the requests of the previous window by the part of it which still overlaps the time span.
+     */
+    @Test
+    public void testSlidingWindow() {
+        RequestRateLimiter limiter = new RequestRateLimiter();
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.tryAcquire("sp:domain", WINDOW, 4, START));
+        }
+
+        // half of the previous window still overlaps: 4 * 0.5 = 2 requests remain counted
+        long halfWindowLater = START + WINDOW + WINDOW / 2;
+        Assert.assertTrue(limiter.tryAcquire("sp:domain", WINDOW, 4, halfWindowLater));
+        Assert.assertTrue(limiter.tryAcquire("sp:domain", WINDOW, 4, halfWindowLater));
+        Assert.assertFalse(limiter.tryAcquire("sp:domain", WINDOW, 4, halfWindowLater));
+        Assert.assertEquals(4, limiter.getWindow("sp:domain").getPreviousCount());
+
+        // the previous windows are forgotten once they no longer overlap the time span
+        Assert.assertTrue(limiter.tryAcquire("sp:domain", WINDOW, 4, START + 5 * WINDOW));
+        Assert.assertEquals(0, limiter.getWindow("sp:domain").getPreviousCount());
+        Assert.assertEquals(1, limiter.getWindow("sp:domain").getCurrentCount());
+    }
+
+    /**
+     * Test method for {@link RequestRateLimiter#tryAcquire(String, long, int, long)}
+     * <p>
+     * Must not count more requests than the threshold when they are issued concurrently.
+     */
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final RequestRateLimiter limiter = new RequestRateLimiter();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return limiter.tryAcquire("ip:1.2.3.4", WINDOW, 100, START);
+                    }
+                }));
+            }
+            int allowed = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get()) {
+                    allowed++;
+                }
+            }
+            Assert.assertEquals(100, allowed);
+            Assert.assertEquals(100, limiter.getWindow("ip:1.2.3.4").getCurrentCount());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Test method for {@link RequestRateLimiter#RequestRateLimiter(long, long)}
+     * <p>
+     * Must not keep the counters of more clients than the maximum size.
+     */
+    @Test
+    public void testMaximumSize() {
+        RequestRateLimiter limiter = new RequestRateLimiter(1L, RequestRateLimiter.DEFAULT_EXPIRE_AFTER_ACCESS);
+
+        Assert.assertTrue(limiter.tryAcquire("ip:1.2.3.4", WINDOW, 1, START));
+        Assert.assertTrue(limiter.tryAcquire("ip:5.6.7.8", WINDOW, 1, START));
+
+        Assert.assertNull(limiter.getWindow("ip:1.2.3.4"));
+        Assert.assertNotNull(limiter.getWindow("ip:5.6.7.8"));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.node.utils;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Test class for {@link SignedMetadataDocument}
+ */
+public class SignedMetadataDocumentTest {
+
+    private static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><md:EntityDescriptor/>";
+
+    private static final long RENDERING_TIME = 1500000000123L;
+
+    private static final long REFRESH_TIME = RENDERING_TIME + 3600000L;
+
+    private static final List<?> CONFIGURATION = Arrays.asList("signer", "certificate");
+
+    private static SignedMetadataDocument newDocument() {
+        return new SignedMetadataDocument(METADATA, RENDERING_TIME, REFRESH_TIME, CONFIGURATION);
+    }
+
+    /**
+     * Test method for {@link SignedMetadataDocument#write(javax.servlet.http.HttpServletRequest, HttpServletResponse,
+     * long)}
+     * <p>
+     * Must write the metadata with its validators and the time left before it is refreshed.
+     */
+    @Test
+    public void testWrite() throws Exception {
+        SignedMetadataDocument document = newDocument();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        document.write(new MockHttpServletRequest(), response, RENDERING_TIME + 600000L);
+
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        Assert.assertEquals(METADATA, response.getContentAsString());
+        Assert.assertEquals(document.getETag(), response.getHeader("ETag"));
+        Assert.assertEquals(RENDERING_TIME - 123L, response.getDateHeader("Last-Modified"));
+        Assert.assertEquals("public, max-age=3000", response.getHeader("Cache-Control"));
+        Assert.assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    /**
+     * Test method for {@link SignedMetadataDocument#write(javax.servlet.http.HttpServletRequest, HttpServletResponse,
+     * long)}
+     * <p>
+     * Must write the pre-compressed metadata when the client accepts gzip.
+     */
+    @Test
+    public void testWriteGzip() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "deflate, gzip;q=0.8");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        newDocument().write(request, response, RENDERING_TIME);
+
+        Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        byte[] content = ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        Assert.assertEquals(METADATA, new String(content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test method for {@link SignedMetadataDocument#write(javax.servlet.http.HttpServletRequest, HttpServletResponse,
+     * long)}
+     * <p>
+     * Must answer 304 without content when the client already has the document.
+     */
+    @Test
+    public void testWriteNotModified() throws Exception {
+        SignedMetadataDocument document = newDocument();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", " + document.getETag());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        document.write(request, response, RENDERING_TIME);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        Assert.assertEquals(0, response.getContentAsByteArray().length);
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-Modified-Since", document.getLastModified());
+        response = new MockHttpServletResponse();
+        document.write(request, response, RENDERING_TIME);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\"");
+        response = new MockHttpServletResponse();
+        document.write(request, response, RENDERING_TIME);
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    /**
+     * Test method for {@link SignedMetadataDocument#isUpToDate(List, long)}
+     * <p>
+     * Must only be up to date before the refresh time and for the configuration it was rendered with.
+     */
+    @Test
+    public void testIsUpToDate() {
+        SignedMetadataDocument document = newDocument();
+
+        Assert.assertTrue(document.isUpToDate(Arrays.asList("signer", "certificate"), REFRESH_TIME - 1L));
+        Assert.assertFalse(document.isUpToDate(CONFIGURATION, REFRESH_TIME));
+        Assert.assertFalse(document.isUpToDate(Arrays.asList("signer", "renewed certificate"), RENDERING_TIME));
+        Assert.assertFalse(document.isUpToDate(null, RENDERING_TIME));
+    }
+}
@@ -84,6 +84,11 @@ public abstract class AbstractProtocolEngine {
     @Nonnull
     private final ProtocolConfigurationAccessor configurationAccessor;
 
+    /**
+     * The configuration snapshot pinned by the current thread for the duration of one operation, if any.
+     */
+    private final ThreadLocal<ProtocolEngineConfiguration> configurationSnapshot = new ThreadLocal<>();
+
     protected AbstractProtocolEngine(@Nonnull ProtocolConfigurationAccessor configAccessor) {
         Preconditions.checkNotNull(configAccessor, "configurationAccessor");
         configurationAccessor = configAccessor;
@@ -129,7 +134,7 @@ public abstract class AbstractProtocolEngine {
     }
 
     @Nullable
-    private ProtocolDecrypterI getProtocolDecrypter() {
+    protected final ProtocolDecrypterI getProtocolDecrypter() {
         ProtocolCipherI cipher = getConfiguration().getCipher();
         if (cipher instanceof ProtocolDecrypterI) {
             return (ProtocolDecrypterI) cipher;
@@ -140,6 +145,16 @@ public abstract class AbstractProtocolEngine {
     @Nonnull
     @SuppressWarnings("squid:S2583")
     protected ProtocolEngineConfiguration getConfiguration() {
+        ProtocolEngineConfiguration snapshot = configurationSnapshot.get();
+        if (null != snapshot) {
+            return snapshot;
+        }
+        return getCurrentConfiguration();
+    }
+
+    @Nonnull
+    @SuppressWarnings("squid:S2583")
+    private ProtocolEngineConfiguration getCurrentConfiguration() {
         try {
             ProtocolEngineConfiguration protocolEngineConfiguration = configurationAccessor.get();
             if (null == protocolEngineConfiguration) {
@@ -151,6 +166,69 @@ public abstract class AbstractProtocolEngine {
         }
     }
 
+    /**
+     * Pins the current configuration for the current thread so that all the configuration lookups performed until
+     * {@link #releaseConfigurationSnapshot()} use the same immutable configuration instead of resolving it again.
+     * <p>
+     * Nested operations reuse the snapshot already pinned by the outermost operation.
+     * <p>
+     * Usage:
+     * <pre>
+     * boolean pinned = pinConfigurationSnapshot();
+     * try {
+     *     ...
+     * } finally {
+     *     if (pinned) {
+     *         releaseConfigurationSnapshot();
+     *     }
+     * }
+     * </pre>
+     *
+     * @return {@code true} if this call pinned the snapshot and must release it, {@code false} if a snapshot was
+     * already pinned by an enclosing operation.
+     * @since 2.4
+     */
+    protected final boolean pinConfigurationSnapshot() {
+        if (null != configurationSnapshot.get()) {
+            return false;
+        }
+        configurationSnapshot.set(getCurrentConfiguration());
+        return true;
+    }
+
+    /**
+     * Releases the configuration snapshot pinned by {@link #pinConfigurationSnapshot()}.
+     *
+     * @since 2.4
+     */
+    protected final void releaseConfigurationSnapshot() {
+        configurationSnapshot.remove();
+    }
+
+    /**
+     * Captures the configuration snapshot pinned by the current thread, so that the threads validating signatures on
+     * behalf of it use the same configuration.
+     *
+     * @return the context to attach to the validating threads
+     */
+    @Nonnull
+    final ParallelSignatureValidation.ThreadContext captureConfigurationSnapshot() {
+        final ProtocolEngineConfiguration snapshot = configurationSnapshot.get();
+        return new ParallelSignatureValidation.ThreadContext() {
+            @Override
+            public void attach() {
+                if (null != snapshot) {
+                    configurationSnapshot.set(snapshot);
+                }
+            }
+
+            @Override
+            public void detach() {
+                configurationSnapshot.remove();
+            }
+        };
+    }
+
     /**
      * Gets the Encrypter.
      *
@@ -355,13 +433,36 @@ public abstract class AbstractProtocolEngine {
      * @throws EIDASSAMLEngineException the SAML engine exception
      */
     protected final Response validateSignatureAndDecrypt(Response response) throws EIDASSAMLEngineException {
+        validateResponseSignature(response);
+        return decryptResponse(response);
+    }
+
+    /**
+     * Method that validates the XML Signature of a SAML Response.
+     *
+     * @param response response that contains the signature
+     * @throws EIDASSAMLEngineException the SAML engine exception
+     * @since 2.4
+     */
+    protected final void validateResponseSignature(@Nonnull Response response) throws EIDASSAMLEngineException {
         LOG.debug("Validate response Signature");
-        Response validResponse = response;
         X509Certificate signatureCertificate =
-                getProtocolProcessor().getResponseSignatureCertificate(validResponse.getIssuer().getValue());
-        getSigner().validateSignature(validResponse,
+                getProtocolProcessor().getResponseSignatureCertificate(response.getIssuer().getValue());
+        getSigner().validateSignature(response,
                                       null == signatureCertificate ? null : ImmutableSet.of(signatureCertificate));
+    }
 
+    /**
+     * Method that decrypts a SAML Response whose signature has been validated, if it was encrypted.
+     *
+     * @param response the validated response
+     * @return the decrypted response
+     * @throws EIDASSAMLEngineException the SAML engine exception
+     * @since 2.4
+     */
+    @Nonnull
+    protected final Response decryptResponse(@Nonnull Response response) throws EIDASSAMLEngineException {
+        Response validResponse = response;
         if (null != getProtocolDecrypter()) {
             if (!validResponse.getEncryptedAssertions().isEmpty()) {
                 // DECRYPT THE SAMLObject AFTER VALIDATION
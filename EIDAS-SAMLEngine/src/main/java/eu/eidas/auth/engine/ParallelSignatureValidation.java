@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import eu.eidas.auth.commons.EidasErrorKey;
+import eu.eidas.auth.engine.metadata.MetadataResolutionScope;
+import eu.eidas.engine.exceptions.EIDASSAMLEngineException;
+import org.slf4j.MDC;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs independent signature validations concurrently on a bounded pool owned by one engine.
+ * <p>
+ * The validations are given in the order in which the sequential path performs them. The error thrown is the one of
+ * the first failed validation in that order: it is thrown as soon as all the validations before it are known to have
+ * succeeded, and the validations still pending are then cancelled. The error codes are therefore the same as with
+ * the sequential path.
+ * <p>
+ * The validations must not share a DOM: the DOM implementation is not thread-safe, not even for reading.
+ * <p>
+ * The pool threads run the validations within the {@link MDC} context and the {@link MetadataResolutionScope} of the
+ * calling thread, and within the {@link ThreadContext} given by the engine.
+ * <p>
+ * The pool has one thread per processor and as many slots for the validations waiting for a thread. When all of them
+ * are taken, by this message or by concurrent ones, a validation is run on the calling thread instead of being queued,
+ * so that a message does not wait behind the validations of the other messages.
+ * <p>
+ * The pool is created upon first use and shut down by {@link #close()}, or when the JVM shuts down if the engine is
+ * never closed. Its idle threads terminate after {@value #KEEP_ALIVE_SECONDS} seconds.
+ *
+ * @since 2.4
+ */
+final class ParallelSignatureValidation {
+
+    /**
+     * A signature validation.
+     */
+    interface Validation {
+
+        void validate() throws EIDASSAMLEngineException;
+    }
+
+    /**
+     * The context of the calling thread which the engine needs in the pool threads, captured before the validations
+     * are submitted.
+     */
+    interface ThreadContext {
+
+        /**
+         * Installs the captured context in the current pool thread.
+         */
+        void attach();
+
+        /**
+         * Removes the captured context from the current pool thread.
+         */
+        void detach();
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    /**
+     * Runs the rejected validations on the submitting thread like {@link ThreadPoolExecutor.CallerRunsPolicy}, but
+     * also when the pool has just been shut down by a concurrent {@link #close()}, so that no validation is dropped.
+     */
+    private static final RejectedExecutionHandler RUN_ON_CALLER = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            task.run();
+        }
+    };
+
+    /**
+     * The number of pool threads, which is also the number of validations which can wait for a thread.
+     */
+    private final int threads;
+
+    /**
+     * The pool, guarded by this instance, or {@code null} before the first use and after closing.
+     */
+    @Nullable
+    private ThreadPoolExecutor executor;
+
+    @Nullable
+    private Thread shutdownHook;
+
+    private boolean closed;
+
+    ParallelSignatureValidation() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    ParallelSignatureValidation(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the given validations concurrently, or on the calling thread once this instance is closed.
+     *
+     * @param validations the validations in the order of the sequential path
+     * @param threadContext the context of the calling thread needed by the validations
+     * @throws EIDASSAMLEngineException the error of the first failed validation in the given order
+     */
+    void validateAll(@Nonnull List<? extends Validation> validations, @Nonnull ThreadContext threadContext)
+            throws EIDASSAMLEngineException {
+        int size = validations.size();
+        if (size == 0) {
+            return;
+        }
+        ThreadPoolExecutor pool = size == 1 ? null : getExecutor();
+        if (null == pool) {
+            for (final Validation validation : validations) {
+                validation.validate();
+            }
+            return;
+        }
+        final Thread caller = Thread.currentThread();
+        final Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        final MetadataResolutionScope.Handle metadataResolutionScope = MetadataResolutionScope.current();
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(pool);
+        List<Future<Void>> futures = new ArrayList<>(size);
+        try {
+            for (final Validation validation : validations) {
+                futures.add(completionService.submit(
+                        newTask(validation, caller, threadContext, mdcContext, metadataResolutionScope)));
+            }
+            Throwable[] failures = new Throwable[size];
+            boolean[] completed = new boolean[size];
+            int firstPending = 0;
+            for (int i = 0; i < size; i++) {
+                Future<Void> future = completionService.take();
+                int index = futures.indexOf(future);
+                completed[index] = true;
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures[index] = e.getCause();
+                }
+                while (firstPending < size && completed[firstPending]) {
+                    if (null != failures[firstPending]) {
+                        throw rethrow(failures[firstPending]);
+                    }
+                    firstPending++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EIDASSAMLEngineException(EidasErrorKey.INTERNAL_ERROR.errorCode(),
+                                               EidasErrorKey.INTERNAL_ERROR.errorMessage(), e);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Nonnull
+    private static Callable<Void> newTask(@Nonnull final Validation validation,
+                                          @Nonnull final Thread caller,
+                                          @Nonnull final ThreadContext threadContext,
+                                          @Nullable final Map<String, String> mdcContext,
+                                          @Nullable final MetadataResolutionScope.Handle metadataResolutionScope) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws EIDASSAMLEngineException {
+                if (Thread.currentThread() == caller) {
+                    // rejected by the saturated pool: the calling thread already has the context
+                    validation.validate();
+                    return null;
+                }
+                if (null != mdcContext) {
+                    MDC.setContextMap(mdcContext);
+                }
+                if (null != metadataResolutionScope) {
+                    MetadataResolutionScope.join(metadataResolutionScope);
+                }
+                threadContext.attach();
+                try {
+                    validation.validate();
+                    return null;
+                } finally {
+                    threadContext.detach();
+                    MetadataResolutionScope.close();
+                    MDC.clear();
+                }
+            }
+        };
+    }
+
+    @Nullable
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (null == executor && !closed) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                             new ArrayBlockingQueue<Runnable>(threads),
+                                                             new ThreadFactoryBuilder().setDaemon(true)
+                                                                     .setNameFormat("eidas-signature-validation-%d")
+                                                                     .build(), RUN_ON_CALLER);
+            pool.allowCoreThreadTimeOut(true);
+            Thread hook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            }, "eidas-signature-validation-shutdown");
+            Runtime.getRuntime().addShutdownHook(hook);
+            executor = pool;
+            shutdownHook = hook;
+        }
+        return executor;
+    }
+
+    /**
+     * Shuts the pool down. The validations already submitted complete, the validations run afterwards are run on the
+     * calling thread.
+     */
+    void close() {
+        ThreadPoolExecutor pool;
+        Thread hook;
+        synchronized (this) {
+            closed = true;
+            pool = executor;
+            hook = shutdownHook;
+            executor = null;
+            shutdownHook = null;
+        }
+        if (null != pool) {
+            pool.shutdown();
+        }
+        if (null != hook && Thread.currentThread() != hook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    @Nonnull
+    private static EIDASSAMLEngineException rethrow(@Nonnull Throwable failure) {
+        if (failure instanceof EIDASSAMLEngineException) {
+            return (EIDASSAMLEngineException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new EIDASSAMLEngineException(EidasErrorKey.INTERNAL_ERROR.errorCode(),
+                                            EidasErrorKey.INTERNAL_ERROR.errorMessage(), failure);
+    }
+}
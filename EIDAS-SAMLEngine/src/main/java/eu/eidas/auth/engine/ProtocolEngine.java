@@ -26,38 +26,34 @@ import eu.eidas.auth.commons.protocol.IRequestMessage;
 import eu.eidas.auth.commons.protocol.IResponseMessage;
 import eu.eidas.auth.commons.protocol.impl.BinaryRequestMessage;
 import eu.eidas.auth.commons.protocol.impl.BinaryResponseMessage;
+import eu.eidas.auth.commons.xml.DocumentBuilderFactoryUtil;
+import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
 import eu.eidas.auth.engine.configuration.ProtocolConfigurationAccessor;
-import eu.eidas.auth.engine.core.eidas.RequestedAttribute;
-import eu.eidas.auth.engine.core.eidas.RequestedAttributes;
-import eu.eidas.auth.engine.core.validator.eidas.EidasAssertionValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasAttributeValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasAuthnRequestValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasAuthnStatementValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasConditionsValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasIssuerValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasRequestedAttributeValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasResponseOneAssertionValidator;
-import eu.eidas.auth.engine.core.validator.eidas.EidasResponseValidator;
-import eu.eidas.auth.engine.core.validator.eidas.ExtensionsSchemaValidator;
+import eu.eidas.auth.engine.core.ProtocolSignerI;
+import eu.eidas.auth.engine.core.validator.eidas.EidasValidatorSuite;
+import eu.eidas.auth.engine.metadata.MetadataResolutionScope;
 import eu.eidas.auth.engine.xml.opensaml.CorrelatedResponse;
 import eu.eidas.auth.engine.xml.opensaml.XmlSchemaUtil;
+import eu.eidas.encryption.exception.UnmarshallException;
 import eu.eidas.engine.exceptions.EIDASSAMLEngineException;
 import eu.eidas.engine.exceptions.ValidationException;
 import eu.eidas.util.WhitelistUtil;
 import org.opensaml.saml.saml2.core.Assertion;
-import org.opensaml.saml.saml2.core.Attribute;
-import org.opensaml.saml.saml2.core.AttributeStatement;
 import org.opensaml.saml.saml2.core.AuthnRequest;
-import org.opensaml.saml.saml2.core.AuthnStatement;
-import org.opensaml.saml.saml2.core.Extensions;
 import org.opensaml.saml.saml2.core.Issuer;
 import org.opensaml.saml.saml2.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -103,6 +99,9 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     private static final Logger LOG = LoggerFactory.getLogger(ProtocolEngine.class);
 
+    @Nonnull
+    private final ParallelSignatureValidation parallelSignatureValidation = new ParallelSignatureValidation();
+
     /**
      * Constructs a new Saml engine instance.
      *
@@ -112,6 +111,44 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
         super(configurationAccessor);
     }
 
+    /**
+     * Releases the threads validating signatures concurrently, if any.
+     * <p>
+     * The engine remains usable and validates the signatures on the calling thread afterwards.
+     *
+     * @since 2.4
+     */
+    public void close() {
+        parallelSignatureValidation.close();
+    }
+
+    /**
+     * An operation of the engine run by {@link #withEngineScope(EngineOperation)}.
+     */
+    private interface EngineOperation<T> {
+
+        T run() throws EIDASSAMLEngineException;
+    }
+
+    /**
+     * Runs the given operation with the configuration snapshot pinned and the metadata resolution scope open, unless
+     * an enclosing operation already did.
+     */
+    private <T> T withEngineScope(@Nonnull EngineOperation<T> operation) throws EIDASSAMLEngineException {
+        boolean pinned = pinConfigurationSnapshot();
+        boolean scopeOpened = MetadataResolutionScope.open();
+        try {
+            return operation.run();
+        } finally {
+            if (scopeOpened) {
+                MetadataResolutionScope.close();
+            }
+            if (pinned) {
+                releaseConfigurationSnapshot();
+            }
+        }
+    }
+
     public static boolean needsTransliteration(String v) {
         return AttributeValueTransliterator.needsTransliteration(v);
     }
@@ -151,8 +188,18 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public IRequestMessage generateRequestMessage(@Nonnull IAuthenticationRequest request,
-                                                  @Nonnull String serviceIssuer) throws EIDASSAMLEngineException {
+    public IRequestMessage generateRequestMessage(@Nonnull final IAuthenticationRequest request,
+                                                  @Nonnull final String serviceIssuer) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IRequestMessage>() {
+            @Override
+            public IRequestMessage run() throws EIDASSAMLEngineException {
+                return generateRequestMessageInEngineScope(request, serviceIssuer);
+            }
+        });
+    }
+
+    private IRequestMessage generateRequestMessageInEngineScope(@Nonnull IAuthenticationRequest request,
+                                                                @Nonnull String serviceIssuer) throws EIDASSAMLEngineException {
         LOG.trace("Generate SAMLAuthnRequest.");
         if (null == request) {
             LOG.debug(SAML_EXCHANGE, "Sign and Marshall - null input");
@@ -190,10 +237,22 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public IResponseMessage generateResponseMessage(@Nonnull IAuthenticationRequest request,
-                                                    @Nonnull IAuthenticationResponse response,
-                                                    boolean signAssertion,
-                                                    String ipAddress) throws EIDASSAMLEngineException {
+    public IResponseMessage generateResponseMessage(@Nonnull final IAuthenticationRequest request,
+                                                    @Nonnull final IAuthenticationResponse response,
+                                                    final boolean signAssertion,
+                                                    final String ipAddress) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IResponseMessage>() {
+            @Override
+            public IResponseMessage run() throws EIDASSAMLEngineException {
+                return generateResponseMessageInEngineScope(request, response, signAssertion, ipAddress);
+            }
+        });
+    }
+
+    private IResponseMessage generateResponseMessageInEngineScope(@Nonnull IAuthenticationRequest request,
+                                                                  @Nonnull IAuthenticationResponse response,
+                                                                  boolean signAssertion,
+                                                                  String ipAddress) throws EIDASSAMLEngineException {
         LOG.trace("generateResponseMessage");
         // Validate parameters
         validateParamResponse(request, response);
@@ -218,7 +277,6 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
             samlResponse.getAssertions().addAll(signedAssertions);
         }
         return encryptAndSignAndMarshallResponse(request, response, samlResponse);
-
     }
 
     private IResponseMessage encryptAndSignAndMarshallResponse(@Nonnull IAuthenticationRequest request,
@@ -246,10 +304,20 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public IResponseMessage generateResponseErrorMessage(@Nonnull IAuthenticationRequest request,
-                                                         @Nonnull IAuthenticationResponse response,
-                                                         @Nonnull String ipAddress) throws EIDASSAMLEngineException {
+    public IResponseMessage generateResponseErrorMessage(@Nonnull final IAuthenticationRequest request,
+                                                         @Nonnull final IAuthenticationResponse response,
+                                                         @Nonnull final String ipAddress) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IResponseMessage>() {
+            @Override
+            public IResponseMessage run() throws EIDASSAMLEngineException {
+                return generateResponseErrorMessageInEngineScope(request, response, ipAddress);
+            }
+        });
+    }
 
+    private IResponseMessage generateResponseErrorMessageInEngineScope(@Nonnull IAuthenticationRequest request,
+                                                                       @Nonnull IAuthenticationResponse response,
+                                                                       @Nonnull String ipAddress) throws EIDASSAMLEngineException {
         Response responseFail =
                 getProtocolProcessor().marshallErrorResponse(request, response, ipAddress, getCoreProperties(), getClock().getCurrentTime());
 
@@ -266,11 +334,22 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public IResponseMessage generateResponseErrorMessage(@Nonnull IAuthenticationRequest request,
-                                                         @Nonnull IAuthenticationResponse response,
-                                                         @Nonnull String ipAddress,
-                                                         List<String> applicationIdentifiers) throws EIDASSAMLEngineException {
+    public IResponseMessage generateResponseErrorMessage(@Nonnull final IAuthenticationRequest request,
+                                                         @Nonnull final IAuthenticationResponse response,
+                                                         @Nonnull final String ipAddress,
+                                                         final List<String> applicationIdentifiers) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IResponseMessage>() {
+            @Override
+            public IResponseMessage run() throws EIDASSAMLEngineException {
+                return generateResponseErrorMessageInEngineScope(request, response, ipAddress, applicationIdentifiers);
+            }
+        });
+    }
 
+    private IResponseMessage generateResponseErrorMessageInEngineScope(@Nonnull IAuthenticationRequest request,
+                                                                       @Nonnull IAuthenticationResponse response,
+                                                                       @Nonnull String ipAddress,
+                                                                       List<String> applicationIdentifiers) throws EIDASSAMLEngineException {
         Response responseFail =
                 getProtocolProcessor().marshallErrorResponse(request, response, ipAddress, getCoreProperties(), getClock().getCurrentTime(), applicationIdentifiers);
 
@@ -288,7 +367,16 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      * @return the SAML request instance
      * @throws EIDASSAMLEngineException the EIDASSAML engine exception
      */
-    public AuthnRequest unmarshallRequest(@Nonnull byte[] requestBytes) throws EIDASSAMLEngineException {
+    public AuthnRequest unmarshallRequest(@Nonnull final byte[] requestBytes) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<AuthnRequest>() {
+            @Override
+            public AuthnRequest run() throws EIDASSAMLEngineException {
+                return unmarshallRequestInEngineScope(requestBytes);
+            }
+        });
+    }
+
+    private AuthnRequest unmarshallRequestInEngineScope(@Nonnull byte[] requestBytes) throws EIDASSAMLEngineException {
         LOG.trace("Validate request bytes.");
 
         if (null == requestBytes) {
@@ -316,8 +404,19 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
 	@Override
     @Nonnull
-    public IAuthenticationRequest unmarshallRequestAndValidate(@Nonnull byte[] requestBytes,
-                                                                   @Nonnull String citizenCountryCode)
+    public IAuthenticationRequest unmarshallRequestAndValidate(@Nonnull final byte[] requestBytes,
+                                                                   @Nonnull final String citizenCountryCode)
+                throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IAuthenticationRequest>() {
+            @Override
+            public IAuthenticationRequest run() throws EIDASSAMLEngineException {
+                return unmarshallRequestAndValidateInEngineScope(requestBytes, citizenCountryCode);
+            }
+        });
+    }
+
+    private IAuthenticationRequest unmarshallRequestAndValidateInEngineScope(@Nonnull byte[] requestBytes,
+                                                                                 @Nonnull String citizenCountryCode)
                 throws EIDASSAMLEngineException {
         LOG.trace("processValidateRequestToken");
 
@@ -348,7 +447,16 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public Correlated unmarshallResponse(byte[] responseBytes) throws EIDASSAMLEngineException {
+    public Correlated unmarshallResponse(final byte[] responseBytes) throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<Correlated>() {
+            @Override
+            public Correlated run() throws EIDASSAMLEngineException {
+                return unmarshallResponseInEngineScope(responseBytes);
+            }
+        });
+    }
+
+    private Correlated unmarshallResponseInEngineScope(byte[] responseBytes) throws EIDASSAMLEngineException {
         LOG.trace("Validate response bytes.");
 
         if (null == responseBytes) {
@@ -379,11 +487,25 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Override
     @Nonnull
-    public IAuthenticationResponse unmarshallResponseAndValidate(@Nonnull byte[] responseBytes,
-                                                                 @Nonnull String userIpAddress,
-                                                                 long beforeSkewTimeInMillis,
-                                                                 long afterSkewTimeInMillis,
-                                                                 @Nullable String audienceRestriction)
+    public IAuthenticationResponse unmarshallResponseAndValidate(@Nonnull final byte[] responseBytes,
+                                                                 @Nonnull final String userIpAddress,
+                                                                 final long beforeSkewTimeInMillis,
+                                                                 final long afterSkewTimeInMillis,
+                                                                 @Nullable final String audienceRestriction)
+            throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IAuthenticationResponse>() {
+            @Override
+            public IAuthenticationResponse run() throws EIDASSAMLEngineException {
+                return unmarshallResponseAndValidateInEngineScope(responseBytes, userIpAddress, beforeSkewTimeInMillis, afterSkewTimeInMillis, audienceRestriction);
+            }
+        });
+    }
+
+    private IAuthenticationResponse unmarshallResponseAndValidateInEngineScope(@Nonnull byte[] responseBytes,
+                                                                               @Nonnull String userIpAddress,
+                                                                               long beforeSkewTimeInMillis,
+                                                                               long afterSkewTimeInMillis,
+                                                                               @Nullable String audienceRestriction)
             throws EIDASSAMLEngineException {
         Correlated samlResponse = unmarshallResponse(responseBytes);
 
@@ -413,6 +535,102 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
         }
     }
 
+    /**
+     * Validates the signature of the response and decrypts it as {@link #validateSignatureAndDecrypt(Response)} does,
+     * then validates the signatures of its assertions concurrently, in the same order and with the same error codes
+     * as {@link #validateAssertionSignatures(Response)}.
+     * <p>
+     * The assertions of a response share its DOM, which is not thread-safe even for reading: each assertion is
+     * therefore copied into a document of its own on the calling thread before its signature is validated by another
+     * thread.
+     */
+    @Nonnull
+    private Response validateSignaturesInParallelAndDecrypt(@Nonnull Response response)
+            throws EIDASSAMLEngineException {
+        Response decryptedResponse = validateSignatureAndDecrypt(response);
+        if (!getCoreProperties().isValidateSignature()) {
+            return decryptedResponse;
+        }
+        List<Assertion> signedAssertions = new ArrayList<>();
+        for (Assertion assertion : decryptedResponse.getAssertions()) {
+            if (assertion.isSigned() && null != assertion.getSignature()) {
+                if (null == assertion.getDOM()) {
+                    validateAssertionSignatures(decryptedResponse);
+                    return decryptedResponse;
+                }
+                signedAssertions.add(assertion);
+            }
+        }
+        if (signedAssertions.size() < 2) {
+            validateAssertionSignatures(decryptedResponse);
+            return decryptedResponse;
+        }
+        try {
+            final ProtocolSignerI signer = getSigner();
+            X509Certificate signatureCertificate =
+                    getProtocolProcessor().getResponseSignatureCertificate(decryptedResponse.getIssuer().getValue());
+            final ImmutableSet<X509Certificate> trustedCertificates =
+                    null == signatureCertificate ? null : ImmutableSet.of(signatureCertificate);
+            List<ParallelSignatureValidation.Validation> validations = new ArrayList<>(signedAssertions.size());
+            for (Assertion signedAssertion : signedAssertions) {
+                final Assertion assertion = copyIntoOwnDocument(signedAssertion);
+                validations.add(new ParallelSignatureValidation.Validation() {
+                    @Override
+                    public void validate() throws EIDASSAMLEngineException {
+                        signer.validateSignature(assertion, trustedCertificates);
+                    }
+                });
+            }
+            parallelSignatureValidation.validateAll(validations, captureConfigurationSnapshot());
+        } catch (EIDASSAMLEngineException e) {
+            throw new EIDASSAMLEngineException(EidasErrorKey.INVALID_ASSERTION_SIGNATURE.errorCode(),
+                    EidasErrorKey.INVALID_ASSERTION_SIGNATURE.errorMessage(), e);
+        }
+        return decryptedResponse;
+    }
+
+    /**
+     * Copies the given assertion into a document of its own, declaring on its root the namespaces it inherits from the
+     * response so that its canonical form, and therefore its signature, is unchanged.
+     *
+     * @param assertion the assertion, unmarshalled from a DOM
+     * @return the copy of the assertion
+     * @throws EIDASSAMLEngineException if the assertion cannot be copied
+     */
+    @Nonnull
+    static Assertion copyIntoOwnDocument(@Nonnull Assertion assertion) throws EIDASSAMLEngineException {
+        Element element = assertion.getDOM();
+        Document document;
+        try {
+            document = DocumentBuilderFactoryUtil.newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new EIDASSAMLEngineException(EidasErrorKey.INTERNAL_ERROR.errorCode(),
+                    EidasErrorKey.INTERNAL_ERROR.errorMessage(), e);
+        }
+        Element copy = (Element) document.importNode(element, true);
+        for (Node ancestor = element.getParentNode(); ancestor instanceof Element;
+             ancestor = ancestor.getParentNode()) {
+            NamedNodeMap attributes = ancestor.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attribute = (Attr) attributes.item(i);
+                // the nearest declaration of a prefix wins
+                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())
+                        && !copy.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attribute.getLocalName())) {
+                    copy.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attribute.getName(),
+                            attribute.getValue());
+                }
+            }
+        }
+        document.appendChild(copy);
+        try {
+            // registers the ID attribute referenced by the signature
+            return (Assertion) OpenSamlHelper.unmarshallFromDom(document);
+        } catch (UnmarshallException e) {
+            throw new EIDASSAMLEngineException(EidasErrorKey.INTERNAL_ERROR.errorCode(),
+                    EidasErrorKey.INTERNAL_ERROR.errorMessage(), e);
+        }
+    }
+
     /**
      * Validate parameters from response.
      *
@@ -429,21 +647,7 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
 
     private void validateRequestWithValidatorSuite(@Nonnull AuthnRequest request) throws EIDASSAMLEngineException {
         try {
-            EidasIssuerValidator eidasIssuerValidator = new EidasIssuerValidator();
-            eidasIssuerValidator.validate(request.getIssuer());
-
-            EidasAuthnRequestValidator eidasAuthnRequestValidator = new EidasAuthnRequestValidator();
-            eidasAuthnRequestValidator.validate(request);
-
-            Extensions extensions = request.getExtensions();
-            ExtensionsSchemaValidator extensionsSchemaValidator = new ExtensionsSchemaValidator();
-            extensionsSchemaValidator.validate(extensions);
-
-            List<RequestedAttribute> reqAttrs = ((RequestedAttributes) extensions.getUnknownXMLObjects(RequestedAttributes.DEF_ELEMENT_NAME).get(0)).getAttributes();
-            for (RequestedAttribute requestedAttribute : reqAttrs) {
-                EidasRequestedAttributeValidator eidasRequestedAttributeValidator = new EidasRequestedAttributeValidator();
-                eidasRequestedAttributeValidator.validate(requestedAttribute);
-            }
+            EidasValidatorSuite.INSTANCE.validate(request);
         } catch (ValidationException e) {
             LOG.error(SAML_EXCHANGE, "BUSINESS EXCEPTION : validate AuthnRequest: " + e, e);
             throw new EIDASSAMLEngineException(EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorCode(),
@@ -453,30 +657,7 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
 
     private void validateResponseWithValidatorSuite(@Nonnull Response response) throws EIDASSAMLEngineException {
         try {
-            EidasResponseOneAssertionValidator eidasResponseOneAssertionValidator = new EidasResponseOneAssertionValidator();
-            eidasResponseOneAssertionValidator.validate(response);
-
-            EidasResponseValidator eidasResponseValidator = new EidasResponseValidator();
-            eidasResponseValidator.validate(response);
-
-            for (Assertion assertion : response.getAssertions()) {
-                EidasAssertionValidator eidasAssertionValidator = new EidasAssertionValidator();
-                eidasAssertionValidator.validate(assertion);
-
-                EidasConditionsValidator eidasConditionsValidator = new EidasConditionsValidator();
-                eidasConditionsValidator.validate(assertion.getConditions());
-
-                for (AuthnStatement authnStatement : assertion.getAuthnStatements()) {
-                    EidasAuthnStatementValidator eidasAuthnStatementValidator = new EidasAuthnStatementValidator();
-                    eidasAuthnStatementValidator.validate(authnStatement);
-                }
-                for (AttributeStatement attributeStatement : assertion.getAttributeStatements()) {
-                    for (Attribute attribute : attributeStatement.getAttributes()) {
-                        EidasAttributeValidator eidasAttributeValidator = new EidasAttributeValidator();
-                        eidasAttributeValidator.validate(attribute);
-                    }
-                }
-            }
+            EidasValidatorSuite.INSTANCE.validate(response);
         } catch (ValidationException e) {
             LOG.error(SAML_EXCHANGE, "BUSINESS EXCEPTION : validate Response: " + e, e);
             throw new EIDASSAMLEngineException(EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorCode(),
@@ -533,9 +714,13 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
         String country = getProtocolProcessor().getCountryCode(validResponse);
         LOG.debug(SAML_EXCHANGE, "Response received from country: " + country);
         try {
-            validResponse = validateSignatureAndDecrypt(validResponse);
+            if (getCoreProperties().isParallelSignatureValidation()) {
+                validResponse = validateSignaturesInParallelAndDecrypt(validResponse);
+            } else {
+                validResponse = validateSignatureAndDecrypt(validResponse);
 
-            validateAssertionSignatures(validResponse);
+                validateAssertionSignatures(validResponse);
+            }
         } catch (EIDASSAMLEngineException e) {
             LOG.error(SAML_EXCHANGE, "BUSINESS EXCEPTION : SAMLEngineException validateSignature: " + e,
                     e.getMessage(), e);
@@ -557,13 +742,26 @@ public class ProtocolEngine extends AbstractProtocolEngine implements ProtocolEn
      */
     @Nonnull
     @Override
-    public IAuthenticationResponse validateUnmarshalledResponse(@Nonnull Correlated unmarshalledResponse,
-                                                                @Nonnull String userIpAddress,
-                                                                long beforeSkewTimeInMillis,
-                                                                long afterSkewTimeInMillis,
-                                                                @Nullable String audienceRestriction)
+    public IAuthenticationResponse validateUnmarshalledResponse(@Nonnull final Correlated unmarshalledResponse,
+                                                                @Nonnull final String userIpAddress,
+                                                                final long beforeSkewTimeInMillis,
+                                                                final long afterSkewTimeInMillis,
+                                                                @Nullable final String audienceRestriction)
             throws EIDASSAMLEngineException {
+        return withEngineScope(new EngineOperation<IAuthenticationResponse>() {
+            @Override
+            public IAuthenticationResponse run() throws EIDASSAMLEngineException {
+                return validateUnmarshalledResponseInEngineScope(unmarshalledResponse, userIpAddress, beforeSkewTimeInMillis, afterSkewTimeInMillis, audienceRestriction);
+            }
+        });
+    }
 
+    private IAuthenticationResponse validateUnmarshalledResponseInEngineScope(@Nonnull Correlated unmarshalledResponse,
+                                                                              @Nonnull String userIpAddress,
+                                                                              long beforeSkewTimeInMillis,
+                                                                              long afterSkewTimeInMillis,
+                                                                              @Nullable String audienceRestriction)
+            throws EIDASSAMLEngineException {
         Response response = ((CorrelatedResponse) unmarshalledResponse).getResponse();
 
         return getProtocolProcessor().unmarshallResponse(response, getCoreProperties().isIpValidation(), userIpAddress,
@@ -185,4 +185,18 @@ public class ProtocolEngineFactory {
         Preconditions.checkNotBlank(instanceName, "instanceName");
         return engines.get(instanceName.trim());
     }
+
+    /**
+     * Releases the resources held by the engines created by this factory, such as the threads validating signatures
+     * concurrently.
+     *
+     * @since 2.4
+     */
+    public void close() {
+        for (final ProtocolEngineI engine : engines.values()) {
+            if (engine instanceof ProtocolEngine) {
+                ((ProtocolEngine) engine).close();
+            }
+        }
+    }
 }
@@ -53,6 +53,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -522,20 +523,59 @@ public final class DOMConfigurator {
                                           @Nonnull Class<? extends T> concreteImplementation,
                                           @Nonnull final SingletonAccessor<T> accessor) {
         return (T) ReflectionUtil.newProxyInstance(contextClassLoader, interfaceType, concreteImplementation,
-                                                   new InvocationHandler() {
-
-                                                       @Override
-                                                       public Object invoke(Object proxy, Method method, Object[] args)
-                                                               throws Throwable {
-                                                           try {
-                                                               return method.invoke(accessor.get(), args);
-                                                           } catch (InvocationTargetException e) { //NOSONAR
-                                                               throw e.getTargetException();
-                                                           } catch (IOException e) {
-                                                               throw new IllegalStateException(e);
-                                                           }
-                                                       }
-                                                   });
+                                                   new ReloadableComponentInvocationHandler<>(accessor));
+    }
+
+    /**
+     * Returns the object currently targeted by the given (possibly nested) reloadable component proxy, or the given
+     * object itself when it is not such a proxy.
+     *
+     * @param component the (possibly proxied) configuration component
+     * @return the plain configuration component
+     * @since 2.4
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> T resolveReloadableProxy(@Nullable T component) throws IOException {
+        T target = component;
+        while (null != target && Proxy.isProxyClass(target.getClass())) {
+            InvocationHandler invocationHandler = Proxy.getInvocationHandler(target);
+            if (!(invocationHandler instanceof ReloadableComponentInvocationHandler)) {
+                break;
+            }
+            target = ((ReloadableComponentInvocationHandler<T>) invocationHandler).getTarget();
+        }
+        return target;
+    }
+
+    /**
+     * InvocationHandler delegating to the current value of a reloadable configuration component.
+     *
+     * @since 2.4
+     */
+    private static final class ReloadableComponentInvocationHandler<T> implements InvocationHandler {
+
+        @Nonnull
+        private final SingletonAccessor<T> accessor;
+
+        ReloadableComponentInvocationHandler(@Nonnull SingletonAccessor<T> accessor) {
+            this.accessor = accessor;
+        }
+
+        T getTarget() throws IOException {
+            return accessor.get();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(accessor.get(), args);
+            } catch (InvocationTargetException e) { //NOSONAR
+                throw e.getTargetException();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
     @Nonnull
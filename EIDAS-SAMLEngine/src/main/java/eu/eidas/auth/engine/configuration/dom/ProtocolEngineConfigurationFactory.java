@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 
 /**
@@ -82,8 +83,26 @@ public final class ProtocolEngineConfigurationFactory {
     public ProtocolEngineConfigurationFactory(@Nonnull String configurationFileName,
                                               @Nullable String overrideFileName,
                                               @Nullable String defaultPath) {
+        this(configurationFileName, overrideFileName, defaultPath, false);
+    }
+
+    /**
+     * Creates a factory whose configurations are reloaded when the configuration file is modified.
+     *
+     * @param configurationFileName the name of the configuration file
+     * @param overrideFileName the file containing overriding properties if any, otherwise {@code null}
+     * @param defaultPath optional path to the configuration file
+     * @param snapshotConfiguration {@code true} to obtain immutable configuration snapshots swapped in the background
+     * when the file changes, {@code false} to obtain proxies checking the file on each invocation
+     * @since 2.4
+     */
+    public ProtocolEngineConfigurationFactory(@Nonnull String configurationFileName,
+                                              @Nullable String overrideFileName,
+                                              @Nullable String defaultPath,
+                                              boolean snapshotConfiguration) {
         Preconditions.checkNotBlank(configurationFileName, "configurationFileName");
-        accessor = new ReloadableProtocolConfigurationMap(configurationFileName, overrideFileName, defaultPath).getAccessor();
+        accessor = new ReloadableProtocolConfigurationMap(configurationFileName, overrideFileName, defaultPath,
+                                                          snapshotConfiguration).getAccessor();
     }
 
     public ProtocolEngineConfigurationFactory(@Nonnull CertificateConfigurationManager configManager)
@@ -124,4 +143,19 @@ public final class ProtocolEngineConfigurationFactory {
     public SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> getConfigurationMapAccessor() {
         return accessor;
     }
+
+    /**
+     * Releases the background resources of the factory, such as the task refreshing the configuration snapshots.
+     *
+     * @since 2.4
+     */
+    public void close() {
+        if (accessor instanceof Closeable) {
+            try {
+                ((Closeable) accessor).close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close the configuration accessor: " + e, e);
+            }
+        }
+    }
 }
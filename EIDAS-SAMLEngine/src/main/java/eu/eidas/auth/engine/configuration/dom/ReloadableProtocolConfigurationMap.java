@@ -71,6 +71,23 @@ public final class ReloadableProtocolConfigurationMap {
     public ReloadableProtocolConfigurationMap(@Nonnull final String configurationFileName,
                                               @Nullable final String overrideFileName,
                                               @Nullable final String defaultPath) {
+        this(configurationFileName, overrideFileName, defaultPath, false);
+    }
+
+    /**
+     *
+     * @param configurationFileName the name of the configuration properties file.
+     * @param overrideFileName the configuration properties file name containing overriding properties if any, otherwise
+     * {@code null}.
+     * @param defaultPath optional path to the configuration properties file.
+     * @param snapshotConfiguration when {@code true}, the accessor returns immutable snapshots of the configurations
+     * (swapped by a background check of the configuration file) instead of proxies checking the file on each call.
+     * @since 2.4
+     */
+    public ReloadableProtocolConfigurationMap(@Nonnull final String configurationFileName,
+                                              @Nullable final String overrideFileName,
+                                              @Nullable final String defaultPath,
+                                              boolean snapshotConfiguration) {
         Preconditions.checkNotNull(configurationFileName, "configurationFileName");
 
         SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
@@ -111,9 +128,16 @@ public final class ReloadableProtocolConfigurationMap {
                                                                    overrideFileName);
                                                        }
                                                    });
-        // each interface component in the returned configuration can be cached as a reference in client code,
-        // therefore each such interface must be a proxy capable of reloading its configuration
-        accessor = new ReloadableProtocolConfigurationProxyMapAccessor(fileAccessor);
+        if (snapshotConfiguration) {
+            // client code must not cache the interface components but must take a snapshot of the configuration
+            // for the duration of each operation
+            accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor,
+                                                                    SnapshotProtocolConfigurationMapAccessor.DEFAULT_REFRESH_INTERVAL_MILLIS);
+        } else {
+            // each interface component in the returned configuration can be cached as a reference in client code,
+            // therefore each such interface must be a proxy capable of reloading its configuration
+            accessor = new ReloadableProtocolConfigurationProxyMapAccessor(fileAccessor);
+        }
     }
 
     @Nonnull
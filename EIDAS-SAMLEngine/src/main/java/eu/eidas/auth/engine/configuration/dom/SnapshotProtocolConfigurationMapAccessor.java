@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+package eu.eidas.auth.engine.configuration.dom;
+
+import com.google.common.collect.ImmutableMap;
+import eu.eidas.auth.commons.io.FileReloadScheduler;
+import eu.eidas.auth.commons.io.SingletonAccessor;
+import eu.eidas.auth.engine.configuration.ProtocolEngineConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accessor returning an immutable snapshot of the protocol engine configurations.
+ * <p>
+ * Unlike {@link ReloadableProtocolConfigurationProxyMapAccessor}, the returned configurations are not proxies: their
+ * core properties, signer and cipher are the plain objects currently loaded by the {@link DOMConfigurator}. The
+ * underlying reloadable files are only checked by a task of the shared {@link FileReloadScheduler} which atomically
+ * swaps the snapshot when one of them has been modified, so calling {@link #get()} never hits the filesystem.
+ * <p>
+ * The refresh task is cancelled by {@link #close()}, which must be called when the accessor is discarded.
+ *
+ * @since 2.4
+ */
+final class SnapshotProtocolConfigurationMapAccessor
+        implements SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>>, Closeable {
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotProtocolConfigurationMapAccessor.class);
+
+    /**
+     * Default interval between two checks of the configuration file.
+     */
+    static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 5000L;
+
+    @Nonnull
+    private final SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor;
+
+    @Nonnull
+    private final AtomicReference<ImmutableMap<String, ProtocolEngineConfiguration>> snapshot =
+            new AtomicReference<>();
+
+    @Nullable
+    private final ScheduledFuture<?> refreshTask;
+
+    SnapshotProtocolConfigurationMapAccessor(
+            @Nonnull SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor,
+            long refreshIntervalMillis) {
+        this.fileAccessor = fileAccessor;
+        try {
+            snapshot.set(newSnapshot(fileAccessor.get()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load configuration: " + e, e);
+        }
+        if (refreshIntervalMillis > 0L) {
+            refreshTask = FileReloadScheduler.getInstance().scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, refreshIntervalMillis);
+        } else {
+            refreshTask = null;
+        }
+    }
+
+    @Nonnull
+    private static ImmutableMap<String, ProtocolEngineConfiguration> newSnapshot(
+            @Nonnull ImmutableMap<String, ProtocolEngineConfiguration> configurations) throws IOException {
+        ImmutableMap.Builder<String, ProtocolEngineConfiguration> builder = ImmutableMap.builder();
+        for (Map.Entry<String, ProtocolEngineConfiguration> entry : configurations.entrySet()) {
+            ProtocolEngineConfiguration configuration = entry.getValue();
+            builder.put(entry.getKey(), ProtocolEngineConfiguration.builder(configuration)
+                    .coreProperties(DOMConfigurator.resolveReloadableProxy(configuration.getCoreProperties()))
+                    .signer(DOMConfigurator.resolveReloadableProxy(configuration.getSigner()))
+                    .cipher(DOMConfigurator.resolveReloadableProxy(configuration.getCipher()))
+                    .build());
+        }
+        return builder.build();
+    }
+
+    private static boolean isSameSnapshot(@Nonnull ImmutableMap<String, ProtocolEngineConfiguration> snapshot,
+                                          @Nonnull ImmutableMap<String, ProtocolEngineConfiguration> other) {
+        if (!snapshot.keySet().equals(other.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, ProtocolEngineConfiguration> entry : snapshot.entrySet()) {
+            ProtocolEngineConfiguration configuration = entry.getValue();
+            ProtocolEngineConfiguration otherConfiguration = other.get(entry.getKey());
+            if (configuration.getCoreProperties() != otherConfiguration.getCoreProperties()
+                    || configuration.getSigner() != otherConfiguration.getSigner()
+                    || configuration.getCipher() != otherConfiguration.getCipher()
+                    || configuration.getProtocolProcessor() != otherConfiguration.getProtocolProcessor()
+                    || configuration.getClock() != otherConfiguration.getClock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the underlying reloadable files and swaps the current snapshot if any of them was reloaded.
+     * <p>
+     * A configuration which cannot be reloaded is logged and the previous snapshot is kept.
+     */
+    void refresh() {
+        try {
+            ImmutableMap<String, ProtocolEngineConfiguration> currentValue = fileAccessor.get();
+            if (null == currentValue) {
+                return;
+            }
+            ImmutableMap<String, ProtocolEngineConfiguration> previousSnapshot = snapshot.get();
+            ImmutableMap<String, ProtocolEngineConfiguration> newSnapshot = newSnapshot(currentValue);
+            if (!isSameSnapshot(previousSnapshot, newSnapshot)
+                    && snapshot.compareAndSet(previousSnapshot, newSnapshot)) {
+                LOG.info("Protocol engine configuration reloaded: " + newSnapshot.keySet());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Unable to reload the protocol engine configuration, keeping the previous one: " + e, e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public ImmutableMap<String, ProtocolEngineConfiguration> get() {
+        return snapshot.get();
+    }
+
+    @Override
+    public void set(@Nonnull ImmutableMap<String, ProtocolEngineConfiguration> newValue)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels the background refresh of the snapshot; the current snapshot remains available.
+     */
+    @Override
+    public void close() {
+        if (null != refreshTask) {
+            refreshTask.cancel(false);
+        }
+    }
+}
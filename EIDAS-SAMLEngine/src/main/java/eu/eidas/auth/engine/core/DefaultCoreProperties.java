@@ -122,6 +122,8 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
 
         private boolean validateSignature = true;
 
+        private boolean parallelSignatureValidation = false;
+
         private Set<String> supportedMessageFormatNames = new HashSet<>();
 
         /**
@@ -204,6 +206,11 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
             return this;
         }
 
+        public Builder parallelSignatureValidation(final boolean parallelSignatureValidation) {
+            this.parallelSignatureValidation = parallelSignatureValidation;
+            return this;
+        }
+
         private void validate() {
             // validation logic
         }
@@ -277,6 +284,8 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
 
         private final boolean validateSignature;
 
+        private final boolean parallelSignatureValidation;
+
         private TypedState(@Nonnull Builder builder) {
             consentAuthnReq = builder.consentAuthnReq;
             consentAuthnResp = builder.consentAuthnResp;
@@ -292,6 +301,7 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
             timeNotOnOrAfter = builder.timeNotOnOrAfter;
             supportedMessageFormatNames = ImmutableSet.copyOf(builder.supportedMessageFormatNames);
             validateSignature = builder.validateSignature;
+            parallelSignatureValidation = builder.parallelSignatureValidation;
         }
     }
 
@@ -500,6 +510,11 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
         return state.validateSignature;
     }
 
+    @Override
+    public boolean isParallelSignatureValidation() {
+        return state.parallelSignatureValidation;
+    }
+
     /**
      * Method that loads the configuration file for the SAML Engine.
      */
@@ -553,6 +568,12 @@ public final class DefaultCoreProperties implements SamlEngineCoreProperties {
                 builder.validateSignature(parseBoolean(validateSignature));
             }
 
+            String parallelSignatureValidation =
+                    samlCoreProp.get(SAMLCore.PARALLEL_SIGNATURE_VALIDATION_TAG.getValue());
+            if (isNotBlank(parallelSignatureValidation)) {
+                builder.parallelSignatureValidation(parseBoolean(parallelSignatureValidation));
+            }
+
             builder.supportedMessageFormatNames(loadSupportedFormats());
 
             return builder.build();
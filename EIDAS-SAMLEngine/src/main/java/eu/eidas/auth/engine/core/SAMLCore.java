@@ -56,6 +56,9 @@ public enum SAMLCore {
     /** The validateSignature tag. */
     VALIDATE_SIGNATURE_TAG("validateSignature"),
 
+    /** The parallelSignatureValidation tag. */
+    PARALLEL_SIGNATURE_VALIDATION_TAG("parallelSignatureValidation"),
+
     /** The EIDAS10 saml extension ns. */
     EIDAS10_SAML_NS("http://eidas.europa.eu/saml-extensions"),
     /** The EIDAS10_ ns. */
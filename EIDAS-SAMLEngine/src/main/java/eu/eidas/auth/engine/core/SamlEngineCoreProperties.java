@@ -58,4 +58,10 @@ public interface SamlEngineCoreProperties {
     boolean isOneTimeUse();
 
     boolean isValidateSignature();
+
+    /**
+     * @return {@code true} if the independent signatures of a response are validated concurrently.
+     * @since 2.4
+     */
+    boolean isParallelSignatureValidation();
 }
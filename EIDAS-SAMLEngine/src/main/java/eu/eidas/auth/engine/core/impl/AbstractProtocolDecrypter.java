@@ -105,7 +105,8 @@ public abstract class AbstractProtocolDecrypter extends AbstractProtocolCipher i
 
             jcaProviderName = getJcaProviderNameWithDefault(jcaProviderName);
 
-            samlAuthnResponseDecrypter = new SAMLAuthnResponseDecrypter(jcaProviderName);
+            // the engine decrypts responses it has just unmarshalled and does not reuse them afterwards
+            samlAuthnResponseDecrypter = new SAMLAuthnResponseDecrypter(jcaProviderName, true);
 
             LOG.trace("AbstractProtocolDecrypter loaded.");
         } catch (Exception e) {
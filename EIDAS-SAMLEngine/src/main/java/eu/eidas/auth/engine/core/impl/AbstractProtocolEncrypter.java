@@ -129,6 +129,8 @@ public abstract class AbstractProtocolEncrypter extends AbstractProtocolCipher i
                     .jcaProviderName(jcaProviderName)
                     .keyEncryptionAlgorithm(keyEncryptionAlgorithm)
                     .keyEncryptionAlgorithmForKeyAgreement(keyEncryptionAlgorithmForKeyAgreement)
+                    // the engine encrypts responses it has just generated and does not reuse them afterwards
+                    .inPlace(true)
                     .build();
 
             LOG.debug("AbstractSamlEngineEncryption loaded.");
@@ -159,6 +159,14 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
 
     private final ImmutableList<X509Credential> trustedCredentials;
 
+    private final ImmutableSet<X509Certificate> trustedCertificates;
+
+    /**
+     * The credentials resolved from the signatures and their trust verdicts, discarded with this signer when the
+     * keystore is reloaded.
+     */
+    private final TrustedCredentialCache trustedCredentialCache = new TrustedCredentialCache();
+
     private final String signatureAlgorithm;
 
     private final ImmutableSet<X509Certificate> metadataKeystoreCertificates;
@@ -207,6 +215,7 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
         this.requestSignWithKey = requestSignWithKey;
         this.responseSignWithKey = responseSignWithKey;
         trustedCredentials = CertificateUtil.getListOfCredential(trustedCertificates);
+        this.trustedCertificates = trustedCertificates;
         this.signatureAlgorithmWhiteList = signatureAlgorithmWhiteSet;
         this.signatureAlgorithm = signatureAlg;
         privateSigningCredential = CertificateUtil.createCredential(signatureKeyAndCertificate);
@@ -356,15 +365,22 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
      *
      * @param signature the signature instance
      * @param trustedCredentialList the trusted certificates which can be used to sign the given signature
+     * @param trustedCertificateSet the certificates of the trusted credentials
      * @return the signing certificate if it is trusted, or throws an exception otherwise.
      * @throws EIDASSAMLEngineException when the signature is signed by an untrusted certificate
      */
     @Nonnull
     private X509Credential getTrustedCertificate(@Nonnull Signature signature,
-                                                 @Nonnull List<? extends Credential> trustedCredentialList)
+                                                 @Nonnull List<? extends Credential> trustedCredentialList,
+                                                 @Nonnull ImmutableSet<X509Certificate> trustedCertificateSet)
             throws EIDASSAMLEngineException {
         X509Credential entityX509Cred;
         if(CertificateUtil.isSignatureWithCertificate(signature)){
+            TrustedCredentialCache.Key cacheKey =
+                    TrustedCredentialCache.newKey(signature.getKeyInfo(), trustedCertificateSet);
+            if (null != cacheKey) {
+                return getCachedTrustedCertificate(signature, trustedCredentialList, cacheKey);
+            }
             X509Certificate cert = getSignatureCertificate(signature);
             // Exist only one certificate
             entityX509Cred = CertificateUtil.toCredential(cert);
@@ -389,6 +405,59 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
         return entityX509Cred;
     }
 
+    /**
+     * Returns the trusted signing certificate of the given signature from the cache of this signer, the
+     * certification path of a certificate being validated at most once as long as the certificate is valid.
+     *
+     * @param signature the signature instance
+     * @param trustedCredentialList the trusted certificates which can be used to sign the given signature
+     * @param cacheKey the cache key of the certificates of the signature
+     * @return the signing certificate if it is trusted, or throws an exception otherwise.
+     * @throws EIDASSAMLEngineException when the signature is signed by an untrusted certificate
+     */
+    @Nonnull
+    private X509Credential getCachedTrustedCertificate(@Nonnull Signature signature,
+                                                       @Nonnull List<? extends Credential> trustedCredentialList,
+                                                       @Nonnull TrustedCredentialCache.Key cacheKey)
+            throws EIDASSAMLEngineException {
+        long now = System.currentTimeMillis();
+        TrustedCredentialCache.Entry entry = trustedCredentialCache.get(cacheKey, now);
+        if (null == entry) {
+            X509Certificate cert = getSignatureCertificate(signature);
+            X509Credential entityX509Cred = CertificateUtil.toCredential(cert);
+            addAllSignatureCertificatesToCredential(signature, entityX509Cred);
+
+            checkCertificateValidityPeriod(cert);
+            checkCertificateIssuer(cert);
+            try {
+                CertificateUtil.checkChainTrust(entityX509Cred, trustedCredentialList);
+                entry = TrustedCredentialCache.Entry.trusted(entityX509Cred);
+            } catch (CertificateException e) {
+                entry = TrustedCredentialCache.Entry.untrusted(entityX509Cred, e);
+            }
+            trustedCredentialCache.put(cacheKey, entry, now);
+        } else {
+            X509Certificate cert = entry.getCredential().getEntityCertificate();
+            checkCertificateValidityPeriod(cert);
+            checkCertificateIssuer(cert);
+        }
+        X509Credential entityX509Cred = entry.getCredential();
+        LOG.info("isSignatureWithCertificate = " + entityX509Cred.getEntityId());
+        if (null != entry.getTrustFailure()) {
+            throw new EIDASSAMLEngineException(EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorCode(),
+                                               entry.getTrustFailure());
+        }
+        return entityX509Cred;
+    }
+
+    @Nonnull
+    private ImmutableSet<X509Certificate> toCertificateSet(@Nonnull List<? extends Credential> trustedCredentialList) {
+        if (trustedCredentialList == trustedCredentials) {
+            return trustedCertificates;
+        }
+        return ImmutableSet.copyOf(CertificateUtil.getCertificates(trustedCredentialList));
+    }
+
     private void addAllSignatureCertificatesToCredential(@Nonnull Signature signature, X509Credential entityX509Cred) throws EIDASSAMLEngineException {
         if (entityX509Cred instanceof BasicX509Credential) {
             List<X509Certificate> signatureCertificates;
@@ -542,33 +611,40 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
                                                                      Collection<X509Certificate> trustedCertificateCollection)
             throws EIDASSAMLEngineException {
         List<? extends Credential> trustedCreds;
+        ImmutableSet<X509Certificate> trustedCertificateSet;
 
         // 2) Verify the cryptographic signature:
         if (CollectionUtils.isEmpty(trustedCertificateCollection)) {
             trustedCreds = getTrustedCredentials();
+            trustedCertificateSet = toCertificateSet(trustedCreds);
         } else {
             trustedCreds = CertificateUtil.getListOfCredential(trustedCertificateCollection);
+            // returns the given set itself when it is already immutable
+            trustedCertificateSet = ImmutableSet.copyOf(trustedCertificateCollection);
         }
-        return validateSignatureWithCredentials(signedObject, trustedCreds);
+        return validateSignatureWithCredentials(signedObject, trustedCreds, trustedCertificateSet);
     }
 
     @Nonnull
     private <T extends SignableXMLObject> T validateSignatureWithCredentials(@Nonnull T signedObject,
                                                                              @Nonnull
-                                                                                     List<? extends Credential> trustedCredentialList)
+                                                                                     List<? extends Credential> trustedCredentialList,
+                                                                             @Nonnull
+                                                                                     ImmutableSet<X509Certificate> trustedCertificateSet)
             throws EIDASSAMLEngineException {
         LOG.debug("Start signature validation.");
         // 1) Validate the structure of the SAML signature:
         validateSamlSignatureStructure(signedObject);
 
         // 2) Verify the cryptographic signature:
-        verifyCryptographicSignature(signedObject.getSignature(), trustedCredentialList);
+        verifyCryptographicSignature(signedObject.getSignature(), trustedCredentialList, trustedCertificateSet);
 
         return signedObject;
     }
 
     private void verifyCryptographicSignature(@Nonnull Signature signature,
-                                              @Nonnull List<? extends Credential> trustedCredentialList)
+                                              @Nonnull List<? extends Credential> trustedCredentialList,
+                                              @Nonnull ImmutableSet<X509Certificate> trustedCertificateSet)
             throws EIDASSAMLEngineException {
         // 1) check that we accept the signature algorithm
         String signatureAlgorithmVal = signature.getSignatureAlgorithm();
@@ -579,7 +655,7 @@ public abstract class AbstractProtocolSigner implements ProtocolSignerI, Metadat
         }
 
         // 2) check that we trust the signing certificate
-        X509Credential entityX509Cred = getTrustedCertificate(signature, trustedCredentialList);
+        X509Credential entityX509Cred = getTrustedCertificate(signature, trustedCredentialList, trustedCertificateSet);
 
         // 3) verify the XML Digital Signature itself (XML-DSig)
         // DOM information related to the signature should be still available at this point
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.core.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import eu.eidas.auth.commons.lang.ManagementBeans;
+import eu.eidas.util.Preconditions;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.X509Data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the credentials resolved from the {@link KeyInfo} of signatures, together with the verdict of the
+ * certification path validation of these credentials against a set of trusted certificates.
+ * <p>
+ * Entries are keyed by the base64 text of the certificates carried by the {@link KeyInfo}, as found in the message, and
+ * by the trusted certificates they were validated against, so that a cache hit decodes nothing. An entry expires as
+ * soon as one of the certificates of its chain is no longer valid and is never created while one of these certificates
+ * is not yet valid.
+ * <p>
+ * Each signer owns its own cache, so that reloading the keystore, which creates a new signer, also discards all the
+ * verdicts obtained against the previous trusted certificates.
+ * <p>
+ * The hit and miss counts of all the caches are exposed in JMX under {@code
+ * eu.eidas:type=TrustedCredentialCache,name="default"}.
+ *
+ * @since 2.4
+ */
+@ThreadSafe
+final class TrustedCredentialCache {
+
+    /**
+     * The default maximum number of cached credentials.
+     */
+    static final int DEFAULT_MAX_SIZE = 256;
+
+    /**
+     * Separates the certificates of a chain in a key, not being a base64 character.
+     */
+    private static final char CERTIFICATE_SEPARATOR = ',';
+
+    /**
+     * The counts of all the caches, registered in JMX upon first use.
+     */
+    private static final class Statistics implements TrustedCredentialCacheMXBean {
+
+        private static final Statistics INSTANCE = newInstance();
+
+        private final AtomicLong hitCount = new AtomicLong();
+
+        private final AtomicLong missCount = new AtomicLong();
+
+        private static Statistics newInstance() {
+            Statistics instance = new Statistics();
+            ManagementBeans.register("TrustedCredentialCache", "default", instance);
+            return instance;
+        }
+
+        @Override
+        public long getHitCount() {
+            return hitCount.get();
+        }
+
+        @Override
+        public long getMissCount() {
+            return missCount.get();
+        }
+    }
+
+    /**
+     * A cached credential and its trust verdict.
+     */
+    static final class Entry {
+
+        @Nonnull
+        private final X509Credential credential;
+
+        @Nullable
+        private final CertificateException trustFailure;
+
+        private final long expiryMillis;
+
+        private final long notBeforeMillis;
+
+        private Entry(@Nonnull X509Credential credential, @Nullable CertificateException trustFailure) {
+            Preconditions.checkNotNull(credential, "credential");
+            this.credential = credential;
+            this.trustFailure = trustFailure;
+            long expiry = credential.getEntityCertificate().getNotAfter().getTime();
+            long notBefore = credential.getEntityCertificate().getNotBefore().getTime();
+            if (null != credential.getEntityCertificateChain()) {
+                for (final X509Certificate certificate : credential.getEntityCertificateChain()) {
+                    expiry = Math.min(expiry, certificate.getNotAfter().getTime());
+                    notBefore = Math.max(notBefore, certificate.getNotBefore().getTime());
+                }
+            }
+            this.expiryMillis = expiry;
+            this.notBeforeMillis = notBefore;
+        }
+
+        @Nonnull
+        static Entry trusted(@Nonnull X509Credential credential) {
+            return new Entry(credential, null);
+        }
+
+        @Nonnull
+        static Entry untrusted(@Nonnull X509Credential credential, @Nonnull CertificateException trustFailure) {
+            Preconditions.checkNotNull(trustFailure, "trustFailure");
+            return new Entry(credential, trustFailure);
+        }
+
+        @Nonnull
+        X509Credential getCredential() {
+            return credential;
+        }
+
+        /**
+         * @return the reason why the credential is not trusted, or {@code null} if it is trusted.
+         */
+        @Nullable
+        CertificateException getTrustFailure() {
+            return trustFailure;
+        }
+
+        boolean isValidAt(long nowMillis) {
+            return nowMillis >= notBeforeMillis && nowMillis <= expiryMillis;
+        }
+    }
+
+    /**
+     * The key of a cached credential.
+     */
+    static final class Key {
+
+        @Nonnull
+        private final String certificates;
+
+        @Nonnull
+        private final ImmutableSet<X509Certificate> trustedCertificates;
+
+        private final int hashCode;
+
+        Key(@Nonnull String certificates, @Nonnull ImmutableSet<X509Certificate> trustedCertificates) {
+            Preconditions.checkNotNull(certificates, "certificates");
+            Preconditions.checkNotNull(trustedCertificates, "trustedCertificates");
+            this.certificates = certificates;
+            this.trustedCertificates = trustedCertificates;
+            hashCode = 31 * certificates.hashCode() + trustedCertificates.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashCode == key.hashCode && certificates.equals(key.certificates)
+                    && trustedCertificates.equals(key.trustedCertificates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    @Nonnull
+    private final Cache<Key, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    TrustedCredentialCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    TrustedCredentialCache(int maxSize) {
+        Preconditions.checkNotNegative(maxSize, "maxSize");
+        entries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Computes the cache key of the certificates contained in the given {@link KeyInfo} when validated against the
+     * given trusted certificates.
+     *
+     * @param keyInfo the {@link KeyInfo} of the signature
+     * @param trustedCertificates the trusted certificates
+     * @return the cache key or {@code null} if the {@link KeyInfo} does not contain any certificate
+     */
+    @Nullable
+    static Key newKey(@Nonnull KeyInfo keyInfo, @Nonnull ImmutableSet<X509Certificate> trustedCertificates) {
+        Preconditions.checkNotNull(keyInfo, "keyInfo");
+        String first = null;
+        StringBuilder chain = null;
+        for (final X509Data x509Data : keyInfo.getX509Datas()) {
+            for (final org.opensaml.xmlsec.signature.X509Certificate certificate : x509Data.getX509Certificates()) {
+                String value = certificate.getValue();
+                if (null == value) {
+                    return null;
+                }
+                if (null == first) {
+                    first = value;
+                } else {
+                    if (null == chain) {
+                        chain = new StringBuilder(first);
+                    }
+                    chain.append(CERTIFICATE_SEPARATOR).append(value);
+                }
+            }
+        }
+        if (null == first) {
+            return null;
+        }
+        return new Key(null == chain ? first : chain.toString(), trustedCertificates);
+    }
+
+    /**
+     * Returns the cached entry for the given key if it is still valid at the given time.
+     *
+     * @param key the cache key
+     * @param nowMillis the current time in milliseconds
+     * @return the cached entry or {@code null} if there is none
+     */
+    @Nullable
+    Entry get(@Nonnull Key key, long nowMillis) {
+        Entry entry = entries.getIfPresent(key);
+        if (null != entry && !entry.isValidAt(nowMillis)) {
+            entries.invalidate(key);
+            entry = null;
+        }
+        if (null == entry) {
+            missCount.incrementAndGet();
+            Statistics.INSTANCE.missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+            Statistics.INSTANCE.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the given entry unless one of its certificates is not valid at the given time.
+     *
+     * @param key the cache key
+     * @param entry the entry to cache
+     * @param nowMillis the current time in milliseconds
+     */
+    void put(@Nonnull Key key, @Nonnull Entry entry, long nowMillis) {
+        if (entry.isValidAt(nowMillis)) {
+            entries.put(key, entry);
+        }
+    }
+
+    long size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+}
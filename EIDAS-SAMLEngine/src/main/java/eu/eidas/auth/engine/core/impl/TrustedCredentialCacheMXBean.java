@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.core.impl;
+
+/**
+ * Management interface of the counts of the {@link TrustedCredentialCache}s of all the signers.
+ *
+ * @since 2.4
+ */
+public interface TrustedCredentialCacheMXBean {
+
+    /**
+     * @return the number of signing credentials served by a cache, whose certification path was not validated again
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of signing credentials which were not cached or whose cached entry had expired
+     */
+    long getMissCount();
+}
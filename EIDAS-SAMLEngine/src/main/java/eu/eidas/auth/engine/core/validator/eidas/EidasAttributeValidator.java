@@ -35,7 +35,18 @@ import java.util.regex.Pattern;
 public final class EidasAttributeValidator extends AttributeSchemaValidator {
 
     //TODO "Not Specified" is a temporary allowed value to avoid interoperability issues, it will be removed in future
-    private static final String PATTERN_GENDER_EIDAS = "^(?:Male|Female|Unspecified|Not Specified)$";
+    private static final Pattern PATTERN_GENDER_EIDAS =
+            Pattern.compile("^(?:Male|Female|Unspecified|Not Specified)$");
+
+    private static final String GENDER_NAME_URI = EidasSpec.Definitions.GENDER.getNameUri().toASCIIString();
+
+    private static final String REPV_GENDER_NAME_URI =
+            EidasSpec.Definitions.REPV_GENDER.getNameUri().toASCIIString();
+
+    private static final String DATE_OF_BIRTH_NAME_URI =
+            EidasSpec.Definitions.DATE_OF_BIRTH.getNameUri().toASCIIString();
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd");
 
     /**
      * Constructor
@@ -68,18 +79,16 @@ public final class EidasAttributeValidator extends AttributeSchemaValidator {
                 String attrName = attr.getName();
 
                 //validate gender
-                if (attrName.equals(EidasSpec.Definitions.GENDER.getNameUri().toASCIIString())) {
-                    validateAttributeValueFormat(value, attrName, EidasSpec.Definitions.GENDER.getNameUri().toASCIIString(),
-                            PATTERN_GENDER_EIDAS);
+                if (attrName.equals(GENDER_NAME_URI)) {
+                    validateAttributeValueFormat(value, attrName, GENDER_NAME_URI, PATTERN_GENDER_EIDAS);
                 }
-                if (attrName.equals(EidasSpec.Definitions.REPV_GENDER.getNameUri().toASCIIString())) {
-                    validateAttributeValueFormat(value, attrName, EidasSpec.Definitions.REPV_GENDER.getNameUri().toASCIIString(),
-                            PATTERN_GENDER_EIDAS);
+                if (attrName.equals(REPV_GENDER_NAME_URI)) {
+                    validateAttributeValueFormat(value, attrName, REPV_GENDER_NAME_URI, PATTERN_GENDER_EIDAS);
                 }
 
 
                 //validate dateOfBirth
-                if (attrName.equals(EidasSpec.Definitions.DATE_OF_BIRTH.getNameUri().toASCIIString())) {
+                if (attrName.equals(DATE_OF_BIRTH_NAME_URI)) {
                     verifyDate(value);
                 }
             }
@@ -90,18 +99,16 @@ public final class EidasAttributeValidator extends AttributeSchemaValidator {
     private void validateAttributeValueFormat(String value,
                                               String currentAttrName,
                                               String attrNameToTest,
-                                              String pattern) throws ValidationException {
-        if (currentAttrName.equals(attrNameToTest) && !Pattern.matches(pattern, value)) {
+                                              Pattern pattern) throws ValidationException {
+        if (currentAttrName.equals(attrNameToTest) && !pattern.matcher(value).matches()) {
             throw new ValidationException(attrNameToTest + " has incorrect format.");
         }
 
     }
 
     private static void verifyDate(String nodeDate) throws ValidationException {
-        DateTimeFormatter fmt;
-        fmt = DateTimeFormat.forPattern("yyyy-MM-dd");
         try {
-            fmt.parseDateTime(nodeDate);
+            DATE_FORMATTER.parseDateTime(nodeDate);
         } catch (IllegalArgumentException e) {
             throw new ValidationException("Date has wrong format  {}", e);
         }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.core.validator.eidas;
+
+import eu.eidas.auth.engine.core.eidas.RequestedAttribute;
+import eu.eidas.auth.engine.core.eidas.RequestedAttributes;
+import eu.eidas.engine.exceptions.ValidationException;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.AuthnStatement;
+import org.opensaml.saml.saml2.core.Extensions;
+import org.opensaml.saml.saml2.core.Response;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Validates eIDAS requests and responses with the eIDAS validators.
+ * <p>
+ * The validators are stateless: a suite holds a single instance of each of them and can be shared by all the engines
+ * and threads. Each message is traversed once, every element being checked by its validator in the order of the
+ * document, and the validation stops at the first violation.
+ *
+ * @since 2.4
+ */
+@Immutable
+public final class EidasValidatorSuite {
+
+    /**
+     * The suite shared by all the engines.
+     */
+    public static final EidasValidatorSuite INSTANCE = new EidasValidatorSuite();
+
+    private final EidasIssuerValidator issuerValidator = new EidasIssuerValidator();
+
+    private final EidasAuthnRequestValidator authnRequestValidator = new EidasAuthnRequestValidator();
+
+    private final ExtensionsSchemaValidator extensionsValidator = new ExtensionsSchemaValidator();
+
+    private final EidasRequestedAttributeValidator requestedAttributeValidator =
+            new EidasRequestedAttributeValidator();
+
+    private final EidasResponseOneAssertionValidator responseOneAssertionValidator =
+            new EidasResponseOneAssertionValidator();
+
+    private final EidasResponseValidator responseValidator = new EidasResponseValidator();
+
+    private final EidasAssertionValidator assertionValidator = new EidasAssertionValidator();
+
+    private final EidasConditionsValidator conditionsValidator = new EidasConditionsValidator();
+
+    private final EidasAuthnStatementValidator authnStatementValidator = new EidasAuthnStatementValidator();
+
+    private final EidasAttributeValidator attributeValidator = new EidasAttributeValidator();
+
+    private EidasValidatorSuite() {
+    }
+
+    /**
+     * Validates the given request, its issuer, its extensions and its requested attributes.
+     *
+     * @param request the request to validate
+     * @throws ValidationException the first violation found
+     */
+    public void validate(@Nonnull AuthnRequest request) throws ValidationException {
+        issuerValidator.validate(request.getIssuer());
+        authnRequestValidator.validate(request);
+
+        Extensions extensions = request.getExtensions();
+        extensionsValidator.validate(extensions);
+
+        RequestedAttributes requestedAttributes =
+                (RequestedAttributes) extensions.getUnknownXMLObjects(RequestedAttributes.DEF_ELEMENT_NAME).get(0);
+        for (RequestedAttribute requestedAttribute : requestedAttributes.getAttributes()) {
+            requestedAttributeValidator.validate(requestedAttribute);
+        }
+    }
+
+    /**
+     * Validates the given response and, for each of its assertions, the assertion, its conditions, its authentication
+     * statements and its attributes.
+     *
+     * @param response the response to validate
+     * @throws ValidationException the first violation found
+     */
+    public void validate(@Nonnull Response response) throws ValidationException {
+        responseOneAssertionValidator.validate(response);
+        responseValidator.validate(response);
+
+        for (Assertion assertion : response.getAssertions()) {
+            assertionValidator.validate(assertion);
+            conditionsValidator.validate(assertion.getConditions());
+
+            for (AuthnStatement authnStatement : assertion.getAuthnStatements()) {
+                authnStatementValidator.validate(authnStatement);
+            }
+            for (AttributeStatement attributeStatement : assertion.getAttributeStatements()) {
+                for (Attribute attribute : attributeStatement.getAttributes()) {
+                    attributeValidator.validate(attribute);
+                }
+            }
+        }
+    }
+}
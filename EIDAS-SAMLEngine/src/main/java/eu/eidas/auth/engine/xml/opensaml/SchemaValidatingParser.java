@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.xml.opensaml;
+
+import eu.eidas.auth.commons.xml.DocumentBuilderFactoryUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
+import javax.xml.validation.TypeInfoProvider;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses an XML document and validates it against a {@link Schema} in a single pass, by piping the SAX events of a
+ * secured {@link XMLReader} through a {@link ValidatorHandler} into a DOM builder.
+ * <p>
+ * Attributes which are only defaulted by the schema are not added to the resulting DOM and values are not normalized,
+ * so that the document is the same as the one returned by {@link DocumentBuilderFactoryUtil#parse(InputStream)} and
+ * signatures still verify.
+ * <p>
+ * Instances are pooled by {@link XmlSchemaUtil} and must not be shared between threads.
+ *
+ * @since 2.4
+ */
+@NotThreadSafe
+final class SchemaValidatingParser {
+
+    @Nonnull
+    private final XMLReader xmlReader;
+
+    @Nonnull
+    private final ValidatorHandler validatorHandler;
+
+    SchemaValidatingParser(@Nonnull Schema schema) throws SAXException {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        saxParserFactory.setXIncludeAware(false);
+        try {
+            for (final Map.Entry<String, Boolean> entry : DocumentBuilderFactoryUtil.getSecureDocumentBuilderFeatures()
+                    .entrySet()) {
+                saxParserFactory.setFeature(entry.getKey(), entry.getValue());
+            }
+            xmlReader = saxParserFactory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        validatorHandler = schema.newValidatorHandler();
+        xmlReader.setContentHandler(validatorHandler);
+    }
+
+    /**
+     * Parses and validates the given stream, which is closed afterwards.
+     *
+     * @param xmlInputStream the XML to parse
+     * @return the parsed document
+     * @throws SAXException if the XML is not well-formed or not valid against the schema
+     * @throws IOException if the stream cannot be read
+     * @throws ParserConfigurationException if the document cannot be created
+     */
+    @Nonnull
+    Document parse(@Nonnull InputStream xmlInputStream)
+            throws IOException, SAXException, ParserConfigurationException {
+        try {
+            Document document = DocumentBuilderFactoryUtil.newDocument();
+            validatorHandler.setContentHandler(
+                    new DocumentBuildingHandler(document, validatorHandler.getTypeInfoProvider()));
+            xmlReader.parse(new InputSource(xmlInputStream));
+            return document;
+        } finally {
+            validatorHandler.setContentHandler(null);
+            xmlInputStream.close();
+        }
+    }
+
+    /**
+     * Builds a DOM from the SAX events which went through the {@link ValidatorHandler}.
+     */
+    private static final class DocumentBuildingHandler extends DefaultHandler {
+
+        @Nonnull
+        private final Document document;
+
+        @Nonnull
+        private final TypeInfoProvider typeInfoProvider;
+
+        @Nonnull
+        private final List<String[]> pendingNamespaces = new ArrayList<>();
+
+        @Nonnull
+        private Node current;
+
+        DocumentBuildingHandler(@Nonnull Document document, @Nonnull TypeInfoProvider typeInfoProvider) {
+            this.document = document;
+            this.typeInfoProvider = typeInfoProvider;
+            current = document;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            pendingNamespaces.add(new String[] {prefix, uri});
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            Element element = document.createElementNS(emptyToNull(uri), qName.isEmpty() ? localName : qName);
+            for (final String[] namespace : pendingNamespaces) {
+                String prefix = namespace[0];
+                String name = prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE
+                                               : XMLConstants.XMLNS_ATTRIBUTE + ':' + prefix;
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, namespace[1]);
+            }
+            pendingNamespaces.clear();
+            for (int i = 0, length = attributes.getLength(); i < length; i++) {
+                if (!typeInfoProvider.isSpecified(i)) {
+                    // defaulted by the schema, not present in the message
+                    continue;
+                }
+                String attributeQName = attributes.getQName(i);
+                element.setAttributeNS(emptyToNull(attributes.getURI(i)),
+                                       attributeQName.isEmpty() ? attributes.getLocalName(i) : attributeQName,
+                                       attributes.getValue(i));
+            }
+            current.appendChild(element);
+            current = element;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            current = current.getParentNode();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (current == document) {
+                return;
+            }
+            Node last = current.getLastChild();
+            if (last instanceof Text) {
+                ((Text) last).appendData(new String(ch, start, length));
+            } else {
+                current.appendChild(document.createTextNode(new String(ch, start, length)));
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            current.appendChild(document.createProcessingInstruction(target, data));
+        }
+
+        private static String emptyToNull(String value) {
+            return null == value || value.isEmpty() ? null : value;
+        }
+    }
+}
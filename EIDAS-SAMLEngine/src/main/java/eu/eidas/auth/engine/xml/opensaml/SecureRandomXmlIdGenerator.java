@@ -15,12 +15,15 @@
 
 package eu.eidas.auth.engine.xml.opensaml;
 
-import java.security.SecureRandom;
+import eu.eidas.auth.commons.lang.StripedSecureRandom;
 
 
 /**
  * Random IdentifierGenerator for a valid XML ID, which must match the NCName syntax defined in
  * https://www.w3.org/TR/1999/REC-xml-names-19990114/#NT-NCName.
+ * <p>
+ * The random part of an identifier is drawn at once from {@link StripedSecureRandom}, each byte giving 6 bits which
+ * select a character of a 64-character NCName alphabet.
  *
  * @since 1.1
  */
@@ -28,16 +31,18 @@ public enum SecureRandomXmlIdGenerator {
 
     INSTANCE;
 
-    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
-
     /**
      * See https://www.w3.org/TR/1999/REC-xml-names-19990114/#NT-NCName
+     * <p>
+     * The alphabet has 64 characters so that every character is selected with the same probability.
      */
     private static final char[] NCN_ALPHABET = {
             'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U',
             'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p',
             'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '_',
-            '.', '-'};
+            '-'};
+
+    private static final int NCN_ALPHABET_MASK = NCN_ALPHABET.length - 1;
 
     /**
      * Method that generates a random value according to NCName grammar.
@@ -88,8 +93,10 @@ public enum SecureRandomXmlIdGenerator {
     public String generateIdentifier(int size) {
         char[] random = new char[size];
         random[0] = '_';
+        byte[] bytes = new byte[Math.max(0, size - 1)];
+        StripedSecureRandom.nextBytes(bytes);
         for (int i = 1; i < size; i++) {
-            random[i] = NCN_ALPHABET[SECURE_RANDOM.nextInt(NCN_ALPHABET.length)];
+            random[i] = NCN_ALPHABET[bytes[i - 1] & NCN_ALPHABET_MASK];
         }
         return String.valueOf(random);
     }
@@ -19,6 +19,9 @@ package eu.eidas.auth.engine.xml.opensaml;
 
 import eu.eidas.auth.commons.EidasErrorKey;
 import eu.eidas.auth.commons.EidasErrors;
+import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.EidasStringUtil;
+import eu.eidas.auth.commons.xml.BoundedPool;
 import eu.eidas.auth.commons.xml.DocumentBuilderFactoryUtil;
 import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
 import eu.eidas.auth.engine.AbstractProtocolEngine;
@@ -39,12 +42,23 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.Validator;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * XML Schema Utility class.
+ * <p>
+ * {@link Validator}s are pooled per {@link Schema} (the schemas are expected to be long-lived such as {@link
+ * OpenSamlHelper#getSchema()} and {@link OpenSamlHelper#getMetadataSchema()}) and reset before being returned to the
+ * pool.
+ * <p>
+ * When the system property {@link EidasParameterKeys#XML_SCHEMA_VALIDATION_WHILE_PARSING} is {@code true}, the
+ * messages given as {@code String} or {@code byte[]} are validated while being parsed instead of in a second pass over
+ * the parsed document.
  *
  * @since 1.1
  */
@@ -52,6 +66,24 @@ public final class XmlSchemaUtil {
 
     private static final Logger LOG = LoggerFactory.getLogger(XmlSchemaUtil.class);
 
+    /**
+     * Maximum number of idle instances kept per schema in each pool.
+     */
+    static final int MAX_POOL_SIZE = 32;
+
+    /**
+     * Time in milliseconds after which idle instances are evicted from the pools.
+     */
+    static final long MAX_POOL_IDLE_MILLIS = 300000L;
+
+    private static final ConcurrentMap<Schema, BoundedPool<Validator>> VALIDATOR_POOLS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Schema, BoundedPool<SchemaValidatingParser>> VALIDATING_PARSER_POOLS =
+            new ConcurrentHashMap<>();
+
+    private static final boolean VALIDATION_WHILE_PARSING = Boolean.parseBoolean(
+            System.getProperty(EidasParameterKeys.XML_SCHEMA_VALIDATION_WHILE_PARSING.toString()));
+
     public static Document validateSamlSchema(@Nonnull String samlString) throws EIDASSAMLEngineException {
         try {
             return validateSchema(OpenSamlHelper.getSchema(), samlString);
@@ -77,8 +109,20 @@ public final class XmlSchemaUtil {
         try {
             Element element = document.getDocumentElement();
             DOMSource domSrc = new DOMSource(element);
-            Validator validator = newSecureValidator(schema);
-            validator.validate(domSrc);
+            BoundedPool<Validator> validatorPool = getPool(VALIDATOR_POOLS, schema);
+            Validator validator = validatorPool.borrow(new BoundedPool.Factory<Validator, RuntimeException>() {
+                @Nonnull
+                @Override
+                public Validator newInstance() {
+                    return newSecureValidator(schema);
+                }
+            });
+            try {
+                validator.validate(domSrc);
+            } finally {
+                validator.reset();
+                validatorPool.release(validator);
+            }
         } catch (IOException | SAXException e) {
             LOG.error(AbstractProtocolEngine.SAML_EXCHANGE, "BUSINESS EXCEPTION : Validate schema exception: " + e, e);
             throw new EIDASSAMLEngineException(EidasErrors.get(EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorCode()),
@@ -88,6 +132,9 @@ public final class XmlSchemaUtil {
 
     public static Document validateSchema(@Nonnull Schema schema, @Nonnull String xmlString)
             throws EIDASSAMLEngineException {
+        if (VALIDATION_WHILE_PARSING) {
+            return parseAndValidate(schema, EidasStringUtil.getBytes(xmlString.trim()));
+        }
         Document document;
         try {
             document = DocumentBuilderFactoryUtil.parse(xmlString);
@@ -102,6 +149,9 @@ public final class XmlSchemaUtil {
 
     public static Document validateSchema(@Nonnull Schema schema, @Nonnull byte[] xmlBytes)
             throws EIDASSAMLEngineException {
+        if (VALIDATION_WHILE_PARSING) {
+            return parseAndValidate(schema, xmlBytes);
+        }
         Document document;
         try {
             document = DocumentBuilderFactoryUtil.parse(xmlBytes);
@@ -114,6 +164,57 @@ public final class XmlSchemaUtil {
         return document;
     }
 
+    /**
+     * Parses the given XML and validates it against the given schema in a single pass.
+     *
+     * @param schema the schema to validate against
+     * @param xmlBytes the XML to parse
+     * @return the parsed document
+     * @throws EIDASSAMLEngineException if the XML cannot be parsed or is not valid against the schema
+     * @since 2.4
+     */
+    @Nonnull
+    public static Document parseAndValidate(@Nonnull Schema schema, @Nonnull byte[] xmlBytes)
+            throws EIDASSAMLEngineException {
+        Preconditions.checkNotNull(xmlBytes, "xmlBytes");
+        try {
+            BoundedPool<SchemaValidatingParser> parserPool = getPool(VALIDATING_PARSER_POOLS, schema);
+            SchemaValidatingParser parser =
+                    parserPool.borrow(new BoundedPool.Factory<SchemaValidatingParser, SAXException>() {
+                        @Nonnull
+                        @Override
+                        public SchemaValidatingParser newInstance() throws SAXException {
+                            return new SchemaValidatingParser(schema);
+                        }
+                    });
+            try {
+                return parser.parse(new ByteArrayInputStream(xmlBytes));
+            } finally {
+                parserPool.release(parser);
+            }
+        } catch (IOException | SAXException | ParserConfigurationException e) {
+            LOG.error(AbstractProtocolEngine.SAML_EXCHANGE, "BUSINESS EXCEPTION : Validate schema exception: " + e, e);
+            throw new EIDASSAMLEngineException(EidasErrors.get(EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorCode()),
+                                               EidasErrorKey.MESSAGE_VALIDATION_ERROR.errorMessage(), e);
+        }
+    }
+
+    @Nonnull
+    private static <T> BoundedPool<T> getPool(@Nonnull ConcurrentMap<Schema, BoundedPool<T>> pools,
+                                              @Nonnull Schema schema) {
+        BoundedPool<T> pool = pools.get(schema);
+        if (null == pool) {
+            BoundedPool<T> newPool = new BoundedPool<>(schema.getClass().getName() + '@'
+                                                               + Integer.toHexString(System.identityHashCode(schema)),
+                                                       MAX_POOL_SIZE, MAX_POOL_IDLE_MILLIS, false);
+            pool = pools.putIfAbsent(schema, newPool);
+            if (null == pool) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
     /**
      * Create a new {@link Validator} for this schema, already set up with security features turned on.
      *
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine;
+
+import eu.eidas.auth.engine.metadata.MetadataResolutionScope;
+import eu.eidas.engine.exceptions.EIDASSAMLEngineException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for {@link ParallelSignatureValidation}
+ */
+public class ParallelSignatureValidationTest {
+
+    private static final ParallelSignatureValidation.ThreadContext NO_THREAD_CONTEXT =
+            new ParallelSignatureValidation.ThreadContext() {
+                @Override
+                public void attach() {
+                }
+
+                @Override
+                public void detach() {
+                }
+            };
+
+    private final ParallelSignatureValidation parallelSignatureValidation = new ParallelSignatureValidation();
+
+    @After
+    public void tearDown() {
+        parallelSignatureValidation.close();
+    }
+
+    private static ParallelSignatureValidation.Validation succeeding(final AtomicInteger counter) {
+        return new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                counter.incrementAndGet();
+            }
+        };
+    }
+
+    private static ParallelSignatureValidation.Validation failing(final String errorCode,
+                                                                  final long delayMillis,
+                                                                  final CountDownLatch awaited) {
+        return new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() throws EIDASSAMLEngineException {
+                try {
+                    Thread.sleep(delayMillis);
+                    if (null != awaited) {
+                        awaited.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new EIDASSAMLEngineException(errorCode, errorCode);
+            }
+        };
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * <p>
+     * Must run all the validations when they all succeed.
+     */
+    @Test
+    public void testValidateAll() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+
+        parallelSignatureValidation.validateAll(
+                Arrays.asList(succeeding(counter), succeeding(counter), succeeding(counter), succeeding(counter)),
+                NO_THREAD_CONTEXT);
+
+        Assert.assertEquals(4, counter.get());
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * <p>
+     * Must throw the error of the first failed validation in the given order, even when a later validation fails
+     * first.
+     */
+    @Test
+    public void testValidateAllKeepsSequentialErrorPrecedence() {
+        List<ParallelSignatureValidation.Validation> validations =
+                Arrays.asList(failing("first", 200L, null), failing("second", 0L, null));
+
+        try {
+            parallelSignatureValidation.validateAll(validations, NO_THREAD_CONTEXT);
+            Assert.fail("EIDASSAMLEngineException expected");
+        } catch (EIDASSAMLEngineException e) {
+            Assert.assertEquals("first", e.getErrorCode());
+        }
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * <p>
+     * Must throw the error of the first validation without waiting for the validations after it.
+     */
+    @Test(timeout = 5000L)
+    public void testValidateAllFailsFast() {
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        List<ParallelSignatureValidation.Validation> validations =
+                Arrays.asList(failing("first", 0L, null), failing("second", 0L, neverReleased));
+
+        try {
+            parallelSignatureValidation.validateAll(validations, NO_THREAD_CONTEXT);
+            Assert.fail("EIDASSAMLEngineException expected");
+        } catch (EIDASSAMLEngineException e) {
+            Assert.assertEquals("first", e.getErrorCode());
+        }
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * <p>
+     * Must propagate the runtime exceptions thrown by a validation.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testValidateAllPropagatesRuntimeException() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        ParallelSignatureValidation.Validation throwing = new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                throw new IllegalStateException("unexpected");
+            }
+        };
+
+        parallelSignatureValidation.validateAll(Arrays.asList(succeeding(counter), throwing), NO_THREAD_CONTEXT);
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * <p>
+     * Must run the validations within the metadata resolution scope and the thread context of the calling thread, and
+     * remove them from the pool threads afterwards.
+     */
+    @Test
+    public void testValidateAllPropagatesThreadContext() throws Exception {
+        final AtomicInteger attached = new AtomicInteger();
+        ParallelSignatureValidation.ThreadContext threadContext = new ParallelSignatureValidation.ThreadContext() {
+            @Override
+            public void attach() {
+                attached.incrementAndGet();
+            }
+
+            @Override
+            public void detach() {
+                attached.decrementAndGet();
+            }
+        };
+        ParallelSignatureValidation.Validation recording = new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                if (null == MetadataResolutionScope.current() || attached.get() < 1) {
+                    throw new IllegalStateException("context not propagated");
+                }
+            }
+        };
+        MetadataResolutionScope.open();
+        try {
+            parallelSignatureValidation.validateAll(Arrays.asList(recording, recording), threadContext);
+        } finally {
+            MetadataResolutionScope.close();
+        }
+
+        Assert.assertEquals(0, attached.get());
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#validateAll(List, ParallelSignatureValidation.ThreadContext)}
+     * when all the threads and waiting slots of the pool are taken.
+     * <p>
+     * Must run the next validations on the calling thread, within its own context.
+     */
+    @Test(timeout = 10000L)
+    public void testValidateAllRunsOnCallerWhenSaturated() throws Exception {
+        ParallelSignatureValidation singleThreadValidation = new ParallelSignatureValidation(1);
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch callerRan = new CountDownLatch(1);
+        final AtomicInteger onCaller = new AtomicInteger();
+        final AtomicInteger attached = new AtomicInteger();
+        ParallelSignatureValidation.ThreadContext threadContext = new ParallelSignatureValidation.ThreadContext() {
+            @Override
+            public void attach() {
+                attached.incrementAndGet();
+            }
+
+            @Override
+            public void detach() {
+                attached.decrementAndGet();
+            }
+        };
+        ParallelSignatureValidation.Validation blocking = new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                try {
+                    callerRan.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ParallelSignatureValidation.Validation recording = new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                if (Thread.currentThread() == caller) {
+                    if (attached.get() != 0) {
+                        throw new IllegalStateException("pool context installed on the calling thread");
+                    }
+                    onCaller.incrementAndGet();
+                    callerRan.countDown();
+                }
+            }
+        };
+        try {
+            // the first one takes the thread, the second one the waiting slot
+            singleThreadValidation.validateAll(Arrays.asList(blocking, recording, recording, recording),
+                                               threadContext);
+        } finally {
+            singleThreadValidation.close();
+        }
+
+        Assert.assertEquals(2, onCaller.get());
+        Assert.assertEquals(0, attached.get());
+    }
+
+    /**
+     * Test method for {@link ParallelSignatureValidation#close()}
+     * <p>
+     * Must run the validations on the calling thread once closed.
+     */
+    @Test
+    public void testValidateAllAfterClose() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger onCaller = new AtomicInteger();
+        ParallelSignatureValidation.Validation recording = new ParallelSignatureValidation.Validation() {
+            @Override
+            public void validate() {
+                if (Thread.currentThread() == caller) {
+                    onCaller.incrementAndGet();
+                }
+            }
+        };
+
+        parallelSignatureValidation.close();
+        parallelSignatureValidation.validateAll(Arrays.asList(recording, recording), NO_THREAD_CONTEXT);
+
+        Assert.assertEquals(2, onCaller.get());
+    }
+}
@@ -16,6 +16,7 @@ package eu.eidas.auth.engine;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.net.URISyntaxException;
 import java.net.URL;
 
@@ -90,6 +91,19 @@ public final class ProtocolEngineFactoryTest {
         deleteWorkingCopy("EncryptModule_DOM-test_true");
     }
 
+    @Test
+    public void testSnapshotConfigurationIsNotProxied() throws Exception {
+
+        ProtocolEngineFactory protocolEngineFactory = new ProtocolEngineFactory(
+                new ProtocolEngineConfigurationFactory("SamlEngine_DOM-test_workingCopy.xml",
+                                                       "eidas_DOM-test_workingCopy.xml", null, true));
+
+        ProtocolCipherI cipher = getCipher(protocolEngineFactory);
+
+        assertFalse(Proxy.isProxyClass(cipher.getClass()));
+        assertFalse(cipher.isResponseEncryptionMandatory());
+    }
+
     @Test
     public void testReloadByUpdatingSamlEngineXmlTargetEncryptModule() throws Exception {
 
@@ -16,10 +16,14 @@ package eu.eidas.auth.engine;
 
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 
 import org.junit.Test;
+import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Response;
 
 import eu.eidas.auth.commons.EIDASStatusCode;
@@ -90,4 +94,52 @@ public final class ProtocolEngineTest {
 
         assertFalse(authenticationResponse.getStatus().isFailure());
     }
+
+    /**
+     * Test method for {@link ProtocolEngine#copyIntoOwnDocument(Assertion)}
+     * <p>
+     * Must copy a signed assertion into a document of its own where its signature is still valid.
+     */
+    @Test
+    public void copyIntoOwnDocument() throws Exception {
+        ProtocolEngine protocolEngine =
+                (ProtocolEngine) DefaultProtocolEngineFactory.getInstance().getProtocolEngine("METADATATEST");
+        Response samlResponse = (Response) OpenSamlHelper.unmarshall(generateSignedAssertionResponse(protocolEngine));
+        Assertion assertion = protocolEngine.decryptResponse(samlResponse).getAssertions().get(0);
+        assertTrue(assertion.isSigned());
+
+        Assertion copy = ProtocolEngine.copyIntoOwnDocument(assertion);
+
+        assertNotSame(assertion.getDOM().getOwnerDocument(), copy.getDOM().getOwnerDocument());
+        assertNull(copy.getDOM().getParentNode().getParentNode());
+        protocolEngine.getSigner().validateSignature(copy, null);
+    }
+
+    private static byte[] generateSignedAssertionResponse(ProtocolEngineI protocolEngine) throws Exception {
+        EidasAuthenticationRequest request = EidasAuthenticationRequest.builder()
+                .id("_3")
+                .issuer("https://source.europa.eu/metadata")
+                .destination("https://destination.europa.eu")
+                .citizenCountryCode("BE")
+                .originCountryCode("BE")
+                .providerName("Prov")
+                .assertionConsumerServiceURL("https://source.europa.eu/metadata")
+                .requestedAttributes(ImmutableAttributeMap.of(EidasSpec.Definitions.PERSON_IDENTIFIER,
+                                                              new StringAttributeValue[] {}))
+                .build();
+        protocolEngine.generateRequestMessage(request, "https://destination.europa.eu/metadata");
+
+        AuthenticationResponse response = AuthenticationResponse.builder()
+                .statusCode(EIDASStatusCode.SUCCESS_URI.toString())
+                .id("_4")
+                .inResponseTo(request.getId())
+                .issuer("https://destination.europa.eu/metadata")
+                .subject("UK/UK/Bankys")
+                .subjectNameIdFormat("urn:oasis:names:tc:saml2:2.0:nameid-format:persistent")
+                .attributes(ImmutableAttributeMap.of(EidasSpec.Definitions.PERSON_IDENTIFIER,
+                        new StringAttributeValue("LU/BE/1", false)))
+                .build();
+
+        return protocolEngine.generateResponseMessage(request, response, true, "127.0.0.1").getMessageBytes();
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package eu.eidas.auth.engine.configuration.dom;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import eu.eidas.auth.commons.io.SingletonAccessor;
+import eu.eidas.auth.commons.io.SingletonAccessors;
+import eu.eidas.auth.engine.configuration.ProtocolEngineConfiguration;
+import eu.eidas.auth.engine.configuration.ProtocolEngineConfigurationException;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for {@link SnapshotProtocolConfigurationMapAccessor}
+ */
+public class SnapshotProtocolConfigurationMapAccessorTest {
+
+    private static ImmutableMap<String, ProtocolEngineConfiguration> newConfigurationMap(String instanceName)
+            throws ProtocolEngineConfigurationException {
+        return ImmutableMap.of(instanceName, DefaultProtocolEngineConfigurationFactory.getDefaultConfiguration(instanceName));
+    }
+
+    /**
+     * Test method for {@link SnapshotProtocolConfigurationMapAccessor#get()}
+     * when the underlying configuration has changed but has not been refreshed yet.
+     * <p>
+     * Must return the previous snapshot.
+     */
+    @Test
+    public void testGetReturnsSnapshotUntilRefreshed() throws Exception {
+        SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
+                SingletonAccessors.mutableAccessor(newConfigurationMap("CONF1"));
+        SnapshotProtocolConfigurationMapAccessor accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor, 0L);
+
+        fileAccessor.set(newConfigurationMap("CONF2"));
+
+        assertEquals(ImmutableSet.of("CONF1"), accessor.get().keySet());
+    }
+
+    /**
+     * Test method for {@link SnapshotProtocolConfigurationMapAccessor#refresh()}
+     * when the underlying configuration has changed.
+     * <p>
+     * Must swap the snapshot.
+     */
+    @Test
+    public void testRefreshSwapsSnapshot() throws Exception {
+        SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
+                SingletonAccessors.mutableAccessor(newConfigurationMap("CONF1"));
+        SnapshotProtocolConfigurationMapAccessor accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor, 0L);
+
+        fileAccessor.set(newConfigurationMap("CONF2"));
+        accessor.refresh();
+
+        assertEquals(ImmutableSet.of("CONF2"), accessor.get().keySet());
+    }
+
+    /**
+     * Test method for {@link SnapshotProtocolConfigurationMapAccessor#refresh()}
+     * when the underlying configuration has not changed.
+     * <p>
+     * Must keep the same snapshot instance.
+     */
+    @Test
+    public void testRefreshKeepsUnchangedSnapshot() throws Exception {
+        SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
+                SingletonAccessors.mutableAccessor(newConfigurationMap("CONF1"));
+        SnapshotProtocolConfigurationMapAccessor accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor, 0L);
+        ImmutableMap<String, ProtocolEngineConfiguration> snapshot = accessor.get();
+
+        accessor.refresh();
+
+        assertSame(snapshot, accessor.get());
+    }
+
+    /**
+     * Test method for {@link SnapshotProtocolConfigurationMapAccessor#refresh()}
+     * when the underlying configuration cannot be reloaded.
+     * <p>
+     * Must keep the previous snapshot.
+     */
+    @Test
+    public void testRefreshKeepsSnapshotOnError() throws Exception {
+        final ImmutableMap<String, ProtocolEngineConfiguration> initial = newConfigurationMap("CONF1");
+        SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
+                new SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>>() {
+
+                    private boolean loaded;
+
+                    @Override
+                    public ImmutableMap<String, ProtocolEngineConfiguration> get() throws IOException {
+                        if (loaded) {
+                            throw new IOException("invalid configuration");
+                        }
+                        loaded = true;
+                        return initial;
+                    }
+
+                    @Override
+                    public void set(ImmutableMap<String, ProtocolEngineConfiguration> newValue) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+        SnapshotProtocolConfigurationMapAccessor accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor, 0L);
+        ImmutableMap<String, ProtocolEngineConfiguration> snapshot = accessor.get();
+
+        accessor.refresh();
+
+        assertSame(snapshot, accessor.get());
+    }
+
+    /**
+     * Test method for {@link SnapshotProtocolConfigurationMapAccessor#close()}
+     * <p>
+     * Must stop the background refresh and keep the current snapshot.
+     */
+    @Test
+    public void testCloseStopsRefresh() throws Exception {
+        SingletonAccessor<ImmutableMap<String, ProtocolEngineConfiguration>> fileAccessor =
+                SingletonAccessors.mutableAccessor(newConfigurationMap("CONF1"));
+        SnapshotProtocolConfigurationMapAccessor accessor = new SnapshotProtocolConfigurationMapAccessor(fileAccessor, 1L);
+
+        accessor.close();
+        Thread.sleep(50L);
+        fileAccessor.set(newConfigurationMap("CONF2"));
+        Thread.sleep(50L);
+
+        assertEquals(ImmutableSet.of("CONF1"), accessor.get().keySet());
+    }
+}
@@ -288,6 +288,7 @@ public class DefaultCorePropertiesTest {
         instance.put(SAMLCore.ONE_TIME_USE.getValue(), "true");
         instance.put(SAMLCore.CONSENT_AUTHN_REQ.getValue(), "unspecified");
         instance.put(SAMLCore.VALIDATE_SIGNATURE_TAG.getValue(), "true");
+        instance.put(SAMLCore.PARALLEL_SIGNATURE_VALIDATION_TAG.getValue(), "true");
         instance.put(SAMLCore.REQUESTER_TAG.getValue(), "requester");
         instance.put(SAMLCore.RESPONDER_TAG.getValue(), "responder");
         instance.put("timeNotOnOrAfter", "5");
@@ -316,6 +317,7 @@ public class DefaultCorePropertiesTest {
 
         assertTrue(defaultCoreProperties.isOneTimeUse());
         assertTrue(defaultCoreProperties.isValidateSignature());
+        assertTrue(defaultCoreProperties.isParallelSignatureValidation());
         assertTrue(defaultCoreProperties.isIpValidation());
     }
 
@@ -338,6 +340,7 @@ public class DefaultCorePropertiesTest {
 
         assertNotNull(defaultCoreProperties.getSupportedMessageFormatNames());
         assertTrue(defaultCoreProperties.getSupportedMessageFormatNames().isEmpty());
+        assertFalse(defaultCoreProperties.isParallelSignatureValidation());
     }
 
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.core.impl;
+
+import com.google.common.collect.ImmutableSet;
+import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
+import eu.eidas.auth.engine.xml.opensaml.CertificateUtil;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.KeyInfo;
+
+import javax.management.ObjectName;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Test class for {@link TrustedCredentialCache}
+ */
+public class TrustedCredentialCacheTest {
+
+    private static X509Certificate signingCertificate;
+
+    private static X509Certificate otherCertificate;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        OpenSamlHelper.initialize();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream = new FileInputStream("src/test/resources/keyStoreCountry1.jks")) {
+            keyStore.load(inputStream, "local-demo".toCharArray());
+        }
+        signingCertificate = (X509Certificate) keyStore.getCertificate("local-demo-cert");
+        otherCertificate = (X509Certificate) keyStore.getCertificate("es-demo-certificate");
+    }
+
+    private static KeyInfo newKeyInfo(X509Certificate certificate) throws Exception {
+        return AbstractProtocolSigner.createKeyInfo(CertificateUtil.toCredential(certificate), false);
+    }
+
+    private static long withinValidity() {
+        return signingCertificate.getNotBefore().getTime() + 1000L;
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#newKey(KeyInfo, ImmutableSet)}
+     * <p>
+     * Must return equal keys for the same certificate and trusted certificates and different keys otherwise.
+     */
+    @Test
+    public void testNewKey() throws Exception {
+        ImmutableSet<X509Certificate> trusted = ImmutableSet.of(signingCertificate);
+
+        TrustedCredentialCache.Key key = TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), trusted);
+        TrustedCredentialCache.Key sameKey = TrustedCredentialCache.newKey(newKeyInfo(signingCertificate),
+                                                                           ImmutableSet.of(signingCertificate));
+
+        Assert.assertNotNull(key);
+        Assert.assertEquals(key, sameKey);
+        Assert.assertEquals(key.hashCode(), sameKey.hashCode());
+        Assert.assertNotEquals(key, TrustedCredentialCache.newKey(newKeyInfo(otherCertificate), trusted));
+        Assert.assertNotEquals(key, TrustedCredentialCache.newKey(newKeyInfo(signingCertificate),
+                                                                  ImmutableSet.of(otherCertificate)));
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#newKey(KeyInfo, ImmutableSet)}
+     * <p>
+     * Must return equal keys for the same chain of certificates and different keys for different chains.
+     */
+    @Test
+    public void testNewKeyOfChain() throws Exception {
+        ImmutableSet<X509Certificate> trusted = ImmutableSet.of(signingCertificate);
+        KeyInfo chain = newKeyInfo(signingCertificate);
+        KeyInfoSupport.addCertificate(chain, otherCertificate);
+        KeyInfo sameChain = newKeyInfo(signingCertificate);
+        KeyInfoSupport.addCertificate(sameChain, otherCertificate);
+
+        TrustedCredentialCache.Key key = TrustedCredentialCache.newKey(chain, trusted);
+
+        Assert.assertEquals(key, TrustedCredentialCache.newKey(sameChain, trusted));
+        Assert.assertNotEquals(key, TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), trusted));
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#get(TrustedCredentialCache.Key, long)}
+     * <p>
+     * Must count the hits and misses of all the caches in JMX.
+     */
+    @Test
+    public void testStatisticsInJmx() throws Exception {
+        TrustedCredentialCache cache = new TrustedCredentialCache();
+        ObjectName objectName = new ObjectName("eu.eidas:type=TrustedCredentialCache,name=\"default\"");
+
+        cache.get(TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(signingCertificate)),
+                  withinValidity());
+
+        Object missCount = ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MissCount");
+        Assert.assertTrue((Long) missCount >= 1L);
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#get(TrustedCredentialCache.Key, long)}
+     * <p>
+     * Must return the cached credential while its certificate is valid and discard it once the certificate expired.
+     */
+    @Test
+    public void testGetExpiresWithCertificate() throws Exception {
+        TrustedCredentialCache cache = new TrustedCredentialCache();
+        TrustedCredentialCache.Key key =
+                TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(signingCertificate));
+        X509Credential credential = CertificateUtil.toCredential(signingCertificate);
+
+        Assert.assertNull(cache.get(key, withinValidity()));
+        cache.put(key, TrustedCredentialCache.Entry.trusted(credential), withinValidity());
+
+        TrustedCredentialCache.Entry entry = cache.get(key, withinValidity());
+        Assert.assertNotNull(entry);
+        Assert.assertSame(credential, entry.getCredential());
+        Assert.assertNull(entry.getTrustFailure());
+        Assert.assertEquals(1L, cache.getHitCount());
+        Assert.assertEquals(1L, cache.getMissCount());
+
+        Assert.assertNull(cache.get(key, signingCertificate.getNotAfter().getTime() + 1L));
+        Assert.assertEquals(0L, cache.size());
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#put(TrustedCredentialCache.Key, TrustedCredentialCache.Entry,
+     * long)}
+     * <p>
+     * Must not cache credentials whose certificate is not valid at the given time.
+     */
+    @Test
+    public void testPutOutsideValidity() throws Exception {
+        TrustedCredentialCache cache = new TrustedCredentialCache();
+        TrustedCredentialCache.Key key =
+                TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(signingCertificate));
+        TrustedCredentialCache.Entry entry =
+                TrustedCredentialCache.Entry.trusted(CertificateUtil.toCredential(signingCertificate));
+
+        cache.put(key, entry, signingCertificate.getNotBefore().getTime() - 1L);
+        cache.put(key, entry, signingCertificate.getNotAfter().getTime() + 1L);
+
+        Assert.assertEquals(0L, cache.size());
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache.Entry#untrusted(X509Credential, CertificateException)}
+     * <p>
+     * Must cache the verdict of an untrusted certificate together with its failure.
+     */
+    @Test
+    public void testUntrustedVerdict() throws Exception {
+        TrustedCredentialCache cache = new TrustedCredentialCache();
+        TrustedCredentialCache.Key key =
+                TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(otherCertificate));
+        CertificateException failure = new CertificateException("untrusted");
+
+        cache.put(key, TrustedCredentialCache.Entry.untrusted(CertificateUtil.toCredential(signingCertificate),
+                                                               failure), withinValidity());
+
+        TrustedCredentialCache.Entry entry = cache.get(key, withinValidity());
+        Assert.assertNotNull(entry);
+        Assert.assertSame(failure, entry.getTrustFailure());
+    }
+
+    /**
+     * Test method for {@link TrustedCredentialCache#TrustedCredentialCache(int)}
+     * <p>
+     * Must not keep more entries than the maximum size.
+     */
+    @Test
+    public void testMaxSize() throws Exception {
+        TrustedCredentialCache cache = new TrustedCredentialCache(1);
+        TrustedCredentialCache.Entry entry =
+                TrustedCredentialCache.Entry.trusted(CertificateUtil.toCredential(signingCertificate));
+
+        cache.put(TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(signingCertificate)),
+                  entry, withinValidity());
+        cache.put(TrustedCredentialCache.newKey(newKeyInfo(signingCertificate), ImmutableSet.of(otherCertificate)),
+                  entry, withinValidity());
+
+        Assert.assertEquals(1L, cache.size());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.auth.engine.core.validator.eidas;
+
+import eu.eidas.auth.commons.protocol.eidas.spec.EidasSpec;
+import eu.eidas.engine.exceptions.ValidationException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.schema.XSAny;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.core.Status;
+import org.opensaml.saml.saml2.core.StatusCode;
+
+import java.util.Collections;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for {@link EidasValidatorSuite}
+ */
+public class EidasValidatorSuiteTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    /**
+     * Test method for {@link EidasValidatorSuite#validate(AuthnRequest)} when the issuer of the request is invalid.
+     * <p>
+     * Must fail and throw {@link ValidationException} without traversing the rest of the request.
+     */
+    @Test
+    public void testValidateRequestWithInvalidIssuer() throws ValidationException {
+        AuthnRequest request = mock(AuthnRequest.class);
+        Issuer issuer = mock(Issuer.class);
+        when(issuer.getFormat()).thenReturn("invalid");
+        when(request.getIssuer()).thenReturn(issuer);
+
+        try {
+            EidasValidatorSuite.INSTANCE.validate(request);
+            Assert.fail("ValidationException expected");
+        } catch (ValidationException e) {
+            Assert.assertEquals("Format has an invalid value.", e.getMessage());
+        }
+        verify(request, never()).getExtensions();
+    }
+
+    /**
+     * Test method for {@link EidasValidatorSuite#validate(Response)} when a successful response holds more than one
+     * assertion.
+     * <p>
+     * Must fail and throw {@link ValidationException}
+     */
+    @Test
+    public void testValidateResponseWithTwoAssertions() throws ValidationException {
+        expectedException.expect(ValidationException.class);
+        expectedException.expectMessage("Number of Assertion in Response 2");
+
+        Response response = mock(Response.class);
+        Status status = mock(Status.class);
+        StatusCode statusCode = mock(StatusCode.class);
+        when(statusCode.getValue()).thenReturn(StatusCode.SUCCESS);
+        when(status.getStatusCode()).thenReturn(statusCode);
+        when(response.getStatus()).thenReturn(status);
+        when(response.getAssertions()).thenReturn(newArrayList(mock(Assertion.class), mock(Assertion.class)));
+
+        EidasValidatorSuite.INSTANCE.validate(response);
+    }
+
+    /**
+     * Test method for {@link EidasAttributeValidator#validate(Attribute)} as used by the suite when the gender has an
+     * invalid value.
+     * <p>
+     * Must fail and throw {@link ValidationException}
+     */
+    @Test
+    public void testValidateAttributeWithInvalidGender() throws ValidationException {
+        String genderNameUri = EidasSpec.Definitions.GENDER.getNameUri().toASCIIString();
+        expectedException.expect(ValidationException.class);
+        expectedException.expectMessage(genderNameUri + " has incorrect format.");
+
+        new EidasAttributeValidator().validate(newAttribute(genderNameUri, "Male"));
+        new EidasAttributeValidator().validate(newAttribute(genderNameUri, "Other"));
+    }
+
+    /**
+     * Test method for {@link EidasAttributeValidator#validate(Attribute)} as used by the suite when the date of birth
+     * has an invalid value.
+     * <p>
+     * Must fail and throw {@link ValidationException}
+     */
+    @Test
+    public void testValidateAttributeWithInvalidDateOfBirth() throws ValidationException {
+        String dateOfBirthNameUri = EidasSpec.Definitions.DATE_OF_BIRTH.getNameUri().toASCIIString();
+        expectedException.expect(ValidationException.class);
+
+        new EidasAttributeValidator().validate(newAttribute(dateOfBirthNameUri, "1970-01-01"));
+        new EidasAttributeValidator().validate(newAttribute(dateOfBirthNameUri, "01/01/1970"));
+    }
+
+    private static Attribute newAttribute(String name, String value) {
+        Attribute attribute = mock(Attribute.class);
+        XSAny attributeValue = mock(XSAny.class);
+        when(attributeValue.getTextContent()).thenReturn(value);
+        when(attribute.getName()).thenReturn(name);
+        when(attribute.getNameFormat()).thenReturn(Attribute.URI_REFERENCE);
+        when(attribute.getAttributeValues()).thenReturn(Collections.<XMLObject>singletonList(attributeValue));
+        return attribute;
+    }
+}
@@ -19,6 +19,7 @@
 package eu.eidas.auth.engine.xml.opensaml;
 
 import com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl;
+import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.xml.DocumentBuilderFactoryUtil;
 import eu.eidas.auth.commons.xml.opensaml.OpenSamlHelper;
 import eu.eidas.engine.exceptions.EIDASSAMLEngineException;
@@ -40,6 +41,11 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.Validator;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -168,6 +174,104 @@ public class XmlSchemaUtilTest {
         XmlSchemaUtil.validateSchema(schema, document);
     }
 
+    /**
+     * Test method for {@link XmlSchemaUtil#parseAndValidate(Schema, byte[])}
+     * when the XML contains a DOCTYPE.
+     * <p>
+     * Must fail and throw {@link EIDASSAMLEngineException}.
+     */
+    @Test
+    public void parseAndValidateRejectsDoctype() throws EIDASSAMLEngineException {
+        exception.expect(EIDASSAMLEngineException.class);
+
+        XmlSchemaUtil.parseAndValidate(OpenSamlHelper.getSchema(), EidasStringUtil.getBytes(maliciousXMLSample));
+    }
+
+    /**
+     * Test method for {@link XmlSchemaUtil#parseAndValidate(Schema, byte[])}
+     * when the XML is well-formed but not valid against the schema.
+     * <p>
+     * Must fail and throw {@link EIDASSAMLEngineException}.
+     */
+    @Test
+    public void parseAndValidateRejectsInvalidDocument() throws EIDASSAMLEngineException {
+        exception.expect(EIDASSAMLEngineException.class);
+
+        XmlSchemaUtil.parseAndValidate(OpenSamlHelper.getSchema(), EidasStringUtil.getBytes("<foo/>"));
+    }
+
+    /**
+     * Test method for {@link XmlSchemaUtil#parseAndValidate(Schema, byte[])}
+     * with the sample responses of the tests.
+     * <p>
+     * Must succeed and return the same document as the one parsed by {@link DocumentBuilderFactoryUtil#parse(byte[])}.
+     */
+    @Test
+    public void parseAndValidateReturnsSameDocumentAsTwoPassValidation() throws Exception {
+        String[] samples = {"rsa-cert-encryptedAssertion.xml", "ec-cert-encryptedAssertion.xml",
+                "rsa-keyValues-encryptedAssertion.xml", "rsa-unknowncert-encryptedAssertion.xml"};
+        Schema schema = OpenSamlHelper.getSchema();
+        for (final String sample : samples) {
+            byte[] xmlBytes = Files.readAllBytes(Paths.get("src/test/resources/samples", sample));
+
+            Document expected = DocumentBuilderFactoryUtil.parse(xmlBytes);
+            XmlSchemaUtil.validateSchema(schema, expected);
+            Document actual = XmlSchemaUtil.parseAndValidate(schema, xmlBytes);
+
+            assertTrue(sample, expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+        }
+    }
+
+    /**
+     * Test method for {@link XmlSchemaUtil#parseAndValidate(Schema, byte[])}
+     * when an attribute value type declares an attribute with a default value.
+     * <p>
+     * Must succeed and not add the defaulted attribute to the document, which would break the signature.
+     */
+    @Test
+    public void parseAndValidateDoesNotAddDefaultedAttributes() throws Exception {
+        String response = "<saml2p:Response xmlns:saml2p=\"urn:oasis:names:tc:SAML:2.0:protocol\""
+                + " xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xmlns:eidas-natural=\"http://eidas.europa.eu/attributes/naturalperson\""
+                + " ID=\"_1\" IssueInstant=\"2019-01-01T00:00:00Z\" Version=\"2.0\">"
+                + "<saml2p:Status><saml2p:StatusCode Value=\"urn:oasis:names:tc:SAML:2.0:status:Success\"/>"
+                + "</saml2p:Status>"
+                + "<saml2:Assertion ID=\"_2\" IssueInstant=\"2019-01-01T00:00:00Z\" Version=\"2.0\">"
+                + "<saml2:Issuer>issuer</saml2:Issuer><saml2:AttributeStatement>"
+                + "<saml2:Attribute Name=\"http://eidas.europa.eu/attributes/naturalperson/CurrentFamilyName\">"
+                + "<saml2:AttributeValue xsi:type=\"eidas-natural:CurrentFamilyNameType\"> Garcia </saml2:AttributeValue>"
+                + "</saml2:Attribute></saml2:AttributeStatement></saml2:Assertion></saml2p:Response>";
+        byte[] xmlBytes = EidasStringUtil.getBytes(response);
+
+        Document document = XmlSchemaUtil.parseAndValidate(OpenSamlHelper.getSchema(), xmlBytes);
+
+        Element attributeValue = (Element) document.getElementsByTagNameNS("urn:oasis:names:tc:SAML:2.0:assertion",
+                                                                           "AttributeValue").item(0);
+        assertFalse(attributeValue.hasAttributeNS("http://eidas.europa.eu/attributes/naturalperson", "LatinScript"));
+        assertFalse(attributeValue.hasAttribute("LatinScript"));
+        assertTrue(document.getDocumentElement().isEqualNode(DocumentBuilderFactoryUtil.parse(xmlBytes).getDocumentElement()));
+    }
+
+    /**
+     * Test method for {@link XmlSchemaUtil#validateSchema(Schema, Document)}
+     * when a valid document is validated after an invalid one, which returned its validator to the pool.
+     * <p>
+     * Must succeed.
+     */
+    @Test
+    public void validateSchemaAfterValidationError() throws Exception {
+        Schema schema = OpenSamlHelper.getSchema();
+        try {
+            XmlSchemaUtil.validateSchema(schema, DocumentBuilderFactoryUtil.parse("<foo/>"));
+        } catch (EIDASSAMLEngineException expected) {
+            // the validator is reset and returned to the pool
+        }
+
+        byte[] xmlBytes = Files.readAllBytes(Paths.get("src/test/resources/samples/rsa-cert-encryptedAssertion.xml"));
+        XmlSchemaUtil.validateSchema(schema, DocumentBuilderFactoryUtil.parse(xmlBytes));
+    }
+
     /**
      * Auxiliary method that creates a malicious {@link DOMSource}
      *
@@ -18,6 +18,8 @@
 package eu.eidas.SimpleProtocol.utils;
 
 import eu.eidas.SimpleProtocol.adapter.DateAdapter;
+import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.xml.BoundedPool;
 import org.eclipse.persistence.jaxb.MarshallerProperties;
 import org.eclipse.persistence.jaxb.UnmarshallerProperties;
 
@@ -27,12 +29,150 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Converts to and from Json.
+ * <p>
+ * The {@link JAXBContext} of each root class is created only once, and the configured marshallers and unmarshallers,
+ * which are not thread-safe, are kept in {@link BoundedPool}s and reused by one thread at a time. The marshallers
+ * producing indented JSON and those producing compact JSON are kept in distinct pools, so that their configuration is
+ * only set when they are created.
  */
 public class SimpleProtocolProcess {
 
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final long MAX_POOL_IDLE_MILLIS = 300000L;
+
+    /**
+     * The JAXB contexts and the pools of configured (un)marshallers of one root class.
+     */
+    private static final class Converters {
+
+        private final JAXBContext jaxbContext;
+
+        private final BoundedPool<Marshaller> formattedMarshallers;
+
+        private final BoundedPool<Marshaller> compactMarshallers;
+
+        private final BoundedPool<Unmarshaller> unmarshallers;
+
+        private final BoundedPool.Factory<Marshaller, JAXBException> formattedMarshallerFactory =
+                new BoundedPool.Factory<Marshaller, JAXBException>() {
+                    @Override
+                    public Marshaller newInstance() throws JAXBException {
+                        return newMarshaller(true);
+                    }
+                };
+
+        private final BoundedPool.Factory<Marshaller, JAXBException> compactMarshallerFactory =
+                new BoundedPool.Factory<Marshaller, JAXBException>() {
+                    @Override
+                    public Marshaller newInstance() throws JAXBException {
+                        return newMarshaller(false);
+                    }
+                };
+
+        private final BoundedPool.Factory<Unmarshaller, JAXBException> unmarshallerFactory =
+                new BoundedPool.Factory<Unmarshaller, JAXBException>() {
+                    @Override
+                    public Unmarshaller newInstance() throws JAXBException {
+                        return newUnmarshaller();
+                    }
+                };
+
+        Converters(Class<?> c) throws JAXBException {
+            jaxbContext = JAXBContext.newInstance(c);
+            String poolName = SimpleProtocolProcess.class.getSimpleName() + '.' + c.getSimpleName();
+            boolean threadLocal = Boolean.parseBoolean(
+                    System.getProperty(EidasParameterKeys.XML_POOL_THREAD_LOCAL.toString()));
+            formattedMarshallers = new BoundedPool<>(poolName + ".FormattedMarshaller", MAX_POOL_SIZE,
+                                                     MAX_POOL_IDLE_MILLIS, threadLocal);
+            compactMarshallers = new BoundedPool<>(poolName + ".CompactMarshaller", MAX_POOL_SIZE,
+                                                   MAX_POOL_IDLE_MILLIS, threadLocal);
+            unmarshallers = new BoundedPool<>(poolName + ".Unmarshaller", MAX_POOL_SIZE, MAX_POOL_IDLE_MILLIS,
+                                              threadLocal);
+        }
+
+        private Marshaller newMarshaller(boolean formattedOutput) throws JAXBException {
+            // Create a marshaller
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            // Setup the marshaller
+            marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
+            marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, true);
+            // Add the adapter class
+            marshaller.setAdapter(new DateAdapter());
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+            return marshaller;
+        }
+
+        private Unmarshaller newUnmarshaller() throws JAXBException {
+            // Create an unmarshaller
+            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            // Setup for unmarshaller
+            unmarshaller.setProperty(UnmarshallerProperties.MEDIA_TYPE, "application/json");
+            unmarshaller.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, true);
+            // Add the adapter class
+            unmarshaller.setAdapter(new DateAdapter());
+            return unmarshaller;
+        }
+
+        BoundedPool<Marshaller> getMarshallers(boolean formattedOutput) {
+            return formattedOutput ? formattedMarshallers : compactMarshallers;
+        }
+
+        Marshaller borrowMarshaller(boolean formattedOutput) throws JAXBException {
+            return getMarshallers(formattedOutput).borrow(
+                    formattedOutput ? formattedMarshallerFactory : compactMarshallerFactory);
+        }
+
+        Unmarshaller borrowUnmarshaller() throws JAXBException {
+            return unmarshallers.borrow(unmarshallerFactory);
+        }
+    }
+
+    /**
+     * The converters by root class, shared by all the instances.
+     */
+    private static final ConcurrentMap<Class<?>, Converters> CONVERTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the JSON produced by {@link #convert2Json(Object)} is indented.
+     */
+    private final boolean formattedOutput;
+
+    /**
+     * Creates a converter producing indented JSON.
+     */
+    public SimpleProtocolProcess() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param formattedOutput {@code true} to produce indented JSON, {@code false} to produce compact JSON
+     * @since 2.4
+     */
+    public SimpleProtocolProcess(boolean formattedOutput) {
+        this.formattedOutput = formattedOutput;
+    }
+
+    private static Converters getConverters(Class<?> c) throws JAXBException {
+        Converters converters = CONVERTERS.get(c);
+        if (null == converters) {
+            Converters newConverters = new Converters(c);
+            converters = CONVERTERS.putIfAbsent(c, newConverters);
+            if (null == converters) {
+                converters = newConverters;
+            }
+        }
+        return converters;
+    }
+
     /**
      * Convert a JSON String into the specified type
      *
@@ -45,20 +185,11 @@ public class SimpleProtocolProcess {
      */
     public <T> T convertFromJson(StringReader jSonRequestString, Class<T> c) throws JAXBException {
 
-        JAXBContext jaxbContext = JAXBContext.newInstance(c);
-
-        // Create an instance of Date adapter what marshals/unmarshals into yyyy-mm-dd (only date part)
-        DateAdapter dateAdapter = new DateAdapter();
-
-        // Create an unmarshaller
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        // Setup for unmarshaller
-        unmarshaller.setProperty(UnmarshallerProperties.MEDIA_TYPE, "application/json");
-        unmarshaller.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, true);
-        // Add the adapter class
-        unmarshaller.setAdapter(dateAdapter);
-
+        Converters converters = getConverters(c);
+        Unmarshaller unmarshaller = converters.borrowUnmarshaller();
         final T unmarshal = (T) unmarshaller.unmarshal(jSonRequestString);
+        // only return the unmarshaller to the pool once it has been used successfully
+        converters.unmarshallers.release(unmarshaller);
         return unmarshal;
     }
 
@@ -71,22 +202,12 @@ public class SimpleProtocolProcess {
      */
     public String convert2Json(Object object) throws JAXBException {
 
-        // Introduce domain model classes to JAXB
-        JAXBContext jaxbContext = JAXBContext.newInstance(object.getClass());
-        // Create a marshaller
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        // Create an instance of Date adapter what marshals/unmarshals into yyyy-mm-dd (only date part)
-        DateAdapter dateAdapter = new DateAdapter();
+        Converters converters = getConverters(object.getClass());
+        Marshaller marshaller = converters.borrowMarshaller(formattedOutput);
         java.io.StringWriter sw = new StringWriter();
-
-        // Setup the marshaller
-        marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, "application/json");
-        marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, true);
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        // Add the adapter class
-        marshaller.setAdapter(dateAdapter);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
         marshaller.marshal(object, sw);
+        // only return the marshaller to the pool once it has been used successfully
+        converters.getMarshallers(formattedOutput).release(marshaller);
 
         final String jSonString = sw.toString();
         return jSonString;
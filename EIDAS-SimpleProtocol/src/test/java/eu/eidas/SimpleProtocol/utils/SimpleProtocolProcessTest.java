@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 by European Commission
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be
+ * approved by the European Commission - subsequent versions of the
+ * EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * https://joinup.ec.europa.eu/page/eupl-text-11-12
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence
+ */
+package eu.eidas.SimpleProtocol.utils;
+
+import eu.eidas.SimpleProtocol.AuthenticationRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+/**
+ * Test class for {@link SimpleProtocolProcess}
+ */
+public class SimpleProtocolProcessTest {
+
+    private static AuthenticationRequest newAuthenticationRequest(String id) {
+        AuthenticationRequest authenticationRequest = new AuthenticationRequest();
+        authenticationRequest.setId(id);
+        authenticationRequest.setDestination("http://destination");
+        authenticationRequest.setProviderName("provider");
+        authenticationRequest.setCitizenCountry("BE");
+        return authenticationRequest;
+    }
+
+    /**
+     * Test method for {@link SimpleProtocolProcess#convert2Json(Object)} and {@link
+     * SimpleProtocolProcess#convertFromJson(StringReader, Class)}
+     * <p>
+     * Must convert the same object back and forth with the pooled marshallers and unmarshallers.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        SimpleProtocolProcess simpleProtocolProcess = new SimpleProtocolProcess();
+
+        for (int i = 0; i < 3; i++) {
+            String json = simpleProtocolProcess.convert2Json(newAuthenticationRequest("id" + i));
+            AuthenticationRequest authenticationRequest =
+                    simpleProtocolProcess.convertFromJson(new StringReader(json), AuthenticationRequest.class);
+
+            Assert.assertEquals("id" + i, authenticationRequest.getId());
+            Assert.assertEquals("http://destination", authenticationRequest.getDestination());
+            Assert.assertEquals("provider", authenticationRequest.getProviderName());
+            Assert.assertEquals("BE", authenticationRequest.getCitizenCountry());
+        }
+    }
+
+    /**
+     * Test method for {@link SimpleProtocolProcess#convert2Json(Object)}
+     * <p>
+     * Must keep producing indented or compact JSON according to each instance when both share the pools of the same
+     * root class.
+     */
+    @Test
+    public void testFormattedOutput() throws Exception {
+        SimpleProtocolProcess formatted = new SimpleProtocolProcess(true);
+        SimpleProtocolProcess compact = new SimpleProtocolProcess(false);
+        AuthenticationRequest authenticationRequest = newAuthenticationRequest("id");
+
+        for (int i = 0; i < 3; i++) {
+            String formattedJson = formatted.convert2Json(authenticationRequest);
+            String compactJson = compact.convert2Json(authenticationRequest);
+
+            Assert.assertTrue(formattedJson.contains("\n"));
+            Assert.assertFalse(compactJson.contains("\n"));
+            Assert.assertEquals(formattedJson.replaceAll("\\s", ""), compactJson.replaceAll("\\s", ""));
+        }
+    }
+}
@@ -18,9 +18,11 @@
 package eu.eidas.specificcommunication;
 
 import eu.eidas.auth.commons.EidasStringUtil;
+import eu.eidas.auth.commons.lang.StripedSecureRandom;
 import eu.eidas.auth.commons.light.impl.LightToken;
 import eu.eidas.auth.commons.tx.BinaryLightToken;
 import eu.eidas.auth.commons.tx.LightTokenEncoder;
+import eu.eidas.auth.commons.tx.LightTokenKey;
 import eu.eidas.specificcommunication.exception.SpecificCommunicationException;
 import org.joda.time.DateTime;
 
@@ -28,7 +30,6 @@ import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletRequest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
-import java.util.UUID;
 
 /**
  * Helper class for BinaryLightToken.
@@ -61,6 +62,28 @@ public class BinaryLightTokenHelper {
         return binaryLightToken.getToken().getId();
     }
 
+    /**
+     * Get the {@link BinaryLightToken} id from a {@link BinaryLightToken} Base64 encoded string.
+     *
+     * @param binaryLightTokenBase64 the {@link BinaryLightToken} Base64 encoded
+     * @param key the secret and algorithm for checking the digest, created once from the configuration
+     * @return the {@link BinaryLightToken} id
+     * @throws SpecificCommunicationException if the algorithm of the {@code key} is an invalid one
+     * @since 2.4
+     */
+    public static String getBinaryLightTokenId(final @Nonnull String binaryLightTokenBase64, final @Nonnull LightTokenKey key) throws SpecificCommunicationException {
+        final String binaryLightTokenString = EidasStringUtil.decodeStringFromBase64(binaryLightTokenBase64);
+
+        final BinaryLightToken binaryLightToken;
+        try {
+            binaryLightToken = LightTokenEncoder.decode(binaryLightTokenString.getBytes(), key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SpecificCommunicationException(e);
+        }
+
+        return binaryLightToken.getToken().getId();
+    }
+
     /**
      * Gets the {@link BinaryLightToken} Base64 encoded.
      *
@@ -105,6 +128,24 @@ public class BinaryLightTokenHelper {
         }
     }
 
+    /**
+     * Creates an instance of {@link BinaryLightToken}.
+     *
+     * @param issuerName the issuer name
+     * @param key the secret and algorithm for creating the digest, created once from the configuration
+     * @return {@link BinaryLightToken}
+     * @throws SpecificCommunicationException when digest algorithm could not be found.
+     * @since 2.4
+     */
+    public static BinaryLightToken createBinaryLightToken(String issuerName, @Nonnull LightTokenKey key) throws SpecificCommunicationException {
+        final LightToken lightToken = BinaryLightTokenHelper.createLightToken(issuerName);
+        try {
+            return LightTokenEncoder.encode(lightToken, key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SpecificCommunicationException(e);
+        }
+    }
+
     /**
      * Creates an instance of {@link LightToken}
      *
@@ -112,7 +153,7 @@ public class BinaryLightTokenHelper {
      * @return an instance of {@link LightToken}
      */
     private static LightToken createLightToken(final String issuerName) {
-        final String lightTokenId = UUID.randomUUID().toString();
+        final String lightTokenId = StripedSecureRandom.randomUUID().toString();
         return new LightToken.Builder().id(lightTokenId)
                 .issuer(issuerName)
                 .createdOn(new DateTime(Calendar.getInstance().getTimeInMillis()))
@@ -92,6 +92,11 @@ public enum SpecificCommunicationDefinitionBeanNames {
      */
     INCOMING_LIGHT_RESPONSE_VALIDATOR("incomingLightResponseValidator"),
 
+    /**
+     * name of the codec of the light requests and responses stored in the communication caches
+     */
+    LIGHT_JAXB_CODEC("lightJAXBCodec"),
+
     ;
 
     /**
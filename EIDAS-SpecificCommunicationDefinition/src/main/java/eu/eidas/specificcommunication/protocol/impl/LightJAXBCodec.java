@@ -17,7 +17,10 @@
  */
 package eu.eidas.specificcommunication.protocol.impl;
 
+import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableSet;
+import eu.eidas.auth.commons.EidasParameterKeys;
+import eu.eidas.auth.commons.EidasStringUtil;
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
 import eu.eidas.auth.commons.attribute.AttributeRegistry;
 import eu.eidas.auth.commons.attribute.AttributeValue;
@@ -29,6 +32,7 @@ import eu.eidas.auth.commons.light.ILightRequest;
 import eu.eidas.auth.commons.light.ILightResponse;
 import eu.eidas.auth.commons.light.impl.LightRequest;
 import eu.eidas.auth.commons.light.impl.LightResponse;
+import eu.eidas.auth.commons.xml.BoundedPool;
 import eu.eidas.specificcommunication.exception.SpecificCommunicationException;
 import eu.eidas.specificcommunication.protocol.util.SecurityUtils;
 import org.slf4j.Logger;
@@ -43,18 +47,142 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.sax.SAXSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Marshals and unmarshals the {@link ILightRequest} and {@link ILightResponse} exchanged through the communication
+ * caches.
+ * <p>
+ * Whatever the {@link WireFormat} used to marshal, the codec unmarshals the messages produced in any format, so that
+ * the nodes and specific modules of a cluster can be migrated one at a time.
+ */
 class LightJAXBCodec {
 	private static final Logger LOG = LoggerFactory.getLogger(AttributeRegistry.class);
 
+	/**
+	 * The encodings of the marshalled messages.
+	 *
+	 * @since 2.4
+	 */
+	enum WireFormat {
+
+		/**
+		 * Indented XML, the format of the previous versions.
+		 */
+		INDENTED,
+
+		/**
+		 * XML without indentation, which previous versions can read too.
+		 */
+		COMPACT,
+
+		/**
+		 * XML without indentation, gzipped and base64-encoded after the {@link #COMPRESSED_TAG} version tag.
+		 * Previous versions cannot read this format.
+		 */
+		COMPRESSED
+	}
+
+	/**
+	 * Version tag prefixed to the messages in the {@link WireFormat#COMPRESSED} format.
+	 */
+	static final String COMPRESSED_TAG = "LZ1:";
+
+	/**
+	 * Maximum size of a decompressed message, to bound the memory used by a crafted compressed message.
+	 */
+	private static final int MAX_DECOMPRESSED_BYTES = 1024 * 1024;
+
+	private static final int MAX_POOL_SIZE = 32;
+
+	private static final long MAX_POOL_IDLE_MILLIS = 300000L;
+
 	JAXBContext jaxbCtx;
 
+	private final WireFormat wireFormat;
+
+	/**
+	 * Marshallers are not thread-safe: each one is used by one thread at a time and returned to the pool afterwards.
+	 */
+	private final BoundedPool<Marshaller> marshallers;
+
+	private final BoundedPool<Unmarshaller> unmarshallers;
+
+	private final BoundedPool.Factory<Marshaller, JAXBException> marshallerFactory =
+			new BoundedPool.Factory<Marshaller, JAXBException>() {
+				@Override
+				public Marshaller newInstance() throws JAXBException {
+					return createMarshaller();
+				}
+			};
+
+	private final BoundedPool.Factory<Unmarshaller, JAXBException> unmarshallerFactory =
+			new BoundedPool.Factory<Unmarshaller, JAXBException>() {
+				@Override
+				public Unmarshaller newInstance() throws JAXBException {
+					return createUnmarshaller();
+				}
+			};
+
+	/**
+	 * The definitions of the last registry used to unmarshal, indexed by name.
+	 */
+	private static final class RegistryIndex {
+
+		private final Collection<AttributeDefinition<?>> registry;
+
+		private final Map<URI, AttributeDefinition<?>> definitionsByName;
+
+		RegistryIndex(Collection<AttributeDefinition<?>> registry, Map<URI, AttributeDefinition<?>> definitionsByName) {
+			this.registry = registry;
+			this.definitionsByName = definitionsByName;
+		}
+	}
+
+	private volatile RegistryIndex registryIndex;
+
 	LightJAXBCodec(JAXBContext jaxbCtx) {
+		this(jaxbCtx, WireFormat.INDENTED);
+	}
+
+	LightJAXBCodec(JAXBContext jaxbCtx, WireFormat wireFormat) {
 		this.jaxbCtx = jaxbCtx;
+		this.wireFormat = wireFormat;
+		String poolName = LightJAXBCodec.class.getSimpleName() + '.' + wireFormat + '@'
+				+ Integer.toHexString(System.identityHashCode(this));
+		boolean threadLocal = Boolean.parseBoolean(
+				System.getProperty(EidasParameterKeys.XML_POOL_THREAD_LOCAL.toString()));
+		marshallers = new BoundedPool<>(poolName + ".Marshaller", MAX_POOL_SIZE, MAX_POOL_IDLE_MILLIS, threadLocal);
+		unmarshallers = new BoundedPool<>(poolName + ".Unmarshaller", MAX_POOL_SIZE, MAX_POOL_IDLE_MILLIS,
+				threadLocal);
+	}
+
+	/**
+	 * Creates a codec of the light requests and responses.
+	 *
+	 * @param wireFormat the name of the {@link WireFormat} of the marshalled messages
+	 * @return the new codec
+	 * @throws JAXBException if the JAXB context cannot be created
+	 * @since 2.4
+	 */
+	static LightJAXBCodec newInstance(String wireFormat) throws JAXBException {
+		return new LightJAXBCodec(JAXBContext.newInstance(LightRequest.class, LightResponse.class,
+				ImmutableAttributeMap.class, AttributeDefinition.class), WireFormat.valueOf(wireFormat.trim()));
+	}
+
+	WireFormat getWireFormat() {
+		return wireFormat;
 	}
 
 	public <T> String marshall(T input) throws SpecificCommunicationException {
@@ -63,13 +191,58 @@ class LightJAXBCodec {
 		}
 		StringWriter writer = new StringWriter();
 		try {
-			createMarshaller().marshal(input, writer);
+			Marshaller marshaller = marshallers.borrow(marshallerFactory);
+			marshaller.marshal(input, writer);
+			// only return the marshaller to the pool once it has been used successfully
+			marshallers.release(marshaller);
 		} catch (JAXBException e) {
 			throw new SpecificCommunicationException(e);
 		}
+		if (wireFormat == WireFormat.COMPRESSED) {
+			return COMPRESSED_TAG + EidasStringUtil.encodeToBase64(compress(writer.toString()));
+		}
 		return writer.toString();
 	}
 
+	private static byte[] compress(String xml) throws SpecificCommunicationException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(EidasStringUtil.getBytes(xml));
+		} catch (IOException e) {
+			throw new SpecificCommunicationException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns the XML of a message marshalled in any {@link WireFormat}.
+	 */
+	private static String decode(String input) throws SpecificCommunicationException {
+		if (!input.startsWith(COMPRESSED_TAG)) {
+			return input;
+		}
+		byte[] compressed;
+		try {
+			compressed = EidasStringUtil.decodeBytesFromBase64(input.substring(COMPRESSED_TAG.length()));
+		} catch (IllegalArgumentException e) {
+			throw new SpecificCommunicationException(e);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.length * 4);
+		try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = gzip.read(buffer)) != -1) {
+				if (bytes.size() + read > MAX_DECOMPRESSED_BYTES) {
+					throw new SpecificCommunicationException("Decompressed light message too large");
+				}
+				bytes.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new SpecificCommunicationException(e);
+		}
+		return EidasStringUtil.toString(bytes.toByteArray());
+	}
+
 	public <T extends ILightRequest> T unmarshallRequest(String input,
 			Collection<AttributeDefinition<?>> registry) throws SpecificCommunicationException {
 		if (input == null) {
@@ -79,9 +252,7 @@ class LightJAXBCodec {
 			throw new SpecificCommunicationException("missing registry");
 		}
 		try {
-			SAXSource secureSaxSource = SecurityUtils.createSecureSaxSource(input);
-
-			T unmarshalled = (T) createUnmarshaller().unmarshal(secureSaxSource);
+			T unmarshalled = unmarshal(input);
 			LightRequest.Builder resultBuilder = LightRequest.builder(unmarshalled);
 			ImmutableAttributeMap.Builder mapBuilder = ImmutableAttributeMap.builder();
 
@@ -112,9 +283,7 @@ class LightJAXBCodec {
 			throw new SpecificCommunicationException("missing registry");
 		}
 		try {
-			SAXSource secureSaxSource = SecurityUtils.createSecureSaxSource(input);
-
-			T unmarshalled = (T) createUnmarshaller().unmarshal(secureSaxSource);
+			T unmarshalled = unmarshal(input);
 			LightResponse.Builder resultBuilder = LightResponse.builder(unmarshalled);
 
 			ImmutableAttributeMap.Builder mapBuilder = ImmutableAttributeMap.builder();
@@ -157,6 +326,14 @@ class LightJAXBCodec {
 		if (nameUri == null) {
 			throw new SpecificCommunicationException("Invalid lookup nameUri");
 		}
+		Map<URI, AttributeDefinition<?>> definitionsByName = getDefinitionsByName(registry);
+		if (null != definitionsByName) {
+			AttributeDefinition<?> definition = definitionsByName.get(nameUri);
+			if (null != definition) {
+				return definition;
+			}
+			throw new SpecificCommunicationException(String.format("Attribute %s not present in the registry", nameUri));
+		}
 		for (Iterator<AttributeDefinition<?>> iterator = registry.iterator(); iterator.hasNext();) {
 			AttributeDefinition<?> next = iterator.next();
 			if (next.getNameUri() == null)
@@ -169,10 +346,46 @@ class LightJAXBCodec {
 		throw new SpecificCommunicationException(String.format("Attribute %s not present in the registry", nameUri));
 	}
 
+	/**
+	 * Returns the definitions of the given registry indexed by name, indexing an immutable registry only once as long
+	 * as the same registry instance is passed, or {@code null} if the registry cannot be indexed.
+	 */
+	private Map<URI, AttributeDefinition<?>> getDefinitionsByName(Collection<AttributeDefinition<?>> registry) {
+		if (!(registry instanceof ImmutableCollection)) {
+			return null;
+		}
+		RegistryIndex current = registryIndex;
+		if (null != current && current.registry == registry) {
+			return current.definitionsByName;
+		}
+		Map<URI, AttributeDefinition<?>> definitionsByName = new HashMap<>();
+		for (AttributeDefinition<?> definition : registry) {
+			if (definition.getNameUri() == null) {
+				return null;
+			}
+			if (!definitionsByName.containsKey(definition.getNameUri())) {
+				definitionsByName.put(definition.getNameUri(), definition);
+			}
+		}
+		registryIndex = new RegistryIndex(registry, definitionsByName);
+		return definitionsByName;
+	}
+
+	private <T> T unmarshal(String input) throws SpecificCommunicationException, JAXBException, SAXException,
+			ParserConfigurationException {
+		SAXSource secureSaxSource = SecurityUtils.createSecureSaxSource(decode(input));
+
+		Unmarshaller unmarshaller = unmarshallers.borrow(unmarshallerFactory);
+		T unmarshalled = (T) unmarshaller.unmarshal(secureSaxSource);
+		// only return the unmarshaller to the pool once it has been used successfully
+		unmarshallers.release(unmarshaller);
+		return unmarshalled;
+	}
+
 	private Marshaller createMarshaller() throws JAXBException {
 		Marshaller marshaller = jaxbCtx.createMarshaller();
 		marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_ENCODING, "UTF-8"); // NOI18N
-		marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+		marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, wireFormat == WireFormat.INDENTED);
 		return marshaller;
 	}
 
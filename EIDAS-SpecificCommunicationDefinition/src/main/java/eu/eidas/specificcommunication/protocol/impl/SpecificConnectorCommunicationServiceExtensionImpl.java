@@ -18,11 +18,9 @@
 package eu.eidas.specificcommunication.protocol.impl;
 
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
-import eu.eidas.auth.commons.attribute.ImmutableAttributeMap;
 import eu.eidas.auth.commons.light.ILightRequest;
 import eu.eidas.auth.commons.light.ILightResponse;
-import eu.eidas.auth.commons.light.impl.LightRequest;
-import eu.eidas.auth.commons.light.impl.LightResponse;
+import eu.eidas.auth.commons.tx.LightTokenKey;
 import eu.eidas.specificcommunication.BinaryLightTokenHelper;
 import eu.eidas.specificcommunication.CommunicationCache;
 import eu.eidas.specificcommunication.SpecificCommunicationApplicationContextProvider;
@@ -32,8 +30,6 @@ import eu.eidas.specificcommunication.protocol.SpecificCommunicationServiceExten
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
 
 /**
  * Implements {@link SpecificCommunicationServiceExtension} to be used for exchanging of
@@ -44,42 +40,33 @@ import javax.xml.bind.JAXBException;
  */
 public class SpecificConnectorCommunicationServiceExtensionImpl implements SpecificCommunicationServiceExtension {
     private static final Logger LOG = LoggerFactory.getLogger(SpecificCommunicationServiceExtension.class);
-    private static LightJAXBCodec codec;
-    static {
-        try {
-            codec = new LightJAXBCodec(JAXBContext.newInstance(LightRequest.class, LightResponse.class,
-                    ImmutableAttributeMap.class, AttributeDefinition.class));
-        } catch (JAXBException e) {
-            LOG.error("Unable to instantiate in static initializer ",e);
-        }
-    }
+    /**
+     * The codec of the light requests and responses, shared by all the communication services.
+     */
+    private final LightJAXBCodec codec = (LightJAXBCodec) SpecificCommunicationApplicationContextProvider
+            .getApplicationContext()
+            .getBean(SpecificCommunicationDefinitionBeanNames.LIGHT_JAXB_CODEC.toString());
     private String lightTokenRequestNodeId;
 
-    private String lightTokenRequestSecret;
-
-    private String lightTokenRequestAlgorithm;
+    private final LightTokenKey lightTokenRequestKey;
 
     private String lightTokenResponseNodeId;
 
-    private String lightTokenResponseSecret;
-
-    private String lightTokenResponseAlgorithm;
+    private final LightTokenKey lightTokenResponseKey;
 
     SpecificConnectorCommunicationServiceExtensionImpl(final String lightTokenRequestNodeId, final String lightTokenRequestSecret, final String lightTokenRequestAlgorithm,
                                                        final String lightTokenResponseNodeId, final String lightTokenResponseSecret, final String lightTokenResponseAlgorithm) {
 
         this.lightTokenRequestNodeId = lightTokenRequestNodeId;
-        this.lightTokenRequestSecret = lightTokenRequestSecret;
-        this.lightTokenRequestAlgorithm = lightTokenRequestAlgorithm;
+        this.lightTokenRequestKey = new LightTokenKey(lightTokenRequestSecret, lightTokenRequestAlgorithm);
         this.lightTokenResponseNodeId = lightTokenResponseNodeId;
-        this.lightTokenResponseSecret = lightTokenResponseSecret;
-        this.lightTokenResponseAlgorithm = lightTokenResponseAlgorithm;
+        this.lightTokenResponseKey = new LightTokenKey(lightTokenResponseSecret, lightTokenResponseAlgorithm);
     }
 
     @Override
     public void putRequest(final String tokenBase64, final ILightRequest iLightRequest) throws SpecificCommunicationException {
         final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-                getLightTokenRequestSecret(), getLightTokenRequestAlgorithm());
+                getLightTokenRequestKey());
         final CommunicationCache specificNodeConnectorRequestCommunicationCache = getRequestCommunicationCache();
         specificNodeConnectorRequestCommunicationCache.put(binaryLightTokenId, codec.marshall(iLightRequest));
     }
@@ -87,7 +74,7 @@ public class SpecificConnectorCommunicationServiceExtensionImpl implements Speci
     @Override
     public void putResponse(final String tokenBase64, final ILightResponse iLightResponse) throws SpecificCommunicationException {
         final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-                getLightTokenResponseSecret(), getLightTokenResponseAlgorithm());
+                getLightTokenResponseKey());
         final CommunicationCache specificNodeConnectorResponseCommunicationCache = getResponseCommunicationCache();
         specificNodeConnectorResponseCommunicationCache.put(binaryLightTokenId, codec.marshall(iLightResponse));
     }
@@ -106,21 +93,13 @@ public class SpecificConnectorCommunicationServiceExtensionImpl implements Speci
 
     public String getLightTokenRequestNodeId() { return lightTokenRequestNodeId; }
 
-    private String getLightTokenRequestSecret() {
-        return lightTokenRequestSecret;
-    }
-
-    private String getLightTokenRequestAlgorithm() {
-        return lightTokenRequestAlgorithm;
+    private LightTokenKey getLightTokenRequestKey() {
+        return lightTokenRequestKey;
     }
 
     public String getLightTokenResponseNodeId() { return lightTokenResponseNodeId; }
 
-    private String getLightTokenResponseSecret() {
-        return lightTokenResponseSecret;
-    }
-
-    private String getLightTokenResponseAlgorithm() {
-        return lightTokenResponseAlgorithm;
+    private LightTokenKey getLightTokenResponseKey() {
+        return lightTokenResponseKey;
     }
 }
@@ -19,12 +19,10 @@
 package eu.eidas.specificcommunication.protocol.impl;
 
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
-import eu.eidas.auth.commons.attribute.ImmutableAttributeMap;
 import eu.eidas.auth.commons.light.ILightRequest;
 import eu.eidas.auth.commons.light.ILightResponse;
-import eu.eidas.auth.commons.light.impl.LightRequest;
-import eu.eidas.auth.commons.light.impl.LightResponse;
 import eu.eidas.auth.commons.tx.BinaryLightToken;
+import eu.eidas.auth.commons.tx.LightTokenKey;
 import eu.eidas.specificcommunication.BinaryLightTokenHelper;
 import eu.eidas.specificcommunication.CommunicationCache;
 import eu.eidas.specificcommunication.SpecificCommunicationApplicationContextProvider;
@@ -35,8 +33,6 @@ import eu.eidas.specificcommunication.protocol.validation.IncomingLightRequestVa
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
 import java.util.Collection;
 
 /**
@@ -48,27 +44,20 @@ import java.util.Collection;
  */
 public class SpecificConnectorCommunicationServiceImpl implements SpecificCommunicationService {
 	private static final Logger LOG = LoggerFactory.getLogger(SpecificCommunicationService.class);
-	private static LightJAXBCodec codec;
-	static {
-		try {
-			codec = new LightJAXBCodec(JAXBContext.newInstance(LightRequest.class, LightResponse.class,
-					ImmutableAttributeMap.class, AttributeDefinition.class));
-		} catch (JAXBException e) {
-			LOG.error("Unable to instantiate in static initializer ",e);
-		}
-	}
+	/**
+	 * The codec of the light requests and responses, shared by all the communication services.
+	 */
+	private final LightJAXBCodec codec = (LightJAXBCodec) SpecificCommunicationApplicationContextProvider
+			.getApplicationContext()
+			.getBean(SpecificCommunicationDefinitionBeanNames.LIGHT_JAXB_CODEC.toString());
 
 	private String lightTokenRequestIssuerName;
 
-	private String lightTokenRequestSecret;
-
-	private String lightTokenRequestAlgorithm;
+	private final LightTokenKey lightTokenRequestKey;
 
 	private String lightTokenResponseIssuerName;
 
-	private String lightTokenResponseSecret;
-
-	private String lightTokenResponseAlgorithm;
+	private final LightTokenKey lightTokenResponseKey;
 
 	/**
 	 * The instance of the {@link IncomingLightRequestValidator}
@@ -84,17 +73,15 @@ public class SpecificConnectorCommunicationServiceImpl implements SpecificCommun
 			final String lightTokenResponseAlgorithm) {
 
 		this.lightTokenRequestIssuerName = lightTokenRequestIssuerName;
-		this.lightTokenRequestSecret = lightTokenRequestSecret;
-		this.lightTokenRequestAlgorithm = lightTokenRequestAlgorithm;
+		this.lightTokenRequestKey = new LightTokenKey(lightTokenRequestSecret, lightTokenRequestAlgorithm);
 		this.lightTokenResponseIssuerName = lightTokenResponseIssuerName;
-		this.lightTokenResponseSecret = lightTokenResponseSecret;
-		this.lightTokenResponseAlgorithm = lightTokenResponseAlgorithm;
+		this.lightTokenResponseKey = new LightTokenKey(lightTokenResponseSecret, lightTokenResponseAlgorithm);
 	}
 
 	@Override
 	public BinaryLightToken putRequest(final ILightRequest iLightRequest) throws SpecificCommunicationException {
 		final BinaryLightToken binaryLightToken = BinaryLightTokenHelper.createBinaryLightToken(
-				getLightTokenRequestIssuerName(), getLightTokenRequestSecret(), getLightTokenRequestAlgorithm());
+				getLightTokenRequestIssuerName(), getLightTokenRequestKey());
 		final String tokenId = binaryLightToken.getToken().getId();
 		final CommunicationCache specificNodeConnectorRequestCommunicationCache = getRequestCommunicationCache();
 		specificNodeConnectorRequestCommunicationCache.put(tokenId, codec.marshall(iLightRequest));
@@ -105,7 +92,7 @@ public class SpecificConnectorCommunicationServiceImpl implements SpecificCommun
 	public ILightRequest getAndRemoveRequest(final String tokenBase64,
 			final Collection<AttributeDefinition<?>> registry) throws SpecificCommunicationException {
 		final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-				getLightTokenRequestSecret(), getLightTokenRequestAlgorithm());
+				getLightTokenRequestKey());
 		final CommunicationCache specificNodeConnectorRequestCommunicationCache = getRequestCommunicationCache();
 		String lightRequest = specificNodeConnectorRequestCommunicationCache.getAndRemove(binaryLightTokenId);
 
@@ -129,7 +116,7 @@ public class SpecificConnectorCommunicationServiceImpl implements SpecificCommun
 	@Override
 	public BinaryLightToken putResponse(final ILightResponse iLightResponse) throws SpecificCommunicationException {
 		final BinaryLightToken binaryLightToken = BinaryLightTokenHelper.createBinaryLightToken(
-				getLightTokenResponseIssuerName(), getLightTokenResponseSecret(), getLightTokenResponseAlgorithm());
+				getLightTokenResponseIssuerName(), getLightTokenResponseKey());
 		final String tokenId = binaryLightToken.getToken().getId();
 		final CommunicationCache specificNodeConnectorResponseCommunicationCache = getResponseCommunicationCache();
 		specificNodeConnectorResponseCommunicationCache.put(tokenId, codec.marshall(iLightResponse));
@@ -140,7 +127,7 @@ public class SpecificConnectorCommunicationServiceImpl implements SpecificCommun
 	public ILightResponse getAndRemoveResponse(final String tokenBase64,
 			final Collection<AttributeDefinition<?>> registry) throws SpecificCommunicationException {
 		final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-				getLightTokenResponseSecret(), getLightTokenResponseAlgorithm());
+				getLightTokenResponseKey());
 		final CommunicationCache specificNodeConnectorResponseCommunicationCache = getResponseCommunicationCache();
 		return  codec.unmarshallResponse(specificNodeConnectorResponseCommunicationCache.getAndRemove(binaryLightTokenId), registry);
 	}
@@ -155,23 +142,15 @@ public class SpecificConnectorCommunicationServiceImpl implements SpecificCommun
 		return lightTokenRequestIssuerName;
 	}
 
-	private String getLightTokenRequestSecret() {
-		return lightTokenRequestSecret;
-	}
-
-	private String getLightTokenRequestAlgorithm() {
-		return lightTokenRequestAlgorithm;
+	private LightTokenKey getLightTokenRequestKey() {
+		return lightTokenRequestKey;
 	}
 
 	private String getLightTokenResponseIssuerName() {
 		return lightTokenResponseIssuerName;
 	}
 
-	private String getLightTokenResponseSecret() {
-		return lightTokenResponseSecret;
-	}
-
-	private String getLightTokenResponseAlgorithm() {
-		return lightTokenResponseAlgorithm;
+	private LightTokenKey getLightTokenResponseKey() {
+		return lightTokenResponseKey;
 	}
 }
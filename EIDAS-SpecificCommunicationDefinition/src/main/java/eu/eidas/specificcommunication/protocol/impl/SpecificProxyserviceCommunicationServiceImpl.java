@@ -17,16 +17,11 @@ package eu.eidas.specificcommunication.protocol.impl;
 
 import java.util.Collection;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-
 import eu.eidas.auth.commons.attribute.AttributeDefinition;
-import eu.eidas.auth.commons.attribute.ImmutableAttributeMap;
 import eu.eidas.auth.commons.light.ILightRequest;
 import eu.eidas.auth.commons.light.ILightResponse;
-import eu.eidas.auth.commons.light.impl.LightRequest;
-import eu.eidas.auth.commons.light.impl.LightResponse;
 import eu.eidas.auth.commons.tx.BinaryLightToken;
+import eu.eidas.auth.commons.tx.LightTokenKey;
 import eu.eidas.specificcommunication.BinaryLightTokenHelper;
 import eu.eidas.specificcommunication.CommunicationCache;
 import eu.eidas.specificcommunication.SpecificCommunicationApplicationContextProvider;
@@ -46,27 +41,20 @@ import org.slf4j.LoggerFactory;
  */
 public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCommunicationService {
 	private static final Logger LOG = LoggerFactory.getLogger(SpecificCommunicationService.class);
-	private static LightJAXBCodec codec;
-	static {
-		try {
-			codec = new LightJAXBCodec(JAXBContext.newInstance(LightRequest.class, LightResponse.class,
-					ImmutableAttributeMap.class, AttributeDefinition.class));
-		} catch (JAXBException e) {
-			LOG.error("Unable to instantiate in static initializer ",e);
-		}
-	}
+	/**
+	 * The codec of the light requests and responses, shared by all the communication services.
+	 */
+	private final LightJAXBCodec codec = (LightJAXBCodec) SpecificCommunicationApplicationContextProvider
+			.getApplicationContext()
+			.getBean(SpecificCommunicationDefinitionBeanNames.LIGHT_JAXB_CODEC.toString());
 
 	private String lightTokenRequestIssuerName;
 
-	private String lightTokenRequestSecret;
-
-	private String lightTokenRequestAlgorithm;
+	private final LightTokenKey lightTokenRequestKey;
 
 	private String lightTokenResponseIssuerName;
 
-	private String lightTokenResponseSecret;
-
-	private String lightTokenResponseAlgorithm;
+	private final LightTokenKey lightTokenResponseKey;
 
 	/**
 	 * The instance of the {@link IncomingLightResponseValidator}
@@ -82,17 +70,15 @@ public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCom
 			final String lightTokenResponseAlgorithm) {
 
 		this.lightTokenRequestIssuerName = lightTokenRequestIssuerName;
-		this.lightTokenRequestSecret = lightTokenRequestSecret;
-		this.lightTokenRequestAlgorithm = lightTokenRequestAlgorithm;
+		this.lightTokenRequestKey = new LightTokenKey(lightTokenRequestSecret, lightTokenRequestAlgorithm);
 		this.lightTokenResponseIssuerName = lightTokenResponseIssuerName;
-		this.lightTokenResponseSecret = lightTokenResponseSecret;
-		this.lightTokenResponseAlgorithm = lightTokenResponseAlgorithm;
+		this.lightTokenResponseKey = new LightTokenKey(lightTokenResponseSecret, lightTokenResponseAlgorithm);
 	}
 
 	@Override
 	public BinaryLightToken putRequest(final ILightRequest iLightRequest) throws SpecificCommunicationException {
 		final BinaryLightToken binaryLightToken = BinaryLightTokenHelper.createBinaryLightToken(
-				getLightTokenRequestIssuerName(), getLightTokenRequestSecret(), getLightTokenRequestAlgorithm());
+				getLightTokenRequestIssuerName(), getLightTokenRequestKey());
 		final String tokenId = binaryLightToken.getToken().getId();
 		final CommunicationCache specificNodeProxyserviceRequestCommunicationCache = getRequestCommunicationCache();
 		specificNodeProxyserviceRequestCommunicationCache.put(tokenId, codec.marshall(iLightRequest));
@@ -103,7 +89,7 @@ public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCom
 	public ILightRequest getAndRemoveRequest(final String tokenBase64,
 			final Collection<AttributeDefinition<?>> registry) throws SpecificCommunicationException {
 		final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-				getLightTokenRequestSecret(), getLightTokenRequestAlgorithm());
+				getLightTokenRequestKey());
 		final CommunicationCache specificNodeProxyserviceRequestCommunicationCache = getRequestCommunicationCache();
 		ILightRequest result = codec.unmarshallRequest(specificNodeProxyserviceRequestCommunicationCache.getAndRemove(binaryLightTokenId),registry);
 		return result;
@@ -118,7 +104,7 @@ public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCom
 	@Override
 	public BinaryLightToken putResponse(final ILightResponse iLightResponse) throws SpecificCommunicationException {
 		final BinaryLightToken binaryLightToken = BinaryLightTokenHelper.createBinaryLightToken(
-				getLightTokenResponseIssuerName(), getLightTokenResponseSecret(), getLightTokenResponseAlgorithm());
+				getLightTokenResponseIssuerName(), getLightTokenResponseKey());
 		final String tokenId = binaryLightToken.getToken().getId();
 		final CommunicationCache specificNodeProxyserviceResponseCommunicationCache = getResponseCommunicationCache();
 		specificNodeProxyserviceResponseCommunicationCache.put(tokenId, codec.marshall(iLightResponse));
@@ -129,7 +115,7 @@ public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCom
 	public ILightResponse getAndRemoveResponse(final String tokenBase64,
 			final Collection<AttributeDefinition<?>> registry) throws SpecificCommunicationException {
 		final String binaryLightTokenId = BinaryLightTokenHelper.getBinaryLightTokenId(tokenBase64,
-				getLightTokenResponseSecret(), getLightTokenResponseAlgorithm());
+				getLightTokenResponseKey());
 		final CommunicationCache specificNodeProxyserviceResponseCommunicationCache = getResponseCommunicationCache();
 		String lightResponse = specificNodeProxyserviceResponseCommunicationCache.getAndRemove(binaryLightTokenId);
 
@@ -155,23 +141,15 @@ public class SpecificProxyserviceCommunicationServiceImpl implements SpecificCom
 		return lightTokenRequestIssuerName;
 	}
 
-	private String getLightTokenRequestSecret() {
-		return lightTokenRequestSecret;
-	}
-
-	private String getLightTokenRequestAlgorithm() {
-		return lightTokenRequestAlgorithm;
+	private LightTokenKey getLightTokenRequestKey() {
+		return lightTokenRequestKey;
 	}
 
 	private String getLightTokenResponseIssuerName() {
 		return lightTokenResponseIssuerName;
 	}
 
-	private String getLightTokenResponseSecret() {
-		return lightTokenResponseSecret;
-	}
-
-	private String getLightTokenResponseAlgorithm() {
-		return lightTokenResponseAlgorithm;
+	private LightTokenKey getLightTokenResponseKey() {
+		return lightTokenResponseKey;
 	}
 }
@@ -43,6 +43,8 @@ import java.util.AbstractCollection;
 import java.util.Collection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class LightJAXBCodecTest {
@@ -249,6 +251,72 @@ public class LightJAXBCodecTest {
 		codecUnderTest.unmarshallResponse(input, REGISTRY);
 	}
 
+	private static LightRequest newLightRequest() {
+		return new LightRequest.Builder().id(ID).issuer(ISSUER)
+				.citizenCountryCode(CITIZEN_COUNTRY_CODE).levelOfAssurance(LEVEL_OF_ASSURANCE)
+				.requestedAttributes(ATTRIBUTES).nameIdFormat(UNSPECIFIED).spType(PUBLIC).relayState(RELAYSTATE)
+				.providerName(PROVIDERNAME)
+				.build();
+	}
+
+	/**
+	 * Test method for
+	 * {@link LightJAXBCodec#marshall(Object)}
+	 * with the {@link LightJAXBCodec.WireFormat#COMPACT} format
+	 * <p>
+	 * Must produce a smaller XML than the indented format which the indented codec can read.
+	 */
+	@Test
+	public void testMarshallCompact() throws Exception {
+		LightJAXBCodec compactCodec = LightJAXBCodec.newInstance("COMPACT");
+		LightRequest lightRequest = newLightRequest();
+
+		String indented = codecUnderTest.marshall(lightRequest);
+		String compact = compactCodec.marshall(lightRequest);
+
+		assertTrue(compact.length() < indented.length());
+		assertFalse(compact.contains("\n "));
+		assertEquals(ID, codecUnderTest.unmarshallRequest(compact, REGISTRY).getId());
+		assertEquals(ID, compactCodec.unmarshallRequest(indented, REGISTRY).getId());
+	}
+
+	/**
+	 * Test method for
+	 * {@link LightJAXBCodec#marshall(Object)}
+	 * with the {@link LightJAXBCodec.WireFormat#COMPRESSED} format
+	 * <p>
+	 * Must produce a tagged compressed message which any codec can read.
+	 */
+	@Test
+	public void testMarshallCompressed() throws Exception {
+		LightJAXBCodec compressedCodec = LightJAXBCodec.newInstance("COMPRESSED");
+		LightRequest lightRequest = newLightRequest();
+
+		String indented = codecUnderTest.marshall(lightRequest);
+		String compressed = compressedCodec.marshall(lightRequest);
+
+		assertTrue(compressed.startsWith(LightJAXBCodec.COMPRESSED_TAG));
+		assertTrue(compressed.length() < indented.length());
+		LightRequest result = codecUnderTest.unmarshallRequest(compressed, REGISTRY);
+		assertEquals(lightRequest.getId(), result.getId());
+		assertEquals(lightRequest.getRequestedAttributes().size(), result.getRequestedAttributes().size());
+		assertEquals(ID, compressedCodec.unmarshallRequest(indented, REGISTRY).getId());
+	}
+
+	/**
+	 * Test method for
+	 * {@link LightJAXBCodec#unmarshallRequest(String, Collection)}
+	 * when the compressed input is not valid
+	 * <p>
+	 * Must fail and throw {@link SpecificCommunicationException}
+	 */
+	@Test
+	public void testUnmarshallInvalidCompressedRequest() throws SpecificCommunicationException {
+		thrown.expect(SpecificCommunicationException.class);
+
+		codecUnderTest.unmarshallRequest(LightJAXBCodec.COMPRESSED_TAG + "bm90IGd6aXBwZWQ=", REGISTRY);
+	}
+
 	// @formatter:off
 	private static String MARSHALLED_RESPONSE = "<lightResponse>" + "    <id>9e33f2c5-e4af-4997-b61d-8a25d3652b9e</id> "
 			+ "    <relayState>d061c40a-c6f7-4527-ae71-9253ed9b4666</relayState>" + "    <issuer>DEMO-IDP</issuer>"
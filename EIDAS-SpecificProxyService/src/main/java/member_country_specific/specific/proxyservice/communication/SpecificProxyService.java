@@ -88,6 +88,11 @@ public class SpecificProxyService {
 
     boolean relaystateRandomizeNull;
 
+    /**
+     * Whether the JSON sent to the IdP is indented.
+     */
+    private boolean jsonFormattedOutput = true;
+
     public boolean getRelaystateRandomizeNull() {
         return relaystateRandomizeNull;
     }
@@ -96,6 +101,14 @@ public class SpecificProxyService {
         this.relaystateRandomizeNull = relaystateRandomizeNull;
     }
 
+    public boolean isJsonFormattedOutput() {
+        return jsonFormattedOutput;
+    }
+
+    public void setJsonFormattedOutput(boolean jsonFormattedOutput) {
+        this.jsonFormattedOutput = jsonFormattedOutput;
+    }
+
     /**
      * Correlation Map between the simple protocol request Id to be send to the IdP and the holder
      * of the light request and correlated simple protocol request sent by the Proxy-service.
@@ -142,7 +155,7 @@ public class SpecificProxyService {
     }
 
     private String convertAuthenticationRequestToJson(@Nonnull final AuthenticationRequest specificRequest) throws JAXBException {
-        final String specificRequestJson = new SimpleProtocolProcess().convert2Json(specificRequest);
+        final String specificRequestJson = new SimpleProtocolProcess(jsonFormattedOutput).convert2Json(specificRequest);
         return EidasStringUtil.encodeToBase64(specificRequestJson);
     }
 